@@ -1,16 +1,17 @@
 package com.DbBackup.config;
 import com.DbBackup.service.BackupService;
+import com.DbBackup.service.impl.ScheduledJobCipher;
 import org.quartz.Scheduler;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class CliConfig {
 
-    @Bean
     @Autowired
-    public void registerBackupServiceInScheduler(Scheduler scheduler, BackupService backupService) throws Exception {
+    public void registerBackupServiceInScheduler(Scheduler scheduler, BackupService backupService,
+                                                 ScheduledJobCipher scheduledJobCipher) throws Exception {
         scheduler.getContext().put("backupService", backupService);
+        scheduler.getContext().put("scheduledJobCipher", scheduledJobCipher);
     }
 }
\ No newline at end of file
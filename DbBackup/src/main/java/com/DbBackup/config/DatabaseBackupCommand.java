@@ -3,11 +3,24 @@ package com.DbBackup.config;
 import com.DbBackup.model.BackupJob;
 import com.DbBackup.model.BackupResult;
 import com.DbBackup.model.BackupType;
+import com.DbBackup.model.BinlogPosition;
+import com.DbBackup.model.CatalogEntry;
+import com.DbBackup.model.CodecType;
 import com.DbBackup.model.ConnectionParams;
 import com.DbBackup.model.DatabaseType;
+import com.DbBackup.model.DumpEngine;
+import com.DbBackup.model.RestoreOptions;
+import com.DbBackup.model.RunningProcess;
+import com.DbBackup.model.VerifyResult;
+import com.DbBackup.service.BackupCatalogService;
 import com.DbBackup.service.BackupService;
+import com.DbBackup.service.BackupVerifyService;
+import com.DbBackup.service.BinlogService;
 import com.DbBackup.service.DatabaseConnectionService;
+import com.DbBackup.service.ProcessSupervisor;
 import com.DbBackup.service.RestoreService;
+import com.DbBackup.util.DataRate;
+import com.DbBackup.util.FileSizes;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import picocli.CommandLine.Command;
@@ -19,6 +32,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 
@@ -32,7 +46,14 @@ import java.util.concurrent.Callable;
         DatabaseBackupCommand.RestoreCommand.class,
         DatabaseBackupCommand.ScheduleCommand.class,
         DatabaseBackupCommand.UnscheduleCommand.class,
-        DatabaseBackupCommand.TestConnectionCommand.class
+        DatabaseBackupCommand.TestConnectionCommand.class,
+        DatabaseBackupCommand.ListCommand.class,
+        DatabaseBackupCommand.ShowCommand.class,
+        DatabaseBackupCommand.LatestCommand.class,
+        DatabaseBackupCommand.VerifyCommand.class,
+        DatabaseBackupCommand.RunningCommand.class,
+        DatabaseBackupCommand.CancelCommand.class,
+        DatabaseBackupCommand.BinlogCommand.class
     }
 )
 public class DatabaseBackupCommand implements Callable<Integer> {
@@ -43,6 +64,32 @@ public class DatabaseBackupCommand implements Callable<Integer> {
         System.out.println("Please specify a subcommand. Use --help for more information.");
         return 0;
     }
+    
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    private static Long parseRate(String rate) {
+        return rate != null ? DataRate.parse(rate) : null;
+    }
+    
+    private static void printEntry(CatalogEntry entry) {
+        System.out.println("ID: " + entry.getId());
+        System.out.println("Database: " + entry.getDatabaseType() + " " + entry.getDatabaseName()
+                + (entry.getHost() != null ? " @ " + entry.getHost() : ""));
+        System.out.println("Backup type: " + entry.getBackupType());
+        System.out.println("Status: " + (entry.isSuccess() ? "SUCCESS" : "FAILED"));
+        System.out.println("File: " + entry.getFilePath());
+        System.out.println("Size: " + FileSizes.format(entry.getFileSize()) + " (" + FileSizes.format(entry.getUncompressedSize()) + " uncompressed)");
+        System.out.println("Codec: " + (entry.getCodec() != null ? entry.getCodec() : "none"));
+        System.out.println("Checksum: " + (entry.getChecksum() != null ? entry.getChecksum() : "-"));
+        System.out.println("Parent: " + (entry.getParentBackup() != null ? entry.getParentBackup() : "-"));
+        System.out.println("Start time: " + entry.getStartTime().format(DATE_TIME_FORMAT));
+        if (entry.getEndTime() != null) {
+            System.out.println("End time: " + entry.getEndTime().format(DATE_TIME_FORMAT));
+        }
+        if (entry.getErrorMessage() != null) {
+            System.out.println("Error: " + entry.getErrorMessage());
+        }
+    }
 
     @Component
     @Command(
@@ -82,12 +129,45 @@ public class DatabaseBackupCommand implements Callable<Integer> {
         @Option(names = {"-c", "--compress"}, description = "Compress backup file", defaultValue = "true")
         private boolean compress;
         
+        @Option(names = {"--stream"}, description = "Stream the dump straight into the compressed archive without an intermediate file")
+        private boolean streaming;
+        
+        @Option(names = {"--codec"}, description = "Compression codec: GZIP, ZSTD, LZ4", defaultValue = "GZIP")
+        private CodecType codec;
+        
+        @Option(names = {"--level"}, description = "Compression level (default depends on the codec)")
+        private Integer compressionLevel;
+        
+        @Option(names = {"--compress-threads"}, description = "Number of threads used for parallel gzip compression (default: number of cores)")
+        private Integer compressThreads;
+        
+        @Option(names = {"--compress-block-size"}, description = "Parallel compression block size in KB (default: 1024)")
+        private Integer compressBlockSizeKb;
+        
         @Option(names = {"-n", "--notify"}, description = "Send notification on completion")
         private boolean notify;
         
         @Option(names = {"--slack-webhook"}, description = "Slack webhook URL for notifications")
         private String slackWebhookUrl;
         
+        @Option(names = {"--sqlite-pages-per-step"}, description = "SQLite pages copied per online backup step (default: 1024)")
+        private Integer sqlitePagesPerStep;
+        
+        @Option(names = {"--sqlite-step-pause"}, description = "Pause between SQLite online backup steps in milliseconds (default: 10)")
+        private Integer sqliteStepPauseMillis;
+        
+        @Option(names = {"-j", "--jobs"}, description = "Parallel dump jobs: MySQL/PostgreSQL tables or MongoDB collections (0 = auto)")
+        private Integer parallelJobs;
+        
+        @Option(names = {"--priority"}, description = "Queue priority, higher runs first when workers or the host are busy", defaultValue = "0")
+        private int priority;
+        
+        @Option(names = {"--max-rate"}, description = "Bandwidth limit for the dump, e.g. 50MB/s (default: node limit only)")
+        private String maxRate;
+        
+        @Option(names = {"--engine"}, description = "Dump engine: TOOL (mysqldump, pg_dump, mongodump) or NATIVE (in-process full backups)", defaultValue = "TOOL")
+        private DumpEngine engine;
+        
         @Override
         public Integer call() {
             try {
@@ -106,11 +186,22 @@ public class DatabaseBackupCommand implements Callable<Integer> {
                         .backupType(backupType)
                         .backupPath(outputDir)
                         .compress(compress)
+                        .streaming(streaming)
+                        .compressionCodec(codec)
+                        .compressionLevel(compressionLevel)
+                        .compressionThreads(compressThreads)
+                        .compressionBlockSize(compressBlockSizeKb != null ? compressBlockSizeKb * 1024 : null)
                         .sendNotification(notify)
                         .slackWebhookUrl(slackWebhookUrl)
+                        .sqlitePagesPerStep(sqlitePagesPerStep)
+                        .sqliteStepPauseMillis(sqliteStepPauseMillis)
+                        .parallelJobs(parallelJobs)
+                        .engine(engine)
+                        .priority(priority)
+                        .maxRate(parseRate(maxRate))
                         .build();
                 
-                System.out.println("Starting backup job...");
+                System.out.println("Starting backup job " + job.getId() + "...");
                 BackupResult result = backupService.performBackup(job);
                 
                 if (result.isSuccess()) {
@@ -119,6 +210,17 @@ public class DatabaseBackupCommand implements Callable<Integer> {
                     System.out.println("Start time: " + formatDateTime(result.getStartTime()));
                     System.out.println("End time: " + formatDateTime(result.getEndTime()));
                     System.out.println("Duration: " + result.getDurationInSeconds() + " seconds");
+                    if (result.getQueueWaitMillis() > 0) {
+                        System.out.println("Queued for: " + result.getQueueWaitMillis() + " ms");
+                    }
+                    System.out.printf("Phases: connect %d ms, dump %d ms, compress %d ms%n",
+                            result.getConnectMillis(), result.getDumpMillis(), result.getCompressMillis());
+                    System.out.printf("Size: %s raw, %s stored (ratio %.2f), %s/s%n",
+                            FileSizes.format(result.getUncompressedSize()), FileSizes.format(result.getFileSize()),
+                            result.getCompressionRatio(), FileSizes.format((long) result.getThroughputBytesPerSecond()));
+                    if (result.getPagesCopied() > 0) {
+                        System.out.printf("Pages copied: %d (%.0f pages/s)%n", result.getPagesCopied(), result.getPagesPerSecond());
+                    }
                     return 0;
                 } else {
                     System.out.println("Backup failed: " + result.getErrorMessage());
@@ -167,6 +269,24 @@ public class DatabaseBackupCommand implements Callable<Integer> {
         @Option(names = {"--items"}, description = "Specific tables/collections to restore (comma-separated)")
         private String items;
         
+        @Option(names = {"-j", "--jobs"}, description = "Parallel restore jobs (default: number of cores)")
+        private Integer jobs;
+        
+        @Option(names = {"--max-rate"}, description = "Bandwidth limit for the restore, e.g. 50MB/s (default: node limit only)")
+        private String maxRate;
+        
+        @Option(names = {"--job-id"}, description = "Job ID for the restore's tools, used by the cancel command (default: restore-DATABASE)")
+        private String jobId;
+        
+        @Option(names = {"--until"}, description = "MySQL point-in-time restore: replay the captured binary log up to this time, 'yyyy-MM-dd HH:mm:ss'")
+        private String until;
+        
+        @Option(names = {"--until-position"}, description = "MySQL point-in-time restore: replay the captured binary log up to FILE:POSITION")
+        private String untilPosition;
+        
+        @Option(names = {"--binlog-dir"}, description = "Captured binary log to replay (default: binlog/DATABASE next to the backup)")
+        private String binlogDir;
+        
         @Parameters(index = "0", description = "Backup file or directory path", paramLabel = "BACKUP_PATH")
         private String backupPath;
         
@@ -186,16 +306,27 @@ public class DatabaseBackupCommand implements Callable<Integer> {
                     itemsList = Arrays.asList(items.split(","));
                 }
                 
-                System.out.println("Starting restore operation...");
-                boolean success;
+                RestoreOptions options = RestoreOptions.builder()
+                        .items(itemsList)
+                        .jobs(jobs)
+                        .maxRate(parseRate(maxRate))
+                        .jobId(jobId)
+                        .stopTime(until != null ? LocalDateTime.parse(until, DATE_TIME_FORMAT) : null)
+                        .stopPosition(untilPosition != null ? BinlogPosition.parse(untilPosition) : null)
+                        .binlogDir(binlogDir)
+                        .build();
                 
-                if (itemsList != null && !itemsList.isEmpty()) {
+                System.out.println("Starting restore operation...");
+                if (options.isSelective()) {
                     System.out.println("Performing selective restore for: " + String.join(", ", itemsList));
-                    success = restoreService.restoreSelectiveBackup(backupPath, databaseType, connectionParams, itemsList);
                 } else {
                     System.out.println("Performing full restore");
-                    success = restoreService.restoreBackup(backupPath, databaseType, connectionParams);
                 }
+                if (options.isPointInTime()) {
+                    System.out.println("Replaying the binary log up to "
+                            + (untilPosition != null ? untilPosition : until));
+                }
+                boolean success = restoreService.restore(backupPath, databaseType, connectionParams, options);
                 
                 if (success) {
                     System.out.println("Restore completed successfully!");
@@ -249,6 +380,21 @@ public class DatabaseBackupCommand implements Callable<Integer> {
         @Option(names = {"-c", "--compress"}, description = "Compress backup file", defaultValue = "true")
         private boolean compress;
         
+        @Option(names = {"--stream"}, description = "Stream the dump straight into the compressed archive without an intermediate file")
+        private boolean streaming;
+        
+        @Option(names = {"--codec"}, description = "Compression codec: GZIP, ZSTD, LZ4", defaultValue = "GZIP")
+        private CodecType codec;
+        
+        @Option(names = {"--level"}, description = "Compression level (default depends on the codec)")
+        private Integer compressionLevel;
+        
+        @Option(names = {"--compress-threads"}, description = "Number of threads used for parallel gzip compression (default: number of cores)")
+        private Integer compressThreads;
+        
+        @Option(names = {"--compress-block-size"}, description = "Parallel compression block size in KB (default: 1024)")
+        private Integer compressBlockSizeKb;
+        
         @Option(names = {"-n", "--notify"}, description = "Send notification on completion")
         private boolean notify;
         
@@ -261,6 +407,24 @@ public class DatabaseBackupCommand implements Callable<Integer> {
         @Option(names = {"--id"}, description = "Custom job ID (optional)")
         private String jobId;
         
+        @Option(names = {"--sqlite-pages-per-step"}, description = "SQLite pages copied per online backup step (default: 1024)")
+        private Integer sqlitePagesPerStep;
+        
+        @Option(names = {"--sqlite-step-pause"}, description = "Pause between SQLite online backup steps in milliseconds (default: 10)")
+        private Integer sqliteStepPauseMillis;
+        
+        @Option(names = {"-j", "--jobs"}, description = "Parallel dump jobs: MySQL/PostgreSQL tables or MongoDB collections (0 = auto)")
+        private Integer parallelJobs;
+        
+        @Option(names = {"--priority"}, description = "Queue priority, higher runs first when workers or the host are busy", defaultValue = "0")
+        private int priority;
+        
+        @Option(names = {"--max-rate"}, description = "Bandwidth limit for the dump, e.g. 50MB/s (default: node limit only)")
+        private String maxRate;
+        
+        @Option(names = {"--engine"}, description = "Dump engine: TOOL (mysqldump, pg_dump, mongodump) or NATIVE (in-process full backups)", defaultValue = "TOOL")
+        private DumpEngine engine;
+        
         @Override
         public Integer call() {
             try {
@@ -279,9 +443,20 @@ public class DatabaseBackupCommand implements Callable<Integer> {
                         .backupType(backupType)
                         .backupPath(outputDir)
                         .compress(compress)
+                        .streaming(streaming)
+                        .compressionCodec(codec)
+                        .compressionLevel(compressionLevel)
+                        .compressionThreads(compressThreads)
+                        .compressionBlockSize(compressBlockSizeKb != null ? compressBlockSizeKb * 1024 : null)
                         .cronExpression(cronExpression)
                         .sendNotification(notify)
                         .slackWebhookUrl(slackWebhookUrl)
+                        .sqlitePagesPerStep(sqlitePagesPerStep)
+                        .sqliteStepPauseMillis(sqliteStepPauseMillis)
+                        .parallelJobs(parallelJobs)
+                        .engine(engine)
+                        .priority(priority)
+                        .maxRate(parseRate(maxRate))
                         .build();
                 
                 boolean scheduled = backupService.scheduleBackup(job);
@@ -392,4 +567,351 @@ public class DatabaseBackupCommand implements Callable<Integer> {
             }
         }
     }
-}
\ No newline at end of file
+    
+    @Component
+    @Command(
+        name = "list",
+        description = "List backups recorded in the catalog, newest first",
+        mixinStandardHelpOptions = true
+    )
+    @RequiredArgsConstructor
+    public static class ListCommand implements Callable<Integer> {
+        
+        private final BackupCatalogService catalogService;
+        
+        @Option(names = {"-o", "--output"}, description = "Backup directory holding the catalog", defaultValue = "./backups")
+        private String outputDir;
+        
+        @Option(names = {"-t", "--type"}, description = "Only backups of this database type")
+        private DatabaseType databaseType;
+        
+        @Option(names = {"-d", "--database"}, description = "Only backups of this database")
+        private String database;
+        
+        @Option(names = {"-n", "--limit"}, description = "Maximum number of backups to list", defaultValue = "20")
+        private int limit;
+        
+        @Override
+        public Integer call() {
+            try {
+                List<CatalogEntry> entries = catalogService.list(outputDir, databaseType, database, limit);
+                if (entries.isEmpty()) {
+                    System.out.println("No backups found in " + Paths.get(outputDir).toAbsolutePath());
+                    return 0;
+                }
+                
+                System.out.printf("%-6s %-19s %-10s %-20s %-12s %-10s %-7s %s%n",
+                        "ID", "STARTED", "TYPE", "DATABASE", "BACKUP", "SIZE", "STATUS", "FILE");
+                for (CatalogEntry entry : entries) {
+                    System.out.printf("%-6d %-19s %-10s %-20s %-12s %-10s %-7s %s%n",
+                            entry.getId(),
+                            entry.getStartTime().format(DATE_TIME_FORMAT),
+                            entry.getDatabaseType(),
+                            entry.getDatabaseName(),
+                            entry.getBackupType(),
+                            FileSizes.format(entry.getFileSize()),
+                            entry.isSuccess() ? "OK" : "FAILED",
+                            entry.getFilePath() != null ? entry.getFilePath() : "-");
+                }
+                return 0;
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+    
+    @Component
+    @Command(
+        name = "show",
+        description = "Show the catalog details of a backup",
+        mixinStandardHelpOptions = true
+    )
+    @RequiredArgsConstructor
+    public static class ShowCommand implements Callable<Integer> {
+        
+        private final BackupCatalogService catalogService;
+        
+        @Option(names = {"-o", "--output"}, description = "Backup directory holding the catalog", defaultValue = "./backups")
+        private String outputDir;
+        
+        @Parameters(index = "0", description = "Catalog ID of the backup", paramLabel = "ID")
+        private long id;
+        
+        @Override
+        public Integer call() {
+            try {
+                Optional<CatalogEntry> entry = catalogService.find(outputDir, id);
+                if (entry.isEmpty()) {
+                    System.out.println("No backup with ID " + id);
+                    return 1;
+                }
+                printEntry(entry.get());
+                return 0;
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+    
+    @Component
+    @Command(
+        name = "latest",
+        description = "Show the latest successful backup of a database",
+        mixinStandardHelpOptions = true
+    )
+    @RequiredArgsConstructor
+    public static class LatestCommand implements Callable<Integer> {
+        
+        private final BackupCatalogService catalogService;
+        
+        @Option(names = {"-o", "--output"}, description = "Backup directory holding the catalog", defaultValue = "./backups")
+        private String outputDir;
+        
+        @Option(names = {"-t", "--type"}, description = "Database type: MYSQL, POSTGRESQL, MONGODB, SQLITE", required = true)
+        private DatabaseType databaseType;
+        
+        @Option(names = {"-d", "--database"}, description = "Database name", required = true)
+        private String database;
+        
+        @Option(names = {"--host"}, description = "Only consider backups of this database host")
+        private String host;
+        
+        @Option(names = {"-b", "--backup-type"}, description = "Only consider this backup type: FULL, INCREMENTAL, DIFFERENTIAL")
+        private BackupType backupType;
+        
+        @Option(names = {"-q", "--quiet"}, description = "Print only the backup file path")
+        private boolean quiet;
+        
+        @Override
+        public Integer call() {
+            try {
+                Optional<CatalogEntry> entry = catalogService.latest(outputDir, databaseType, host, database, backupType);
+                if (entry.isEmpty()) {
+                    System.out.println("No successful backup of " + database + " found");
+                    return 1;
+                }
+                if (quiet) {
+                    System.out.println(entry.get().getFilePath());
+                } else {
+                    printEntry(entry.get());
+                }
+                return 0;
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+    
+    @Component
+    @Command(
+        name = "verify",
+        description = "Verify backups against their checksums and test that they decompress",
+        mixinStandardHelpOptions = true
+    )
+    @RequiredArgsConstructor
+    public static class VerifyCommand implements Callable<Integer> {
+        
+        private final BackupVerifyService verifyService;
+        
+        @Option(names = {"-j", "--jobs"}, description = "Backups verified in parallel (default: number of cores)")
+        private Integer jobs;
+        
+        @Option(names = {"-q", "--quiet"}, description = "Print only failures and the summary")
+        private boolean quiet;
+        
+        @Parameters(description = "Backup files or directories of backups", paramLabel = "PATH", arity = "1..*")
+        private List<String> paths;
+        
+        @Override
+        public Integer call() {
+            try {
+                int parallelism = jobs != null && jobs > 0 ? jobs : Runtime.getRuntime().availableProcessors();
+                long start = System.currentTimeMillis();
+                List<VerifyResult> results = verifyService.verify(paths, parallelism);
+                long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                
+                int failed = 0;
+                long bytesRead = 0;
+                for (VerifyResult result : results) {
+                    bytesRead += result.getBytesRead();
+                    if (!result.isSuccess()) {
+                        failed++;
+                    }
+                    if (result.isSuccess() && quiet) {
+                        continue;
+                    }
+                    System.out.printf("%-6s %s%s%n",
+                            result.isSuccess() ? "OK" : "FAILED",
+                            result.getPath(),
+                            result.getMessage() != null ? " (" + result.getMessage() + ")" : "");
+                    if (!result.isSuccess() && result.getExpectedChecksum() != null && result.getChecksum() != null) {
+                        System.out.println("       expected " + result.getExpectedChecksum() + ", got " + result.getChecksum());
+                    }
+                }
+                
+                if (results.isEmpty()) {
+                    System.out.println("No backups found");
+                    return 1;
+                }
+                System.out.println(results.size() + " checked, " + failed + " failed, "
+                        + FileSizes.format(bytesRead) + " read in " + String.format("%.1f s", elapsed / 1000.0)
+                        + " (" + FileSizes.format(bytesRead * 1000 / elapsed) + "/s)");
+                return failed == 0 ? 0 : 1;
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+    
+    @Component
+    @Command(
+        name = "running",
+        description = "List the dump and restore tools running on this host",
+        mixinStandardHelpOptions = true
+    )
+    @RequiredArgsConstructor
+    public static class RunningCommand implements Callable<Integer> {
+        
+        private final ProcessSupervisor processSupervisor;
+        
+        @Override
+        public Integer call() {
+            try {
+                List<RunningProcess> processes = processSupervisor.listRunning();
+                if (processes.isEmpty()) {
+                    System.out.println("No tools running");
+                    return 0;
+                }
+                
+                System.out.printf("%-38s %-12s %-8s %-19s %-10s %s%n",
+                        "JOB", "TOOL", "PID", "STARTED", "CPU", "RSS");
+                for (RunningProcess process : processes) {
+                    System.out.printf("%-38s %-12s %-8d %-19s %-10s %s%n",
+                            process.getJobId(),
+                            process.getTool(),
+                            process.getPid(),
+                            process.getStartTime() != null ? process.getStartTime().format(DATE_TIME_FORMAT) : "-",
+                            process.getCpuMillis() != null ? String.format("%.1f s", process.getCpuMillis() / 1000.0) : "-",
+                            process.getRssBytes() != null ? FileSizes.format(process.getRssBytes()) : "-");
+                }
+                return 0;
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+    
+    @Component
+    @Command(
+        name = "cancel",
+        description = "Stop the dump and restore tools, and in-process loaders, of a running job",
+        mixinStandardHelpOptions = true
+    )
+    @RequiredArgsConstructor
+    public static class CancelCommand implements Callable<Integer> {
+        
+        private final ProcessSupervisor processSupervisor;
+        
+        @Parameters(index = "0", description = "Job ID, as shown by the running command", paramLabel = "JOB_ID")
+        private String jobId;
+        
+        @Override
+        public Integer call() {
+            try {
+                int cancelled = processSupervisor.cancel(jobId);
+                if (cancelled == 0) {
+                    System.out.println("No running tools for job " + jobId);
+                    return 1;
+                }
+                System.out.println("Asked " + cancelled + " tool(s) or loader(s) of job " + jobId + " to stop");
+                return 0;
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+    
+    @Component
+    @Command(
+        name = "binlog",
+        description = "Capture the MySQL binary log continuously, for point-in-time restores on top of full backups",
+        mixinStandardHelpOptions = true
+    )
+    @RequiredArgsConstructor
+    public static class BinlogCommand implements Callable<Integer> {
+        
+        private final BinlogService binlogService;
+        
+        @Option(names = {"-h", "--host"}, description = "Database host", defaultValue = "localhost")
+        private String host;
+        
+        @Option(names = {"-P", "--port"}, description = "Database port")
+        private Integer port;
+        
+        @Option(names = {"-u", "--user"}, description = "Database username")
+        private String username;
+        
+        @Option(names = {"-p", "--password"}, description = "Database password", interactive = true)
+        private String password;
+        
+        @Option(names = {"-d", "--database"}, description = "Database whose full backups the binary log extends", required = true)
+        private String database;
+        
+        @Option(names = {"-o", "--output"}, description = "Backup directory of the full backups", defaultValue = "./backups")
+        private String outputDir;
+        
+        @Option(names = {"-c", "--compress"}, description = "Compress the segments", defaultValue = "true")
+        private boolean compress;
+        
+        @Option(names = {"--codec"}, description = "Compression codec: GZIP, ZSTD, LZ4", defaultValue = "GZIP")
+        private CodecType codec;
+        
+        @Option(names = {"--level"}, description = "Compression level (default depends on the codec)")
+        private Integer compressionLevel;
+        
+        @Option(names = {"--server-id"}, description = "Server ID to connect as, unique among the server's replicas and captures", defaultValue = "65535")
+        private int serverId;
+        
+        @Option(names = {"--job-id"}, description = "Job ID of the capture, used by the cancel command to stop it (default: binlog-DATABASE)")
+        private String jobId;
+        
+        @Override
+        public Integer call() {
+            try {
+                ConnectionParams connectionParams = ConnectionParams.builder()
+                        .host(host)
+                        .port(port)
+                        .username(username)
+                        .password(password)
+                        .database(database)
+                        .build();
+                
+                BackupJob job = BackupJob.builder()
+                        .id(jobId != null ? jobId : "binlog-" + database)
+                        .databaseType(DatabaseType.MYSQL)
+                        .connectionParams(connectionParams)
+                        .backupPath(outputDir)
+                        .compress(compress)
+                        .compressionCodec(codec)
+                        .compressionLevel(compressionLevel)
+                        .build();
+                
+                System.out.println("Capturing the binary log of " + host + " into "
+                        + Paths.get(outputDir, "binlog", database) + " as job " + job.getId());
+                System.out.println("Stop it with: cancel " + job.getId());
+                int shipped = binlogService.capture(job, serverId);
+                System.out.println("Capture ended, " + shipped + " segment(s) shipped");
+                return 0;
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+    }
+}
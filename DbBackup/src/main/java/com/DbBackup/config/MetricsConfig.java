@@ -0,0 +1,24 @@
+package com.DbBackup.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * There is no actuator in this app, so the registry is set up here. Every meter carries
+     * the application name, which keeps series apart when several nodes export to one host.
+     */
+    @Bean
+    public PrometheusMeterRegistry prometheusMeterRegistry(
+            @Value("${spring.application.name:DbBackup}") String application) {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().commonTags("application", application);
+        return registry;
+    }
+}
@@ -1,18 +1,34 @@
 package com.DbBackup.model;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import lombok.Builder;
 import lombok.Data;
 
 @Data
 @Builder
-public class BackupJob {
+public class BackupJob implements Serializable {
+    private static final long serialVersionUID = 1L;
+
      private String id;
     private DatabaseType databaseType;
     private ConnectionParams connectionParams;
     private BackupType backupType;
     private String backupPath;
     private boolean compress;
+    private boolean streaming;
+    private CodecType compressionCodec;
+    private Integer compressionLevel;
+    private Integer compressionThreads;
+    private Integer compressionBlockSize;
+    private Integer sqlitePagesPerStep;
+    private Integer sqliteStepPauseMillis;
+    private Integer parallelJobs;
+    // Null for the default, the database's own tools
+    private DumpEngine engine;
+    private int priority;
+    // Bytes per second, null for no limit of its own
+    private Long maxRate;
     private String cronExpression;
     private boolean sendNotification;
     private String slackWebhookUrl;
@@ -9,11 +9,25 @@ import lombok.Data;
 @Builder
 public class BackupResult {
     private String jobId;
+    private DatabaseType databaseType;
+    private String host;
+    private String databaseName;
+    private BackupType backupType;
     private LocalDateTime startTime;
     private LocalDateTime endTime;
+    private long queueWaitMillis;
+    private long connectMillis;
+    private long dumpMillis;
+    private long compressMillis;
     private boolean success;
     private String filePath;
     private long fileSize;
+    private long uncompressedSize;
+    private CodecType codec;
+    private String checksum;
+    private String parentBackup;
+    private long pagesCopied;
+    private double pagesPerSecond;
     private String errorMessage;
     
     public long getDurationInSeconds() {
@@ -22,4 +36,22 @@ public class BackupResult {
         }
         return java.time.Duration.between(startTime, endTime).getSeconds();
     }
+    
+    /**
+     * Uncompressed bytes per second over the whole run, connect and compression included.
+     */
+    public double getThroughputBytesPerSecond() {
+        if (startTime == null || endTime == null) {
+            return 0;
+        }
+        long millis = java.time.Duration.between(startTime, endTime).toMillis();
+        return millis > 0 ? uncompressedSize * 1000.0 / millis : 0;
+    }
+    
+    /**
+     * Uncompressed to stored size, e.g. 4.0 for a dump that shrank to a quarter.
+     */
+    public double getCompressionRatio() {
+        return fileSize > 0 ? (double) uncompressedSize / fileSize : 0;
+    }
 }
@@ -0,0 +1,30 @@
+package com.DbBackup.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A position in a MySQL server's binary log, written as {@code FILE:POSITION}.
+ */
+@Data
+@Builder
+public class BinlogPosition {
+    private String file;
+    private long position;
+
+    public static BinlogPosition parse(String value) {
+        int separator = value.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Expected FILE:POSITION, got " + value);
+        }
+        return BinlogPosition.builder()
+                .file(value.substring(0, separator))
+                .position(Long.parseLong(value.substring(separator + 1)))
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return file + ":" + position;
+    }
+}
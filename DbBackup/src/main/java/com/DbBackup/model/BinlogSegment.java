@@ -0,0 +1,26 @@
+package com.DbBackup.model;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * One binary log file of the server, captured and compressed into the backup directory.
+ */
+@Data
+@Builder
+public class BinlogSegment {
+    // The server's name for the file, e.g. binlog.000042
+    private String binlogFile;
+    private String segmentFile;
+    // Timestamps of the first and last event, null for a file without events
+    private LocalDateTime firstEvent;
+    private LocalDateTime lastEvent;
+    private long rawBytes;
+    private String checksum;
+    // False for the head of a file the capture stopped in, shipped again once the file is done
+    private boolean complete;
+    // The full backup the capture extended when the segment was shipped
+    private String baseBackup;
+}
@@ -0,0 +1,27 @@
+package com.DbBackup.model;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CatalogEntry {
+    private long id;
+    private String jobId;
+    private DatabaseType databaseType;
+    private String host;
+    private String databaseName;
+    private BackupType backupType;
+    private String filePath;
+    private long fileSize;
+    private long uncompressedSize;
+    private String checksum;
+    private CodecType codec;
+    private String parentBackup;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private boolean success;
+    private String errorMessage;
+}
@@ -0,0 +1,7 @@
+package com.DbBackup.model;
+
+public enum CodecType {
+    GZIP,
+    ZSTD,
+    LZ4
+}
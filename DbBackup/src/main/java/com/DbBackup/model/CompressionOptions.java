@@ -0,0 +1,41 @@
+package com.DbBackup.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CompressionOptions {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    @Builder.Default
+    private CodecType codec = CodecType.GZIP;
+
+    private Integer level;
+
+    @Builder.Default
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Builder.Default
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+
+    public static CompressionOptions defaults() {
+        return CompressionOptions.builder().build();
+    }
+
+    public static CompressionOptions forJob(BackupJob job) {
+        CompressionOptions options = defaults();
+        if (job.getCompressionCodec() != null) {
+            options.setCodec(job.getCompressionCodec());
+        }
+        options.setLevel(job.getCompressionLevel());
+        if (job.getCompressionThreads() != null && job.getCompressionThreads() > 0) {
+            options.setThreads(job.getCompressionThreads());
+        }
+        if (job.getCompressionBlockSize() != null && job.getCompressionBlockSize() > 0) {
+            options.setBlockSize(job.getCompressionBlockSize());
+        }
+        return options;
+    }
+}
@@ -1,11 +1,14 @@
 package com.DbBackup.model;
 
+import java.io.Serializable;
 import lombok.Builder;
 import lombok.Data;
 
 @Data
 @Builder
-public class ConnectionParams {
+public class ConnectionParams implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String host;
     private Integer port;
     private String username;
@@ -0,0 +1,8 @@
+package com.DbBackup.model;
+
+public enum DumpEngine {
+    // The database's own dump and restore tools
+    TOOL,
+    // In-process over the JDBC driver, no tools needed on the backup host
+    NATIVE
+}
@@ -0,0 +1,20 @@
+package com.DbBackup.model;
+
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ExecutionStats {
+    private int workers;
+    private int perHostLimit;
+    private int queued;
+    private int running;
+    private long completed;
+    private long rejected;
+    private long averageWaitMillis;
+    private long maxWaitMillis;
+    private Map<String, Integer> runningPerHost;
+}
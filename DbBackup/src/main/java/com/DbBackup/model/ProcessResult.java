@@ -0,0 +1,43 @@
+package com.DbBackup.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ProcessResult {
+    private String tool;
+    private long pid;
+    private int exitCode;
+    // Tail of the tool's output, see backup.process.output-buffer
+    private String output;
+    private long wallMillis;
+    // Sampled while the process runs, so the last interval before exit may be missing.
+    // Includes child processes (e.g. pg_dump -j workers).
+    private long cpuMillis;
+    // Largest resident total of the process and its children at one sample, so a peak
+    // between samples may be missed. Null where /proc is not available
+    private Long peakRssBytes;
+    // Why the supervisor stopped the process, null if it exited on its own
+    private String killReason;
+
+    public boolean isSuccess() {
+        return exitCode == 0 && killReason == null;
+    }
+
+    /**
+     * One line for logs and exception messages, followed by the output tail.
+     */
+    public String describe() {
+        StringBuilder description = new StringBuilder(tool);
+        if (killReason != null) {
+            description.append(" was stopped: ").append(killReason);
+        } else {
+            description.append(" exited with code ").append(exitCode);
+        }
+        if (output != null && !output.isBlank()) {
+            description.append(": ").append(output.strip());
+        }
+        return description.toString();
+    }
+}
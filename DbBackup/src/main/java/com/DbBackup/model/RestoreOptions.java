@@ -0,0 +1,39 @@
+package com.DbBackup.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder(toBuilder = true)
+public class RestoreOptions {
+    private List<String> items;
+    private Integer jobs;
+    // Bytes per second, null for no limit of its own
+    private Long maxRate;
+    // Identifies the restore's tool processes, e.g. for cancelling them
+    private String jobId;
+    // Point-in-time recovery: binary log replayed on top of the backup up to either bound
+    private LocalDateTime stopTime;
+    private BinlogPosition stopPosition;
+    // Where the captured binary log is, null for binlog/DATABASE next to the backup
+    private String binlogDir;
+
+    public static RestoreOptions defaults() {
+        return RestoreOptions.builder().build();
+    }
+
+    public boolean isSelective() {
+        return items != null && !items.isEmpty();
+    }
+
+    public boolean isPointInTime() {
+        return stopTime != null || stopPosition != null;
+    }
+
+    public int resolveJobs() {
+        return jobs != null && jobs > 0 ? jobs : Runtime.getRuntime().availableProcessors();
+    }
+}
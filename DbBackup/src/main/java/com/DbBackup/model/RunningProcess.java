@@ -0,0 +1,20 @@
+package com.DbBackup.model;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RunningProcess {
+    // The registration's name in the control directory: the pid for tools, pid-n for tasks
+    private String id;
+    private String jobId;
+    private String tool;
+    private long pid;
+    private LocalDateTime startTime;
+    // Both null for tasks, which have no process of their own
+    private Long cpuMillis;
+    private Long rssBytes;
+}
@@ -0,0 +1,13 @@
+package com.DbBackup.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SqliteSnapshot {
+    private String filePath;
+    private long pageCount;
+    private long durationMillis;
+    private double pagesPerSecond;
+}
@@ -0,0 +1,16 @@
+package com.DbBackup.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class StreamStats {
+    private String filePath;
+    private long rawBytes;
+    private long compressedBytes;
+    // algorithm:hex of the artifact as written, null when not computed
+    private String checksum;
+    // Time spent waiting on the source stream, the rest of the write was compression and I/O
+    private long sourceMillis;
+}
@@ -0,0 +1,19 @@
+package com.DbBackup.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class VerifyResult {
+    private String path;
+    private boolean success;
+    // algorithm:hex as read now, and as recorded at backup time (null if nothing was recorded)
+    private String checksum;
+    private String expectedChecksum;
+    private long bytesRead;
+    // Size of the original content after decompression
+    private long uncompressedBytes;
+    private long millis;
+    private String message;
+}
@@ -0,0 +1,33 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import com.DbBackup.model.BackupResult;
+import com.DbBackup.model.BackupType;
+import com.DbBackup.model.CatalogEntry;
+import com.DbBackup.model.DatabaseType;
+
+/**
+ * Index of every backup taken into a backup directory, kept in a {@code catalog.db}
+ * SQLite file inside it. Lookups by database and time don't touch the backups themselves.
+ */
+public interface BackupCatalogService {
+
+    CatalogEntry record(String backupPath, BackupResult result) throws IOException;
+
+    /**
+     * Newest entries first. {@code type} and {@code database} are optional filters.
+     */
+    List<CatalogEntry> list(String backupPath, DatabaseType type, String database, int limit) throws IOException;
+
+    Optional<CatalogEntry> find(String backupPath, long id) throws IOException;
+
+    /**
+     * The newest successful backup of a database, optionally of one host and one backup
+     * type only. Databases of the same name on different servers are told apart by host.
+     */
+    Optional<CatalogEntry> latest(String backupPath, DatabaseType type, String host, String database,
+                                  BackupType backupType) throws IOException;
+}
@@ -0,0 +1,22 @@
+package com.DbBackup.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import com.DbBackup.model.ExecutionStats;
+
+/**
+ * Runs backup work on a bounded pool of workers. Tasks wait in a priority queue and are
+ * only started while their database host is below its concurrency cap, so a burst of jobs
+ * against one server queues up while other hosts keep the workers busy.
+ */
+public interface BackupExecutionService {
+
+    /**
+     * Queues a task for {@code hostKey}. Higher priorities start first, equal ones in
+     * submission order. Fails with a {@code RejectedExecutionException} when the queue is full.
+     */
+    <T> CompletableFuture<T> submit(String hostKey, int priority, Callable<T> task);
+
+    ExecutionStats getStats();
+}
@@ -0,0 +1,33 @@
+package com.DbBackup.service;
+
+import com.DbBackup.model.BackupResult;
+import com.DbBackup.model.DatabaseType;
+import com.DbBackup.model.ProcessResult;
+
+/**
+ * Publishes per-phase timings, byte counts and outcomes of backups and restores to the
+ * Micrometer registry, from where they are written out in the Prometheus text format.
+ */
+public interface BackupMetricsService {
+
+    void recordBackup(BackupResult result);
+
+    /**
+     * {@code prepareMillis} covers reassembling or decompressing the backup before it is
+     * loaded; streamed restores do both at once and report it all as load time.
+     */
+    void recordRestore(DatabaseType type, String database, long connectMillis, long prepareMillis,
+                       long loadMillis, boolean success);
+
+    /**
+     * CPU time and peak memory of a dump or restore tool, and why it was stopped if the
+     * supervisor had to.
+     */
+    void recordProcess(ProcessResult result);
+
+    /**
+     * Writes the current metrics to the configured text file for node_exporter's textfile
+     * collector. Does nothing when no file is configured.
+     */
+    void exportTextFile();
+}
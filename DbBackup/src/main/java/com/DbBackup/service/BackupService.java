@@ -1,10 +1,21 @@
 package com.DbBackup.service;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.DbBackup.model.BackupJob;
 import com.DbBackup.model.BackupResult;
 
 public interface BackupService {
+    /**
+     * Runs the backup through the execution engine and waits for it.
+     */
     BackupResult performBackup(BackupJob job);
+
+    /**
+     * Queues the backup on the execution engine without waiting for it to run.
+     */
+    CompletableFuture<BackupResult> submitBackup(BackupJob job);
+
     boolean scheduleBackup(BackupJob job);
     boolean unscheduleBackup(String jobId);
 }
@@ -0,0 +1,19 @@
+package com.DbBackup.service;
+
+import java.util.List;
+
+import com.DbBackup.model.VerifyResult;
+
+/**
+ * Checks backup artifacts without restoring them. Each artifact is read once: its bytes are
+ * hashed against the recorded checksum while they are decompressed to the end, so both
+ * bit rot and a truncated or corrupt stream are caught.
+ */
+public interface BackupVerifyService {
+
+    /**
+     * Verifies files and directories of backups, {@code jobs} at a time. Directories are
+     * searched for artifacts with a recorded checksum, chunk manifests and table dumps.
+     */
+    List<VerifyResult> verify(List<String> paths, int jobs);
+}
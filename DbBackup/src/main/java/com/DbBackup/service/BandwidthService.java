@@ -0,0 +1,27 @@
+package com.DbBackup.service;
+
+import com.DbBackup.util.Throttle;
+
+/**
+ * Limits how fast dumps are read from and restores written to the database servers.
+ * Each job may set its own rate; on top of that all jobs of this node share a node-wide
+ * rate that follows the configured time-of-day profiles and can be overridden at runtime.
+ */
+public interface BandwidthService {
+
+    /**
+     * A throttle for one backup or restore, capped at {@code maxBytesPerSecond} (null or
+     * 0 for no job cap) and at the node-wide rate at the time each chunk is transferred.
+     */
+    Throttle forJob(Long maxBytesPerSecond);
+
+    /**
+     * The node-wide rate in effect now, in bytes per second; 0 is unlimited.
+     */
+    long getNodeRate();
+
+    /**
+     * Replaces the time-of-day profiles until cleared with {@code null}; 0 lifts the limit.
+     */
+    void setNodeRateOverride(Long bytesPerSecond);
+}
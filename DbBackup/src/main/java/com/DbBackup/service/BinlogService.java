@@ -0,0 +1,41 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.BinlogSegment;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.RestoreOptions;
+
+/**
+ * Continuous capture of a MySQL server's binary log for point-in-time recovery. mysqlbinlog
+ * follows the log as a replica would; every binlog file the server finishes is compressed
+ * into a segment under {@code binlog/DATABASE} in the backup directory and recorded against
+ * the latest full backup. A restore replays a full backup's segments on top of it, up to a
+ * given time or position.
+ */
+public interface BinlogService {
+
+    /**
+     * Captures the binary log of the job's server until the job is cancelled. Resumes after
+     * the last segment, or starts at the binlog position of the latest full backup.
+     *
+     * @param serverId server ID mysqlbinlog connects with, unique among the server's replicas
+     * @return the number of segments shipped
+     */
+    int capture(BackupJob job, int serverId) throws IOException, InterruptedException;
+
+    /**
+     * Captured segments in binlog order, the latest capture of each file only.
+     */
+    List<BinlogSegment> listSegments(String segmentDir) throws IOException;
+
+    /**
+     * Replays the captured binary log from the position recorded in {@code baseBackup}, a
+     * parallel or native MySQL dump that has just been restored, up to the stop time or
+     * stop position of the options.
+     */
+    boolean replay(String baseBackup, ConnectionParams params, RestoreOptions options)
+            throws IOException, InterruptedException;
+}
@@ -0,0 +1,34 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+
+import com.DbBackup.util.ChecksumOutputStream;
+
+/**
+ * Checksums of backup artifacts. They are computed while an artifact is written and kept
+ * next to it in a sidecar file ({@code <artifact>.xxh64} or {@code .sha256}) in the format
+ * of xxhsum and sha256sum, so they can also be checked without this tool.
+ */
+public interface ChecksumService {
+
+    /**
+     * Hashes everything written through the returned stream with the configured algorithm.
+     */
+    ChecksumOutputStream wrap(OutputStream out);
+
+    /**
+     * Reads a file to checksum it, for artifacts written by other tools.
+     */
+    String checksumFile(String filePath) throws IOException;
+
+    void writeSidecar(String artifactPath, String checksum) throws IOException;
+
+    /**
+     * The checksum stored next to an artifact, as {@code algorithm:hex}.
+     */
+    Optional<String> readSidecar(String artifactPath) throws IOException;
+
+    boolean isSidecar(String filePath);
+}
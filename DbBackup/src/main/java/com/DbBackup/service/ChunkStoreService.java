@@ -0,0 +1,41 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.StreamStats;
+
+/**
+ * Deduplicating backup repository. Dumps are cut into content-defined chunks, every
+ * unique chunk is stored once under its hash in a {@code chunks} directory next to the
+ * backups, and each backup itself is only a manifest of chunk references.
+ */
+public interface ChunkStoreService {
+
+    /**
+     * Chunks the stream into the repository and writes {@code filePath + ".manifest"}.
+     */
+    StreamStats storeChunked(InputStream input, String filePath, BackupJob job, String parentBackup) throws IOException;
+
+    /**
+     * Reassembles the dump referenced by a manifest next to it and returns its path.
+     */
+    String reassemble(String manifestPath) throws IOException;
+
+    /**
+     * Reads the dump referenced by a manifest, decompressing its chunks one after another
+     * as the stream is consumed.
+     */
+    InputStream open(String manifestPath) throws IOException;
+
+    /**
+     * Decompresses every chunk a manifest references and checks it against its hash and
+     * length, failing on the first bad one. Chunks in {@code verified} are skipped and good
+     * ones added to it, so it can be shared across manifests. Returns the dump's size.
+     */
+    long verifyChunks(String manifestPath, Set<String> verified) throws IOException;
+
+    boolean isManifest(String filePath);
+}
@@ -0,0 +1,31 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+
+/**
+ * A stream compression format. Implementations are picked up as Spring beans by the
+ * compression service, so adding a format only needs a new component.
+ */
+public interface CompressionCodec {
+
+    CodecType getType();
+
+    /**
+     * File suffix including the leading dot, e.g. {@code ".gz"}.
+     */
+    String getExtension();
+
+    /**
+     * Whether the leading bytes of a file carry this codec's magic number.
+     */
+    boolean matches(byte[] header, int length);
+
+    OutputStream compress(OutputStream out, CompressionOptions options) throws IOException;
+
+    InputStream decompress(InputStream in) throws IOException;
+}
@@ -1,7 +1,70 @@
 package com.DbBackup.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.StreamStats;
+
 public interface CompressionService {
 
-    String compressFile(String filePath);
+    /**
+     * Packs a single file into a compressed tar next to it. If compression fails the stats
+     * point at the original file, without a checksum.
+     */
+    StreamStats compressFile(String filePath, CompressionOptions options);
+
+    /**
+     * Packs a directory tree into a single compressed tar ({@code dirPath.tar} plus the
+     * codec's extension) with entries relative to the directory's parent.
+     */
+    StreamStats compressDirectory(String dirPath, CompressionOptions options) throws IOException;
+
+    /**
+     * Extracts a compressed backup next to it. Archives of a directory tree are extracted
+     * whole and the top-level directory is returned, otherwise the single file.
+     */
     String decompressFile(String compressedFilePath);
+
+    /**
+     * Detects a supported codec from the file's magic bytes, regardless of its name.
+     */
+    boolean isCompressed(String filePath);
+
+    /**
+     * Whether a compressed backup holds a directory tree (directory-format dumps), which
+     * has to be extracted, rather than a single file that can be read as a stream.
+     */
+    boolean isDirectoryArchive(String filePath);
+
+    /**
+     * The codec a file was compressed with, from its magic bytes.
+     */
+    Optional<CompressionCodec> detectCodec(String filePath);
+
+    /**
+     * Opens a backup artifact for reading its original content: compressed files are
+     * decompressed on the fly and tar wrappers are skipped to the first file entry.
+     * Uncompressed files are returned as-is.
+     */
+    InputStream openDecompressed(String filePath) throws IOException;
+
+    CompressionCodec getCodec(CodecType type);
+
+    /**
+     * Compresses the given stream straight into {@code filePath} plus the codec's extension without staging
+     * the uncompressed data on disk. Unlike {@link #compressFile(String, CompressionOptions)}
+     * failures are propagated, since there is no original file to fall back to.
+     */
+    StreamStats compressStream(InputStream input, String filePath, CompressionOptions options) throws IOException;
+
+    default StreamStats compressFile(String filePath) {
+        return compressFile(filePath, CompressionOptions.defaults());
+    }
+
+    default StreamStats compressStream(InputStream input, String filePath) throws IOException {
+        return compressStream(input, filePath, CompressionOptions.defaults());
+    }
 }
\ No newline at end of file
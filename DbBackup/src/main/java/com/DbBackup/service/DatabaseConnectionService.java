@@ -1,8 +1,23 @@
 package com.DbBackup.service;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+
 import com.DbBackup.model.ConnectionParams;
 import com.DbBackup.model.DatabaseType;
 
 public interface DatabaseConnectionService {
+
+    /**
+     * Checks that the database is reachable. Successful checks are cached briefly per target,
+     * so jobs started close together don't each pay for a new connection.
+     */
     boolean testConnection(DatabaseType type, ConnectionParams connectionParams);
-}
\ No newline at end of file
+
+    /**
+     * A connection from the target's pool (MySQL and PostgreSQL), for short metadata queries.
+     * Closing it returns it to the pool. Session state persists between borrowers, so
+     * anything that changes it should open its own connection.
+     */
+    Connection getConnection(DatabaseType type, ConnectionParams connectionParams) throws SQLException;
+}
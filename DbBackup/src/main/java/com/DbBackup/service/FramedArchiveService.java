@@ -0,0 +1,31 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.StreamStats;
+
+/**
+ * Seekable archives for SQL dumps. The dump is cut into independently compressed frames,
+ * a new one at every table section, and a trailing index maps each table's DDL and data
+ * to its frames. Selective restores read only the frames they need.
+ */
+public interface FramedArchiveService {
+
+    /**
+     * Frames a mysqldump stream into {@code filePath + ".framed"}, indexing it on the way through.
+     */
+    StreamStats write(InputStream dump, String filePath, CompressionOptions options) throws IOException;
+
+    boolean isFramed(String filePath);
+
+    List<String> listTables(String filePath) throws IOException;
+
+    /**
+     * Opens the decompressed dump. With tables given only the session preamble and trailer
+     * plus those tables' DDL and data are read, everything else is skipped without decompressing.
+     */
+    InputStream open(String filePath, List<String> tables) throws IOException;
+}
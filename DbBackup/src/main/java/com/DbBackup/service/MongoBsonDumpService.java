@@ -0,0 +1,33 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.RestoreOptions;
+import com.DbBackup.model.StreamStats;
+
+/**
+ * In-process MongoDB dumps over the Java driver, no mongodump needed. Documents are read as
+ * raw BSON and written unchanged, one document after another like mongodump's .bson files,
+ * into a compressed file per collection or per _id range of a large collection. Collection
+ * options and indexes go into a metadata file. Restores load the files with parallel,
+ * unordered insertMany batches and build the indexes afterwards.
+ */
+public interface MongoBsonDumpService {
+
+    /**
+     * Dumps the job's database into the directory {@code outputDir}.
+     */
+    StreamStats dump(BackupJob job, String outputDir) throws IOException;
+
+    boolean isCollectionDump(String path);
+
+    /**
+     * Every file of a dump with the checksum the manifest records for it.
+     */
+    Map<String, String> listFiles(String dumpDir) throws IOException;
+
+    boolean restore(String dumpDir, ConnectionParams params, RestoreOptions options) throws IOException;
+}
@@ -0,0 +1,41 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.BinlogPosition;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.RestoreOptions;
+import com.DbBackup.model.StreamStats;
+
+/**
+ * Parallel MySQL dumps. Worker connections share one consistent InnoDB snapshot and dump
+ * tables concurrently, largest first, each into its own compressed file; large tables are
+ * split into primary key ranges dumped side by side. A manifest in the dump directory lists
+ * the files so restore can load them concurrently or selectively, over JDBC.
+ */
+public interface MySqlParallelDumpService {
+
+    /**
+     * Dumps the job's database into the directory {@code outputDir}.
+     */
+    StreamStats dump(BackupJob job, String outputDir) throws IOException;
+
+    boolean isTableDump(String path);
+
+    /**
+     * Every file of a table dump with the checksum the manifest records for it, null for
+     * dumps taken before checksums were recorded.
+     */
+    Map<String, String> listFiles(String dumpDir) throws IOException;
+
+    /**
+     * The binary log position of the dump's snapshot, where point-in-time recovery resumes.
+     * Empty when the server had binary logging off or the user couldn't read the position.
+     */
+    Optional<BinlogPosition> binlogPosition(String dumpDir) throws IOException;
+
+    boolean restore(String dumpDir, ConnectionParams params, RestoreOptions options) throws IOException;
+}
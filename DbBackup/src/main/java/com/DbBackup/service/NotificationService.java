@@ -3,5 +3,10 @@ package com.DbBackup.service;
 import com.DbBackup.model.BackupResult;
 
 public interface NotificationService {
+
+    /**
+     * Queues the result and returns right away. Results for the same webhook that finish
+     * close together are sent as one digest message by a background sender.
+     */
     void sendSlackNotification(BackupResult result, String webhookUrl);
 }
@@ -0,0 +1,33 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.RestoreOptions;
+import com.DbBackup.model.StreamStats;
+
+/**
+ * In-process PostgreSQL dumps over the JDBC driver, no pg_dump needed. The schema is read
+ * from the catalogs into two scripts, one run before the data is loaded and one after it
+ * (constraints, indexes, views, triggers). Table data is streamed with COPY TO STDOUT by
+ * worker connections sharing one exported snapshot, each table into its own compressed
+ * file, and loaded back with COPY FROM STDIN by parallel loaders.
+ */
+public interface PostgresCopyDumpService {
+
+    /**
+     * Dumps the job's database into the directory {@code outputDir}.
+     */
+    StreamStats dump(BackupJob job, String outputDir) throws IOException;
+
+    boolean isTableDump(String path);
+
+    /**
+     * Every file of a dump with the checksum the manifest records for it.
+     */
+    Map<String, String> listFiles(String dumpDir) throws IOException;
+
+    boolean restore(String dumpDir, ConnectionParams params, RestoreOptions options) throws IOException;
+}
@@ -0,0 +1,48 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.DbBackup.model.RunningProcess;
+
+/**
+ * Runs the external dump and restore tools. Their output is drained concurrently into a
+ * bounded buffer, and a watchdog stops tools that exceed the wall-clock timeout or show
+ * neither output nor CPU use for the idle timeout. Running tools are registered in a
+ * control directory, so another process on the host (e.g. the CLI) can list and cancel them.
+ */
+public interface ProcessSupervisor {
+
+    /**
+     * Starts a tool whose stdout and stderr are only kept for diagnostics.
+     */
+    SupervisedProcess start(String jobId, ProcessBuilder pb) throws IOException;
+
+    /**
+     * Starts a tool whose stdout is the data (a dump), read by the caller; stderr is drained.
+     */
+    SupervisedProcess startStreaming(String jobId, ProcessBuilder pb) throws IOException;
+
+    /**
+     * Starts a tool meant to run until it is cancelled, such as a log tail, which writes its
+     * own files. It is exempt from both timeouts; stdout and stderr are kept for diagnostics.
+     */
+    SupervisedProcess startUnbounded(String jobId, ProcessBuilder pb) throws IOException;
+
+    /**
+     * Registers work a job runs inside this JVM under its pid, so it is listed and can be
+     * cancelled like a tool. Cancelling runs onCancel on another thread; the timeouts
+     * don't apply.
+     */
+    SupervisedTask registerTask(String jobId, String name, Runnable onCancel);
+
+    /**
+     * Tools running on this host, started by this or any other instance sharing the control directory.
+     */
+    List<RunningProcess> listRunning() throws IOException;
+
+    /**
+     * Stops every tool and task running for the job. Returns how many were asked to stop.
+     */
+    int cancel(String jobId) throws IOException;
+}
@@ -4,9 +4,11 @@ import java.util.List;
 
 import com.DbBackup.model.ConnectionParams;
 import com.DbBackup.model.DatabaseType;
+import com.DbBackup.model.RestoreOptions;
 
 public interface RestoreService {
 
     boolean restoreBackup(String backupFilePath, DatabaseType type, ConnectionParams connectionParams);
     boolean restoreSelectiveBackup(String backupFilePath, DatabaseType type, ConnectionParams connectionParams, List<String> items);
-}
\ No newline at end of file
+    boolean restore(String backupFilePath, DatabaseType type, ConnectionParams connectionParams, RestoreOptions options);
+}
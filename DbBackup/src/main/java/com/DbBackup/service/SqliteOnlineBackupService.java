@@ -0,0 +1,18 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.SqliteSnapshot;
+
+/**
+ * Consistent copies of live SQLite databases through SQLite's online backup API.
+ */
+public interface SqliteOnlineBackupService {
+
+    /**
+     * Copies the job's database to {@code targetPath} a few pages at a time, pausing
+     * between steps so writers on the source are not starved.
+     */
+    SqliteSnapshot backup(BackupJob job, String targetPath) throws IOException;
+}
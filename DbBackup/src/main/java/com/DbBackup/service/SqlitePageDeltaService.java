@@ -0,0 +1,42 @@
+package com.DbBackup.service;
+
+import java.io.IOException;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.StreamStats;
+
+/**
+ * Page-level backups for SQLite. Every backup records a page map (one hash per database
+ * page) so the next INCREMENTAL or DIFFERENTIAL run only stores the pages that changed.
+ */
+public interface SqlitePageDeltaService {
+
+    /**
+     * Streams the whole database at {@code databasePath} into {@code filePath} plus the
+     * codec extension and writes its page map.
+     */
+    StreamStats backupFull(BackupJob job, String databasePath, String filePath) throws IOException;
+
+    /**
+     * Stores only the pages that differ from {@code parentBackup} as a compressed delta.
+     * Falls back to {@link #backupFull(BackupJob, String, String)} when the parent has no page map.
+     */
+    StreamStats backupIncremental(BackupJob job, String databasePath, String filePath, String parentBackup)
+            throws IOException;
+
+    /**
+     * Writes the page map for an uncompressed database copy at {@code filePath}.
+     */
+    void writePageMap(String filePath) throws IOException;
+
+    /**
+     * True for page deltas, compressed or not.
+     */
+    boolean isDelta(String filePath);
+
+    /**
+     * Rebuilds the database by applying the delta chain over its full base and returns
+     * the path of the rebuilt file.
+     */
+    String rebuild(String deltaPath) throws IOException;
+}
@@ -0,0 +1,31 @@
+package com.DbBackup.service;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.DbBackup.model.ProcessResult;
+
+/**
+ * A dump or restore tool started by the {@link ProcessSupervisor}. Its output is drained
+ * in the background, so only stdin, and stdout for streaming starts, are left to the caller.
+ */
+public interface SupervisedProcess {
+
+    long pid();
+
+    boolean isAlive();
+
+    /**
+     * The tool's stdout, for processes started with {@link ProcessSupervisor#startStreaming}.
+     */
+    InputStream getInputStream();
+
+    OutputStream getOutputStream();
+
+    /**
+     * Waits for the tool to exit. Interrupting the waiting thread stops the tool.
+     */
+    ProcessResult waitFor() throws InterruptedException;
+
+    void cancel(String reason);
+}
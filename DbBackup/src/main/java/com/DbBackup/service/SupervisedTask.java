@@ -0,0 +1,14 @@
+package com.DbBackup.service;
+
+/**
+ * Work a job runs inside this JVM, such as JDBC loaders, registered with the
+ * {@link ProcessSupervisor} so the cancel command reaches it like a tool. Closing it
+ * unregisters the work.
+ */
+public interface SupervisedTask extends AutoCloseable {
+
+    boolean isCancelled();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,243 @@
+package com.DbBackup.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.BackupResult;
+import com.DbBackup.model.BackupType;
+import com.DbBackup.model.CatalogEntry;
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.DatabaseType;
+import com.DbBackup.service.BackupCatalogService;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class BackupCatalogServiceImpl implements BackupCatalogService {
+
+    static final String CATALOG_FILE = "catalog.db";
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS backups ("
+                    + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "job_id TEXT, "
+                    + "database_type TEXT NOT NULL, "
+                    + "host TEXT, "
+                    + "database_name TEXT NOT NULL, "
+                    + "backup_type TEXT, "
+                    + "file_path TEXT, "
+                    + "file_size INTEGER NOT NULL DEFAULT 0, "
+                    + "uncompressed_size INTEGER NOT NULL DEFAULT 0, "
+                    + "checksum TEXT, "
+                    + "codec TEXT, "
+                    + "parent_backup TEXT, "
+                    + "start_time TEXT NOT NULL, "
+                    + "end_time TEXT, "
+                    + "success INTEGER NOT NULL, "
+                    + "error_message TEXT)",
+            // Fixed-width timestamps sort as text, so both indexes serve newest-first scans
+            "CREATE INDEX IF NOT EXISTS idx_backups_database_time ON backups (database_type, database_name, start_time)",
+            "CREATE INDEX IF NOT EXISTS idx_backups_time ON backups (start_time)"
+    };
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+    private static final String COLUMNS = "id, job_id, database_type, host, database_name, backup_type, file_path, "
+            + "file_size, uncompressed_size, checksum, codec, parent_backup, start_time, end_time, success, error_message";
+
+    // Catalogs whose schema has been created during this run
+    private final Set<Path> initialized = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public CatalogEntry record(String backupPath, BackupResult result) throws IOException {
+        String sql = "INSERT INTO backups (job_id, database_type, host, database_name, backup_type, file_path, "
+                + "file_size, uncompressed_size, checksum, codec, parent_backup, start_time, end_time, success, "
+                + "error_message) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (Connection conn = open(backupPath);
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, result.getJobId());
+            ps.setString(2, result.getDatabaseType().name());
+            ps.setString(3, result.getHost());
+            ps.setString(4, result.getDatabaseName());
+            setNullable(ps, 5, result.getBackupType());
+            ps.setString(6, result.getFilePath());
+            ps.setLong(7, result.getFileSize());
+            ps.setLong(8, result.getUncompressedSize());
+            ps.setString(9, result.getChecksum());
+            setNullable(ps, 10, result.getCodec());
+            ps.setString(11, result.getParentBackup());
+            ps.setString(12, result.getStartTime().format(TIMESTAMP));
+            ps.setString(13, result.getEndTime() != null ? result.getEndTime().format(TIMESTAMP) : null);
+            ps.setInt(14, result.isSuccess() ? 1 : 0);
+            ps.setString(15, result.getErrorMessage());
+            ps.executeUpdate();
+
+            long id;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                keys.next();
+                id = keys.getLong(1);
+            }
+            log.debug("Recorded backup {} in catalog as #{}", result.getFilePath(), id);
+            return find(conn, id).orElseThrow();
+        } catch (SQLException e) {
+            throw new IOException("Failed to record backup in catalog: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<CatalogEntry> list(String backupPath, DatabaseType type, String database, int limit)
+            throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM backups WHERE 1 = 1");
+        List<String> args = new ArrayList<>();
+        if (type != null) {
+            sql.append(" AND database_type = ?");
+            args.add(type.name());
+        }
+        if (database != null) {
+            sql.append(" AND database_name = ?");
+            args.add(database);
+        }
+        sql.append(" ORDER BY start_time DESC, id DESC LIMIT ?");
+
+        if (!catalogExists(backupPath)) {
+            return new ArrayList<>();
+        }
+        try (Connection conn = open(backupPath);
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (String arg : args) {
+                ps.setString(index++, arg);
+            }
+            ps.setInt(index, limit);
+            return readAll(ps);
+        } catch (SQLException e) {
+            throw new IOException("Failed to read catalog: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<CatalogEntry> find(String backupPath, long id) throws IOException {
+        if (!catalogExists(backupPath)) {
+            return Optional.empty();
+        }
+        try (Connection conn = open(backupPath)) {
+            return find(conn, id);
+        } catch (SQLException e) {
+            throw new IOException("Failed to read catalog: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<CatalogEntry> latest(String backupPath, DatabaseType type, String host, String database,
+                                         BackupType backupType) throws IOException {
+        String sql = "SELECT " + COLUMNS + " FROM backups "
+                + "WHERE database_type = ? AND database_name = ? AND success = 1"
+                + (host != null ? " AND host = ?" : "")
+                + (backupType != null ? " AND backup_type = ?" : "")
+                + " ORDER BY start_time DESC, id DESC LIMIT 1";
+        if (!catalogExists(backupPath)) {
+            return Optional.empty();
+        }
+        try (Connection conn = open(backupPath);
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, type.name());
+            ps.setString(2, database);
+            int index = 3;
+            if (host != null) {
+                ps.setString(index++, host);
+            }
+            if (backupType != null) {
+                ps.setString(index, backupType.name());
+            }
+            return readAll(ps).stream().findFirst();
+        } catch (SQLException e) {
+            throw new IOException("Failed to read catalog: " + e.getMessage(), e);
+        }
+    }
+
+    private Optional<CatalogEntry> find(Connection conn, long id) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT " + COLUMNS + " FROM backups WHERE id = ?")) {
+            ps.setLong(1, id);
+            return readAll(ps).stream().findFirst();
+        }
+    }
+
+    private List<CatalogEntry> readAll(PreparedStatement ps) throws SQLException {
+        List<CatalogEntry> entries = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                entries.add(CatalogEntry.builder()
+                        .id(rs.getLong("id"))
+                        .jobId(rs.getString("job_id"))
+                        .databaseType(DatabaseType.valueOf(rs.getString("database_type")))
+                        .host(rs.getString("host"))
+                        .databaseName(rs.getString("database_name"))
+                        .backupType(rs.getString("backup_type") != null ? BackupType.valueOf(rs.getString("backup_type")) : null)
+                        .filePath(rs.getString("file_path"))
+                        .fileSize(rs.getLong("file_size"))
+                        .uncompressedSize(rs.getLong("uncompressed_size"))
+                        .checksum(rs.getString("checksum"))
+                        .codec(rs.getString("codec") != null ? CodecType.valueOf(rs.getString("codec")) : null)
+                        .parentBackup(rs.getString("parent_backup"))
+                        .startTime(LocalDateTime.parse(rs.getString("start_time")))
+                        .endTime(rs.getString("end_time") != null ? LocalDateTime.parse(rs.getString("end_time")) : null)
+                        .success(rs.getInt("success") == 1)
+                        .errorMessage(rs.getString("error_message"))
+                        .build());
+            }
+        }
+        return entries;
+    }
+
+    private void setNullable(PreparedStatement ps, int index, Enum<?> value) throws SQLException {
+        if (value != null) {
+            ps.setString(index, value.name());
+        } else {
+            ps.setNull(index, Types.VARCHAR);
+        }
+    }
+
+    private boolean catalogExists(String backupPath) {
+        return Files.isRegularFile(Paths.get(backupPath, CATALOG_FILE));
+    }
+
+    private Connection open(String backupPath) throws SQLException, IOException {
+        Path catalog = Paths.get(backupPath, CATALOG_FILE).toAbsolutePath().normalize();
+        Files.createDirectories(catalog.getParent());
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + catalog);
+        try (Statement st = conn.createStatement()) {
+            // Scheduled jobs may write while the CLI reads
+            st.execute("PRAGMA busy_timeout = 5000");
+            if (initialized.add(catalog)) {
+                st.execute("PRAGMA journal_mode = WAL");
+                for (String ddl : SCHEMA) {
+                    st.execute(ddl);
+                }
+            }
+        } catch (SQLException e) {
+            initialized.remove(catalog);
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+}
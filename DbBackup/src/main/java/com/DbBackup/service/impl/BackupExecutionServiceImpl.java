@@ -0,0 +1,208 @@
+package com.DbBackup.service.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.ExecutionStats;
+import com.DbBackup.service.BackupExecutionService;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class BackupExecutionServiceImpl implements BackupExecutionService, DisposableBean {
+
+    private static final Comparator<Task<?>> ORDER = Comparator
+            .comparingInt((Task<?> task) -> -task.priority)
+            .thenComparingLong(task -> task.sequence);
+
+    private final int workers;
+    private final int perHostLimit;
+    private final int queueCapacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final TreeSet<Task<?>> queue = new TreeSet<>(ORDER);
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    // Guarded by lock
+    private long sequence;
+    private int running;
+    private long completed;
+    private long rejected;
+    private long totalWaitMillis;
+    private long maxWaitMillis;
+    private boolean shutdown;
+
+    public BackupExecutionServiceImpl(@Value("${backup.execution.workers:4}") int workers,
+                                      @Value("${backup.execution.per-host-limit:2}") int perHostLimit,
+                                      @Value("${backup.execution.queue-capacity:1000}") int queueCapacity) {
+        this.workers = Math.max(1, workers);
+        this.perHostLimit = Math.max(1, perHostLimit);
+        this.queueCapacity = Math.max(1, queueCapacity);
+
+        for (int i = 0; i < this.workers; i++) {
+            Thread thread = new Thread(this::work, "backup-worker-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        log.info("Backup execution engine started with {} workers, at most {} per host",
+                this.workers, this.perHostLimit);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submit(String hostKey, int priority, Callable<T> task) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Backup execution engine is shut down");
+            }
+            if (queue.size() >= queueCapacity) {
+                rejected++;
+                throw new RejectedExecutionException("Backup queue is full (" + queueCapacity + " jobs)");
+            }
+            Task<T> queued = new Task<>(hostKey, priority, sequence++, task);
+            queue.add(queued);
+            log.debug("Queued backup for {} with priority {} ({} queued)", hostKey, priority, queue.size());
+            changed.signalAll();
+            return queued.future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public ExecutionStats getStats() {
+        lock.lock();
+        try {
+            return ExecutionStats.builder()
+                    .workers(workers)
+                    .perHostLimit(perHostLimit)
+                    .queued(queue.size())
+                    .running(running)
+                    .completed(completed)
+                    .rejected(rejected)
+                    .averageWaitMillis(completed + running > 0 ? totalWaitMillis / (completed + running) : 0)
+                    .maxWaitMillis(maxWaitMillis)
+                    .runningPerHost(new HashMap<>(runningPerHost))
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        lock.lock();
+        try {
+            shutdown = true;
+            for (Task<?> task : queue) {
+                task.future.cancel(false);
+            }
+            queue.clear();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        threads.forEach(Thread::interrupt);
+    }
+
+    private void work() {
+        while (true) {
+            Task<?> task;
+            long waitMillis;
+            int depth;
+            lock.lock();
+            try {
+                while ((task = nextRunnable()) == null) {
+                    if (shutdown) {
+                        return;
+                    }
+                    changed.await();
+                }
+                queue.remove(task);
+                runningPerHost.merge(task.hostKey, 1, Integer::sum);
+                running++;
+                waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.queuedAt);
+                totalWaitMillis += waitMillis;
+                maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+                depth = queue.size();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            log.info("Starting backup on {} after {} ms in queue ({} still queued)", task.hostKey, waitMillis, depth);
+            try {
+                task.run();
+            } finally {
+                lock.lock();
+                try {
+                    runningPerHost.computeIfPresent(task.hostKey, (host, count) -> count > 1 ? count - 1 : null);
+                    running--;
+                    completed++;
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * The first task in priority order whose host still has room; tasks for saturated hosts
+     * are skipped, not waited for, so one busy server can't stall the others.
+     */
+    private Task<?> nextRunnable() {
+        for (Task<?> task : queue) {
+            if (runningPerHost.getOrDefault(task.hostKey, 0) < perHostLimit) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private static final class Task<T> {
+        private final String hostKey;
+        private final int priority;
+        private final long sequence;
+        private final long queuedAt = System.nanoTime();
+        private final Callable<T> callable;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Task(String hostKey, int priority, long sequence, Callable<T> callable) {
+            this.hostKey = hostKey;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.callable = callable;
+        }
+
+        void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(callable.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.DbBackup.service.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.BackupResult;
+import com.DbBackup.model.DatabaseType;
+import com.DbBackup.model.ProcessResult;
+import com.DbBackup.service.BackupExecutionService;
+import com.DbBackup.service.BackupMetricsService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class BackupMetricsServiceImpl implements BackupMetricsService {
+
+    private final PrometheusMeterRegistry registry;
+    private final String textFile;
+
+    // Gauges only hold weak references, the per-database values live here
+    private final Map<Tags, LastBackup> lastBackups = new ConcurrentHashMap<>();
+
+    public BackupMetricsServiceImpl(PrometheusMeterRegistry registry,
+                                    BackupExecutionService executionService,
+                                    @Value("${backup.metrics.textfile:}") String textFile) {
+        this.registry = registry;
+        this.textFile = textFile;
+
+        Gauge.builder("backup.queue.depth", executionService, engine -> engine.getStats().getQueued())
+                .description("Backups waiting for a worker or for their host to have capacity")
+                .register(registry);
+        Gauge.builder("backup.running", executionService, engine -> engine.getStats().getRunning())
+                .description("Backups currently running")
+                .register(registry);
+        FunctionCounter.builder("backup.rejected", executionService, engine -> engine.getStats().getRejected())
+                .description("Backups turned away because the queue was full")
+                .register(registry);
+    }
+
+    @Override
+    public void recordBackup(BackupResult result) {
+        Tags tags = tags(result.getDatabaseType(), result.getDatabaseName());
+
+        phaseTimer("backup.phase.duration", tags, "queue").record(result.getQueueWaitMillis(), TimeUnit.MILLISECONDS);
+        phaseTimer("backup.phase.duration", tags, "connect").record(result.getConnectMillis(), TimeUnit.MILLISECONDS);
+        Counter.builder("backup.runs")
+                .tags(tags).tag("outcome", result.isSuccess() ? "success" : "failure")
+                .register(registry)
+                .increment();
+        if (!result.isSuccess()) {
+            return;
+        }
+
+        phaseTimer("backup.phase.duration", tags, "dump").record(result.getDumpMillis(), TimeUnit.MILLISECONDS);
+        phaseTimer("backup.phase.duration", tags, "compress").record(result.getCompressMillis(), TimeUnit.MILLISECONDS);
+        bytes(tags, "raw").record(result.getUncompressedSize());
+        bytes(tags, "stored").record(result.getFileSize());
+
+        LastBackup last = lastBackups.computeIfAbsent(tags, this::registerLastBackup);
+        last.throughput = result.getThroughputBytesPerSecond();
+        last.compressionRatio = result.getCompressionRatio();
+        last.completedAt = result.getEndTime().atZone(ZoneId.systemDefault()).toEpochSecond();
+
+        // One-shot CLI runs exit long before the next scheduled export
+        exportTextFile();
+    }
+
+    @Override
+    public void recordRestore(DatabaseType type, String database, long connectMillis, long prepareMillis,
+                              long loadMillis, boolean success) {
+        Tags tags = tags(type, database);
+        phaseTimer("restore.phase.duration", tags, "connect").record(connectMillis, TimeUnit.MILLISECONDS);
+        if (success) {
+            phaseTimer("restore.phase.duration", tags, "prepare").record(prepareMillis, TimeUnit.MILLISECONDS);
+            phaseTimer("restore.phase.duration", tags, "load").record(loadMillis, TimeUnit.MILLISECONDS);
+        }
+        Counter.builder("restore.runs")
+                .tags(tags).tag("outcome", success ? "success" : "failure")
+                .register(registry)
+                .increment();
+        exportTextFile();
+    }
+
+    @Override
+    public void recordProcess(ProcessResult result) {
+        Tags tags = Tags.of("tool", result.getTool());
+        Timer.builder("backup.tool.cpu")
+                .description("CPU time of dump and restore tools, child processes included")
+                .tags(tags)
+                .register(registry)
+                .record(result.getCpuMillis(), TimeUnit.MILLISECONDS);
+        if (result.getPeakRssBytes() != null) {
+            DistributionSummary.builder("backup.tool.peak.rss")
+                    .description("Peak resident memory of dump and restore tools")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry)
+                    .record(result.getPeakRssBytes());
+        }
+        if (result.getKillReason() != null) {
+            Counter.builder("backup.tool.stopped")
+                    .description("Tools stopped by the supervisor: timeouts, idle tools and cancellations")
+                    .tags(tags)
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${backup.metrics.export-interval:15000}")
+    public synchronized void exportTextFile() {
+        if (textFile == null || textFile.isBlank()) {
+            return;
+        }
+        Path target = Paths.get(textFile).toAbsolutePath();
+        try {
+            Files.createDirectories(target.getParent());
+            // node_exporter may read at any moment: write aside, then swap the file in whole.
+            // The temp name doesn't end in .prom, so the collector never picks it up.
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, registry.scrape().getBytes(StandardCharsets.UTF_8));
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write metrics to {}: {}", target, e.getMessage());
+        }
+    }
+
+    private Timer phaseTimer(String name, Tags tags, String phase) {
+        return Timer.builder(name)
+                .tags(tags).tag("phase", phase)
+                .register(registry);
+    }
+
+    private DistributionSummary bytes(Tags tags, String kind) {
+        return DistributionSummary.builder("backup.size")
+                .baseUnit("bytes")
+                .tags(tags).tag("kind", kind)
+                .register(registry);
+    }
+
+    private LastBackup registerLastBackup(Tags tags) {
+        LastBackup last = new LastBackup();
+        Gauge.builder("backup.last.throughput", last, value -> value.throughput)
+                .description("Uncompressed bytes per second of the last successful backup")
+                .baseUnit("bytes.per.second")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("backup.last.compression.ratio", last, value -> value.compressionRatio)
+                .description("Uncompressed to stored size of the last successful backup")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("backup.last.success.time", last, value -> value.completedAt)
+                .description("Unix time the last successful backup completed")
+                .baseUnit("seconds")
+                .tags(tags)
+                .register(registry);
+        return last;
+    }
+
+    private static Tags tags(DatabaseType type, String database) {
+        return Tags.of("database_type", type != null ? type.toString().toLowerCase() : "unknown",
+                "database", database != null ? database : "");
+    }
+
+    private static class LastBackup {
+        private volatile double throughput;
+        private volatile double compressionRatio;
+        private volatile double completedAt;
+    }
+}
@@ -1,18 +1,36 @@
 package com.DbBackup.service.impl;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 
 import org.quartz.CronScheduleBuilder;
 import org.quartz.Job;
 import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -25,11 +43,37 @@ import org.springframework.stereotype.Service;
 
 import com.DbBackup.model.BackupJob;
 import com.DbBackup.model.BackupResult;
+import com.DbBackup.model.BackupType;
+import com.DbBackup.model.CatalogEntry;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.ConnectionParams;
 import com.DbBackup.model.DatabaseType;
+import com.DbBackup.model.DumpEngine;
+import com.DbBackup.model.ProcessResult;
+import com.DbBackup.model.SqliteSnapshot;
+import com.DbBackup.model.StreamStats;
+import com.DbBackup.service.BackupCatalogService;
+import com.DbBackup.service.BackupExecutionService;
+import com.DbBackup.service.BackupMetricsService;
 import com.DbBackup.service.BackupService;
+import com.DbBackup.service.BandwidthService;
+import com.DbBackup.service.ChecksumService;
+import com.DbBackup.service.ChunkStoreService;
 import com.DbBackup.service.CompressionService;
 import com.DbBackup.service.DatabaseConnectionService;
+import com.DbBackup.service.FramedArchiveService;
+import com.DbBackup.service.MongoBsonDumpService;
+import com.DbBackup.service.MySqlParallelDumpService;
 import com.DbBackup.service.NotificationService;
+import com.DbBackup.service.PostgresCopyDumpService;
+import com.DbBackup.service.ProcessSupervisor;
+import com.DbBackup.service.SqliteOnlineBackupService;
+import com.DbBackup.service.SqlitePageDeltaService;
+import com.DbBackup.service.SupervisedProcess;
+import com.DbBackup.util.ChecksumOutputStream;
+import com.DbBackup.util.Throttle;
+import com.DbBackup.util.TimedInputStream;
+import com.DbBackup.util.FileSizes;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -41,29 +85,73 @@ import java.io.*;
 @RequiredArgsConstructor
 public class BackupServiceImpl implements BackupService {
     
+    private static final String JOB_DATA_KEY = "backupJob";
+    
     private final DatabaseConnectionService connectionService;
     private final CompressionService compressionService;
+    private final ChunkStoreService chunkStoreService;
+    private final SqlitePageDeltaService sqlitePageDeltaService;
+    private final SqliteOnlineBackupService sqliteOnlineBackupService;
+    private final MySqlParallelDumpService mySqlParallelDumpService;
+    private final PostgresCopyDumpService postgresCopyDumpService;
+    private final MongoBsonDumpService mongoBsonDumpService;
+    private final FramedArchiveService framedArchiveService;
+    private final BackupCatalogService catalogService;
+    private final BackupExecutionService executionService;
+    private final BackupMetricsService metricsService;
+    private final BandwidthService bandwidthService;
+    private final ChecksumService checksumService;
     private final NotificationService notificationService;
+    private final ProcessSupervisor processSupervisor;
     private final Scheduler scheduler;
+    private final ScheduledJobCipher scheduledJobCipher;
 
     @Override
     public BackupResult performBackup(BackupJob job) {
+        try {
+            return submitBackup(job).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failedBeforeStart(job, "Interrupted while waiting for the backup to run");
+        } catch (ExecutionException | RejectedExecutionException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            log.error("Backup job {} could not run: {}", job.getId(), cause.getMessage());
+            return failedBeforeStart(job, "Backup not run: " + cause.getMessage());
+        }
+    }
+    
+    @Override
+    public CompletableFuture<BackupResult> submitBackup(BackupJob job) {
+        long queuedAt = System.nanoTime();
+        return executionService.submit(hostKey(job), job.getPriority(),
+                () -> runBackup(job, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedAt)));
+    }
+    
+    private BackupResult runBackup(BackupJob job, long queueWaitMillis) {
         LocalDateTime startTime = LocalDateTime.now();
         log.info("Starting backup job {} at {}", job.getId(), startTime);
         
         BackupResult.BackupResultBuilder resultBuilder = BackupResult.builder()
                 .jobId(job.getId())
+                .queueWaitMillis(queueWaitMillis)
+                .databaseType(job.getDatabaseType())
+                .host(job.getConnectionParams().getHost())
+                .databaseName(job.getConnectionParams().getDatabase())
+                .backupType(job.getBackupType())
                 .startTime(startTime)
                 .success(false);
         
         // Test database connection first
-        if (!connectionService.testConnection(job.getDatabaseType(), job.getConnectionParams())) {
+        long connectStart = System.nanoTime();
+        boolean connected = connectionService.testConnection(job.getDatabaseType(), job.getConnectionParams());
+        resultBuilder.connectMillis(millisSince(connectStart));
+        if (!connected) {
             String errorMsg = "Failed to connect to database";
             log.error(errorMsg);
-            return resultBuilder
+            return recordResult(job, resultBuilder
                     .endTime(LocalDateTime.now())
                     .errorMessage(errorMsg)
-                    .build();
+                    .build());
         }
         
         // Create backup directory if it doesn't exist
@@ -75,51 +163,153 @@ public class BackupServiceImpl implements BackupService {
         } catch (IOException e) {
             String errorMsg = "Failed to create backup directory: " + e.getMessage();
             log.error(errorMsg);
-            return resultBuilder
+            return recordResult(job, resultBuilder
                     .endTime(LocalDateTime.now())
                     .errorMessage(errorMsg)
-                    .build();
+                    .build());
         }
         
         // Generate backup file name
         String timestamp = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss").format(startTime);
-        String backupFileName = String.format("%s_%s_%s_backup.%s", 
-                job.getDatabaseType().toString().toLowerCase(),
-                job.getConnectionParams().getDatabase(),
+        boolean deduplicated = job.getBackupType() == BackupType.INCREMENTAL
+                || job.getBackupType() == BackupType.DIFFERENTIAL;
+        // In-process engines: COPY for PostgreSQL, the parallel table dump for MySQL, raw BSON for MongoDB
+        boolean nativeEngine = job.getBackupType() == BackupType.FULL && job.getEngine() == DumpEngine.NATIVE;
+        boolean copyDump = nativeEngine && job.getDatabaseType() == DatabaseType.POSTGRESQL;
+        boolean bsonDump = nativeEngine && job.getDatabaseType() == DatabaseType.MONGODB;
+        // Parallel dumps write a directory per backup, which can't be streamed
+        boolean parallel = bsonDump || (job.getBackupType() == BackupType.FULL
+                && (nativeEngine || job.getParallelJobs() != null)
+                && (job.getDatabaseType() == DatabaseType.MYSQL || job.getDatabaseType() == DatabaseType.POSTGRESQL));
+        // MongoDB archives and framed MySQL dumps always go straight into the compressor
+        boolean streaming = !parallel && (deduplicated || (job.isCompress()
+                && (job.isStreaming() || job.getDatabaseType() == DatabaseType.MONGODB
+                        || job.getDatabaseType() == DatabaseType.MYSQL)));
+        String backupFileName = String.format("%s%s_backup.%s", 
+                backupNamePrefix(job),
                 timestamp,
-                getFileExtension(job.getDatabaseType()));
+                copyDump ? "copy" : getFileExtension(job.getDatabaseType(), parallel));
         
         String backupFilePath = Paths.get(job.getBackupPath(), backupFileName).toString();
         
         try {
-            // Perform database-specific backup
-            switch (job.getDatabaseType()) {
-                case MYSQL:
-                    backupMySql(job, backupFilePath);
-                    break;
-                case POSTGRESQL:
-                    backupPostgres(job, backupFilePath);
-                    break;
-                case MONGODB:
-                    backupMongoDB(job, backupFilePath);
-                    break;
-                case SQLITE:
-                    backupSqlite(job, backupFilePath);
-                    break;
-                default:
-                    throw new UnsupportedOperationException("Unsupported database type: " + job.getDatabaseType());
-            }
+            String finalFilePath;
+            long uncompressedSize;
+            long fileSize;
+            String checksum;
+            long dumpStart = System.nanoTime();
             
-            // Compress the backup file if requested
-            String finalFilePath = backupFilePath;
-            if (job.isCompress()) {
-                finalFilePath = compressionService.compressFile(backupFilePath);
-                // Delete the original uncompressed file
-                Files.deleteIfExists(Paths.get(backupFilePath));
+            if (copyDump || bsonDump || (parallel && job.getDatabaseType() == DatabaseType.MYSQL)) {
+                // One file per table or collection, written concurrently. Files are compressed
+                // inside the dump workers, so it all counts as dump time.
+                StreamStats stats;
+                if (copyDump) {
+                    stats = postgresCopyDumpService.dump(job, backupFilePath);
+                } else if (bsonDump) {
+                    stats = mongoBsonDumpService.dump(job, backupFilePath);
+                } else {
+                    stats = mySqlParallelDumpService.dump(job, backupFilePath);
+                }
+                resultBuilder.dumpMillis(millisSince(dumpStart));
+                finalFilePath = stats.getFilePath();
+                uncompressedSize = stats.getRawBytes();
+                fileSize = stats.getCompressedBytes();
+                checksum = stats.getChecksum();
+                if (job.isCompress()) {
+                    resultBuilder.codec(CompressionOptions.forJob(job).getCodec());
+                }
+            } else if (streaming) {
+                StreamStats stats;
+                if (job.getDatabaseType() == DatabaseType.SQLITE) {
+                    stats = streamSqliteBackup(job, backupFilePath, deduplicated, resultBuilder);
+                } else if (deduplicated) {
+                    // Only chunks not already in the repository are written
+                    String parent = findParentBackup(job);
+                    resultBuilder.parentBackup(parent);
+                    stats = streamBackup(job, input -> chunkStoreService.storeChunked(input, backupFilePath, job, parent));
+                } else if (job.getDatabaseType() == DatabaseType.MYSQL) {
+                    // Seekable frames with a table index, so single tables restore quickly
+                    stats = streamBackup(job, input -> framedArchiveService.write(
+                            input, backupFilePath, CompressionOptions.forJob(job)));
+                } else {
+                    // Pipe the dump straight through the compressor, no intermediate file
+                    stats = streamBackup(job, input -> compressionService.compressStream(
+                            input, backupFilePath, CompressionOptions.forJob(job)));
+                }
+                // Dump and compression overlap: time blocked on the source is the dump's share
+                long streamMillis = millisSince(dumpStart);
+                resultBuilder.dumpMillis(stats.getSourceMillis())
+                        .compressMillis(Math.max(0, streamMillis - stats.getSourceMillis()));
+                finalFilePath = stats.getFilePath();
+                uncompressedSize = stats.getRawBytes();
+                fileSize = stats.getCompressedBytes();
+                checksum = stats.getChecksum();
+                resultBuilder.codec(CompressionOptions.forJob(job).getCodec());
+            } else {
+                // Perform database-specific backup
+                checksum = null;
+                switch (job.getDatabaseType()) {
+                    case MYSQL:
+                        checksum = backupMySql(job, backupFilePath).getChecksum();
+                        break;
+                    case POSTGRESQL:
+                        if (parallel) {
+                            backupPostgresDirectory(job, backupFilePath);
+                        } else {
+                            checksum = backupPostgres(job, backupFilePath).getChecksum();
+                        }
+                        break;
+                    case MONGODB:
+                        checksum = backupMongoDB(job, backupFilePath).getChecksum();
+                        break;
+                    case SQLITE:
+                        SqliteSnapshot snapshot = backupSqlite(job, backupFilePath);
+                        resultBuilder.pagesCopied(snapshot.getPageCount())
+                                .pagesPerSecond(snapshot.getPagesPerSecond());
+                        sqlitePageDeltaService.writePageMap(backupFilePath);
+                        break;
+                    default:
+                        throw new UnsupportedOperationException("Unsupported database type: " + job.getDatabaseType());
+                }
+                
+                resultBuilder.dumpMillis(millisSince(dumpStart));
+                File backupFile = new File(backupFilePath);
+                uncompressedSize = FileUtils.sizeOf(backupFile);
+                
+                // Compress the backup file if requested
+                long compressStart = System.nanoTime();
+                finalFilePath = backupFilePath;
+                if (job.isCompress() && backupFile.isDirectory()) {
+                    // Directory dumps are packed into a single archive
+                    StreamStats compressed = compressionService.compressDirectory(backupFilePath, CompressionOptions.forJob(job));
+                    finalFilePath = compressed.getFilePath();
+                    checksum = compressed.getChecksum();
+                    FileUtils.deleteDirectory(backupFile);
+                    resultBuilder.codec(CompressionOptions.forJob(job).getCodec());
+                } else if (job.isCompress()) {
+                    StreamStats compressed = compressionService.compressFile(backupFilePath, CompressionOptions.forJob(job));
+                    finalFilePath = compressed.getFilePath();
+                    checksum = compressed.getChecksum();
+                    // Delete the original uncompressed file, unless compression failed and it is the backup
+                    if (!finalFilePath.equals(backupFilePath)) {
+                        Files.deleteIfExists(Paths.get(backupFilePath));
+                        resultBuilder.codec(CompressionOptions.forJob(job).getCodec());
+                    }
+                }
+                if (checksum == null && backupFile.isFile()) {
+                    // The SQLite online backup API writes the file itself, it has to be read back
+                    checksum = checksumService.checksumFile(finalFilePath);
+                }
+                resultBuilder.compressMillis(millisSince(compressStart));
+                
+                // Get file size
+                fileSize = FileUtils.sizeOf(new File(finalFilePath));
             }
             
-            // Get file size
-            long fileSize = Files.size(Paths.get(finalFilePath));
+            // Directory artifacts keep per-file checksums inside, a sidecar only fits a file
+            if (checksum != null && Files.isRegularFile(Paths.get(finalFilePath))) {
+                checksumService.writeSidecar(finalFilePath, checksum);
+            }
             
             LocalDateTime endTime = LocalDateTime.now();
             
@@ -128,10 +318,17 @@ public class BackupServiceImpl implements BackupService {
                     .success(true)
                     .filePath(finalFilePath)
                     .fileSize(fileSize)
+                    .uncompressedSize(uncompressedSize)
+                    .checksum(checksum)
                     .endTime(endTime)
                     .build();
             
-            log.info("Backup completed successfully: {} ({})", finalFilePath, formatFileSize(fileSize));
+            log.info("Backup completed successfully: {} ({}), connect {} ms, dump {} ms, compress {} ms, "
+                    + "{}/s, ratio {}", finalFilePath, FileSizes.format(fileSize),
+                    result.getConnectMillis(), result.getDumpMillis(), result.getCompressMillis(),
+                    FileSizes.format((long) result.getThroughputBytesPerSecond()),
+                    String.format("%.2f", result.getCompressionRatio()));
+            recordResult(job, result);
             
             // Send notification if enabled
             if (job.isSendNotification() && job.getSlackWebhookUrl() != null) {
@@ -147,10 +344,10 @@ public class BackupServiceImpl implements BackupService {
             String errorMsg = "Backup failed: " + e.getMessage();
             log.error(errorMsg, e);
             
-            BackupResult result = resultBuilder
+            BackupResult result = recordResult(job, resultBuilder
                     .endTime(LocalDateTime.now())
                     .errorMessage(errorMsg)
-                    .build();
+                    .build());
             
             // Send notification about failure if enabled
             if (job.isSendNotification() && job.getSlackWebhookUrl() != null) {
@@ -168,22 +365,29 @@ public class BackupServiceImpl implements BackupService {
                 job.setId(UUID.randomUUID().toString());
             }
             
+            // The job is stored encrypted, it carries credentials. Being in the job store it
+            // survives restarts and any node of a cluster can run it.
+            JobDataMap jobData = new JobDataMap();
+            jobData.put(JOB_DATA_KEY, scheduledJobCipher.seal(job));
+            
             JobDetail jobDetail = JobBuilder.newJob(BackupJobExecutor.class)
                     .withIdentity("backup-" + job.getId())
-                    .usingJobData("jobId", job.getId())
+                    .usingJobData(jobData)
                     .storeDurably()
+                    // The backup runs inside the Quartz job, so a run cut short by a node
+                    // going down is run again on restart or by another node of the cluster
+                    .requestRecovery()
                     .build();
             
             Trigger trigger = TriggerBuilder.newTrigger()
                     .withIdentity("trigger-" + job.getId())
-                    .withSchedule(CronScheduleBuilder.cronSchedule(job.getCronExpression()))
+                    .withSchedule(CronScheduleBuilder.cronSchedule(job.getCronExpression())
+                            // A run missed while no node was up fires once, not once per missed slot
+                            .withMisfireHandlingInstructionFireAndProceed())
                     .build();
             
-            // Store job data in scheduler context
-            scheduler.getContext().put("job-" + job.getId(), job);
-            
-            // Schedule the job
-            scheduler.scheduleJob(jobDetail, trigger);
+            // Schedule the job, replacing an earlier schedule with the same ID
+            scheduler.scheduleJob(jobDetail, Collections.singleton(trigger), true);
             log.info("Scheduled backup job {} with cron expression: {}", job.getId(), job.getCronExpression());
             
             return true;
@@ -199,7 +403,6 @@ public class BackupServiceImpl implements BackupService {
             boolean result = scheduler.unscheduleJob(TriggerKey.triggerKey("trigger-" + jobId));
             if (result) {
                 scheduler.deleteJob(JobKey.jobKey("backup-" + jobId));
-                scheduler.getContext().remove("job-" + jobId);
                 log.info("Unscheduled backup job: {}", jobId);
             }
             return result;
@@ -214,30 +417,203 @@ public class BackupServiceImpl implements BackupService {
         @Override
         public void execute(JobExecutionContext context) throws JobExecutionException {
             try {
-                String jobId = context.getJobDetail().getJobDataMap().getString("jobId");
                 SchedulerContext schedulerContext = context.getScheduler().getContext();
-                BackupJob job = (BackupJob) schedulerContext.get("job-" + jobId);
+                Object jobData = context.getMergedJobDataMap().get(JOB_DATA_KEY);
                 
-                if (job != null) {
-                    BackupService backupService = (BackupService) schedulerContext.get("backupService");
-                    backupService.performBackup(job);
+                BackupJob job;
+                if (jobData instanceof byte[]) {
+                    ScheduledJobCipher cipher = (ScheduledJobCipher) schedulerContext.get("scheduledJobCipher");
+                    job = cipher.open((byte[]) jobData);
+                } else if (jobData instanceof BackupJob) {
+                    log.warn("Backup job {} is stored unencrypted, schedule it again to encrypt it",
+                            context.getJobDetail().getKey());
+                    job = (BackupJob) jobData;
                 } else {
-                    throw new JobExecutionException("Backup job not found: " + jobId);
+                    throw new JobExecutionException("Backup job data missing: " + context.getJobDetail().getKey());
                 }
+                
+                // The engine still decides when the host has capacity, but the Quartz job lasts
+                // until the backup is done. That is what lets Quartz recover an interrupted run.
+                BackupService backupService = (BackupService) schedulerContext.get("backupService");
+                BackupResult result = backupService.performBackup(job);
+                if (!result.isSuccess()) {
+                    log.warn("Scheduled backup {} failed: {}", job.getId(), result.getErrorMessage());
+                }
+            } catch (JobExecutionException e) {
+                throw e;
             } catch (Exception e) {
                 throw new JobExecutionException("Error executing backup job: " + e.getMessage(), e);
             }
         }
     }
     
-    private void backupMySql(BackupJob job, String outputFile) throws IOException, InterruptedException {
+    private StreamStats backupMySql(BackupJob job, String outputFile) throws IOException, InterruptedException {
+        return dumpToFile(job, mySqlDumpCommand(job), outputFile);
+    }
+    
+    private StreamStats backupPostgres(BackupJob job, String outputFile) throws IOException, InterruptedException {
+        return dumpToFile(job, postgresDumpCommand(job, null, null), outputFile);
+    }
+    
+    /**
+     * Directory-format pg_dump, the only format pg_dump can write with several jobs.
+     */
+    private void backupPostgresDirectory(BackupJob job, String outputDir) throws IOException, InterruptedException {
+        int jobs = postgresDumpJobs(job);
+        log.info("Dumping {} with {} parallel pg_dump jobs", job.getConnectionParams().getDatabase(), jobs);
+        if (job.getMaxRate() != null) {
+            log.warn("pg_dump writes directory-format dumps itself, the bandwidth limit does not apply");
+        }
+        executeCommand(job, postgresDumpCommand(job, outputDir, jobs));
+    }
+    
+    /**
+     * The requested job count, or with 0 one job per core but no more than there are tables:
+     * pg_dump parallelises per table, extra workers would only hold idle connections.
+     */
+    private int postgresDumpJobs(BackupJob job) {
+        if (job.getParallelJobs() > 0) {
+            return job.getParallelJobs();
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        try (Connection conn = connectionService.getConnection(DatabaseType.POSTGRESQL, job.getConnectionParams());
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT count(*) FROM pg_catalog.pg_tables "
+                     + "WHERE schemaname NOT IN ('pg_catalog', 'information_schema')")) {
+            rs.next();
+            return Math.max(1, Math.min(cores, rs.getInt(1)));
+        } catch (SQLException e) {
+            log.warn("Could not count tables, using {} jobs: {}", cores, e.getMessage());
+            return cores;
+        }
+    }
+    
+    private StreamStats backupMongoDB(BackupJob job, String outputFile) throws IOException, InterruptedException {
+        return dumpToFile(job, mongoDumpCommand(job), outputFile);
+    }
+    
+    /**
+     * Dump tools write to stdout and the file is written here, so the dump passes through
+     * the job's bandwidth limit like a streamed one and is checksummed on the way.
+     */
+    private StreamStats dumpToFile(BackupJob job, ProcessBuilder pb, String outputFile)
+            throws IOException, InterruptedException {
+        Path path = Paths.get(outputFile);
+        return streamCommand(job, pb, bandwidthService.forJob(job.getMaxRate()), input -> {
+            ChecksumOutputStream out = checksumService.wrap(Files.newOutputStream(path));
+            long size;
+            try (out) {
+                size = IOUtils.copyLarge(input, out, new byte[BufferPool.BUFFER_SIZE]);
+            }
+            return StreamStats.builder()
+                    .filePath(outputFile)
+                    .rawBytes(size)
+                    .compressedBytes(size)
+                    .checksum(out.getChecksum())
+                    .build();
+        });
+    }
+    
+    private SqliteSnapshot backupSqlite(BackupJob job, String outputFile) throws IOException {
+        // The online backup API gives a consistent copy even while the database is written to
+        return sqliteOnlineBackupService.backup(job, outputFile);
+    }
+    
+    /**
+     * Takes a consistent snapshot of the SQLite database and streams it into the archive,
+     * page by page. Full backups record the page map that later deltas are diffed against.
+     */
+    private StreamStats streamSqliteBackup(BackupJob job, String backupFilePath, boolean incremental,
+                                           BackupResult.BackupResultBuilder resultBuilder) throws IOException {
+        long snapshotStart = System.nanoTime();
+        SqliteSnapshot snapshot = sqliteOnlineBackupService.backup(job, backupFilePath + ".snapshot");
+        long snapshotMillis = millisSince(snapshotStart);
+        resultBuilder.pagesCopied(snapshot.getPageCount())
+                .pagesPerSecond(snapshot.getPagesPerSecond());
+        
+        try {
+            StreamStats stats;
+            if (!incremental) {
+                stats = sqlitePageDeltaService.backupFull(job, snapshot.getFilePath(), backupFilePath);
+            } else {
+                String parent = findParentBackup(job);
+                resultBuilder.parentBackup(parent);
+                stats = sqlitePageDeltaService.backupIncremental(job, snapshot.getFilePath(), backupFilePath, parent);
+            }
+            // The snapshot is the dump, packing its pages the compression
+            stats.setSourceMillis(snapshotMillis);
+            return stats;
+        } finally {
+            Files.deleteIfExists(Paths.get(snapshot.getFilePath()));
+        }
+    }
+    
+    private StreamStats streamBackup(BackupJob job, StreamSink sink) throws IOException, InterruptedException {
+        Throttle throttle = bandwidthService.forJob(job.getMaxRate());
+        switch (job.getDatabaseType()) {
+            case MYSQL:
+                return streamCommand(job, mySqlDumpCommand(job), throttle, sink);
+            case POSTGRESQL:
+                return streamCommand(job, postgresDumpCommand(job, null, null), throttle, sink);
+            case MONGODB:
+                return streamCommand(job, mongoDumpCommand(job), throttle, sink);
+            default:
+                throw new UnsupportedOperationException("Unsupported database type: " + job.getDatabaseType());
+        }
+    }
+    
+    /**
+     * Finds the backup an incremental one builds on: the newest earlier backup of the same
+     * database for INCREMENTAL, the newest full (non-manifest, non-delta) backup for DIFFERENTIAL.
+     * The catalog answers this directly; backups from before it existed are found by name.
+     */
+    private String findParentBackup(BackupJob job) throws IOException {
+        boolean fullOnly = job.getBackupType() == BackupType.DIFFERENTIAL;
+        BackupType parentType = fullOnly ? BackupType.FULL : null;
+        Optional<CatalogEntry> cataloged = catalogService.latest(job.getBackupPath(), job.getDatabaseType(),
+                job.getConnectionParams().getHost(), job.getConnectionParams().getDatabase(), parentType);
+        if (cataloged.isPresent() && Files.exists(Paths.get(cataloged.get().getFilePath()))) {
+            return Paths.get(cataloged.get().getFilePath()).getFileName().toString();
+        }
+        // File names don't tell hosts apart. Once another host's backups of the database are
+        // cataloged, a match by name could be one of them.
+        if (catalogService.latest(job.getBackupPath(), job.getDatabaseType(), null,
+                job.getConnectionParams().getDatabase(), parentType).isPresent()) {
+            return null;
+        }
+        
+        String prefix = backupNamePrefix(job);
+        try (Stream<Path> files = Files.list(Paths.get(job.getBackupPath()))) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix))
+                    .filter(name -> !name.endsWith(".pagemap"))
+                    .filter(name -> !checksumService.isSidecar(name))
+                    .filter(name -> !fullOnly || !(name.endsWith(".manifest") || name.contains(".delta")))
+                    .max(Comparator.naturalOrder())
+                    .orElse(null);
+        }
+    }
+    
+    /**
+     * Common file name prefix of every backup of the job's database. SQLite databases are
+     * file paths, so only their file name is used.
+     */
+    private String backupNamePrefix(BackupJob job) {
+        String database = job.getConnectionParams().getDatabase();
+        if (job.getDatabaseType() == DatabaseType.SQLITE) {
+            database = Paths.get(database).getFileName().toString();
+        }
+        return String.format("%s_%s_", job.getDatabaseType().toString().toLowerCase(), database);
+    }
+    
+    private ProcessBuilder mySqlDumpCommand(BackupJob job) {
         String host = job.getConnectionParams().getHost();
         int port = job.getConnectionParams().getPort() != null ? job.getConnectionParams().getPort() : 3306;
         String username = job.getConnectionParams().getUsername();
         String password = job.getConnectionParams().getPassword();
         String database = job.getConnectionParams().getDatabase();
         
-        ProcessBuilder pb = new ProcessBuilder(
+        return new ProcessBuilder(
                 "mysqldump",
                 "--host=" + host,
                 "--port=" + port,
@@ -249,108 +625,136 @@ public class BackupServiceImpl implements BackupService {
                 "--events",
                 database
         );
-        
-        executeCommand(pb, outputFile);
     }
     
-    private void backupPostgres(BackupJob job, String outputFile) throws IOException, InterruptedException {
+    /**
+     * Builds the pg_dump command. When {@code outputFile} is null the dump is written to stdout.
+     * With a job count the dump is written in directory format into {@code outputFile}.
+     */
+    private ProcessBuilder postgresDumpCommand(BackupJob job, String outputFile, Integer jobs) {
         String host = job.getConnectionParams().getHost();
         int port = job.getConnectionParams().getPort() != null ? job.getConnectionParams().getPort() : 5432;
         String username = job.getConnectionParams().getUsername();
         String database = job.getConnectionParams().getDatabase();
         
-        // Set PGPASSWORD environment variable for password
-        ProcessBuilder pb = new ProcessBuilder(
+        List<String> command = new ArrayList<>(Arrays.asList(
                 "pg_dump",
                 "-h", host,
                 "-p", String.valueOf(port),
                 "-U", username,
-                "-F", "c", // Custom format
                 "-b", // Include large objects
-                "-v", // Verbose
-                "-f", outputFile,
-                database
-        );
+                "-v" // Verbose
+        ));
+        if (jobs != null) {
+            command.addAll(Arrays.asList("-F", "d", "-j", String.valueOf(jobs)));
+            if (job.isCompress()) {
+                // The whole directory is compressed with the job's codec afterwards
+                command.addAll(Arrays.asList("-Z", "0"));
+            }
+        } else {
+            command.addAll(Arrays.asList("-F", "c")); // Custom format
+        }
+        if (job.getBackupType() == BackupType.INCREMENTAL || job.getBackupType() == BackupType.DIFFERENTIAL) {
+            // Leave the custom-format dump uncompressed so unchanged data deduplicates
+            command.add("-Z");
+            command.add("0");
+        }
+        if (outputFile != null) {
+            command.add("-f");
+            command.add(outputFile);
+        }
+        command.add(database);
         
+        // Set PGPASSWORD environment variable for password
+        ProcessBuilder pb = new ProcessBuilder(command);
         pb.environment().put("PGPASSWORD", job.getConnectionParams().getPassword());
-        
-        executeCommand(pb, null);
+        return pb;
     }
     
-    private void backupMongoDB(BackupJob job, String outputFile) throws IOException, InterruptedException {
+    /**
+     * Builds the mongodump command for a single archive written to stdout.
+     */
+    private ProcessBuilder mongoDumpCommand(BackupJob job) {
         String host = job.getConnectionParams().getHost();
         int port = job.getConnectionParams().getPort() != null ? job.getConnectionParams().getPort() : 27017;
         String username = job.getConnectionParams().getUsername();
         String password = job.getConnectionParams().getPassword();
         String database = job.getConnectionParams().getDatabase();
         
-        // Create directory for the backup
-        Path outputDir = Paths.get(outputFile);
-        Files.createDirectories(outputDir);
-        
-        ProcessBuilder pb;
+        List<String> command = new ArrayList<>(Arrays.asList(
+                "mongodump",
+                "--host", host,
+                "--port", String.valueOf(port)
+        ));
         if (username != null && !username.isEmpty()) {
-            pb = new ProcessBuilder(
-                    "mongodump",
-                    "--host", host,
-                    "--port", String.valueOf(port),
-                    "--username", username,
-                    "--password", password,
-                    "--db", database,
-                    "--out", outputDir.toString()
-            );
-        } else {
-            pb = new ProcessBuilder(
-                    "mongodump",
-                    "--host", host,
-                    "--port", String.valueOf(port),
-                    "--db", database,
-                    "--out", outputDir.toString()
-            );
+            command.addAll(Arrays.asList("--username", username, "--password", password));
+        }
+        command.addAll(Arrays.asList("--db", database));
+        command.add("--archive");
+        if (job.getParallelJobs() != null) {
+            // Collections are interleaved into the archive, mongodump's own default is 4
+            int collections = job.getParallelJobs() > 0
+                    ? job.getParallelJobs()
+                    : Runtime.getRuntime().availableProcessors();
+            command.add("--numParallelCollections=" + collections);
         }
         
-        executeCommand(pb, null);
+        return new ProcessBuilder(command);
     }
     
-    private void backupSqlite(BackupJob job, String outputFile) throws IOException, InterruptedException {
-        String database = job.getConnectionParams().getDatabase();
-        
-        // For SQLite, we just copy the database file
-        Files.copy(Paths.get(database), Paths.get(outputFile));
+    private void executeCommand(BackupJob job, ProcessBuilder pb) throws IOException, InterruptedException {
+        // Output is drained while the tool runs, pg_dump -v would otherwise fill the pipe and stall
+        pb.redirectErrorStream(true);
+        ProcessResult result = processSupervisor.start(job.getId(), pb).waitFor();
+        if (!result.isSuccess()) {
+            throw new IOException(result.describe());
+        }
     }
     
-    private void executeCommand(ProcessBuilder pb, String outputFile) throws IOException, InterruptedException {
-        pb.redirectErrorStream(true);
+    /**
+     * Runs a dump command whose stdout is the backup itself and hands it to the sink.
+     * Stderr is drained by the supervisor so a chatty tool can't block the pipe.
+     * The time the sink spent waiting on stdout, throttling included, is reported as the
+     * stats' source time.
+     */
+    private StreamStats streamCommand(BackupJob job, ProcessBuilder pb, Throttle throttle, StreamSink sink)
+            throws IOException, InterruptedException {
+        SupervisedProcess process = processSupervisor.startStreaming(job.getId(), pb);
         
-        Process process;
-        if (outputFile != null) {
-            pb.redirectOutput(ProcessBuilder.Redirect.to(new File(outputFile)));
-            process = pb.start();
-        } else {
-            process = pb.start();
+        StreamStats stats;
+        try (TimedInputStream input = new TimedInputStream(throttle.wrap(process.getInputStream()))) {
+            stats = sink.write(input);
+            stats.setSourceMillis(input.getReadMillis());
+        } catch (IOException e) {
+            process.cancel("writing the dump failed: " + e.getMessage());
+            process.waitFor();
+            throw e;
         }
         
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                StringBuilder output = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
-                throw new IOException("Command exited with code " + exitCode + ": " + output);
-            }
+        ProcessResult result = process.waitFor();
+        if (!result.isSuccess()) {
+            Files.deleteIfExists(Paths.get(stats.getFilePath()));
+            throw new IOException(result.describe());
         }
+        return stats;
     }
     
-    private String getFileExtension(DatabaseType type) {
+    /**
+     * Consumes a dump stream and reports where it ended up.
+     */
+    @FunctionalInterface
+    private interface StreamSink {
+        StreamStats write(InputStream input) throws IOException;
+    }
+    
+    private String getFileExtension(DatabaseType type, boolean parallel) {
         switch (type) {
             case MYSQL:
-                return "sql";
+                return parallel ? "tables" : "sql";
             case POSTGRESQL:
-                return "dump";
+                return parallel ? "dir" : "dump";
             case MONGODB:
-                return "dir";
+                return parallel ? "bson" : "archive";
             case SQLITE:
                 return "db";
             default:
@@ -358,17 +762,49 @@ public class BackupServiceImpl implements BackupService {
         }
     }
     
-    private String formatFileSize(long size) {
-        final String[] units = new String[] { "B", "KB", "MB", "GB", "TB" };
-        int unitIndex = 0;
-        double fileSize = size;
-        
-        while (fileSize > 1024 && unitIndex < units.length - 1) {
-            fileSize /= 1024;
-            unitIndex++;
+    /**
+     * Concurrency is capped per database server; SQLite files are local disk I/O and
+     * share one key.
+     */
+    private String hostKey(BackupJob job) {
+        if (job.getDatabaseType() == DatabaseType.SQLITE) {
+            return "sqlite@local";
         }
-        
-        return String.format("%.2f %s", fileSize, units[unitIndex]);
+        ConnectionParams params = job.getConnectionParams();
+        return params.getHost() + (params.getPort() != null ? ":" + params.getPort() : "");
+    }
+    
+    private BackupResult failedBeforeStart(BackupJob job, String errorMsg) {
+        LocalDateTime now = LocalDateTime.now();
+        return BackupResult.builder()
+                .jobId(job.getId())
+                .databaseType(job.getDatabaseType())
+                .host(job.getConnectionParams().getHost())
+                .databaseName(job.getConnectionParams().getDatabase())
+                .backupType(job.getBackupType())
+                .startTime(now)
+                .endTime(now)
+                .success(false)
+                .errorMessage(errorMsg)
+                .build();
+    }
+    
+    /**
+     * Adds the result to the catalog and the metrics. Catalog problems are logged, never
+     * allowed to fail the backup itself.
+     */
+    private BackupResult recordResult(BackupJob job, BackupResult result) {
+        try {
+            catalogService.record(job.getBackupPath(), result);
+        } catch (IOException e) {
+            log.warn("Backup not recorded in catalog: {}", e.getMessage());
+        }
+        metricsService.recordBackup(result);
+        return result;
+    }
+    
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
     }
     
 }
@@ -0,0 +1,224 @@
+package com.DbBackup.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.VerifyResult;
+import com.DbBackup.service.BackupVerifyService;
+import com.DbBackup.service.ChecksumService;
+import com.DbBackup.service.ChunkStoreService;
+import com.DbBackup.service.CompressionCodec;
+import com.DbBackup.service.CompressionService;
+import com.DbBackup.service.FramedArchiveService;
+import com.DbBackup.service.MongoBsonDumpService;
+import com.DbBackup.service.MySqlParallelDumpService;
+import com.DbBackup.service.PostgresCopyDumpService;
+import com.DbBackup.util.ChecksumInputStream;
+import com.DbBackup.util.ContentHash;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BackupVerifyServiceImpl implements BackupVerifyService {
+
+    private static final String CHUNK_DIR = "chunks";
+
+    private final ChecksumService checksumService;
+    private final CompressionService compressionService;
+    private final FramedArchiveService framedArchiveService;
+    private final ChunkStoreService chunkStoreService;
+    private final MySqlParallelDumpService mySqlParallelDumpService;
+    private final PostgresCopyDumpService postgresCopyDumpService;
+    private final MongoBsonDumpService mongoBsonDumpService;
+    private final BufferPool bufferPool;
+
+    @Override
+    public List<VerifyResult> verify(List<String> paths, int jobs) {
+        List<Target> targets = new ArrayList<>();
+        List<VerifyResult> results = new ArrayList<>();
+        for (String path : paths) {
+            try {
+                collect(Paths.get(path), true, targets);
+            } catch (IOException e) {
+                results.add(failed(path, null, "Could not read: " + e.getMessage()));
+            }
+        }
+        if (targets.isEmpty()) {
+            return results;
+        }
+
+        log.info("Verifying {} backup artifacts with {} jobs", targets.size(), jobs);
+        Set<String> verifiedChunks = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs, targets.size())));
+        try {
+            List<Future<VerifyResult>> futures = new ArrayList<>();
+            for (Target target : targets) {
+                futures.add(executor.submit(() -> verify(target, verifiedChunks)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(failed(targets.get(i).path.toString(), targets.get(i).expectedChecksum,
+                            e.getCause().getMessage()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Adds a path to verify. Explicitly named files are always verified; files found in a
+     * directory only if they are backups, i.e. have a sidecar or are chunk manifests.
+     */
+    private void collect(Path path, boolean named, List<Target> targets) throws IOException {
+        if (Files.isDirectory(path)) {
+            // Per-file checksums of table dumps live in the dump's manifest
+            Map<String, String> files = null;
+            if (mySqlParallelDumpService.isTableDump(path.toString())) {
+                files = mySqlParallelDumpService.listFiles(path.toString());
+            } else if (postgresCopyDumpService.isTableDump(path.toString())) {
+                files = postgresCopyDumpService.listFiles(path.toString());
+            } else if (mongoBsonDumpService.isCollectionDump(path.toString())) {
+                files = mongoBsonDumpService.listFiles(path.toString());
+            }
+            if (files != null) {
+                for (Map.Entry<String, String> file : files.entrySet()) {
+                    targets.add(new Target(path.resolve(file.getKey()), file.getValue()));
+                }
+                return;
+            }
+            if (!named && CHUNK_DIR.equals(path.getFileName().toString())) {
+                return;
+            }
+            List<Path> children;
+            try (Stream<Path> list = Files.list(path)) {
+                children = list.sorted().collect(Collectors.toList());
+            }
+            for (Path child : children) {
+                collect(child, false, targets);
+            }
+            return;
+        }
+
+        String file = path.toString();
+        if (checksumService.isSidecar(file)) {
+            return;
+        }
+        Optional<String> expected = checksumService.readSidecar(file);
+        if (named || expected.isPresent() || chunkStoreService.isManifest(file)) {
+            targets.add(new Target(path, expected.orElse(null)));
+        }
+    }
+
+    private VerifyResult verify(Target target, Set<String> verifiedChunks) {
+        String file = target.path.toString();
+        long start = System.currentTimeMillis();
+        ContentHash hash = target.expectedChecksum != null
+                ? ContentHash.forChecksum(target.expectedChecksum)
+                : ContentHash.create(ContentHash.XXH64);
+
+        long bytesRead;
+        long uncompressed;
+        try (ChecksumInputStream in = new ChecksumInputStream(Files.newInputStream(target.path), hash)) {
+            Optional<CompressionCodec> codec = compressionService.detectCodec(file);
+            if (codec.isPresent()) {
+                // One pass: the compressed bytes are hashed as the codec pulls them in
+                try (InputStream decompressed = codec.get().decompress(in)) {
+                    uncompressed = drain(decompressed);
+                    drain(in);
+                }
+            } else {
+                drain(in);
+                uncompressed = in.getBytesRead();
+            }
+            bytesRead = in.getBytesRead();
+
+            // Containers whose content lives elsewhere or needs random access get a second read
+            if (chunkStoreService.isManifest(file)) {
+                uncompressed = chunkStoreService.verifyChunks(file, verifiedChunks);
+            } else if (codec.isEmpty() && framedArchiveService.isFramed(file)) {
+                try (InputStream dump = framedArchiveService.open(file, null)) {
+                    uncompressed = drain(dump);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return failed(file, target.expectedChecksum, "Corrupt or unreadable: " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        }
+
+        String checksum = hash.checksum();
+        VerifyResult.VerifyResultBuilder result = VerifyResult.builder()
+                .path(file)
+                .checksum(checksum)
+                .expectedChecksum(target.expectedChecksum)
+                .bytesRead(bytesRead)
+                .uncompressedBytes(uncompressed)
+                .millis(System.currentTimeMillis() - start);
+        if (target.expectedChecksum == null) {
+            return result.success(true).message("No recorded checksum, content readable").build();
+        }
+        if (!target.expectedChecksum.equals(checksum)) {
+            return result.success(false).message("Checksum mismatch").build();
+        }
+        return result.success(true).build();
+    }
+
+    private long drain(InputStream in) throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            byte[] array = buffer.array();
+            long total = 0;
+            int read;
+            while ((read = in.read(array)) >= 0) {
+                total += read;
+            }
+            return total;
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private static VerifyResult failed(String path, String expectedChecksum, String message) {
+        return VerifyResult.builder()
+                .path(path)
+                .success(false)
+                .expectedChecksum(expectedChecksum)
+                .message(message)
+                .build();
+    }
+
+    private static class Target {
+        final Path path;
+        final String expectedChecksum;
+
+        Target(Path path, String expectedChecksum) {
+            this.path = path;
+            this.expectedChecksum = expectedChecksum;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.DbBackup.service.impl;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.service.BandwidthService;
+import com.DbBackup.util.DataRate;
+import com.DbBackup.util.Throttle;
+import com.DbBackup.util.TokenBucket;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Profiles are {@code HH:mm-HH:mm=rate} entries separated by commas, for example
+ * {@code 08:00-20:00=50MB/s,20:00-08:00=unlimited}. A window may wrap past midnight and the
+ * first matching one wins; outside all windows the default rate applies. The override is
+ * exposed over JMX so operators can slow down or release running backups.
+ */
+@Service
+@Slf4j
+@ManagedResource(objectName = "com.DbBackup:type=Bandwidth", description = "Backup and restore bandwidth limits")
+public class BandwidthServiceImpl implements BandwidthService {
+
+    private final long defaultRate;
+    private final List<Profile> profiles;
+    private final AtomicReference<Long> override = new AtomicReference<>();
+    private final TokenBucket nodeBucket = new TokenBucket(this::getNodeRate);
+
+    public BandwidthServiceImpl(@Value("${backup.bandwidth.default-rate:}") String defaultRate,
+                                @Value("${backup.bandwidth.profiles:}") String profiles) {
+        this.defaultRate = DataRate.parse(defaultRate);
+        this.profiles = parseProfiles(profiles);
+        if (!this.profiles.isEmpty() || this.defaultRate > 0) {
+            log.info("Node bandwidth limited by {} profile(s), {} otherwise",
+                    this.profiles.size(), DataRate.format(this.defaultRate));
+        }
+    }
+
+    @Override
+    public Throttle forJob(Long maxBytesPerSecond) {
+        List<TokenBucket> buckets = new ArrayList<>();
+        if (maxBytesPerSecond != null && maxBytesPerSecond > 0) {
+            long rate = maxBytesPerSecond;
+            buckets.add(new TokenBucket(() -> rate));
+        }
+        buckets.add(nodeBucket);
+        return new Throttle(buckets);
+    }
+
+    @Override
+    public long getNodeRate() {
+        Long overridden = override.get();
+        if (overridden != null) {
+            return overridden;
+        }
+        LocalTime now = LocalTime.now();
+        for (Profile profile : profiles) {
+            if (profile.contains(now)) {
+                return profile.rate;
+            }
+        }
+        return defaultRate;
+    }
+
+    @Override
+    public void setNodeRateOverride(Long bytesPerSecond) {
+        override.set(bytesPerSecond);
+        log.info("Node bandwidth {}", bytesPerSecond != null
+                ? "set to " + DataRate.format(bytesPerSecond)
+                : "back to profiles, now " + DataRate.format(getNodeRate()));
+    }
+
+    @ManagedAttribute(description = "Node-wide rate in effect now")
+    public String getCurrentRate() {
+        return DataRate.format(getNodeRate());
+    }
+
+    @ManagedOperation(description = "Override the node-wide rate, e.g. 20MB/s or unlimited")
+    public void setRate(String rate) {
+        setNodeRateOverride(DataRate.parse(rate));
+    }
+
+    @ManagedOperation(description = "Drop the override and follow the time-of-day profiles again")
+    public void clearRate() {
+        setNodeRateOverride(null);
+    }
+
+    private static List<Profile> parseProfiles(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return Collections.emptyList();
+        }
+        List<Profile> profiles = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split("=", 2);
+            String[] window = parts[0].split("-");
+            if (parts.length != 2 || window.length != 2) {
+                throw new IllegalArgumentException("Invalid bandwidth profile: " + entry
+                        + " (expected HH:mm-HH:mm=rate)");
+            }
+            profiles.add(new Profile(LocalTime.parse(window[0].trim()), LocalTime.parse(window[1].trim()),
+                    DataRate.parse(parts[1])));
+        }
+        return profiles;
+    }
+
+    private static class Profile {
+        private final LocalTime from;
+        private final LocalTime to;
+        private final long rate;
+
+        Profile(LocalTime from, LocalTime to, long rate) {
+            this.from = from;
+            this.to = to;
+            this.rate = rate;
+        }
+
+        boolean contains(LocalTime time) {
+            if (from.isBefore(to)) {
+                return !time.isBefore(from) && time.isBefore(to);
+            }
+            // Wraps past midnight
+            return !time.isBefore(from) || time.isBefore(to);
+        }
+    }
+}
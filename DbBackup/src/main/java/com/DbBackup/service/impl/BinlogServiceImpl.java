@@ -0,0 +1,627 @@
+package com.DbBackup.service.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.BackupType;
+import com.DbBackup.model.BinlogPosition;
+import com.DbBackup.model.BinlogSegment;
+import com.DbBackup.model.CatalogEntry;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.DatabaseType;
+import com.DbBackup.model.ProcessResult;
+import com.DbBackup.model.RestoreOptions;
+import com.DbBackup.service.BackupCatalogService;
+import com.DbBackup.service.BinlogService;
+import com.DbBackup.service.ChecksumService;
+import com.DbBackup.service.CompressionCodec;
+import com.DbBackup.service.CompressionService;
+import com.DbBackup.service.DatabaseConnectionService;
+import com.DbBackup.service.MySqlParallelDumpService;
+import com.DbBackup.service.ProcessSupervisor;
+import com.DbBackup.service.SupervisedProcess;
+import com.DbBackup.util.ChecksumOutputStream;
+import com.DbBackup.util.MySqlBinlogStatus;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * mysqlbinlog --raw writes the server's binlog files unchanged into a spool directory. A
+ * file is shipped once mysqlbinlog has moved on to the next one, so the segments lag the
+ * server by at most one binlog file; the rotate interval bounds that by asking the server
+ * to start a new file. The capturing user needs REPLICATION SLAVE and REPLICATION CLIENT,
+ * and RELOAD for the rotation.
+ */
+@Service
+@Slf4j
+public class BinlogServiceImpl implements BinlogService {
+
+    static final String BINLOG_DIR = "binlog";
+    private static final String SPOOL_DIR = ".spool";
+    private static final String INDEX_FILE = "segments.index";
+    private static final String INDEX_HEADER = "# db-backup mysql binlog segments v1";
+    private static final String SEGMENT_SECTION = "---";
+
+    // Binlog v4 event header: timestamp, type, server id, event size, next position, flags
+    private static final byte[] BINLOG_MAGIC = {(byte) 0xfe, 'b', 'i', 'n'};
+    private static final int EVENT_HEADER_BYTES = 19;
+    private static final int STOP_EVENT = 3;
+    private static final int ROTATE_EVENT = 4;
+    // Written at the start of every file, they carry no changes
+    private static final int FORMAT_DESCRIPTION_EVENT = 15;
+    private static final int PREVIOUS_GTIDS_EVENT = 35;
+    // Events made up by the sender, such as the rotate event at the start of a dump
+    private static final int ARTIFICIAL_FLAG = 0x20;
+
+    private static final long POLL_MILLIS = 2000;
+    private static final DateTimeFormatter MYSQL_DATETIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final CompressionService compressionService;
+    private final ChecksumService checksumService;
+    private final ProcessSupervisor processSupervisor;
+    private final DatabaseConnectionService connectionService;
+    private final BackupCatalogService catalogService;
+    private final MySqlParallelDumpService mySqlParallelDumpService;
+    private final BufferPool bufferPool;
+    private final long rotateIntervalMillis;
+
+    public BinlogServiceImpl(CompressionService compressionService,
+                             ChecksumService checksumService,
+                             ProcessSupervisor processSupervisor,
+                             DatabaseConnectionService connectionService,
+                             BackupCatalogService catalogService,
+                             MySqlParallelDumpService mySqlParallelDumpService,
+                             BufferPool bufferPool,
+                             @Value("${backup.binlog.rotate-interval:300000}") long rotateIntervalMillis) {
+        this.compressionService = compressionService;
+        this.checksumService = checksumService;
+        this.processSupervisor = processSupervisor;
+        this.connectionService = connectionService;
+        this.catalogService = catalogService;
+        this.mySqlParallelDumpService = mySqlParallelDumpService;
+        this.bufferPool = bufferPool;
+        this.rotateIntervalMillis = rotateIntervalMillis;
+    }
+
+    @Override
+    public int capture(BackupJob job, int serverId) throws IOException, InterruptedException {
+        if (job.getDatabaseType() != DatabaseType.MYSQL) {
+            throw new IllegalArgumentException("Binary log capture is for MySQL, not " + job.getDatabaseType());
+        }
+        ConnectionParams params = job.getConnectionParams();
+        Path segmentDir = Paths.get(job.getBackupPath(), BINLOG_DIR, params.getDatabase());
+        Path spool = segmentDir.resolve(SPOOL_DIR);
+        Files.createDirectories(spool);
+        createIndex(segmentDir, params.getDatabase());
+
+        CompressionOptions options = CompressionOptions.forJob(job);
+        CompressionCodec codec = job.isCompress() ? compressionService.getCodec(options.getCodec()) : null;
+        Optional<String> baseBackup = catalogService.latest(job.getBackupPath(), DatabaseType.MYSQL,
+                params.getHost(), params.getDatabase(), BackupType.FULL).map(CatalogEntry::getFilePath);
+        Shipper shipper = new Shipper(job, segmentDir, spool, codec, options);
+
+        // Files left by a capture that stopped are shipped before the tail starts over
+        int shipped = shipper.ship(true);
+        String startFile = startFile(params, segmentDir, baseBackup);
+
+        ProcessBuilder pb = new ProcessBuilder(
+                "mysqlbinlog",
+                "--read-from-remote-server",
+                "--host=" + params.getHost(),
+                "--port=" + (params.getPort() != null ? params.getPort() : 3306),
+                "--user=" + params.getUsername(),
+                "--password=" + params.getPassword(),
+                "--raw",
+                "--stop-never",
+                "--connection-server-id=" + serverId,
+                // A prefix for the file names, which are the server's own
+                "--result-file=" + spool.toAbsolutePath() + "/",
+                startFile);
+        pb.redirectErrorStream(true);
+        SupervisedProcess process = processSupervisor.startUnbounded(job.getId(), pb);
+        log.info("Capturing the binary log of {} from {} into {}", params.getHost(), startFile, segmentDir);
+
+        long lastRotation = System.currentTimeMillis();
+        try {
+            while (process.isAlive()) {
+                Thread.sleep(POLL_MILLIS);
+                shipped += shipper.ship(false);
+                if (rotateIntervalMillis > 0 && System.currentTimeMillis() - lastRotation >= rotateIntervalMillis) {
+                    rotateIfWritten(params, spool);
+                    lastRotation = System.currentTimeMillis();
+                }
+            }
+        } catch (InterruptedException e) {
+            process.cancel("interrupted");
+            process.waitFor();
+            throw e;
+        }
+
+        ProcessResult result = process.waitFor();
+        // The tool is done with its last file, which goes as far as it got
+        shipped += shipper.ship(true);
+        if (result.getKillReason() == null && result.getExitCode() != 0) {
+            throw new IOException("Binary log capture failed: " + result.describe());
+        }
+        log.info("Binary log capture of {} ended, {} segments shipped", params.getHost(), shipped);
+        return shipped;
+    }
+
+    void createIndex(Path segmentDir, String database) throws IOException {
+        if (!Files.exists(segmentDir.resolve(INDEX_FILE))) {
+            Files.write(segmentDir.resolve(INDEX_FILE), Arrays.asList(INDEX_HEADER,
+                    "database=" + database, SEGMENT_SECTION), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public List<BinlogSegment> listSegments(String segmentDir) throws IOException {
+        return readIndex(Paths.get(segmentDir)).segments;
+    }
+
+    /**
+     * Runs mysqlbinlog over the segments into the mysql client. Only events of the restored
+     * database are applied, renamed if it is restored under another name. GTIDs are left
+     * out, otherwise a server that has executed these transactions before would skip them.
+     */
+    @Override
+    public boolean replay(String baseBackup, ConnectionParams params, RestoreOptions options)
+            throws IOException, InterruptedException {
+        BinlogPosition start = mySqlParallelDumpService.binlogPosition(baseBackup)
+                .orElseThrow(() -> new IOException(baseBackup + " has no binlog position to replay from"));
+        Path segmentDir = options.getBinlogDir() != null
+                ? Paths.get(options.getBinlogDir())
+                : Paths.get(baseBackup).toAbsolutePath().getParent().resolve(BINLOG_DIR).resolve(params.getDatabase());
+        SegmentIndex index = readIndex(segmentDir);
+        List<BinlogSegment> chain = replayChain(index.segments, start, options);
+
+        Path work = Files.createTempDirectory("binlog-replay");
+        try {
+            List<String> command = new ArrayList<>(Arrays.asList(
+                    "mysqlbinlog",
+                    "--skip-gtids",
+                    // Applies to the first file, the later ones are read from their start
+                    "--start-position=" + start.getPosition()));
+            if (options.getStopTime() != null) {
+                command.add("--stop-datetime=" + options.getStopTime().format(MYSQL_DATETIME));
+            }
+            if (options.getStopPosition() != null) {
+                // Applies to the last file, which is the stop position's
+                command.add("--stop-position=" + options.getStopPosition().getPosition());
+            }
+            String source = index.database != null ? index.database : params.getDatabase();
+            if (!source.equals(params.getDatabase())) {
+                command.add("--rewrite-db=" + source + "->" + params.getDatabase());
+            }
+            // Filters on the rewritten name
+            command.add("--database=" + params.getDatabase());
+            for (BinlogSegment segment : chain) {
+                Path file = work.resolve(segment.getBinlogFile());
+                try (InputStream in = compressionService.openDecompressed(
+                        segmentDir.resolve(segment.getSegmentFile()).toString());
+                     FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    bufferPool.copy(in, out);
+                }
+                command.add(file.toString());
+            }
+            log.info("Replaying {} binlog segments from {} up to {}", chain.size(), start,
+                    options.getStopPosition() != null ? options.getStopPosition() : options.getStopTime());
+            return pipe(new ProcessBuilder(command), mysqlCommand(params), options.getJobId());
+        } finally {
+            FileUtils.deleteQuietly(work.toFile());
+        }
+    }
+
+    /**
+     * The segments from the one holding the start position to the one holding the stop
+     * position or time, which have to follow each other without a missing file.
+     */
+    static List<BinlogSegment> replayChain(List<BinlogSegment> segments, BinlogPosition start, RestoreOptions options)
+            throws IOException {
+        List<BinlogSegment> chain = new ArrayList<>();
+        boolean started = false;
+        for (BinlogSegment segment : segments) {
+            if (!started) {
+                if (!segment.getBinlogFile().equals(start.getFile())) {
+                    continue;
+                }
+                started = true;
+            }
+            if (!chain.isEmpty()) {
+                if (options.getStopTime() != null && segment.getFirstEvent() != null
+                        && segment.getFirstEvent().isAfter(options.getStopTime())) {
+                    break;
+                }
+                BinlogSegment previous = chain.get(chain.size() - 1);
+                if (sequence(segment.getBinlogFile()) != sequence(previous.getBinlogFile()) + 1
+                        || !previous.isComplete()) {
+                    throw new IOException("The captured binary log has a gap after " + previous.getBinlogFile());
+                }
+            }
+            chain.add(segment);
+            if (options.getStopPosition() != null && segment.getBinlogFile().equals(options.getStopPosition().getFile())) {
+                return chain;
+            }
+        }
+
+        if (chain.isEmpty()) {
+            throw new IOException("No captured segment holds " + start.getFile()
+                    + ", the capture doesn't reach back to the backup");
+        }
+        if (options.getStopPosition() != null) {
+            throw new IOException("No captured segment holds " + options.getStopPosition().getFile());
+        }
+        BinlogSegment last = chain.get(chain.size() - 1);
+        if (options.getStopTime() != null && (last.getLastEvent() == null || last.getLastEvent().isBefore(options.getStopTime()))) {
+            log.warn("The captured binary log ends at {}, before {}; replaying all of it",
+                    last.getLastEvent(), options.getStopTime());
+        }
+        return chain;
+    }
+
+    private boolean pipe(ProcessBuilder reader, ProcessBuilder loader, String jobId)
+            throws IOException, InterruptedException {
+        loader.redirectErrorStream(true);
+        SupervisedProcess source = processSupervisor.startStreaming(jobId, reader);
+        SupervisedProcess sink;
+        try {
+            sink = processSupervisor.start(jobId, loader);
+        } catch (IOException e) {
+            source.cancel("could not start " + loader.command().get(0));
+            source.waitFor();
+            throw e;
+        }
+
+        try (InputStream in = source.getInputStream();
+             OutputStream out = sink.getOutputStream()) {
+            bufferPool.copy(in, out);
+        } catch (IOException e) {
+            // One side exited early, its exit code tells why
+            log.debug("Binlog replay pipe closed: {}", e.getMessage());
+        }
+        ProcessResult read = source.waitFor();
+        ProcessResult load = sink.waitFor();
+        if (!read.isSuccess() || !load.isSuccess()) {
+            log.error("Binlog replay failed: {}", !read.isSuccess() ? read.describe() : load.describe());
+            return false;
+        }
+        return true;
+    }
+
+    private ProcessBuilder mysqlCommand(ConnectionParams params) {
+        int port = params.getPort() != null ? params.getPort() : 3306;
+        return new ProcessBuilder(
+                "mysql",
+                "--host=" + params.getHost(),
+                "--port=" + port,
+                "--user=" + params.getUsername(),
+                "--password=" + params.getPassword(),
+                params.getDatabase()
+        );
+    }
+
+    /**
+     * The file after the last complete segment, or the one a partial segment was cut from.
+     * A new capture, or one whose next file the server has purged since, starts at the file
+     * of the latest full backup's position.
+     */
+    private String startFile(ConnectionParams params, Path segmentDir, Optional<String> baseBackup)
+            throws IOException {
+        List<String> available = query(params, "SHOW BINARY LOGS");
+        List<BinlogSegment> segments = readIndex(segmentDir).segments;
+        if (!segments.isEmpty()) {
+            BinlogSegment last = segments.get(segments.size() - 1);
+            String file = last.isComplete() ? nextFile(last.getBinlogFile()) : last.getBinlogFile();
+            if (available.contains(file)) {
+                return file;
+            }
+            log.warn("Binary log {} has been purged from {}, the capture continues from the latest full backup",
+                    file, params.getHost());
+        }
+
+        Optional<BinlogPosition> position = Optional.empty();
+        if (baseBackup.isPresent() && mySqlParallelDumpService.isTableDump(baseBackup.get())) {
+            position = mySqlParallelDumpService.binlogPosition(baseBackup.get());
+        }
+        if (position.isPresent()) {
+            if (!available.contains(position.get().getFile())) {
+                throw new IOException("Binary log " + position.get().getFile() + " of the latest full backup has been "
+                        + "purged from " + params.getHost() + "; take a new full backup");
+            }
+            return position.get().getFile();
+        }
+        String file;
+        try (Connection conn = connectionService.getConnection(DatabaseType.MYSQL, params)) {
+            file = MySqlBinlogStatus.read(conn).map(BinlogPosition::getFile)
+                    .orElseThrow(() -> new IOException("Binary logging is not enabled on " + params.getHost()));
+        } catch (SQLException e) {
+            throw new IOException("Reading the binary log status failed: " + e.getMessage(), e);
+        }
+        log.warn("No full backup of {} with a binlog position, capturing from {} on; "
+                + "take a full backup with --engine NATIVE to restore to points in time", params.getDatabase(), file);
+        return file;
+    }
+
+    /**
+     * Asks the server to start a new binlog file if the current one holds any changes, so
+     * they are shipped. An idle server is left alone rather than filled with empty files.
+     */
+    private void rotateIfWritten(ConnectionParams params, Path spool) throws IOException {
+        List<Path> files = spoolFiles(spool);
+        if (files.isEmpty() || scanEvents(files.get(files.size() - 1)).changes == 0) {
+            return;
+        }
+        try (Connection conn = connectionService.getConnection(DatabaseType.MYSQL, params);
+             Statement st = conn.createStatement()) {
+            st.execute("FLUSH BINARY LOGS");
+        } catch (SQLException e) {
+            log.warn("Could not rotate the binary log ({}), segments are shipped when the server rotates it",
+                    e.getMessage());
+        }
+    }
+
+    private List<String> query(ConnectionParams params, String sql) throws IOException {
+        List<String> values = new ArrayList<>();
+        try (Connection conn = connectionService.getConnection(DatabaseType.MYSQL, params);
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new IOException(sql + " failed: " + e.getMessage(), e);
+        }
+        return values;
+    }
+
+    private List<Path> spoolFiles(Path spool) throws IOException {
+        try (Stream<Path> list = Files.list(spool)) {
+            return list.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparingLong(path -> sequence(path.getFileName().toString())))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Walks the event headers of a binlog file. A file being written can end in a partial
+     * event, which is not counted.
+     */
+    static EventScan scanEvents(Path file) throws IOException {
+        EventScan scan = new EventScan();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(EVENT_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.limit(BINLOG_MAGIC.length);
+            if (channel.read(header, 0) < BINLOG_MAGIC.length) {
+                return scan;
+            }
+            if (!Arrays.equals(Arrays.copyOf(header.array(), BINLOG_MAGIC.length), BINLOG_MAGIC)) {
+                throw new IOException(file.getFileName() + " is not a binary log file");
+            }
+            long position = BINLOG_MAGIC.length;
+            while (position + EVENT_HEADER_BYTES <= size) {
+                header.clear();
+                while (header.hasRemaining() && channel.read(header, position + header.position()) > 0) {
+                    // Read the whole header
+                }
+                long eventSize = header.getInt(9) & 0xffffffffL;
+                if (eventSize < EVENT_HEADER_BYTES || position + eventSize > size) {
+                    break;
+                }
+                position += eventSize;
+                if ((header.getShort(17) & ARTIFICIAL_FLAG) != 0) {
+                    continue;
+                }
+                long timestamp = header.getInt(0) & 0xffffffffL;
+                if (timestamp > 0) {
+                    LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(timestamp), ZoneId.systemDefault());
+                    if (scan.firstEvent == null) {
+                        scan.firstEvent = time;
+                    }
+                    scan.lastEvent = time;
+                }
+                scan.lastType = header.get(4) & 0xff;
+                scan.events++;
+                if (scan.lastType != FORMAT_DESCRIPTION_EVENT && scan.lastType != PREVIOUS_GTIDS_EVENT) {
+                    scan.changes++;
+                }
+            }
+            scan.validBytes = position;
+        }
+        return scan;
+    }
+
+    // The numeric suffix of a binlog file name, e.g. 42 for binlog.000042
+    private static long sequence(String binlogFile) {
+        try {
+            return Long.parseLong(binlogFile.substring(binlogFile.lastIndexOf('.') + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String nextFile(String binlogFile) {
+        int separator = binlogFile.lastIndexOf('.');
+        String suffix = binlogFile.substring(separator + 1);
+        String next = String.valueOf(Long.parseLong(suffix) + 1);
+        while (next.length() < suffix.length()) {
+            next = "0" + next;
+        }
+        return binlogFile.substring(0, separator + 1) + next;
+    }
+
+    private SegmentIndex readIndex(Path segmentDir) throws IOException {
+        Path file = segmentDir.resolve(INDEX_FILE);
+        if (!Files.isRegularFile(file)) {
+            throw new IOException("No captured binary log in " + segmentDir);
+        }
+        SegmentIndex index = new SegmentIndex();
+        // Later lines for a file replace earlier ones, e.g. a partial segment
+        Map<String, BinlogSegment> segments = new LinkedHashMap<>();
+        boolean inSegments = false;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!inSegments) {
+                if (SEGMENT_SECTION.equals(line)) {
+                    inSegments = true;
+                } else if (line.startsWith("database=")) {
+                    index.database = line.substring("database=".length());
+                }
+                continue;
+            }
+            if (!line.isBlank()) {
+                String[] parts = line.split("\t", -1);
+                segments.put(parts[0], BinlogSegment.builder()
+                        .binlogFile(parts[0])
+                        .segmentFile(parts[1])
+                        .firstEvent(parts[2].isEmpty() ? null : LocalDateTime.parse(parts[2]))
+                        .lastEvent(parts[3].isEmpty() ? null : LocalDateTime.parse(parts[3]))
+                        .rawBytes(Long.parseLong(parts[4]))
+                        .checksum(parts[5])
+                        .complete(Boolean.parseBoolean(parts[6]))
+                        .baseBackup(parts[7].isEmpty() ? null : parts[7])
+                        .build());
+            }
+        }
+        index.segments = segments.values().stream()
+                .sorted(Comparator.comparingLong(segment -> sequence(segment.getBinlogFile())))
+                .collect(Collectors.toList());
+        return index;
+    }
+
+    private static String format(LocalDateTime time) {
+        return time != null ? time.toString() : "";
+    }
+
+    /**
+     * Moves finished spool files into compressed segments, one capture at a time.
+     */
+    class Shipper {
+        private final BackupJob job;
+        private final Path segmentDir;
+        private final Path spool;
+        private final CompressionCodec codec;
+        private final CompressionOptions options;
+
+        Shipper(BackupJob job, Path segmentDir, Path spool, CompressionCodec codec, CompressionOptions options) {
+            this.job = job;
+            this.segmentDir = segmentDir;
+            this.spool = spool;
+            this.codec = codec;
+            this.options = options;
+        }
+
+        /**
+         * Ships every spool file but the one mysqlbinlog is writing, or all of them once it
+         * has exited. Returns how many segments were written.
+         */
+        int ship(boolean all) throws IOException {
+            List<Path> files = spoolFiles(spool);
+            int count = all ? files.size() : files.size() - 1;
+            int shipped = 0;
+            for (int i = 0; i < count; i++) {
+                // mysqlbinlog only starts a file once the previous one is done
+                if (shipFile(files.get(i), i < files.size() - 1)) {
+                    shipped++;
+                }
+            }
+            return shipped;
+        }
+
+        private boolean shipFile(Path file, boolean followed) throws IOException {
+            EventScan scan = scanEvents(file);
+            String binlogFile = file.getFileName().toString();
+            if (scan.events == 0) {
+                // Nothing worth a segment, a restarted capture fetches the file again
+                Files.delete(file);
+                return false;
+            }
+            boolean complete = followed || scan.lastType == ROTATE_EVENT || scan.lastType == STOP_EVENT;
+
+            String segmentFile = binlogFile + (codec != null ? codec.getExtension() : "");
+            Path target = segmentDir.resolve(segmentFile);
+            Path temp = segmentDir.resolve(segmentFile + ".tmp");
+            ChecksumOutputStream hashed = checksumService.wrap(Files.newOutputStream(temp));
+            try (OutputStream out = codec != null ? codec.compress(hashed, options) : hashed;
+                 InputStream in = new BoundedInputStream(Files.newInputStream(file), scan.validBytes)) {
+                bufferPool.copy(in, out);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            // Replaces a partial segment of the same file
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checksumService.writeSidecar(target.toString(), hashed.getChecksum());
+
+            String baseBackup = baseBackup();
+            try (BufferedWriter writer = Files.newBufferedWriter(segmentDir.resolve(INDEX_FILE),
+                    StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+                writer.write(String.join("\t", binlogFile, segmentFile, format(scan.firstEvent),
+                        format(scan.lastEvent), String.valueOf(scan.validBytes), hashed.getChecksum(),
+                        String.valueOf(complete), baseBackup != null ? baseBackup : ""));
+                writer.newLine();
+            }
+            Files.delete(file);
+            log.info("Shipped binlog segment {} ({} events, {} to {}{})", segmentFile, scan.events,
+                    scan.firstEvent, scan.lastEvent, complete ? "" : ", partial");
+            return true;
+        }
+
+        // Looked up per segment, so a full backup taken while the capture runs becomes the
+        // base of the segments shipped after it
+        private String baseBackup() throws IOException {
+            ConnectionParams params = job.getConnectionParams();
+            return catalogService.latest(job.getBackupPath(), DatabaseType.MYSQL, params.getHost(),
+                    params.getDatabase(), BackupType.FULL).map(CatalogEntry::getFilePath).orElse(null);
+        }
+    }
+
+    static final class EventScan {
+        long events;
+        // Events other than the file's header events
+        long changes;
+        long validBytes;
+        int lastType = -1;
+        LocalDateTime firstEvent;
+        LocalDateTime lastEvent;
+    }
+
+    private static final class SegmentIndex {
+        private String database;
+        private List<BinlogSegment> segments = new ArrayList<>();
+    }
+}
@@ -0,0 +1,114 @@
+package com.DbBackup.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Shared pool of large I/O buffers for the copies that have to pass through a compressor
+ * and therefore can't use {@link FileChannel#transferTo}. Buffers are created lazily up to
+ * a fixed count and then reused, so a backup run does not allocate a buffer per file.
+ * <p>
+ * The codecs all take {@code byte[]}, so the buffers are heap-backed: a direct buffer
+ * would only add a copy into an array before every compressor write.
+ */
+@Component
+public class BufferPool {
+
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final int maxBuffers = Runtime.getRuntime().availableProcessors() * 4;
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(maxBuffers);
+    private final AtomicInteger created = new AtomicInteger();
+
+    public ByteBuffer acquire() throws InterruptedIOException {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (created.incrementAndGet() <= maxBuffers) {
+            return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        created.decrementAndGet();
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an I/O buffer");
+        }
+    }
+
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        free.offer(buffer);
+    }
+
+    /**
+     * Stream-to-stream copy through a pooled buffer. Returns the number of bytes copied.
+     */
+    public long copy(InputStream in, OutputStream out) throws IOException {
+        ByteBuffer buffer = acquire();
+        try {
+            byte[] array = buffer.array();
+            long total = 0;
+            int read;
+            while ((read = in.read(array, 0, array.length)) >= 0) {
+                out.write(array, 0, read);
+                total += read;
+            }
+            return total;
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Reads a file channel sequentially into a stream, e.g. a compressor, through a pooled buffer.
+     */
+    public long copy(FileChannel in, OutputStream out) throws IOException {
+        ByteBuffer buffer = acquire();
+        try {
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer.array(), 0, read);
+                total += read;
+                buffer.clear();
+            }
+            return total;
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Writes a stream, e.g. a decompressor, into a file channel through a pooled buffer.
+     */
+    public long copy(InputStream in, FileChannel out) throws IOException {
+        ByteBuffer buffer = acquire();
+        try {
+            byte[] array = buffer.array();
+            long total = 0;
+            int read;
+            while ((read = in.read(array, 0, array.length)) >= 0) {
+                buffer.limit(read);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+                total += read;
+            }
+            return total;
+        } finally {
+            release(buffer);
+        }
+    }
+}
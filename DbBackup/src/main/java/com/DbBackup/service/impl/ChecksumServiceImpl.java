@@ -0,0 +1,86 @@
+package com.DbBackup.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.service.ChecksumService;
+import com.DbBackup.util.ChecksumOutputStream;
+import com.DbBackup.util.ContentHash;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class ChecksumServiceImpl implements ChecksumService {
+
+    private static final List<String> ALGORITHMS = Arrays.asList(ContentHash.XXH64, ContentHash.SHA256);
+
+    private final String algorithm;
+    private final BufferPool bufferPool;
+
+    public ChecksumServiceImpl(@Value("${backup.checksum.algorithm:xxh64}") String algorithm, BufferPool bufferPool) {
+        // Fail at startup rather than on the first backup
+        this.algorithm = ContentHash.create(algorithm).getAlgorithm();
+        this.bufferPool = bufferPool;
+    }
+
+    @Override
+    public ChecksumOutputStream wrap(OutputStream out) {
+        return new ChecksumOutputStream(out, ContentHash.create(algorithm));
+    }
+
+    @Override
+    public String checksumFile(String filePath) throws IOException {
+        ContentHash hash = ContentHash.create(algorithm);
+        ByteBuffer buffer = bufferPool.acquire();
+        try (InputStream in = Files.newInputStream(Paths.get(filePath))) {
+            byte[] array = buffer.array();
+            int read;
+            while ((read = in.read(array)) >= 0) {
+                hash.update(array, 0, read);
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+        return hash.checksum();
+    }
+
+    @Override
+    public void writeSidecar(String artifactPath, String checksum) throws IOException {
+        int separator = checksum.indexOf(':');
+        Path artifact = Paths.get(artifactPath);
+        Path sidecar = artifact.resolveSibling(artifact.getFileName() + "." + checksum.substring(0, separator));
+        String line = checksum.substring(separator + 1) + "  " + artifact.getFileName() + "\n";
+        Files.write(sidecar, line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Optional<String> readSidecar(String artifactPath) throws IOException {
+        Path artifact = Paths.get(artifactPath);
+        for (String candidate : ALGORITHMS) {
+            Path sidecar = artifact.resolveSibling(artifact.getFileName() + "." + candidate);
+            if (Files.isRegularFile(sidecar)) {
+                String line = new String(Files.readAllBytes(sidecar), StandardCharsets.UTF_8).trim();
+                return Optional.of(candidate + ":" + line.split("\\s+")[0]);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isSidecar(String filePath) {
+        return ALGORITHMS.stream().anyMatch(candidate -> filePath.endsWith("." + candidate));
+    }
+}
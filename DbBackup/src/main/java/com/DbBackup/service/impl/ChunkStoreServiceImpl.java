@@ -0,0 +1,411 @@
+package com.DbBackup.service.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.Set;
+
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.StreamStats;
+import com.DbBackup.service.ChecksumService;
+import com.DbBackup.service.ChunkStoreService;
+import com.DbBackup.service.CompressionCodec;
+import com.DbBackup.service.CompressionService;
+import com.DbBackup.util.ChecksumOutputStream;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ChunkStoreServiceImpl implements ChunkStoreService {
+
+    static final String MANIFEST_EXTENSION = ".manifest";
+    private static final String MANIFEST_HEADER = "# db-backup chunk manifest v1";
+    private static final String CHUNK_SECTION = "---";
+    private static final String CHUNK_DIR = "chunks";
+
+    // FastCDC-style bounds: cut points are content-defined between MIN and MAX,
+    // averaging roughly 512 KB (19 mask bits)
+    private static final int MIN_CHUNK_SIZE = 128 * 1024;
+    private static final int MAX_CHUNK_SIZE = 2 * 1024 * 1024;
+    private static final long CUT_MASK = (1L << 19) - 1;
+
+    // Gear table for the rolling hash; the fixed seed keeps cut points stable across runs
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x5eed_cdc1L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final CompressionService compressionService;
+    private final BufferPool bufferPool;
+    private final ChecksumService checksumService;
+
+    @Override
+    public StreamStats storeChunked(InputStream input, String filePath, BackupJob job, String parentBackup)
+            throws IOException {
+        Path manifestPath = Paths.get(filePath + MANIFEST_EXTENSION);
+        Path chunkDir = manifestPath.toAbsolutePath().getParent().resolve(CHUNK_DIR);
+        Files.createDirectories(chunkDir);
+
+        // Chunks are compressed one by one, so a worker pool per chunk would only add overhead
+        CompressionOptions options = CompressionOptions.forJob(job);
+        options.setThreads(1);
+        CompressionCodec codec = compressionService.getCodec(options.getCodec());
+
+        MessageDigest digest = sha256();
+        Chunker chunker = new Chunker(input);
+        long rawBytes = 0;
+        long storedBytes = 0;
+        long totalChunks = 0;
+        long newChunks = 0;
+
+        ChecksumOutputStream hashed = checksumService.wrap(Files.newOutputStream(manifestPath));
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(hashed, StandardCharsets.UTF_8))) {
+            writer.write(MANIFEST_HEADER);
+            writer.newLine();
+            writer.write("database=" + job.getDatabaseType() + ":" + job.getConnectionParams().getDatabase());
+            writer.newLine();
+            writer.write("backupType=" + job.getBackupType());
+            writer.newLine();
+            writer.write("created=" + LocalDateTime.now());
+            writer.newLine();
+            writer.write("parent=" + (parentBackup != null ? parentBackup : ""));
+            writer.newLine();
+            writer.write(CHUNK_SECTION);
+            writer.newLine();
+
+            int length;
+            while ((length = chunker.next()) > 0) {
+                digest.update(chunker.buffer, chunker.chunkStart, length);
+                String hash = toHex(digest.digest());
+
+                CodecType storedCodec = findStoredCodec(chunkDir, hash);
+                if (storedCodec == null) {
+                    storedBytes += writeChunk(chunkDir, hash, chunker.buffer, chunker.chunkStart, length, codec, options);
+                    storedCodec = codec.getType();
+                    newChunks++;
+                }
+
+                writer.write(hash + " " + length + " " + storedCodec);
+                writer.newLine();
+                rawBytes += length;
+                totalChunks++;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(manifestPath);
+            throw e;
+        }
+
+        long manifestSize = Files.size(manifestPath);
+        log.info("Stored {} chunks ({} new) for {}, {} of {} bytes written",
+                totalChunks, newChunks, manifestPath, storedBytes, rawBytes);
+
+        return StreamStats.builder()
+                .filePath(manifestPath.toString())
+                .rawBytes(rawBytes)
+                .compressedBytes(storedBytes + manifestSize)
+                .checksum(hashed.getChecksum())
+                .build();
+    }
+
+    @Override
+    public String reassemble(String manifestPath) throws IOException {
+        Path manifest = Paths.get(manifestPath).toAbsolutePath();
+        String name = manifest.getFileName().toString();
+        Path outputPath = manifest.resolveSibling(name.substring(0, name.length() - MANIFEST_EXTENSION.length()));
+
+        try (InputStream in = open(manifestPath);
+             FileChannel out = FileChannel.open(outputPath, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            bufferPool.copy(in, out);
+        } catch (IOException e) {
+            Files.deleteIfExists(outputPath);
+            throw e;
+        }
+
+        log.info("Reassembled {} into {}", manifestPath, outputPath);
+        return outputPath.toString();
+    }
+
+    @Override
+    public InputStream open(String manifestPath) throws IOException {
+        Path manifest = Paths.get(manifestPath).toAbsolutePath();
+        BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8);
+        try {
+            // Skip the header up to the chunk list
+            String line = reader.readLine();
+            while (line != null && !CHUNK_SECTION.equals(line)) {
+                line = reader.readLine();
+            }
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+        return new ReassemblingInputStream(reader, manifest.getParent().resolve(CHUNK_DIR));
+    }
+
+    @Override
+    public long verifyChunks(String manifestPath, Set<String> verified) throws IOException {
+        Path manifest = Paths.get(manifestPath).toAbsolutePath();
+        Path chunkDir = manifest.getParent().resolve(CHUNK_DIR);
+        MessageDigest digest = sha256();
+        long total = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            boolean inChunks = false;
+            while ((line = reader.readLine()) != null) {
+                if (!inChunks) {
+                    inChunks = CHUNK_SECTION.equals(line);
+                    continue;
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                String[] parts = line.split(" ");
+                String hash = parts[0];
+                long length = Long.parseLong(parts[1]);
+                total += length;
+                // Backups share most of their chunks, each is checked once per run
+                if (verified.contains(hash)) {
+                    continue;
+                }
+
+                CompressionCodec codec = compressionService.getCodec(CodecType.valueOf(parts[2]));
+                long read = 0;
+                try (InputStream in = codec.decompress(Files.newInputStream(chunkPath(chunkDir, hash, codec)))) {
+                    byte[] buffer = new byte[64 * 1024];
+                    int n;
+                    while ((n = in.read(buffer)) >= 0) {
+                        digest.update(buffer, 0, n);
+                        read += n;
+                    }
+                }
+                if (read != length || !hash.equals(toHex(digest.digest()))) {
+                    throw new IOException("Chunk " + hash + " is corrupt");
+                }
+                verified.add(hash);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public boolean isManifest(String filePath) {
+        if (!filePath.endsWith(MANIFEST_EXTENSION)) {
+            return false;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            return MANIFEST_HEADER.equals(reader.readLine());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private CodecType findStoredCodec(Path chunkDir, String hash) {
+        for (CodecType type : CodecType.values()) {
+            if (Files.exists(chunkPath(chunkDir, hash, compressionService.getCodec(type)))) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private long writeChunk(Path chunkDir, String hash, byte[] data, int offset, int length,
+                            CompressionCodec codec, CompressionOptions options) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2);
+        try (OutputStream out = codec.compress(compressed, options)) {
+            out.write(data, offset, length);
+        }
+
+        Path target = chunkPath(chunkDir, hash, codec);
+        Files.createDirectories(target.getParent());
+
+        // Write then rename, so concurrent backups never see a partial chunk
+        Path temp = Files.createTempFile(target.getParent(), hash, ".tmp");
+        try {
+            Files.write(temp, compressed.toByteArray());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return compressed.size();
+    }
+
+    private Path chunkPath(Path chunkDir, String hash, CompressionCodec codec) {
+        return chunkDir.resolve(hash.substring(0, 2)).resolve(hash + codec.getExtension());
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * The chunks of a manifest as one stream. Chunk references are read from the manifest
+     * as the previous chunk runs out, so only one chunk file is open at a time.
+     */
+    private class ReassemblingInputStream extends InputStream {
+
+        private final BufferedReader manifest;
+        private final Path chunkDir;
+        private InputStream chunk;
+        private String hash;
+        private long expected;
+        private long read;
+
+        ReassemblingInputStream(BufferedReader manifest, Path chunkDir) {
+            this.manifest = manifest;
+            this.chunkDir = chunkDir;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (true) {
+                if (chunk == null && !nextChunk()) {
+                    return -1;
+                }
+                int n = chunk.read(b, off, len);
+                if (n >= 0) {
+                    read += n;
+                    return n;
+                }
+                chunk.close();
+                chunk = null;
+                if (read != expected) {
+                    throw new IOException("Chunk " + hash + " is " + read + " bytes, expected " + expected);
+                }
+            }
+        }
+
+        private boolean nextChunk() throws IOException {
+            String line;
+            do {
+                line = manifest.readLine();
+                if (line == null) {
+                    return false;
+                }
+            } while (line.isBlank());
+
+            String[] parts = line.split(" ");
+            hash = parts[0];
+            expected = Long.parseLong(parts[1]);
+            read = 0;
+            CompressionCodec codec = compressionService.getCodec(CodecType.valueOf(parts[2]));
+            chunk = codec.decompress(Files.newInputStream(chunkPath(chunkDir, hash, codec)));
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (manifest) {
+                if (chunk != null) {
+                    chunk.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cuts a stream into content-defined chunks using a gear rolling hash. No cut point is
+     * considered before MIN_CHUNK_SIZE and MAX_CHUNK_SIZE forces one. The input is read in
+     * bulk into a window of two maximum-size chunks, so the hash loop never calls read().
+     */
+    private static class Chunker {
+
+        private final InputStream input;
+        private final byte[] buffer = new byte[MAX_CHUNK_SIZE * 2];
+        private int chunkStart;
+        private int nextStart;
+        private int end;
+        private boolean eof;
+
+        Chunker(InputStream input) {
+            this.input = input;
+        }
+
+        int next() throws IOException {
+            fill();
+            chunkStart = nextStart;
+            int available = end - chunkStart;
+            if (available <= MIN_CHUNK_SIZE) {
+                nextStart = end;
+                return available;
+            }
+
+            int limit = chunkStart + Math.min(available, MAX_CHUNK_SIZE);
+            int cut = limit;
+            long hash = 0;
+            for (int i = chunkStart + MIN_CHUNK_SIZE; i < limit; i++) {
+                hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+                if ((hash & CUT_MASK) == 0) {
+                    cut = i + 1;
+                    break;
+                }
+            }
+            nextStart = cut;
+            return cut - chunkStart;
+        }
+
+        private void fill() throws IOException {
+            if (end - nextStart >= MAX_CHUNK_SIZE || eof) {
+                return;
+            }
+            // Slide the unread tail to the front, then top the window up
+            System.arraycopy(buffer, nextStart, buffer, 0, end - nextStart);
+            end -= nextStart;
+            nextStart = 0;
+            while (end < buffer.length) {
+                int read = input.read(buffer, end, buffer.length - end);
+                if (read < 0) {
+                    eof = true;
+                    break;
+                }
+                end += read;
+            }
+        }
+    }
+}
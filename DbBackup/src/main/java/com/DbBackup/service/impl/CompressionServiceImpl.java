@@ -1,92 +1,335 @@
 package com.DbBackup.service.impl;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.StreamStats;
+import com.DbBackup.service.ChecksumService;
+import com.DbBackup.service.CompressionCodec;
 import com.DbBackup.service.CompressionService;
+import com.DbBackup.util.ChecksumOutputStream;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class CompressionServiceImpl implements CompressionService{
 
+    private static final int MAGIC_LENGTH = 4;
+
+    private final List<CompressionCodec> codecs;
+    private final BufferPool bufferPool;
+    private final ChecksumService checksumService;
+
     @Override
-    public String compressFile(String filePath) {
-        String compressedFilePath = filePath + ".tar.gz";
+    public StreamStats compressFile(String filePath, CompressionOptions options) {
+        CompressionCodec codec = getCodec(options.getCodec());
+        String compressedFilePath = filePath + ".tar" + codec.getExtension();
         File sourceFile = new File(filePath);
         
-        try (FileOutputStream fos = new FileOutputStream(compressedFilePath);
-             GzipCompressorOutputStream gzos = new GzipCompressorOutputStream(fos);
-             TarArchiveOutputStream taos = new TarArchiveOutputStream(gzos)) {
-            
-            taos.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
-            
-            TarArchiveEntry entry = new TarArchiveEntry(sourceFile, sourceFile.getName());
-            taos.putArchiveEntry(entry);
-            
-            try (FileInputStream fis = new FileInputStream(sourceFile)) {
-                IOUtils.copy(fis, taos);
+        try {
+            ChecksumOutputStream fos = checksumService.wrap(new FileOutputStream(compressedFilePath));
+            try (fos;
+                 OutputStream cos = codec.compress(fos, options);
+                 TarArchiveOutputStream taos = new TarArchiveOutputStream(cos)) {
+                
+                taos.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+                
+                TarArchiveEntry entry = new TarArchiveEntry(sourceFile, sourceFile.getName());
+                taos.putArchiveEntry(entry);
+                
+                try (FileChannel source = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ)) {
+                    bufferPool.copy(source, taos);
+                }
+                
+                taos.closeArchiveEntry();
             }
-            
-            taos.closeArchiveEntry();
             log.info("Successfully compressed file: {} to {}", filePath, compressedFilePath);
-            return compressedFilePath;
+            return StreamStats.builder()
+                    .filePath(compressedFilePath)
+                    .rawBytes(sourceFile.length())
+                    .compressedBytes(Files.size(Paths.get(compressedFilePath)))
+                    .checksum(fos.getChecksum())
+                    .build();
             
         } catch (IOException e) {
             log.error("Error compressing file: {}", e.getMessage());
-            return filePath; // Return original file path if compression fails
+            try {
+                Files.deleteIfExists(Paths.get(compressedFilePath));
+            } catch (IOException cleanup) {
+                log.warn("Could not delete partial archive {}: {}", compressedFilePath, cleanup.getMessage());
+            }
+            // Fall back to the original file if compression fails
+            return StreamStats.builder()
+                    .filePath(filePath)
+                    .rawBytes(sourceFile.length())
+                    .compressedBytes(sourceFile.length())
+                    .build();
         }
     }
 
     @Override
-    public String decompressFile(String compressedFilePath) {
-        if (!compressedFilePath.endsWith(".tar.gz")) {
-            log.warn("File is not a tar.gz archive: {}", compressedFilePath);
-            return compressedFilePath;
+    public StreamStats compressDirectory(String dirPath, CompressionOptions options) throws IOException {
+        CompressionCodec codec = getCodec(options.getCodec());
+        Path root = Paths.get(dirPath).toAbsolutePath().normalize();
+        Path base = root.getParent();
+        String compressedFilePath = dirPath + ".tar" + codec.getExtension();
+
+        List<Path> entries;
+        try (Stream<Path> walk = Files.walk(root)) {
+            entries = walk.sorted().collect(Collectors.toList());
+        }
+
+        ChecksumOutputStream fos = checksumService.wrap(new FileOutputStream(compressedFilePath));
+        long rawBytes = 0;
+        try (fos;
+             OutputStream cos = codec.compress(fos, options);
+             TarArchiveOutputStream taos = new TarArchiveOutputStream(cos)) {
+
+            taos.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+            taos.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+
+            for (Path path : entries) {
+                String name = base.relativize(path).toString().replace(File.separatorChar, '/');
+                taos.putArchiveEntry(new TarArchiveEntry(path.toFile(), name));
+                if (Files.isRegularFile(path)) {
+                    try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ)) {
+                        rawBytes += bufferPool.copy(source, taos);
+                    }
+                }
+                taos.closeArchiveEntry();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(Paths.get(compressedFilePath));
+            throw e;
+        }
+
+        log.info("Successfully compressed directory: {} to {}", dirPath, compressedFilePath);
+        return StreamStats.builder()
+                .filePath(compressedFilePath)
+                .rawBytes(rawBytes)
+                .compressedBytes(Files.size(Paths.get(compressedFilePath)))
+                .checksum(fos.getChecksum())
+                .build();
+    }
+
+    @Override
+    public StreamStats compressStream(InputStream input, String filePath, CompressionOptions options) throws IOException {
+        CompressionCodec codec = getCodec(options.getCodec());
+        String compressedFilePath = filePath + codec.getExtension();
+
+        CountingInputStream cis = new CountingInputStream(input);
+        ChecksumOutputStream hashed = checksumService.wrap(new FileOutputStream(compressedFilePath));
+        CountingOutputStream cos = new CountingOutputStream(hashed);
+
+        try (cis; OutputStream out = codec.compress(cos, options)) {
+            bufferPool.copy(cis, out);
+        } catch (IOException e) {
+            Files.deleteIfExists(Paths.get(compressedFilePath));
+            throw e;
+        }
+
+        log.info("Successfully compressed stream to {} using {}", compressedFilePath, codec.getType());
+        return StreamStats.builder()
+                .filePath(compressedFilePath)
+                .rawBytes(cis.getByteCount())
+                .compressedBytes(cos.getByteCount())
+                .checksum(hashed.getChecksum())
+                .build();
+    }
+
+    @Override
+    public boolean isCompressed(String filePath) {
+        return detectCodec(filePath).isPresent();
+    }
+
+    @Override
+    public boolean isDirectoryArchive(String filePath) {
+        Optional<CompressionCodec> detected = detectCodec(filePath);
+        if (detected.isEmpty()) {
+            return false;
+        }
+        try (InputStream in = new FileInputStream(filePath);
+             BufferedInputStream decompressed = new BufferedInputStream(detected.get().decompress(in))) {
+            if (!isTar(decompressed)) {
+                return false;
+            }
+            // compressDirectory writes the top-level directory as the first entry
+            TarArchiveEntry first = new TarArchiveInputStream(decompressed).getNextTarEntry();
+            return first != null && (first.isDirectory() || first.getName().contains("/"));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public InputStream openDecompressed(String filePath) throws IOException {
+        Optional<CompressionCodec> detected = detectCodec(filePath);
+        InputStream in = new BufferedInputStream(new FileInputStream(filePath));
+        if (detected.isEmpty()) {
+            return in;
         }
         
-        String outputDir = Paths.get(compressedFilePath).getParent().toString();
-        
-        try (FileInputStream fis = new FileInputStream(compressedFilePath);
-             GzipCompressorInputStream gzis = new GzipCompressorInputStream(fis);
-             TarArchiveInputStream tais = new TarArchiveInputStream(gzis)) {
-            
+        try {
+            BufferedInputStream decompressed = new BufferedInputStream(detected.get().decompress(in));
+            if (!isTar(decompressed)) {
+                return decompressed;
+            }
+            TarArchiveInputStream tais = new TarArchiveInputStream(decompressed);
             TarArchiveEntry entry;
             while ((entry = tais.getNextTarEntry()) != null) {
-                if (entry.isDirectory()) {
-                    continue;
-                }
-                
-                File outputFile = new File(outputDir, entry.getName());
-                Path parent = Paths.get(outputFile.getParent());
-                if (!Files.exists(parent)) {
-                    Files.createDirectories(parent);
-                }
-                
-                try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                    IOUtils.copy(tais, fos);
+                if (!entry.isDirectory()) {
+                    return new FilterInputStream(tais) {
+                        private boolean drained;
+
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            int read = super.read(b, off, len);
+                            if (read < 0 && !drained) {
+                                // Read past the tar trailer to the end of the compressed stream,
+                                // where codecs check their frame checksums
+                                drained = true;
+                                IOUtils.consume(decompressed);
+                            }
+                            return read;
+                        }
+                    };
                 }
-                
-                log.info("Extracted file: {}", outputFile.getAbsolutePath());
-                return outputFile.getAbsolutePath();
             }
-            
-            log.warn("No files found in archive: {}", compressedFilePath);
+            tais.close();
+            throw new IOException("No files found in archive: " + filePath);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String decompressFile(String compressedFilePath) {
+        Optional<CompressionCodec> detected = detectCodec(compressedFilePath);
+        if (detected.isEmpty()) {
+            log.warn("File is not a compressed archive: {}", compressedFilePath);
             return compressedFilePath;
+        }
+        CompressionCodec codec = detected.get();
+        
+        try (InputStream fis = new FileInputStream(compressedFilePath);
+             BufferedInputStream decompressed = new BufferedInputStream(codec.decompress(fis))) {
+            
+            if (isTar(decompressed)) {
+                return extractTar(decompressed, compressedFilePath);
+            }
+            
+            // Streamed backups are a single compressed file without a tar wrapper
+            String outputFilePath = stripExtension(compressedFilePath, codec);
+            try (FileChannel out = openForWrite(Paths.get(outputFilePath))) {
+                bufferPool.copy(decompressed, out);
+            }
+            log.info("Extracted file: {}", outputFilePath);
+            return outputFilePath;
             
         } catch (IOException e) {
             log.error("Error decompressing file: {}", e.getMessage());
             return compressedFilePath;
         }
     }
+
+    private String extractTar(InputStream decompressed, String compressedFilePath) throws IOException {
+        Path outputDir = Paths.get(compressedFilePath).toAbsolutePath().getParent();
+        TarArchiveInputStream tais = new TarArchiveInputStream(decompressed);
+        
+        // Single-file archives give back that file, directory archives their top-level directory
+        Path extracted = null;
+        TarArchiveEntry entry;
+        while ((entry = tais.getNextTarEntry()) != null) {
+            Path target = outputDir.resolve(entry.getName()).normalize();
+            if (!target.startsWith(outputDir)) {
+                throw new IOException("Archive entry outside of target directory: " + entry.getName());
+            }
+            if (extracted == null) {
+                extracted = outputDir.resolve(outputDir.relativize(target).getName(0));
+            }
+            
+            if (entry.isDirectory()) {
+                Files.createDirectories(target);
+                continue;
+            }
+            Files.createDirectories(target.getParent());
+            try (FileChannel out = openForWrite(target)) {
+                bufferPool.copy(tais, out);
+            }
+        }
+        
+        if (extracted == null) {
+            log.warn("No files found in archive: {}", compressedFilePath);
+            return compressedFilePath;
+        }
+        log.info("Extracted: {}", extracted);
+        return extracted.toString();
+    }
+
+    @Override
+    public Optional<CompressionCodec> detectCodec(String filePath) {
+        byte[] header = new byte[MAGIC_LENGTH];
+        int length;
+        try (InputStream in = new FileInputStream(filePath)) {
+            length = IOUtils.read(in, header);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        for (CompressionCodec codec : codecs) {
+            if (codec.matches(header, length)) {
+                return Optional.of(codec);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public CompressionCodec getCodec(CodecType type) {
+        return codecs.stream()
+                .filter(codec -> codec.getType() == type)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported compression codec: " + type));
+    }
+
+    private FileChannel openForWrite(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private boolean isTar(BufferedInputStream in) throws IOException {
+        byte[] header = new byte[512];
+        in.mark(header.length);
+        int length = IOUtils.read(in, header);
+        in.reset();
+        return TarArchiveInputStream.matches(header, length);
+    }
+
+    private String stripExtension(String filePath, CompressionCodec codec) {
+        if (filePath.endsWith(codec.getExtension())) {
+            return filePath.substring(0, filePath.length() - codec.getExtension().length());
+        }
+        return filePath + ".out";
+    }
     
 }
@@ -3,92 +3,390 @@ package com.DbBackup.service.impl;
 import com.DbBackup.model.ConnectionParams;
 import com.DbBackup.service.DatabaseConnectionService;
 import com.DbBackup.model.DatabaseType;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Connection checks against pooled, reused connections. Every distinct target (database type
+ * plus connection parameters) gets a small Hikari pool or a shared MongoClient, created on
+ * first use. A successful check is cached for the health TTL and refreshed in the background
+ * while the target is in use, so back-to-back jobs skip the handshake entirely. Targets idle
+ * for longer than the idle timeout, or beyond the max-targets bound, are closed, but never
+ * while a connection from them is checked out.
+ */
 @Service
 @Slf4j
-public class DatabaseConnectionServiceImpl implements DatabaseConnectionService {
+public class DatabaseConnectionServiceImpl implements DatabaseConnectionService, DisposableBean {
+
+    private final long healthTtlMillis;
+    private final long idleTimeoutMillis;
+    private final int maxTargets;
+    private final int poolSize;
+    private final long connectTimeoutMillis;
+
+    // Access-ordered, so iteration starts at the least recently used target
+    private final Map<Target, Pool> pools = new LinkedHashMap<>(16, 0.75f, true);
+
+    public DatabaseConnectionServiceImpl(
+            @Value("${backup.connection.health-ttl:30000}") long healthTtlMillis,
+            @Value("${backup.connection.idle-timeout:600000}") long idleTimeoutMillis,
+            @Value("${backup.connection.max-targets:64}") int maxTargets,
+            @Value("${backup.connection.pool-size:4}") int poolSize,
+            @Value("${backup.connection.connect-timeout:10000}") long connectTimeoutMillis) {
+        this.healthTtlMillis = healthTtlMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxTargets = maxTargets;
+        this.poolSize = poolSize;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
 
     @Override
     public boolean testConnection(DatabaseType type, ConnectionParams params) {
-        try {
-            switch (type) {
-                case MYSQL:
-                    return testMySqlConnection(params);
-                case POSTGRESQL:
-                    return testPostgresConnection(params);
-                case MONGODB:
-                    return testMongoConnection(params);
-                case SQLITE:
-                    return testSqliteConnection(params);
-                default:
-                    log.error("Unsupported database type: {}", type);
-                    return false;
-            }
-        } catch (Exception e) {
-            log.error("Error testing connection to {} database: {}", type, e.getMessage());
+        // SQLite is a local file, there is no handshake worth saving
+        if (type == DatabaseType.SQLITE) {
+            try {
+                return testSqliteConnection(params);
+            } catch (Exception e) {
+                log.error("Error testing connection to {} database: {}", type, e.getMessage());
+                return false;
+            }
+        }
+        if (type != DatabaseType.MYSQL && type != DatabaseType.POSTGRESQL && type != DatabaseType.MONGODB) {
+            log.error("Unsupported database type: {}", type);
             return false;
         }
+
+        Pool pool = lease(type, params);
+        try {
+            if (pool.isHealthy(healthTtlMillis)) {
+                log.debug("Using cached health check for {}", pool.target);
+                return true;
+            }
+            return pool.check(healthTtlMillis);
+        } finally {
+            pool.release();
+        }
     }
 
-    private boolean testMySqlConnection(ConnectionParams params) throws Exception {
-        String url = String.format("jdbc:mysql://%s:%d/%s", 
-                params.getHost(), 
-                params.getPort() != null ? params.getPort() : 3306, 
-                params.getDatabase());
-        
-        try (Connection conn = DriverManager.getConnection(url, params.getUsername(), params.getPassword())) {
-            return conn.isValid(5);
+    @Override
+    public Connection getConnection(DatabaseType type, ConnectionParams params) throws SQLException {
+        if (type != DatabaseType.MYSQL && type != DatabaseType.POSTGRESQL) {
+            throw new IllegalArgumentException("No pooled JDBC connections for " + type);
+        }
+        // Once borrowed, the connection itself keeps the pool busy
+        Pool pool = lease(type, params);
+        try {
+            return pool.dataSource().getConnection();
+        } finally {
+            pool.release();
         }
     }
 
-    private boolean testPostgresConnection(ConnectionParams params) throws Exception {
-        String url = String.format("jdbc:postgresql://%s:%d/%s", 
-                params.getHost(), 
-                params.getPort() != null ? params.getPort() : 5432, 
-                params.getDatabase());
-        
-        try (Connection conn = DriverManager.getConnection(url, params.getUsername(), params.getPassword())) {
-            return conn.isValid(5);
+    /**
+     * Revalidates targets in use before their cached check expires, so a job finds a fresh
+     * result, and closes the ones nobody asked for within the idle timeout.
+     */
+    @Scheduled(fixedDelayString = "${backup.connection.revalidate-interval:10000}")
+    public void revalidate() {
+        long now = System.currentTimeMillis();
+        List<Pool> stale = new ArrayList<>();
+        List<Pool> idle = new ArrayList<>();
+        synchronized (pools) {
+            Iterator<Pool> it = pools.values().iterator();
+            while (it.hasNext()) {
+                Pool pool = it.next();
+                boolean overBound = pools.size() > maxTargets;
+                if ((overBound || now - pool.lastUsed > idleTimeoutMillis) && !pool.isBusy()) {
+                    it.remove();
+                    idle.add(pool);
+                } else if (pool.healthy && now - pool.checkedAt > healthTtlMillis / 2) {
+                    // Leased, so the pool can't be closed under the check
+                    pool.leases.incrementAndGet();
+                    stale.add(pool);
+                }
+            }
+        }
+        for (Pool pool : idle) {
+            log.info("Closing idle connections to {}", pool.target);
+            pool.close();
+        }
+        for (Pool pool : stale) {
+            try {
+                pool.check(healthTtlMillis / 2);
+            } finally {
+                pool.leases.decrementAndGet();
+            }
         }
     }
 
-    private boolean testMongoConnection(ConnectionParams params) {
-        String connectionString;
-        if (params.getUsername() != null && !params.getUsername().isEmpty()) {
-            connectionString = String.format("mongodb://%s:%s@%s:%d/%s", 
-                    params.getUsername(), 
-                    params.getPassword(), 
-                    params.getHost(), 
-                    params.getPort() != null ? params.getPort() : 27017, 
-                    params.getDatabase());
-        } else {
-            connectionString = String.format("mongodb://%s:%d/%s", 
-                    params.getHost(), 
-                    params.getPort() != null ? params.getPort() : 27017, 
+    @Override
+    public void destroy() {
+        synchronized (pools) {
+            pools.values().forEach(Pool::close);
+            pools.clear();
+        }
+    }
+
+    /**
+     * The target's pool, leased until {@link Pool#release()}. Leases are taken under the map's
+     * lock, so a pool can't be evicted between being looked up and being used.
+     */
+    private Pool lease(DatabaseType type, ConnectionParams params) {
+        Target target = new Target(type, params);
+        Pool evicted = null;
+        Pool pool;
+        synchronized (pools) {
+            pool = pools.get(target);
+            if (pool == null) {
+                pool = new Pool(target);
+                pools.put(target, pool);
+            }
+            pool.leases.incrementAndGet();
+            pool.lastUsed = System.currentTimeMillis();
+            if (pools.size() > maxTargets) {
+                evicted = removeLeastRecentlyUsedIdle();
+            }
+        }
+        if (evicted != null) {
+            log.info("Closing connections to {}, more than {} targets are in use", evicted.target, maxTargets);
+            evicted.close();
+        }
+        return pool;
+    }
+
+    // For tests
+    boolean hasPool(DatabaseType type, ConnectionParams params) {
+        synchronized (pools) {
+            return pools.containsKey(new Target(type, params));
+        }
+    }
+
+    /**
+     * Removes the least recently used pool nobody is using. When every pool is
+     * busy the bound is exceeded for now, revalidate closes the surplus once they go idle.
+     */
+    private Pool removeLeastRecentlyUsedIdle() {
+        Iterator<Pool> it = pools.values().iterator();
+        while (it.hasNext()) {
+            Pool pool = it.next();
+            if (!pool.isBusy()) {
+                it.remove();
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    private String jdbcUrl(Target target) {
+        ConnectionParams params = target.params;
+        if (target.type == DatabaseType.MYSQL) {
+            return String.format("jdbc:mysql://%s:%d/%s",
+                    params.getHost(),
+                    params.getPort() != null ? params.getPort() : 3306,
                     params.getDatabase());
         }
-        
-        try (var client = MongoClients.create(connectionString)) {
-            client.getDatabase(params.getDatabase()).runCommand(new org.bson.Document("ping", 1));
-            return true;
-        } catch (Exception e) {
-            log.error("MongoDB connection test failed: {}", e.getMessage());
-            return false;
+        return String.format("jdbc:postgresql://%s:%d/%s",
+                params.getHost(),
+                params.getPort() != null ? params.getPort() : 5432,
+                params.getDatabase());
+    }
+
+    private String mongoConnectionString(ConnectionParams params) {
+        if (params.getUsername() != null && !params.getUsername().isEmpty()) {
+            return String.format("mongodb://%s:%s@%s:%d/%s",
+                    params.getUsername(),
+                    params.getPassword(),
+                    params.getHost(),
+                    params.getPort() != null ? params.getPort() : 27017,
+                    params.getDatabase());
         }
+        return String.format("mongodb://%s:%d/%s",
+                params.getHost(),
+                params.getPort() != null ? params.getPort() : 27017,
+                params.getDatabase());
     }
 
     private boolean testSqliteConnection(ConnectionParams params) throws Exception {
         String url = String.format("jdbc:sqlite:%s", params.getDatabase());
-        
+
         try (Connection conn = DriverManager.getConnection(url)) {
             return conn.isValid(5);
         }
     }
-    
+
+    /**
+     * A target's pool or client and its last health check. Checks are serialized per
+     * target, so jobs starting together share one round trip.
+     */
+    private class Pool {
+        private final Target target;
+        private volatile HikariDataSource dataSource;
+        private MongoClient mongoClient;
+        private volatile boolean healthy;
+        private volatile long checkedAt;
+        private volatile long lastUsed;
+        // Checks and connection lookups in progress, for MongoDB as well as JDBC targets
+        private final AtomicInteger leases = new AtomicInteger();
+
+        Pool(Target target) {
+            this.target = target;
+        }
+
+        boolean isHealthy(long ttlMillis) {
+            return healthy && System.currentTimeMillis() - checkedAt < ttlMillis;
+        }
+
+        synchronized boolean check(long ttlMillis) {
+            // Another job may have checked while this one waited
+            if (isHealthy(ttlMillis)) {
+                return true;
+            }
+            boolean result;
+            try {
+                result = target.type == DatabaseType.MONGODB ? pingMongo() : validateJdbc();
+            } catch (Exception e) {
+                log.error("Error testing connection to {} database: {}", target.type, e.getMessage());
+                result = false;
+            }
+            // Failures are not cached, the next job checks again
+            healthy = result;
+            checkedAt = System.currentTimeMillis();
+            return result;
+        }
+
+        private boolean validateJdbc() throws SQLException {
+            try (Connection conn = dataSource().getConnection()) {
+                return conn.isValid(5);
+            }
+        }
+
+        private boolean pingMongo() {
+            mongoClient().getDatabase(target.params.getDatabase()).runCommand(new org.bson.Document("ping", 1));
+            return true;
+        }
+
+        synchronized HikariDataSource dataSource() {
+            if (dataSource == null) {
+                HikariConfig config = new HikariConfig();
+                config.setPoolName("db-backup-" + target);
+                config.setJdbcUrl(jdbcUrl(target));
+                config.setUsername(target.params.getUsername());
+                config.setPassword(target.params.getPassword());
+                config.setMaximumPoolSize(poolSize);
+                // Connections are opened on demand and dropped once idle, the pool itself stays
+                config.setMinimumIdle(0);
+                config.setIdleTimeout(Math.max(10_000, idleTimeoutMillis));
+                config.setConnectionTimeout(connectTimeoutMillis);
+                // Don't fail here on an unreachable server, the check reports it
+                config.setInitializationFailTimeout(-1);
+                dataSource = new HikariDataSource(config);
+            }
+            return dataSource;
+        }
+
+        synchronized MongoClient mongoClient() {
+            if (mongoClient == null) {
+                MongoClientSettings settings = MongoClientSettings.builder()
+                        .applyConnectionString(new ConnectionString(mongoConnectionString(target.params)))
+                        .applyToClusterSettings(cluster -> cluster
+                                .serverSelectionTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS))
+                        .applyToSocketSettings(socket -> socket
+                                .connectTimeout((int) connectTimeoutMillis, TimeUnit.MILLISECONDS))
+                        .applyToConnectionPoolSettings(pool -> pool
+                                .maxSize(poolSize)
+                                .maxConnectionIdleTime(idleTimeoutMillis, TimeUnit.MILLISECONDS))
+                        .build();
+                mongoClient = MongoClients.create(settings);
+            }
+            return mongoClient;
+        }
+
+        void release() {
+            lastUsed = System.currentTimeMillis();
+            leases.decrementAndGet();
+        }
+
+        // A leased pool, or a JDBC pool with borrowed connections, is kept whatever its idle
+        // time says. Not synchronized, a health check holding this pool's lock must not
+        // stall the map
+        boolean isBusy() {
+            if (leases.get() > 0) {
+                return true;
+            }
+            HikariDataSource current = dataSource;
+            return current != null && current.getHikariPoolMXBean() != null
+                    && current.getHikariPoolMXBean().getActiveConnections() > 0;
+        }
+
+        synchronized void close() {
+            if (dataSource != null) {
+                dataSource.close();
+            }
+            if (mongoClient != null) {
+                mongoClient.close();
+            }
+        }
+    }
+
+    /**
+     * Identity of a connection target. The password is part of it, so a changed credential
+     * gets a fresh pool instead of failing against the old one.
+     */
+    private static class Target {
+        private final DatabaseType type;
+        private final ConnectionParams params;
+
+        Target(DatabaseType type, ConnectionParams params) {
+            this.type = type;
+            // Copied, so later changes to the job's parameters can't alter the key
+            this.params = ConnectionParams.builder()
+                    .host(params.getHost())
+                    .port(params.getPort())
+                    .username(params.getUsername())
+                    .password(params.getPassword())
+                    .database(params.getDatabase())
+                    .additionalParams(params.getAdditionalParams())
+                    .build();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Target)) {
+                return false;
+            }
+            Target other = (Target) o;
+            return type == other.type && params.equals(other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, params);
+        }
+
+        @Override
+        public String toString() {
+            return type.name().toLowerCase() + "-" + params.getHost() + ":" + params.getPort() + "/" + params.getDatabase();
+        }
+    }
 }
@@ -0,0 +1,464 @@
+package com.DbBackup.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.StreamStats;
+import com.DbBackup.service.ChecksumService;
+import com.DbBackup.service.CompressionCodec;
+import com.DbBackup.service.CompressionService;
+import com.DbBackup.service.FramedArchiveService;
+import com.DbBackup.util.ChecksumOutputStream;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Layout: {@code DBFRAME1}, codec name, the compressed frames back to back, the index
+ * (frame offsets and lengths, then sections as kind, table, first frame, frame count)
+ * and a 16 byte footer with the index offset and {@code DBFINDEX}.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class FramedArchiveServiceImpl implements FramedArchiveService {
+
+    static final String FRAMED_EXTENSION = ".framed";
+    private static final byte[] HEADER_MAGIC = "DBFRAME1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FOOTER_MAGIC = "DBFINDEX".getBytes(StandardCharsets.US_ASCII);
+    private static final int FOOTER_LENGTH = 16;
+
+    // Upper bound of a frame's raw size; also what a reader holds in memory per frame
+    private static final int FRAME_SIZE = 4 * 1024 * 1024;
+    // Section markers are recognised from the start of a line, no need to buffer more of it
+    private static final int LINE_HEAD = 128;
+
+    private static final String TABLE_STRUCTURE = "-- Table structure for table `";
+    private static final String TABLE_DATA = "-- Dumping data for table `";
+    private static final String[] OBJECT_MARKERS = {
+            "-- Temporary view structure for view `",
+            "-- Final view structure for view `",
+            "-- Dumping routines for database `",
+            "-- Dumping events for database `"
+    };
+    // First of the statements restoring the session settings saved in the preamble
+    private static final String TRAILER = "/*!40103 SET TIME_ZONE=@OLD_TIME_ZONE */;";
+
+    private enum SectionKind { PREAMBLE, SCHEMA, DATA, OBJECTS, TRAILER }
+
+    private final CompressionService compressionService;
+    private final ChecksumService checksumService;
+
+    @Override
+    public StreamStats write(InputStream dump, String filePath, CompressionOptions options) throws IOException {
+        CompressionCodec codec = compressionService.getCodec(options.getCodec());
+        // Frames are small and compressed one at a time
+        CompressionOptions frameOptions = CompressionOptions.builder()
+                .codec(options.getCodec())
+                .level(options.getLevel())
+                .threads(1)
+                .build();
+
+        String framedFilePath = filePath + FRAMED_EXTENSION;
+        CountingInputStream in = new CountingInputStream(dump);
+        ChecksumOutputStream hashed = checksumService.wrap(new FileOutputStream(framedFilePath));
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(hashed, 256 * 1024));
+
+        try (in; DataOutputStream out = new DataOutputStream(counter)) {
+            out.write(HEADER_MAGIC);
+            out.writeUTF(codec.getType().name());
+
+            FrameWriter writer = new FrameWriter(counter, codec, frameOptions);
+            splitSections(in, writer);
+            writer.finish();
+
+            long indexOffset = counter.getByteCount();
+            writeIndex(out, writer.frames, writer.sections);
+            out.writeLong(indexOffset);
+            out.write(FOOTER_MAGIC);
+            log.info("Framed {} sections into {} frames: {}", writer.sections.size(), writer.frames.size(), framedFilePath);
+        } catch (IOException e) {
+            Files.deleteIfExists(Paths.get(framedFilePath));
+            throw e;
+        }
+
+        return StreamStats.builder()
+                .filePath(framedFilePath)
+                .rawBytes(in.getByteCount())
+                .compressedBytes(counter.getByteCount())
+                .checksum(hashed.getChecksum())
+                .build();
+    }
+
+    @Override
+    public boolean isFramed(String filePath) {
+        Path path = Paths.get(filePath);
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] header = new byte[HEADER_MAGIC.length];
+            return in.read(header) == header.length && Arrays.equals(header, HEADER_MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<String> listTables(String filePath) throws IOException {
+        Set<String> tables = new LinkedHashSet<>();
+        for (Section section : readIndex(Paths.get(filePath)).sections) {
+            if (section.kind == SectionKind.SCHEMA || section.kind == SectionKind.DATA) {
+                tables.add(section.table);
+            }
+        }
+        return new ArrayList<>(tables);
+    }
+
+    @Override
+    public InputStream open(String filePath, List<String> tables) throws IOException {
+        Path path = Paths.get(filePath);
+        Index index = readIndex(path);
+
+        Set<String> wanted = null;
+        if (tables != null && !tables.isEmpty()) {
+            wanted = new HashSet<>();
+            for (String table : tables) {
+                wanted.add(table.trim());
+            }
+            Set<String> missing = new HashSet<>(wanted);
+            missing.removeAll(listTables(filePath));
+            if (!missing.isEmpty()) {
+                log.warn("Tables not found in backup: {}", missing);
+            }
+        }
+
+        List<Frame> selected = new ArrayList<>();
+        for (Section section : index.sections) {
+            if (wanted == null || section.kind == SectionKind.PREAMBLE || section.kind == SectionKind.TRAILER
+                    || (section.kind != SectionKind.OBJECTS && wanted.contains(section.table))) {
+                selected.addAll(index.frames.subList(section.firstFrame, section.firstFrame + section.frameCount));
+            }
+        }
+        log.info("Reading {} of {} frames from {}", selected.size(), index.frames.size(), filePath);
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new SequenceInputStream(new FrameEnumeration(channel, index.codec, selected.iterator())) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    channel.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Copies the dump into the frame writer line by line, opening a new section whenever a
+     * line starts with one of mysqldump's section comments. Only the head of each line is
+     * buffered, the rest of it (extended INSERTs can be megabytes long) streams straight through.
+     */
+    private void splitSections(InputStream in, FrameWriter writer) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        byte[] head = new byte[LINE_HEAD];
+        int headLength = 0;
+        boolean inHead = true;
+
+        writer.startSection(SectionKind.PREAMBLE, null);
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            int pos = 0;
+            while (pos < n) {
+                if (inHead) {
+                    // Collect the line's head until it's full or the line ends
+                    while (pos < n && headLength < head.length) {
+                        byte b = buffer[pos++];
+                        head[headLength++] = b;
+                        if (b == '\n') {
+                            break;
+                        }
+                    }
+                    if (headLength == head.length || head[headLength - 1] == '\n') {
+                        detectSection(head, headLength, writer);
+                        writer.write(head, 0, headLength);
+                        inHead = head[headLength - 1] == '\n';
+                        headLength = 0;
+                    }
+                } else {
+                    int start = pos;
+                    while (pos < n && buffer[pos] != '\n') {
+                        pos++;
+                    }
+                    if (pos < n) {
+                        pos++;
+                        inHead = true;
+                    }
+                    writer.write(buffer, start, pos - start);
+                }
+            }
+        }
+        if (headLength > 0) {
+            detectSection(head, headLength, writer);
+            writer.write(head, 0, headLength);
+        }
+    }
+
+    private void detectSection(byte[] head, int length, FrameWriter writer) throws IOException {
+        if (head[0] != '-' && head[0] != '/') {
+            return;
+        }
+        String line = new String(head, 0, length, StandardCharsets.UTF_8);
+        if (line.startsWith(TABLE_STRUCTURE)) {
+            writer.startSection(SectionKind.SCHEMA, quotedName(line, TABLE_STRUCTURE.length()));
+        } else if (line.startsWith(TABLE_DATA)) {
+            writer.startSection(SectionKind.DATA, quotedName(line, TABLE_DATA.length()));
+        } else if (line.startsWith(TRAILER)) {
+            writer.startSection(SectionKind.TRAILER, null);
+        } else {
+            for (String marker : OBJECT_MARKERS) {
+                if (line.startsWith(marker)) {
+                    writer.startSection(SectionKind.OBJECTS, null);
+                    return;
+                }
+            }
+        }
+    }
+
+    private String quotedName(String line, int start) {
+        int end = line.lastIndexOf('`');
+        return end > start ? line.substring(start, end) : line.substring(start).trim();
+    }
+
+    private void writeIndex(DataOutputStream out, List<Frame> frames, List<Section> sections) throws IOException {
+        out.writeInt(frames.size());
+        for (Frame frame : frames) {
+            out.writeLong(frame.offset);
+            out.writeInt(frame.compressedLength);
+            out.writeInt(frame.rawLength);
+        }
+        out.writeInt(sections.size());
+        for (Section section : sections) {
+            out.writeUTF(section.kind.name());
+            out.writeUTF(section.table != null ? section.table : "");
+            out.writeInt(section.firstFrame);
+            out.writeInt(section.frameCount);
+        }
+    }
+
+    private Index readIndex(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_MAGIC.length + FOOTER_LENGTH) {
+                throw new IOException("Framed archive is truncated: " + path);
+            }
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_LENGTH);
+            readFully(channel, footer, size - FOOTER_LENGTH);
+            long indexOffset = footer.getLong(0);
+            byte[] magic = Arrays.copyOfRange(footer.array(), 8, FOOTER_LENGTH);
+            if (!Arrays.equals(magic, FOOTER_MAGIC) || indexOffset < 0 || indexOffset > size - FOOTER_LENGTH) {
+                throw new IOException("Framed archive has no index (incomplete backup?): " + path);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate((int) Math.min(indexOffset, HEADER_MAGIC.length + 2 + 64));
+            readFully(channel, header, 0);
+            DataInputStream headerIn = new DataInputStream(new ByteArrayInputStream(header.array()));
+            headerIn.skipBytes(HEADER_MAGIC.length);
+            CompressionCodec codec = compressionService.getCodec(CodecType.valueOf(headerIn.readUTF()));
+
+            ByteBuffer indexBytes = ByteBuffer.allocate((int) (size - FOOTER_LENGTH - indexOffset));
+            readFully(channel, indexBytes, indexOffset);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(indexBytes.array()));
+
+            Index index = new Index(codec);
+            int frameCount = in.readInt();
+            for (int i = 0; i < frameCount; i++) {
+                index.frames.add(new Frame(in.readLong(), in.readInt(), in.readInt()));
+            }
+            int sectionCount = in.readInt();
+            for (int i = 0; i < sectionCount; i++) {
+                SectionKind kind = SectionKind.valueOf(in.readUTF());
+                String table = in.readUTF();
+                index.sections.add(new Section(kind, table.isEmpty() ? null : table, in.readInt(), in.readInt()));
+            }
+            return index;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException("Unexpected end of framed archive");
+            }
+        }
+    }
+
+    /**
+     * Buffers raw bytes up to a frame and writes each frame as a complete, independently
+     * decodable codec stream. Sections always start on a frame boundary.
+     */
+    private static final class FrameWriter {
+        private final CountingOutputStream out;
+        private final CompressionCodec codec;
+        private final CompressionOptions options;
+        private final byte[] raw = new byte[FRAME_SIZE];
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(FRAME_SIZE / 2);
+        private final List<Frame> frames = new ArrayList<>();
+        private final List<Section> sections = new ArrayList<>();
+        private int rawLength;
+
+        private FrameWriter(CountingOutputStream out, CompressionCodec codec, CompressionOptions options) {
+            this.out = out;
+            this.codec = codec;
+            this.options = options;
+        }
+
+        void startSection(SectionKind kind, String table) throws IOException {
+            flushFrame();
+            sections.add(new Section(kind, table, frames.size(), 0));
+        }
+
+        void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, raw.length - rawLength);
+                System.arraycopy(b, off, raw, rawLength, n);
+                rawLength += n;
+                off += n;
+                len -= n;
+                if (rawLength == raw.length) {
+                    flushFrame();
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            flushFrame();
+            out.flush();
+        }
+
+        private void flushFrame() throws IOException {
+            if (rawLength == 0) {
+                return;
+            }
+            compressed.reset();
+            try (OutputStream frame = codec.compress(compressed, options)) {
+                frame.write(raw, 0, rawLength);
+            }
+            frames.add(new Frame(out.getByteCount(), compressed.size(), rawLength));
+            compressed.writeTo(out);
+            sections.get(sections.size() - 1).frameCount++;
+            rawLength = 0;
+        }
+    }
+
+    /**
+     * Decompresses the selected frames one after another, reading each with a positional read.
+     */
+    private static final class FrameEnumeration implements Enumeration<InputStream> {
+        private final FileChannel channel;
+        private final CompressionCodec codec;
+        private final Iterator<Frame> frames;
+
+        private FrameEnumeration(FileChannel channel, CompressionCodec codec, Iterator<Frame> frames) {
+            this.channel = channel;
+            this.codec = codec;
+            this.frames = frames;
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return frames.hasNext();
+        }
+
+        @Override
+        public InputStream nextElement() {
+            if (!frames.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Frame frame = frames.next();
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(frame.compressedLength);
+                readFully(channel, buffer, frame.offset);
+                return codec.decompress(new ByteArrayInputStream(buffer.array()));
+            } catch (IOException e) {
+                // Enumeration can't throw, hand the failure to the reader instead
+                return new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Failed to read frame at offset " + frame.offset, e);
+                    }
+                };
+            }
+        }
+    }
+
+    private static final class Frame {
+        private final long offset;
+        private final int compressedLength;
+        private final int rawLength;
+
+        private Frame(long offset, int compressedLength, int rawLength) {
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.rawLength = rawLength;
+        }
+    }
+
+    private static final class Section {
+        private final SectionKind kind;
+        private final String table;
+        private final int firstFrame;
+        private int frameCount;
+
+        private Section(SectionKind kind, String table, int firstFrame, int frameCount) {
+            this.kind = kind;
+            this.table = table;
+            this.firstFrame = firstFrame;
+            this.frameCount = frameCount;
+        }
+    }
+
+    private static final class Index {
+        private final CompressionCodec codec;
+        private final List<Frame> frames = new ArrayList<>();
+        private final List<Section> sections = new ArrayList<>();
+
+        private Index(CompressionCodec codec) {
+            this.codec = codec;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.DbBackup.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
+import org.springframework.stereotype.Component;
+
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.service.CompressionCodec;
+
+@Component
+public class GzipCodec implements CompressionCodec {
+
+    @Override
+    public CodecType getType() {
+        return CodecType.GZIP;
+    }
+
+    @Override
+    public String getExtension() {
+        return ".gz";
+    }
+
+    @Override
+    public boolean matches(byte[] header, int length) {
+        return length >= 2 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out, CompressionOptions options) throws IOException {
+        int level = options.getLevel() != null ? options.getLevel() : Deflater.DEFAULT_COMPRESSION;
+        if (options.getThreads() > 1) {
+            return new ParallelGzipOutputStream(out, options.getThreads(), options.getBlockSize(), level);
+        }
+        GzipParameters parameters = new GzipParameters();
+        parameters.setCompressionLevel(level);
+        return new GzipCompressorOutputStream(out, parameters);
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        // Parallel backups are written as concatenated members
+        return new GzipCompressorInputStream(in, true);
+    }
+}
@@ -0,0 +1,62 @@
+package com.DbBackup.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.springframework.stereotype.Component;
+
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.service.CompressionCodec;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.xxhash.XXHashFactory;
+
+@Component
+public class Lz4Codec implements CompressionCodec {
+
+    private final LZ4Factory lz4Factory = LZ4Factory.fastestInstance();
+
+    @Override
+    public CodecType getType() {
+        return CodecType.LZ4;
+    }
+
+    @Override
+    public String getExtension() {
+        return ".lz4";
+    }
+
+    @Override
+    public boolean matches(byte[] header, int length) {
+        return length >= 4
+                && (header[0] & 0xff) == 0x04
+                && (header[1] & 0xff) == 0x22
+                && (header[2] & 0xff) == 0x4d
+                && (header[3] & 0xff) == 0x18;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out, CompressionOptions options) throws IOException {
+        // Levels above 0 switch to LZ4 HC; the default favours speed
+        LZ4Compressor compressor = options.getLevel() != null && options.getLevel() > 0
+                ? lz4Factory.highCompressor(options.getLevel())
+                : lz4Factory.fastCompressor();
+        return new LZ4FrameOutputStream(out,
+                LZ4FrameOutputStream.BLOCKSIZE.SIZE_4MB,
+                -1L,
+                compressor,
+                XXHashFactory.fastestInstance().hash32(),
+                LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE,
+                LZ4FrameOutputStream.FLG.Bits.CONTENT_CHECKSUM);
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        return new LZ4FrameInputStream(in);
+    }
+}
@@ -0,0 +1,717 @@
+package com.DbBackup.service.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.RestoreOptions;
+import com.DbBackup.model.StreamStats;
+import com.DbBackup.service.BandwidthService;
+import com.DbBackup.service.ChecksumService;
+import com.DbBackup.service.CompressionCodec;
+import com.DbBackup.service.CompressionService;
+import com.DbBackup.service.MongoBsonDumpService;
+import com.DbBackup.util.ChecksumOutputStream;
+import com.DbBackup.util.Throttle;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCredential;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collections are read without a common snapshot, like mongodump without --oplog: writes
+ * made during the dump may or may not be in it. Views are recreated from their definition,
+ * system collections (users, roles, profiling data) are left out.
+ */
+@Service
+@Slf4j
+public class MongoBsonDumpServiceImpl implements MongoBsonDumpService {
+
+    static final String MANIFEST_FILE = "collections.manifest";
+    private static final String MANIFEST_HEADER = "# db-backup mongodb bson manifest v1";
+    private static final String COLLECTION_SECTION = "---";
+    private static final String METADATA_FILE = "_metadata.json";
+
+    // Documents are at most 16 MiB, the server allows a little more for its own fields
+    private static final int MAX_DOCUMENT_BYTES = 16 * 1024 * 1024 + 16 * 1024;
+    private static final int BATCH_DOCUMENTS = 1000;
+    private static final int BATCH_BYTES = 16 * 1024 * 1024;
+    // Sampled _ids per range, so the ranges come out roughly even
+    private static final int SAMPLES_PER_CHUNK = 16;
+    private static final int MAX_SAMPLES = 100_000;
+
+    private static final JsonWriterSettings METADATA_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.EXTENDED)
+            .build();
+
+    private final CompressionService compressionService;
+    private final BandwidthService bandwidthService;
+    private final ChecksumService checksumService;
+    private final long chunkDocuments;
+
+    public MongoBsonDumpServiceImpl(CompressionService compressionService,
+                                    BandwidthService bandwidthService,
+                                    ChecksumService checksumService,
+                                    @Value("${backup.mongodb.chunk-documents:1000000}") long chunkDocuments) {
+        this.compressionService = compressionService;
+        this.bandwidthService = bandwidthService;
+        this.checksumService = checksumService;
+        this.chunkDocuments = chunkDocuments;
+    }
+
+    @Override
+    public StreamStats dump(BackupJob job, String outputDir) throws IOException {
+        ConnectionParams params = job.getConnectionParams();
+        Path dir = Paths.get(outputDir);
+        Files.createDirectories(dir);
+
+        CompressionOptions options = CompressionOptions.forJob(job);
+        // Collections are compressed side by side already, one codec thread each is enough
+        options.setThreads(1);
+        CompressionCodec codec = job.isCompress() ? compressionService.getCodec(options.getCodec()) : null;
+        // Shared by all collection writers, so the job's rate covers the whole dump
+        Throttle throttle = bandwidthService.forJob(job.getMaxRate());
+        int requested = job.getParallelJobs() != null && job.getParallelJobs() > 0
+                ? job.getParallelJobs()
+                : Runtime.getRuntime().availableProcessors();
+
+        try (MongoClient client = connect(params, requested)) {
+            MongoDatabase database = client.getDatabase(params.getDatabase());
+            String serverVersion = database.runCommand(new Document("buildInfo", 1)).getString("version");
+
+            List<CollectionInfo> collections = listCollections(database);
+            List<DumpUnit> units = planUnits(database, collections, codec);
+            int jobs = Math.max(1, Math.min(requested, units.size()));
+            log.info("Dumping {} collections of {} in {} parts with {} cursors",
+                    collections.size(), params.getDatabase(), units.size(), jobs);
+
+            AtomicLong rawBytes = new AtomicLong();
+            AtomicLong compressedBytes = new AtomicLong();
+
+            StreamStats metadata = writeFile(dir.resolve(METADATA_FILE + extension(codec)), codec, options, throttle,
+                    out -> writeMetadata(collections, out));
+            rawBytes.addAndGet(metadata.getRawBytes());
+            compressedBytes.addAndGet(metadata.getCompressedBytes());
+
+            dumpUnits(database, units, jobs, dir, codec, options, throttle, rawBytes, compressedBytes);
+
+            Map<String, String> header = new LinkedHashMap<>();
+            header.put("database", params.getDatabase());
+            header.put("created", LocalDateTime.now().toString());
+            header.put("serverVersion", serverVersion);
+            header.put("metadata", METADATA_FILE + extension(codec));
+            header.put("metadataChecksum", metadata.getChecksum());
+            // The manifest holds every file's checksum, so its own checksum covers the whole dump
+            String checksum = writeManifest(dir, header, units);
+
+            return StreamStats.builder()
+                    .filePath(dir.toString())
+                    .rawBytes(rawBytes.get())
+                    .compressedBytes(compressedBytes.get())
+                    .checksum(checksum)
+                    .build();
+        } catch (MongoException e) {
+            throw new IOException("Native MongoDB dump failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isCollectionDump(String path) {
+        Path manifest = Paths.get(path).resolve(MANIFEST_FILE);
+        if (!Files.isRegularFile(manifest)) {
+            return false;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            return MANIFEST_HEADER.equals(reader.readLine());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Map<String, String> listFiles(String dumpDir) throws IOException {
+        Manifest manifest = readManifest(Paths.get(dumpDir));
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put(manifest.header.get("metadata"), manifest.header.get("metadataChecksum"));
+        for (DumpUnit unit : manifest.units) {
+            files.put(unit.file, unit.checksum);
+        }
+        return files;
+    }
+
+    /**
+     * The restored collections and views replace any existing ones of the same name, like
+     * mongorestore --drop; other collections of the database are left alone. Indexes are
+     * built once all documents are in.
+     */
+    @Override
+    public boolean restore(String dumpDir, ConnectionParams params, RestoreOptions options) throws IOException {
+        Path dir = Paths.get(dumpDir);
+        Manifest manifest = readManifest(dir);
+        List<CollectionInfo> collections = readMetadata(dir.resolve(manifest.header.get("metadata")));
+
+        if (options.isSelective()) {
+            Set<String> wanted = new HashSet<>();
+            options.getItems().forEach(item -> wanted.add(item.trim()));
+            for (String item : wanted) {
+                if (collections.stream().noneMatch(collection -> collection.name.equals(item))) {
+                    log.warn("Collection not found in backup: {}", item);
+                }
+            }
+            collections = collections.stream()
+                    .filter(collection -> wanted.contains(collection.name))
+                    .collect(Collectors.toList());
+            if (collections.isEmpty()) {
+                return false;
+            }
+        }
+        Set<String> names = collections.stream().map(collection -> collection.name).collect(Collectors.toSet());
+        List<DumpUnit> units = manifest.units.stream()
+                .filter(unit -> names.contains(unit.collection))
+                .collect(Collectors.toList());
+
+        int jobs = Math.max(1, Math.min(options.resolveJobs(), units.size()));
+        Throttle throttle = bandwidthService.forJob(options.getMaxRate());
+        try (MongoClient client = connect(params, jobs)) {
+            MongoDatabase database = client.getDatabase(params.getDatabase());
+            for (CollectionInfo collection : collections) {
+                database.getCollection(collection.name).drop();
+                Document create = new Document("create", collection.name);
+                create.putAll(collection.options);
+                database.runCommand(create);
+            }
+
+            log.info("Restoring {} collections into {} with {} parallel loaders",
+                    collections.size(), params.getDatabase(), jobs);
+            if (!loadUnits(database, units, dir, jobs, throttle)) {
+                return false;
+            }
+
+            for (CollectionInfo collection : collections) {
+                List<Document> indexes = collection.indexes.stream()
+                        // The _id index, or a clustered collection's key, comes with the collection
+                        .filter(index -> !"_id_".equals(index.getString("name")) && !index.containsKey("clustered"))
+                        .collect(Collectors.toList());
+                if (!indexes.isEmpty()) {
+                    database.runCommand(new Document("createIndexes", collection.name).append("indexes", indexes));
+                    log.info("Built {} indexes on {}", indexes.size(), collection.name);
+                }
+            }
+            return true;
+        } catch (MongoException e) {
+            log.error("Restoring {} failed: {}", dumpDir, e.getMessage());
+            return false;
+        }
+    }
+
+    private List<CollectionInfo> listCollections(MongoDatabase database) {
+        List<CollectionInfo> collections = new ArrayList<>();
+        for (Document document : database.listCollections()) {
+            String name = document.getString("name");
+            if (name.startsWith("system.")) {
+                continue;
+            }
+            CollectionInfo collection = new CollectionInfo(name, document.getString("type"));
+            collection.options = document.get("options", new Document());
+            if (!collection.isView()) {
+                for (Document index : database.getCollection(name).listIndexes()) {
+                    // Server generated, createIndexes rejects or ignores them
+                    index.remove("v");
+                    index.remove("ns");
+                    collection.indexes.add(index);
+                }
+                collection.estimatedDocuments = database.getCollection(name).estimatedDocumentCount();
+            }
+            collections.add(collection);
+        }
+        // Largest first, so the long tail is made of small collections
+        collections.sort(Comparator.comparingLong((CollectionInfo collection) -> collection.estimatedDocuments)
+                .reversed());
+        return collections;
+    }
+
+    /**
+     * One unit per collection, or per _id range for collections estimated above the chunk
+     * size. Range bounds come from a random sample of _ids; a last unit picks up documents
+     * whose _id is of another type, which range queries never match.
+     */
+    private List<DumpUnit> planUnits(MongoDatabase database, List<CollectionInfo> collections,
+                                     CompressionCodec codec) {
+        List<DumpUnit> units = new ArrayList<>();
+        for (int i = 0; i < collections.size(); i++) {
+            CollectionInfo collection = collections.get(i);
+            if (collection.isView()) {
+                continue;
+            }
+            String baseName = String.format("%04d_%s", i, collection.name.replaceAll("[^A-Za-z0-9_.$-]", "_"));
+            List<BsonValue> bounds = chunkDocuments > 0 && collection.estimatedDocuments > chunkDocuments
+                    && !collection.isTimeSeries()
+                    ? rangeBounds(database, collection)
+                    : new ArrayList<>();
+            if (bounds.isEmpty()) {
+                units.add(new DumpUnit(collection.name, baseName + ".bson" + extension(codec), new BsonDocument()));
+                continue;
+            }
+
+            List<BsonDocument> filters = rangeFilters(bounds);
+            for (int c = 0; c < filters.size(); c++) {
+                units.add(new DumpUnit(collection.name,
+                        String.format("%s.%04d.bson%s", baseName, c, extension(codec)), filters.get(c)));
+            }
+            log.info("Split collection {} (~{} documents) into {} ranges",
+                    collection.name, collection.estimatedDocuments, filters.size());
+        }
+        return units;
+    }
+
+    private List<BsonValue> rangeBounds(MongoDatabase database, CollectionInfo collection) {
+        long chunks = (collection.estimatedDocuments + chunkDocuments - 1) / chunkDocuments;
+        int samples = (int) Math.min(MAX_SAMPLES, chunks * SAMPLES_PER_CHUNK);
+        List<BsonValue> ids = new ArrayList<>();
+        // Sorted by the server, in its own order of BSON values
+        for (BsonDocument document : database.getCollection(collection.name, BsonDocument.class).aggregate(Arrays.asList(
+                new BsonDocument("$sample", new BsonDocument("size", new BsonInt32(samples))),
+                new BsonDocument("$project", new BsonDocument("_id", new BsonInt32(1))),
+                new BsonDocument("$sort", new BsonDocument("_id", new BsonInt32(1)))))
+                .allowDiskUse(true)) {
+            ids.add(document.get("_id"));
+        }
+        return rangeBounds(collection.name, ids, chunks);
+    }
+
+    /**
+     * Bounds at even steps through the sorted sample, repeats left out. None when the sample
+     * is empty or its _ids are of mixed or unsupported types.
+     */
+    static List<BsonValue> rangeBounds(String collection, List<BsonValue> sortedIds, long chunks) {
+        List<BsonValue> bounds = new ArrayList<>();
+        if (sortedIds.isEmpty()) {
+            return bounds;
+        }
+        String type = typeAlias(sortedIds.get(0));
+        if (type == null || sortedIds.stream().anyMatch(id -> !type.equals(typeAlias(id)))) {
+            log.info("Collection {} has _ids of mixed or unsupported types, dumping it in one piece", collection);
+            return bounds;
+        }
+
+        for (long c = 1; c < chunks; c++) {
+            BsonValue bound = sortedIds.get((int) (c * sortedIds.size() / chunks));
+            if (bounds.isEmpty() || !bounds.get(bounds.size() - 1).equals(bound)) {
+                bounds.add(bound);
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * One filter below the first bound, one between each pair of bounds, one from the last
+     * bound on, and the catch-all for _ids of other types.
+     */
+    static List<BsonDocument> rangeFilters(List<BsonValue> bounds) {
+        List<BsonDocument> filters = new ArrayList<>();
+        filters.add(idFilter(new BsonDocument("$lt", bounds.get(0))));
+        for (int b = 1; b < bounds.size(); b++) {
+            filters.add(idFilter(new BsonDocument("$gte", bounds.get(b - 1)).append("$lt", bounds.get(b))));
+        }
+        filters.add(idFilter(new BsonDocument("$gte", bounds.get(bounds.size() - 1))));
+        filters.add(idFilter(new BsonDocument("$not",
+                new BsonDocument("$type", new BsonString(typeAlias(bounds.get(0)))))));
+        return filters;
+    }
+
+    // The $type alias covering the value, for the types ranges are cut on
+    private static String typeAlias(BsonValue id) {
+        switch (id.getBsonType()) {
+            case OBJECT_ID:
+                return "objectId";
+            case STRING:
+                return "string";
+            case DATE_TIME:
+                return "date";
+            case INT32:
+            case INT64:
+            case DOUBLE:
+            case DECIMAL128:
+                // Numbers compare with each other whatever their width
+                return "number";
+            default:
+                return null;
+        }
+    }
+
+    private static BsonDocument idFilter(BsonDocument condition) {
+        return new BsonDocument("_id", condition);
+    }
+
+    private void writeMetadata(List<CollectionInfo> collections, OutputStream out) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (CollectionInfo collection : collections) {
+            Document document = new Document("name", collection.name)
+                    .append("type", collection.type)
+                    .append("options", collection.options)
+                    .append("indexes", collection.indexes);
+            // Extended JSON keeps the BSON types of validators, defaults and index keys
+            writer.write(document.toJson(METADATA_JSON));
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    private List<CollectionInfo> readMetadata(Path file) throws IOException {
+        List<CollectionInfo> collections = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                compressionService.openDecompressed(file.toString()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Document document = Document.parse(line);
+                CollectionInfo collection = new CollectionInfo(document.getString("name"), document.getString("type"));
+                collection.options = document.get("options", new Document());
+                collection.indexes.addAll(document.getList("indexes", Document.class, new ArrayList<>()));
+                collections.add(collection);
+            }
+        }
+        return collections;
+    }
+
+    private void dumpUnits(MongoDatabase database, List<DumpUnit> units, int jobs, Path dir,
+                           CompressionCodec codec, CompressionOptions options, Throttle throttle,
+                           AtomicLong rawBytes, AtomicLong compressedBytes) throws IOException {
+        ConcurrentLinkedQueue<DumpUnit> queue = new ConcurrentLinkedQueue<>(units);
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < jobs; i++) {
+                futures.add(executor.submit(() -> {
+                    DumpUnit unit;
+                    while ((unit = queue.poll()) != null) {
+                        DumpUnit current = unit;
+                        MongoCollection<RawBsonDocument> collection =
+                                database.getCollection(current.collection, RawBsonDocument.class);
+                        StreamStats stats = writeFile(dir.resolve(current.file), codec, options, throttle,
+                                out -> current.documents = writeDocuments(collection, current.filter, out));
+                        current.checksum = stats.getChecksum();
+                        rawBytes.addAndGet(stats.getRawBytes());
+                        compressedBytes.addAndGet(stats.getCompressedBytes());
+                        log.info("Dumped {} ({} documents)", current.file, current.documents);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while dumping collections", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Copies each document's bytes as the server sent them, never decoding a field. BSON
+     * documents start with their own length, so the file needs no framing of its own.
+     */
+    static long writeDocuments(MongoCollection<RawBsonDocument> collection, BsonDocument filter, OutputStream out)
+            throws IOException {
+        long documents = 0;
+        // Throttled or slow compression can leave the cursor idle past the server's timeout
+        try (MongoCursor<RawBsonDocument> cursor = collection.find(filter).noCursorTimeout(true).iterator()) {
+            while (cursor.hasNext()) {
+                ByteBuffer bytes = cursor.next().getByteBuffer().asNIO();
+                out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                documents++;
+            }
+        }
+        return documents;
+    }
+
+    private boolean loadUnits(MongoDatabase database, List<DumpUnit> units, Path dir, int jobs, Throttle throttle)
+            throws IOException {
+        ConcurrentLinkedQueue<DumpUnit> queue = new ConcurrentLinkedQueue<>(units);
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < jobs; i++) {
+                futures.add(executor.submit(() -> {
+                    boolean success = true;
+                    DumpUnit unit;
+                    while ((unit = queue.poll()) != null) {
+                        success &= loadUnit(database.getCollection(unit.collection, RawBsonDocument.class),
+                                dir.resolve(unit.file), throttle);
+                    }
+                    return success;
+                }));
+            }
+            boolean success = true;
+            for (Future<Boolean> future : futures) {
+                success &= future.get();
+            }
+            return success;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Streams one (decompressed) file into unordered insertMany batches, which the server
+     * applies without stopping at the first failed document. Validators are bypassed: the
+     * documents were accepted once, and may predate the collection's current rules.
+     */
+    private boolean loadUnit(MongoCollection<RawBsonDocument> collection, Path file, Throttle throttle)
+            throws IOException {
+        InsertManyOptions insertOptions = new InsertManyOptions().ordered(false).bypassDocumentValidation(true);
+        long documents = 0;
+        try (InputStream in = new BufferedInputStream(
+                throttle.wrap(compressionService.openDecompressed(file.toString())), 256 * 1024)) {
+            List<RawBsonDocument> batch = new ArrayList<>(BATCH_DOCUMENTS);
+            long batchBytes = 0;
+            byte[] document;
+            while ((document = readDocument(in, file)) != null) {
+                batch.add(new RawBsonDocument(document));
+                batchBytes += document.length;
+                if (batch.size() >= BATCH_DOCUMENTS || batchBytes >= BATCH_BYTES) {
+                    collection.insertMany(batch, insertOptions);
+                    documents += batch.size();
+                    batch = new ArrayList<>(BATCH_DOCUMENTS);
+                    batchBytes = 0;
+                }
+            }
+            if (!batch.isEmpty()) {
+                collection.insertMany(batch, insertOptions);
+                documents += batch.size();
+            }
+            log.info("Loaded {} ({} documents)", file.getFileName(), documents);
+            return true;
+        } catch (MongoException e) {
+            log.error("Loading {} failed after {} documents: {}", file.getFileName(), documents, e.getMessage());
+            return false;
+        }
+    }
+
+    // The next document, or null at the end of the file
+    static byte[] readDocument(InputStream in, Path file) throws IOException {
+        byte[] prefix = new byte[4];
+        int read = IOUtils.read(in, prefix);
+        if (read == 0) {
+            return null;
+        }
+        if (read < 4) {
+            throw new EOFException("Truncated document in " + file.getFileName());
+        }
+        int length = ByteBuffer.wrap(prefix).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        if (length < 5 || length > MAX_DOCUMENT_BYTES) {
+            throw new IOException("Corrupt document length " + length + " in " + file.getFileName());
+        }
+        byte[] document = new byte[length];
+        System.arraycopy(prefix, 0, document, 0, 4);
+        IOUtils.readFully(in, document, 4, length - 4);
+        return document;
+    }
+
+    /**
+     * A client for one dump or restore, with a connection for every worker. The shared
+     * clients of the connection checks are sized for checks, not for parallel cursors.
+     */
+    private MongoClient connect(ConnectionParams params, int workers) {
+        String uri = String.format("mongodb://%s:%d/%s",
+                params.getHost(),
+                params.getPort() != null ? params.getPort() : 27017,
+                params.getDatabase());
+        MongoClientSettings.Builder settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .applicationName("db-backup")
+                .applyToConnectionPoolSettings(pool -> pool.maxSize(workers + 1));
+        if (params.getUsername() != null && !params.getUsername().isEmpty()) {
+            // Not put in the URI, where special characters in the password would need escaping
+            settings.credential(MongoCredential.createCredential(params.getUsername(), params.getDatabase(),
+                    params.getPassword() != null ? params.getPassword().toCharArray() : new char[0]));
+        }
+        return MongoClients.create(settings.build());
+    }
+
+    private String extension(CompressionCodec codec) {
+        return codec != null ? codec.getExtension() : "";
+    }
+
+    private StreamStats writeFile(Path path, CompressionCodec codec, CompressionOptions options, Throttle throttle,
+                                  DataWriter content) throws IOException {
+        ChecksumOutputStream hashed = checksumService.wrap(Files.newOutputStream(path));
+        CountingOutputStream compressed = new CountingOutputStream(hashed);
+        CountingOutputStream raw;
+        try (OutputStream out = codec != null ? codec.compress(compressed, options) : compressed) {
+            // Throttling the documents as they are written paces the reads from the server too
+            raw = new CountingOutputStream(throttle.wrap(out));
+            try (OutputStream buffered = new BufferedOutputStream(raw, 256 * 1024)) {
+                content.write(buffered);
+            }
+        } catch (MongoException e) {
+            Files.deleteIfExists(path);
+            throw new IOException("Failed to dump " + path.getFileName() + ": " + e.getMessage(), e);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return StreamStats.builder()
+                .filePath(path.toString())
+                .rawBytes(raw.getByteCount())
+                .compressedBytes(compressed.getByteCount())
+                .checksum(hashed.getChecksum())
+                .build();
+    }
+
+    private String writeManifest(Path dir, Map<String, String> header, List<DumpUnit> units) throws IOException {
+        ChecksumOutputStream hashed = checksumService.wrap(Files.newOutputStream(dir.resolve(MANIFEST_FILE)));
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(hashed, StandardCharsets.UTF_8))) {
+            writer.write(MANIFEST_HEADER);
+            writer.newLine();
+            for (Map.Entry<String, String> entry : header.entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue());
+                writer.newLine();
+            }
+            writer.write(COLLECTION_SECTION);
+            writer.newLine();
+            for (DumpUnit unit : units) {
+                writer.write(String.join("\t", unit.collection, unit.file,
+                        String.valueOf(unit.documents), unit.checksum));
+                writer.newLine();
+            }
+        }
+        return hashed.getChecksum();
+    }
+
+    private Manifest readManifest(Path dir) throws IOException {
+        Manifest manifest = new Manifest();
+        boolean inCollections = false;
+        for (String line : Files.readAllLines(dir.resolve(MANIFEST_FILE), StandardCharsets.UTF_8)) {
+            if (!inCollections) {
+                if (COLLECTION_SECTION.equals(line)) {
+                    inCollections = true;
+                } else if (line.contains("=")) {
+                    int separator = line.indexOf('=');
+                    manifest.header.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+                continue;
+            }
+            if (!line.isBlank()) {
+                String[] parts = line.split("\t", -1);
+                DumpUnit unit = new DumpUnit(parts[0], parts[1], null);
+                unit.documents = Long.parseLong(parts[2]);
+                unit.checksum = parts[3];
+                manifest.units.add(unit);
+            }
+        }
+        return manifest;
+    }
+
+    @FunctionalInterface
+    private interface DataWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static final class CollectionInfo {
+        private final String name;
+        private final String type;
+        private Document options = new Document();
+        private final List<Document> indexes = new ArrayList<>();
+        private long estimatedDocuments;
+
+        private CollectionInfo(String name, String type) {
+            this.name = name;
+            this.type = type != null ? type : "collection";
+        }
+
+        private boolean isView() {
+            return "view".equals(type);
+        }
+
+        private boolean isTimeSeries() {
+            return "timeseries".equals(type);
+        }
+    }
+
+    // A file of the dump: a whole collection or one _id range of it
+    private static final class DumpUnit {
+        private final String collection;
+        private final String file;
+        private final BsonDocument filter;
+        private volatile long documents;
+        private volatile String checksum;
+
+        private DumpUnit(String collection, String file, BsonDocument filter) {
+            this.collection = collection;
+            this.file = file;
+            this.filter = filter;
+        }
+    }
+
+    private static final class Manifest {
+        private final Map<String, String> header = new LinkedHashMap<>();
+        private final List<DumpUnit> units = new ArrayList<>();
+    }
+}
@@ -0,0 +1,959 @@
+package com.DbBackup.service.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.BinlogPosition;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.RestoreOptions;
+import com.DbBackup.model.StreamStats;
+import com.DbBackup.service.BandwidthService;
+import com.DbBackup.service.ChecksumService;
+import com.DbBackup.service.CompressionCodec;
+import com.DbBackup.service.CompressionService;
+import com.DbBackup.service.MySqlParallelDumpService;
+import com.DbBackup.service.ProcessSupervisor;
+import com.DbBackup.service.SupervisedTask;
+import com.DbBackup.util.ChecksumOutputStream;
+import com.DbBackup.util.MySqlBinlogStatus;
+import com.DbBackup.util.SqlStatementReader;
+import com.DbBackup.util.Throttle;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class MySqlParallelDumpServiceImpl implements MySqlParallelDumpService {
+
+    static final String MANIFEST_FILE = "tables.manifest";
+    // v2 may list a table several times, once per chunk
+    private static final String MANIFEST_HEADER = "# db-backup mysql table manifest v2";
+    private static final String MANIFEST_HEADER_V1 = "# db-backup mysql table manifest v1";
+    private static final String TABLE_SECTION = "---";
+    private static final String OBJECTS_FILE = "_objects.sql";
+
+    // Keep each multi-row INSERT well under the 4 MB max_allowed_packet of older servers
+    private static final int MAX_STATEMENT_LENGTH = 1024 * 1024;
+
+    private static final Set<String> INTEGER_TYPES = new HashSet<>(
+            Arrays.asList("tinyint", "smallint", "mediumint", "int", "bigint"));
+
+    private static final String FILE_HEADER = "SET NAMES utf8mb4;\n"
+            + "SET FOREIGN_KEY_CHECKS=0;\n"
+            + "SET UNIQUE_CHECKS=0;\n"
+            + "SET SQL_MODE='NO_AUTO_VALUE_ON_ZERO';\n";
+
+    private final CompressionService compressionService;
+    private final BandwidthService bandwidthService;
+    private final ChecksumService checksumService;
+    private final ProcessSupervisor processSupervisor;
+    // Tables estimated to hold more rows are dumped in several key ranges
+    private final long chunkRows;
+
+    public MySqlParallelDumpServiceImpl(CompressionService compressionService,
+                                        BandwidthService bandwidthService,
+                                        ChecksumService checksumService,
+                                        ProcessSupervisor processSupervisor,
+                                        @Value("${backup.mysql.chunk-rows:1000000}") long chunkRows) {
+        this.compressionService = compressionService;
+        this.bandwidthService = bandwidthService;
+        this.checksumService = checksumService;
+        this.processSupervisor = processSupervisor;
+        this.chunkRows = chunkRows;
+    }
+
+    @Override
+    public StreamStats dump(BackupJob job, String outputDir) throws IOException {
+        ConnectionParams params = job.getConnectionParams();
+        Path dir = Paths.get(outputDir);
+        Files.createDirectories(dir);
+
+        CompressionOptions options = CompressionOptions.forJob(job);
+        // Tables are compressed side by side already, one codec thread each is enough
+        options.setThreads(1);
+        CompressionCodec codec = job.isCompress() ? compressionService.getCodec(options.getCodec()) : null;
+        // Shared by all table writers, so the job's rate covers the whole dump
+        Throttle throttle = bandwidthService.forJob(job.getMaxRate());
+
+        List<Connection> workers = new ArrayList<>();
+        try (Connection control = connect(params)) {
+            List<TableInfo> tables = new ArrayList<>();
+            StringWriter objectDefinitions = new StringWriter();
+            Map<String, String> snapshot = openSharedSnapshot(control, workers, tables, objectDefinitions,
+                    params, job.getParallelJobs());
+            List<TableInfo> units = planChunks(control, params.getDatabase(), tables);
+            log.info("Dumping {} tables of {} in {} parts with {} connections",
+                    tables.size(), params.getDatabase(), units.size(), workers.size());
+
+            AtomicLong rawBytes = new AtomicLong();
+            AtomicLong compressedBytes = new AtomicLong();
+            List<TableInfo> done = dumpTables(workers, units, dir, codec, options, throttle,
+                    rawBytes, compressedBytes);
+
+            StreamStats objects = writeFile(dir.resolve(OBJECTS_FILE + extension(codec)), codec, options, throttle,
+                    writer -> writer.write(objectDefinitions.toString()));
+            rawBytes.addAndGet(objects.getRawBytes());
+            compressedBytes.addAndGet(objects.getCompressedBytes());
+
+            // The manifest holds every file's checksum, so its own checksum covers the whole dump
+            String checksum = writeManifest(dir, params.getDatabase(), snapshot, done,
+                    OBJECTS_FILE + extension(codec), objects.getChecksum());
+
+            return StreamStats.builder()
+                    .filePath(dir.toString())
+                    .rawBytes(rawBytes.get())
+                    .compressedBytes(compressedBytes.get())
+                    .checksum(checksum)
+                    .build();
+        } catch (SQLException e) {
+            throw new IOException("Parallel MySQL dump failed: " + e.getMessage(), e);
+        } finally {
+            for (Connection worker : workers) {
+                closeQuietly(worker);
+            }
+        }
+    }
+
+    @Override
+    public boolean isTableDump(String path) {
+        Path manifest = Paths.get(path).resolve(MANIFEST_FILE);
+        if (!Files.isRegularFile(manifest)) {
+            return false;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            return MANIFEST_HEADER.equals(header) || MANIFEST_HEADER_V1.equals(header);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Map<String, String> listFiles(String dumpDir) throws IOException {
+        Manifest manifest = readManifest(Paths.get(dumpDir));
+        Map<String, String> files = new LinkedHashMap<>();
+        for (List<String> tableFiles : manifest.tables.values()) {
+            for (String file : tableFiles) {
+                files.put(file, manifest.checksums.get(file));
+            }
+        }
+        if (manifest.objectsFile != null) {
+            files.put(manifest.objectsFile, manifest.checksums.get(manifest.objectsFile));
+        }
+        return files;
+    }
+
+    @Override
+    public Optional<BinlogPosition> binlogPosition(String dumpDir) throws IOException {
+        Manifest manifest = readManifest(Paths.get(dumpDir));
+        String file = manifest.header.get("binlogFile");
+        String position = manifest.header.get("binlogPosition");
+        if (file == null || file.isEmpty() || position == null) {
+            return Optional.empty();
+        }
+        if (!"true".equals(manifest.header.get("consistent"))) {
+            log.warn("{} was dumped without a global read lock, its binlog position may be slightly off", dumpDir);
+        }
+        return Optional.of(BinlogPosition.builder().file(file).position(Long.parseLong(position)).build());
+    }
+
+    @Override
+    public boolean restore(String dumpDir, ConnectionParams params, RestoreOptions options) throws IOException {
+        Path dir = Paths.get(dumpDir);
+        Manifest manifest = readManifest(dir);
+
+        List<List<String>> tables = new ArrayList<>();
+        if (options.isSelective()) {
+            Set<String> wanted = new HashSet<>();
+            options.getItems().forEach(item -> wanted.add(item.trim()));
+            for (String table : wanted) {
+                List<String> files = manifest.tables.get(table);
+                if (files == null) {
+                    log.warn("Table not found in backup: {}", table);
+                } else {
+                    tables.add(files);
+                }
+            }
+            if (tables.isEmpty()) {
+                return false;
+            }
+        } else {
+            tables.addAll(manifest.tables.values());
+        }
+
+        // A table's first file creates it, the rest of its chunks load once all tables exist
+        List<String> first = new ArrayList<>();
+        List<String> rest = new ArrayList<>();
+        for (List<String> files : tables) {
+            first.add(files.get(0));
+            rest.addAll(files.subList(1, files.size()));
+        }
+        int jobs = options.resolveJobs();
+        log.info("Restoring {} tables ({} files) into {} with up to {} parallel loaders",
+                tables.size(), first.size() + rest.size(), params.getDatabase(), jobs);
+
+        Throttle throttle = bandwidthService.forJob(options.getMaxRate());
+        String jobId = options.getJobId();
+        if (!loadFiles(dir, first, params, jobs, throttle, jobId)
+                || !loadFiles(dir, rest, params, jobs, throttle, jobId)) {
+            return false;
+        }
+
+        // Views, routines and triggers go last, after the tables they depend on exist.
+        // Selective restores leave them alone.
+        if (!options.isSelective() && manifest.objectsFile != null) {
+            return loadFiles(dir, Collections.singletonList(manifest.objectsFile), params, 1, throttle, jobId);
+        }
+        return true;
+    }
+
+    private List<TableInfo> listTables(Connection conn, String database) throws SQLException {
+        List<TableInfo> tables = new ArrayList<>();
+        // Largest first, so the long tail is made of small tables
+        String sql = "SELECT table_name, COALESCE(data_length, 0) + COALESCE(index_length, 0), COALESCE(table_rows, 0) "
+                + "FROM information_schema.tables WHERE table_schema = ? AND table_type = 'BASE TABLE' "
+                + "ORDER BY 2 DESC";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, database);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    TableInfo table = new TableInfo(rs.getString(1));
+                    table.estimatedRows = rs.getLong(3);
+                    tables.add(table);
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Opens the worker connections on one snapshot the way mydumper does: a global read
+     * lock freezes commits while every worker starts its consistent-snapshot transaction,
+     * then the lock is released. Without the RELOAD privilege the workers still get
+     * snapshots, but they may differ slightly and the manifest says so. The tables to dump
+     * are listed into {@code tables}, and the views, routines, events and triggers written
+     * to {@code objects}, under the lock too, so the schema matches the snapshot's data.
+     */
+    private Map<String, String> openSharedSnapshot(Connection control, List<Connection> workers,
+                                                   List<TableInfo> tables, Writer objects,
+                                                   ConnectionParams params, Integer requestedJobs)
+            throws SQLException, IOException {
+        Map<String, String> snapshot = new LinkedHashMap<>();
+        boolean locked = false;
+        try (Statement st = control.createStatement()) {
+            st.execute("FLUSH TABLES WITH READ LOCK");
+            locked = true;
+        } catch (SQLException e) {
+            log.warn("Could not take a global read lock ({}), worker snapshots may not be identical", e.getMessage());
+        }
+
+        try {
+            tables.addAll(listTables(control, params.getDatabase()));
+            int jobs = resolveJobs(requestedJobs, tables.size());
+            for (int i = 0; i < jobs; i++) {
+                Connection worker = connect(params);
+                workers.add(worker);
+                try (Statement st = worker.createStatement()) {
+                    st.execute("SET SESSION TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+                    st.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT");
+                }
+            }
+            if (!locked) {
+                // Nothing held DDL back, list the tables again now that the snapshots are open
+                tables.clear();
+                tables.addAll(listTables(control, params.getDatabase()));
+            }
+            // Only definitions, small enough to keep in memory until the tables are written
+            dumpObjects(control, params.getDatabase(), objects);
+
+            // The binlog position of the snapshot, for point-in-time recovery on top of it
+            try {
+                Optional<BinlogPosition> position = MySqlBinlogStatus.read(control);
+                if (position.isPresent()) {
+                    snapshot.put("binlogFile", position.get().getFile());
+                    snapshot.put("binlogPosition", String.valueOf(position.get().getPosition()));
+                }
+            } catch (SQLException e) {
+                log.debug("Binary log position not available: {}", e.getMessage());
+            }
+        } finally {
+            if (locked) {
+                try (Statement st = control.createStatement()) {
+                    st.execute("UNLOCK TABLES");
+                }
+            }
+        }
+        snapshot.put("consistent", String.valueOf(locked));
+        return snapshot;
+    }
+
+    /**
+     * Splits tables estimated above the chunk size into ranges of their integer primary key,
+     * so several workers read a large table concurrently instead of one worker reading it
+     * while the others are done. The first and last ranges are open-ended, which keeps rows
+     * outside the sampled bounds; tables without such a key are dumped in one piece.
+     */
+    private List<TableInfo> planChunks(Connection conn, String database, List<TableInfo> tables) throws SQLException {
+        List<TableInfo> units = new ArrayList<>();
+        for (int i = 0; i < tables.size(); i++) {
+            TableInfo table = tables.get(i);
+            table.index = i;
+            List<String> ranges = chunkRows > 0 && table.estimatedRows > chunkRows
+                    ? keyRanges(conn, database, table)
+                    : Collections.emptyList();
+            if (ranges.isEmpty()) {
+                units.add(table);
+                continue;
+            }
+            for (int chunk = 0; chunk < ranges.size(); chunk++) {
+                TableInfo unit = new TableInfo(table.name);
+                unit.index = i;
+                unit.chunk = chunk;
+                unit.chunks = ranges.size();
+                unit.range = ranges.get(chunk);
+                units.add(unit);
+            }
+        }
+        return units;
+    }
+
+    private List<String> keyRanges(Connection conn, String database, TableInfo table) throws SQLException {
+        List<String[]> key = new ArrayList<>();
+        String sql = "SELECT k.column_name, c.data_type FROM information_schema.key_column_usage k "
+                + "JOIN information_schema.columns c ON c.table_schema = k.table_schema "
+                + "AND c.table_name = k.table_name AND c.column_name = k.column_name "
+                + "WHERE k.table_schema = ? AND k.table_name = ? AND k.constraint_name = 'PRIMARY' "
+                + "ORDER BY k.ordinal_position";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, database);
+            ps.setString(2, table.name);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    key.add(new String[] {rs.getString(1), rs.getString(2).toLowerCase()});
+                }
+            }
+        }
+        if (key.size() != 1 || !INTEGER_TYPES.contains(key.get(0)[1])) {
+            log.info("Table {} has no single integer primary key, dumping it in one piece", table.name);
+            return Collections.emptyList();
+        }
+
+        String column = quoteIdentifier(key.get(0)[0]);
+        BigInteger min;
+        BigInteger max;
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(" + column + "), MAX(" + column + ") FROM "
+                     + quoteIdentifier(table.name))) {
+            rs.next();
+            if (rs.getString(1) == null) {
+                return Collections.emptyList();
+            }
+            // BIGINT UNSIGNED doesn't fit a long
+            min = new BigInteger(rs.getString(1));
+            max = new BigInteger(rs.getString(2));
+        }
+
+        BigInteger span = max.subtract(min).add(BigInteger.ONE);
+        BigInteger chunks = BigInteger.valueOf((table.estimatedRows + chunkRows - 1) / chunkRows).min(span);
+        if (chunks.compareTo(BigInteger.ONE) <= 0) {
+            return Collections.emptyList();
+        }
+        List<String> ranges = new ArrayList<>();
+        BigInteger lower = null;
+        for (BigInteger i = BigInteger.ONE; i.compareTo(chunks) <= 0; i = i.add(BigInteger.ONE)) {
+            BigInteger upper = i.equals(chunks) ? null : min.add(span.multiply(i).divide(chunks));
+            if (lower == null) {
+                ranges.add(column + " < " + upper);
+            } else if (upper == null) {
+                ranges.add(column + " >= " + lower);
+            } else {
+                ranges.add(column + " >= " + lower + " AND " + column + " < " + upper);
+            }
+            lower = upper;
+        }
+        return ranges;
+    }
+
+    private List<TableInfo> dumpTables(List<Connection> workers, List<TableInfo> tables, Path dir,
+                                       CompressionCodec codec, CompressionOptions options, Throttle throttle,
+                                       AtomicLong rawBytes, AtomicLong compressedBytes) throws IOException {
+        ConcurrentLinkedQueue<TableInfo> queue = new ConcurrentLinkedQueue<>();
+        for (TableInfo table : tables) {
+            String name = table.name.replaceAll("[^A-Za-z0-9_$-]", "_");
+            table.file = table.chunks > 0
+                    ? String.format("%04d_%s.%04d.sql%s", table.index, name, table.chunk, extension(codec))
+                    : String.format("%04d_%s.sql%s", table.index, name, extension(codec));
+            queue.add(table);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Connection worker : workers) {
+                futures.add(executor.submit(() -> {
+                    TableInfo table;
+                    while ((table = queue.poll()) != null) {
+                        TableInfo current = table;
+                        StreamStats stats = writeFile(dir.resolve(current.file), codec, options, throttle,
+                                writer -> dumpTable(worker, current, writer));
+                        current.checksum = stats.getChecksum();
+                        rawBytes.addAndGet(stats.getRawBytes());
+                        compressedBytes.addAndGet(stats.getCompressedBytes());
+                        if (current.chunks > 0) {
+                            log.info("Dumped table {} part {}/{} ({} rows)",
+                                    current.name, current.chunk + 1, current.chunks, current.rows);
+                        } else {
+                            log.info("Dumped table {} ({} rows)", current.name, current.rows);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while dumping tables", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return tables;
+    }
+
+    private void dumpTable(Connection conn, TableInfo table, Writer writer) throws IOException, SQLException {
+        String quoted = quoteIdentifier(table.name);
+        writer.write(FILE_HEADER);
+        // Only the first part of a chunked table creates it
+        if (table.chunk == 0) {
+            writer.write("DROP TABLE IF EXISTS " + quoted + ";\n");
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SHOW CREATE TABLE " + quoted)) {
+                rs.next();
+                writer.write(rs.getString(2));
+                writer.write(";\n");
+            }
+        }
+
+        // Named explicitly: SELECT * skips invisible columns, and generated ones can't be inserted
+        String columnList = columnList(insertableColumns(listColumns(conn, table.name)));
+
+        // Streaming result set: rows arrive one at a time instead of the whole table in heap
+        try (Statement st = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            st.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = st.executeQuery("SELECT " + columnList + " FROM " + quoted
+                    + (table.range != null ? " WHERE " + table.range : ""))) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columns = meta.getColumnCount();
+                int[] types = new int[columns + 1];
+                for (int i = 1; i <= columns; i++) {
+                    types[i] = meta.getColumnType(i);
+                }
+
+                String insertPrefix = "INSERT INTO " + quoted + " (" + columnList + ") VALUES ";
+                StringBuilder statement = new StringBuilder(MAX_STATEMENT_LENGTH + 64 * 1024);
+                while (rs.next()) {
+                    statement.append(statement.length() == 0 ? insertPrefix : ",");
+                    statement.append('(');
+                    for (int i = 1; i <= columns; i++) {
+                        if (i > 1) {
+                            statement.append(',');
+                        }
+                        appendValue(statement, rs, i, types[i]);
+                    }
+                    statement.append(')');
+                    table.rows++;
+
+                    if (statement.length() >= MAX_STATEMENT_LENGTH) {
+                        writer.append(statement).append(";\n");
+                        statement.setLength(0);
+                    }
+                }
+                if (statement.length() > 0) {
+                    writer.append(statement).append(";\n");
+                }
+            }
+        }
+    }
+
+    // Name and EXTRA of each column, in table order
+    private List<String[]> listColumns(Connection conn, String table) throws SQLException {
+        List<String[]> columns = new ArrayList<>();
+        String sql = "SELECT column_name, extra FROM information_schema.columns "
+                + "WHERE table_schema = DATABASE() AND table_name = ? ORDER BY ordinal_position";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(new String[] {rs.getString(1), rs.getString(2)});
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * The columns a dump reads and inserts: invisible ones included, VIRTUAL and STORED
+     * generated ones left out, since MySQL computes those and rejects values for them.
+     * DEFAULT_GENERATED only marks an expression default, that column holds data.
+     */
+    static List<String> insertableColumns(List<String[]> columns) {
+        List<String> names = new ArrayList<>();
+        for (String[] column : columns) {
+            String extra = column[1] != null ? column[1].toUpperCase() : "";
+            if (!extra.contains("VIRTUAL GENERATED") && !extra.contains("STORED GENERATED")) {
+                names.add(column[0]);
+            }
+        }
+        return names;
+    }
+
+    static String columnList(List<String> columns) {
+        StringBuilder list = new StringBuilder();
+        for (String column : columns) {
+            list.append(list.length() == 0 ? "" : ",").append(quoteIdentifier(column));
+        }
+        return list.toString();
+    }
+
+    private void dumpObjects(Connection conn, String database, Writer writer) throws IOException, SQLException {
+        writer.write(FILE_HEADER);
+        writeViewPlaceholders(conn, writer, database);
+        writeDefinitions(conn, writer, "SELECT table_name FROM information_schema.views WHERE table_schema = ?",
+                database, "VIEW", 2, false);
+        writeDefinitions(conn, writer, "SELECT routine_name FROM information_schema.routines "
+                + "WHERE routine_schema = ? AND routine_type = 'PROCEDURE'", database, "PROCEDURE", 3, true);
+        writeDefinitions(conn, writer, "SELECT routine_name FROM information_schema.routines "
+                + "WHERE routine_schema = ? AND routine_type = 'FUNCTION'", database, "FUNCTION", 3, true);
+        writeDefinitions(conn, writer, "SELECT event_name FROM information_schema.events WHERE event_schema = ?",
+                database, "EVENT", 4, true);
+        writeDefinitions(conn, writer, "SELECT trigger_name FROM information_schema.triggers WHERE trigger_schema = ?",
+                database, "TRIGGER", 3, true);
+    }
+
+    /**
+     * Creates every view as a stand-in with the view's columns first, as mysqldump does, so
+     * a view selecting from another view loads whatever order the definitions come in. Each
+     * stand-in is replaced by its real definition afterwards.
+     */
+    private void writeViewPlaceholders(Connection conn, Writer writer, String database)
+            throws IOException, SQLException {
+        Map<String, List<String>> views = new LinkedHashMap<>();
+        String sql = "SELECT c.table_name, c.column_name FROM information_schema.columns c "
+                + "JOIN information_schema.views v ON v.table_schema = c.table_schema AND v.table_name = c.table_name "
+                + "WHERE c.table_schema = ? ORDER BY c.table_name, c.ordinal_position";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, database);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    views.computeIfAbsent(rs.getString(1), name -> new ArrayList<>()).add(rs.getString(2));
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<String>> view : views.entrySet()) {
+            StringBuilder columns = new StringBuilder();
+            for (String column : view.getValue()) {
+                columns.append(columns.length() == 0 ? "" : ", ").append("1 AS ").append(quoteIdentifier(column));
+            }
+            String quoted = quoteIdentifier(view.getKey());
+            writer.write("DROP VIEW IF EXISTS " + quoted + ";\n");
+            writer.write("CREATE VIEW " + quoted + " AS SELECT " + columns + ";\n");
+        }
+    }
+
+    private void writeDefinitions(Connection conn, Writer writer, String listSql, String database,
+                                  String kind, int definitionColumn, boolean compound) throws IOException, SQLException {
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(listSql)) {
+            ps.setString(1, database);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString(1));
+                }
+            }
+        }
+
+        for (String name : names) {
+            String quoted = quoteIdentifier(name);
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SHOW CREATE " + kind + " " + quoted)) {
+                if (!rs.next()) {
+                    continue;
+                }
+                writer.write("DROP " + kind + " IF EXISTS " + quoted + ";\n");
+                if (compound) {
+                    // Bodies contain semicolons, the mysql client needs another delimiter
+                    writer.write("DELIMITER ;;\n" + rs.getString(definitionColumn) + " ;;\nDELIMITER ;\n");
+                } else {
+                    writer.write(rs.getString(definitionColumn) + ";\n");
+                }
+            }
+        }
+    }
+
+    private void appendValue(StringBuilder sb, ResultSet rs, int column, int type) throws SQLException {
+        switch (type) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                String number = rs.getString(column);
+                sb.append(number == null ? "NULL" : number);
+                return;
+            case Types.BIT:
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                byte[] bytes = rs.getBytes(column);
+                if (bytes == null) {
+                    sb.append("NULL");
+                } else if (bytes.length == 0) {
+                    sb.append("''");
+                } else {
+                    appendHex(sb, bytes);
+                }
+                return;
+            default:
+                // Raw text-protocol bytes, so zero dates and the like come through untouched
+                byte[] raw = rs.getBytes(column);
+                if (raw == null) {
+                    sb.append("NULL");
+                } else {
+                    appendQuoted(sb, new String(raw, StandardCharsets.UTF_8));
+                }
+        }
+    }
+
+    private void appendHex(StringBuilder sb, byte[] bytes) {
+        sb.append("0x");
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+    }
+
+    private void appendQuoted(StringBuilder sb, String value) {
+        sb.append('\'');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\0':
+                    sb.append("\\0");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\u001a':
+                    sb.append("\\Z");
+                    break;
+                case '\'':
+                    sb.append("\\'");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        sb.append('\'');
+    }
+
+    private static String quoteIdentifier(String name) {
+        return "`" + name.replace("`", "``") + "`";
+    }
+
+    private StreamStats writeFile(Path path, CompressionCodec codec, CompressionOptions options, Throttle throttle,
+                                  SqlWriter content) throws IOException {
+        ChecksumOutputStream hashed = checksumService.wrap(Files.newOutputStream(path));
+        CountingOutputStream compressed = new CountingOutputStream(hashed);
+        CountingOutputStream raw;
+        try (OutputStream out = codec != null ? codec.compress(compressed, options) : compressed) {
+            // Throttling the rows as they are written paces the reads from the server too
+            raw = new CountingOutputStream(throttle.wrap(out));
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(raw, StandardCharsets.UTF_8), 256 * 1024)) {
+                content.write(writer);
+            }
+        } catch (SQLException e) {
+            Files.deleteIfExists(path);
+            throw new IOException("Failed to dump " + path.getFileName() + ": " + e.getMessage(), e);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return StreamStats.builder()
+                .filePath(path.toString())
+                .rawBytes(raw.getByteCount())
+                .compressedBytes(compressed.getByteCount())
+                .checksum(hashed.getChecksum())
+                .build();
+    }
+
+    private String writeManifest(Path dir, String database, Map<String, String> snapshot,
+                                 List<TableInfo> tables, String objectsFile, String objectsChecksum)
+            throws IOException {
+        ChecksumOutputStream hashed = checksumService.wrap(Files.newOutputStream(dir.resolve(MANIFEST_FILE)));
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(hashed, StandardCharsets.UTF_8))) {
+            writer.write(MANIFEST_HEADER);
+            writer.newLine();
+            writer.write("database=" + database);
+            writer.newLine();
+            writer.write("created=" + LocalDateTime.now());
+            writer.newLine();
+            for (Map.Entry<String, String> entry : snapshot.entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue());
+                writer.newLine();
+            }
+            writer.write("objects=" + objectsFile);
+            writer.newLine();
+            writer.write("objectsChecksum=" + objectsChecksum);
+            writer.newLine();
+            writer.write(TABLE_SECTION);
+            writer.newLine();
+            for (TableInfo table : tables) {
+                writer.write(table.name + "\t" + table.file + "\t" + table.rows + "\t" + table.checksum);
+                writer.newLine();
+            }
+        }
+        return hashed.getChecksum();
+    }
+
+    private Manifest readManifest(Path dir) throws IOException {
+        Manifest manifest = new Manifest();
+        boolean inTables = false;
+        for (String line : Files.readAllLines(dir.resolve(MANIFEST_FILE), StandardCharsets.UTF_8)) {
+            if (!inTables) {
+                if (TABLE_SECTION.equals(line)) {
+                    inTables = true;
+                } else if (line.startsWith("binlogFile=") || line.startsWith("binlogPosition=")
+                        || line.startsWith("consistent=")) {
+                    int separator = line.indexOf('=');
+                    manifest.header.put(line.substring(0, separator), line.substring(separator + 1));
+                } else if (line.startsWith("objects=")) {
+                    manifest.objectsFile = line.substring("objects=".length());
+                } else if (line.startsWith("objectsChecksum=")) {
+                    manifest.checksums.put(manifest.objectsFile, line.substring("objectsChecksum=".length()));
+                }
+                continue;
+            }
+            if (!line.isBlank()) {
+                String[] parts = line.split("\t");
+                manifest.tables.computeIfAbsent(parts[0], table -> new ArrayList<>()).add(parts[1]);
+                // Dumps from before checksums have three columns
+                if (parts.length > 3) {
+                    manifest.checksums.put(parts[1], parts[3]);
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Loads SQL files over JDBC, no mysql client needed. Each loader has its own connection
+     * and takes the next file when it is done with one. The loaders are registered under
+     * the job, so the cancel command stops them by cancelling their running statements.
+     */
+    private boolean loadFiles(Path dir, List<String> files, ConnectionParams params, int jobs, Throttle throttle,
+                              String jobId) throws IOException {
+        if (files.isEmpty()) {
+            return true;
+        }
+        ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>(files);
+        int loaders = Math.max(1, Math.min(jobs, files.size()));
+        Set<Statement> statements = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(loaders);
+        try (SupervisedTask task = processSupervisor.registerTask(jobId, "mysql-loader",
+                () -> statements.forEach(this::cancelQuietly))) {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < loaders; i++) {
+                results.add(executor.submit(() -> {
+                    try (Connection conn = connect(params)) {
+                        boolean success = true;
+                        String file;
+                        while (!task.isCancelled() && (file = queue.poll()) != null) {
+                            success &= loadFile(conn, dir.resolve(file), throttle, statements, task);
+                        }
+                        return success;
+                    }
+                }));
+            }
+            boolean success = true;
+            for (Future<Boolean> result : results) {
+                success &= result.get();
+            }
+            if (task.isCancelled()) {
+                log.warn("Restore into {} was cancelled", params.getDatabase());
+                return false;
+            }
+            return success;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new IOException("Table load failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs one (decompressed) SQL file statement by statement. The statement is in the
+     * running set while the file loads, so cancelling the task can reach it.
+     */
+    private boolean loadFile(Connection conn, Path file, Throttle throttle, Set<Statement> running,
+                             SupervisedTask task) throws IOException {
+        long statements = 0;
+        try (SqlStatementReader reader = new SqlStatementReader(new InputStreamReader(
+                throttle.wrap(compressionService.openDecompressed(file.toString())), StandardCharsets.UTF_8));
+             Statement st = conn.createStatement()) {
+            running.add(st);
+            try {
+                // Checked after adding, so a cancel either sees the statement or is seen here
+                if (task.isCancelled()) {
+                    return false;
+                }
+                // The rows are sent as dumped, JDBC escapes in them are data
+                st.setEscapeProcessing(false);
+                String sql;
+                while ((sql = reader.next()) != null && !task.isCancelled()) {
+                    st.execute(sql);
+                    statements++;
+                }
+            } finally {
+                running.remove(st);
+            }
+        } catch (SQLException e) {
+            if (task.isCancelled()) {
+                log.warn("Loading {} cancelled at statement {}", file.getFileName(), statements + 1);
+            } else {
+                log.error("Loading {} failed at statement {}: {}", file.getFileName(), statements + 1, e.getMessage());
+            }
+            return false;
+        }
+        if (task.isCancelled()) {
+            return false;
+        }
+        log.info("Loaded {}", file.getFileName());
+        return true;
+    }
+
+    private int resolveJobs(Integer requested, int tableCount) {
+        int jobs = requested != null && requested > 0 ? requested : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(jobs, tableCount));
+    }
+
+    private Connection connect(ConnectionParams params) throws SQLException {
+        // tinyInt1isBit off so TINYINT(1) is dumped as a number, not as a BIT value
+        String url = String.format("jdbc:mysql://%s:%d/%s?characterEncoding=UTF-8&tinyInt1isBit=false",
+                params.getHost(),
+                params.getPort() != null ? params.getPort() : 3306,
+                params.getDatabase());
+        return DriverManager.getConnection(url, params.getUsername(), params.getPassword());
+    }
+
+    private String extension(CompressionCodec codec) {
+        return codec != null ? codec.getExtension() : "";
+    }
+
+    private void cancelQuietly(Statement st) {
+        try {
+            // Connector/J kills the running query over a separate connection
+            st.cancel();
+        } catch (SQLException e) {
+            log.debug("Error cancelling statement: {}", e.getMessage());
+        }
+    }
+
+    private void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            log.debug("Error closing connection: {}", e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWriter {
+        void write(Writer writer) throws IOException, SQLException;
+    }
+
+    private static final class TableInfo {
+        private final String name;
+        private long estimatedRows;
+        private int index;
+        // Part of a chunked table: its number, the table's part count and the key range
+        private int chunk;
+        private int chunks;
+        private String range;
+        private String file;
+        private long rows;
+        private String checksum;
+
+        private TableInfo(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Manifest {
+        // Files per table in load order, more than one for a chunked table
+        private final Map<String, List<String>> tables = new LinkedHashMap<>();
+        private final Map<String, String> checksums = new LinkedHashMap<>();
+        // Snapshot details from the head of the manifest
+        private final Map<String, String> header = new LinkedHashMap<>();
+        private String objectsFile;
+    }
+}
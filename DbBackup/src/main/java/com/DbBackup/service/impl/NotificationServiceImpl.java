@@ -1,26 +1,77 @@
 package com.DbBackup.service.impl;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.DbBackup.service.NotificationService;
 import com.DbBackup.model.BackupResult;
+import com.DbBackup.util.FileSizes;
 import com.slack.api.Slack;
+import com.slack.api.model.Attachment;
+import com.slack.api.model.Field;
 import com.slack.api.webhook.Payload;
+import com.slack.api.webhook.WebhookResponse;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
-public class NotificationServiceImpl implements NotificationService {
+public class NotificationServiceImpl implements NotificationService, DisposableBean {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    private final Slack slack = Slack.getInstance();
+    // Slack truncates long attachments, the rest of a big digest is summarised in one line
+    private static final int DIGEST_LINES = 25;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    private final WebhookClient client;
+    private final Sleeper sleeper;
+    private final BlockingQueue<Pending> queue;
+    private final long coalesceWindowMillis;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Thread sender;
+
+    @Autowired
+    public NotificationServiceImpl(@Value("${backup.notification.queue-capacity:1000}") int queueCapacity,
+                                   @Value("${backup.notification.coalesce-window:60000}") long coalesceWindowMillis,
+                                   @Value("${backup.notification.max-attempts:5}") int maxAttempts,
+                                   @Value("${backup.notification.initial-backoff:1000}") long initialBackoffMillis,
+                                   @Value("${backup.notification.max-backoff:60000}") long maxBackoffMillis) {
+        this(queueCapacity, coalesceWindowMillis, maxAttempts, initialBackoffMillis, maxBackoffMillis,
+                Slack.getInstance()::send, Thread::sleep);
+    }
+
+    /**
+     * With a webhook client and a sleeper of its own, for tests that neither call Slack nor
+     * wait out the backoff in real time.
+     */
+    NotificationServiceImpl(int queueCapacity, long coalesceWindowMillis, int maxAttempts, long initialBackoffMillis,
+                            long maxBackoffMillis, WebhookClient client, Sleeper sleeper) {
+        this.client = client;
+        this.sleeper = sleeper;
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        this.coalesceWindowMillis = Math.max(0, coalesceWindowMillis);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+
+        this.sender = new Thread(this::send, "notification-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
 
     @Override
     public void sendSlackNotification(BackupResult result, String webhookUrl) {
@@ -29,98 +80,209 @@ public class NotificationServiceImpl implements NotificationService {
             return;
         }
 
+        // Never block the backup: a full queue means Slack has been unreachable for a while
+        if (!queue.offer(new Pending(result, webhookUrl))) {
+            log.warn("Notification queue is full, dropping notification for job {}", result.getJobId());
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // Stops waiting for more results and retrying, what is queued goes out once
+        sender.interrupt();
+        sender.join(SHUTDOWN_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Sender loop: the first result opens a coalescing window, everything arriving within it
+     * is sent together, one message per webhook.
+     */
+    private void send() {
+        List<Pending> batch = new ArrayList<>();
         try {
-            Payload payload = buildSlackPayload(result);
-            slack.send(webhookUrl, payload);
-            log.info("Slack notification sent successfully for job {}", result.getJobId());
-        } catch (IOException e) {
-            log.error("Failed to send Slack notification: {}", e.getMessage());
+            while (true) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(coalesceWindowMillis);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                queue.drainTo(batch);
+                dispatch(batch, maxAttempts);
+            }
+        } catch (InterruptedException e) {
+            queue.drainTo(batch);
+            try {
+                dispatch(batch, 1);
+            } catch (InterruptedException ignored) {
+                // Single attempts never back off
+            }
         }
     }
 
-    private Payload buildSlackPayload(BackupResult result) {
-        Map<String, Object> attachment = new HashMap<>();
-        List<Map<String, Object>> attachments = new ArrayList<>();
+    /**
+     * Sends the batch grouped by webhook and removes each group from it once it is done with,
+     * so an interrupted dispatch never sends a group twice.
+     */
+    private void dispatch(List<Pending> batch, int attempts) throws InterruptedException {
+        Map<String, List<BackupResult>> byWebhook = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            byWebhook.computeIfAbsent(pending.webhookUrl, url -> new ArrayList<>()).add(pending.result);
+        }
+        for (Map.Entry<String, List<BackupResult>> entry : byWebhook.entrySet()) {
+            List<BackupResult> results = entry.getValue();
+            Payload payload = results.size() == 1 ? buildSlackPayload(results.get(0)) : buildDigestPayload(results);
+            deliver(entry.getKey(), payload, results.size(), attempts);
+            batch.removeIf(pending -> pending.webhookUrl.equals(entry.getKey()));
+        }
+    }
+
+    /**
+     * Retries network errors, rate limiting and server errors with exponential backoff.
+     * Other rejections (a revoked webhook, a bad payload) won't go away by retrying.
+     */
+    private void deliver(String webhookUrl, Payload payload, int count, int attempts) throws InterruptedException {
+        long backoff = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            String error;
+            try {
+                WebhookResponse response = client.send(webhookUrl, payload);
+                int code = response.getCode() != null ? response.getCode() : 0;
+                if (code == 200) {
+                    log.info("Slack notification sent for {} backup(s)", count);
+                    return;
+                }
+                error = "HTTP " + code + ": " + response.getBody();
+                if (code != 429 && code < 500) {
+                    log.error("Slack rejected notification for {} backup(s), not retrying: {}", count, error);
+                    return;
+                }
+            } catch (IOException e) {
+                error = e.getMessage();
+            }
+
+            if (attempt >= attempts) {
+                log.error("Failed to send Slack notification for {} backup(s) after {} attempt(s): {}",
+                        count, attempt, error);
+                return;
+            }
+            log.warn("Slack notification failed (attempt {}/{}), retrying in {} ms: {}",
+                    attempt, attempts, backoff, error);
+            sleeper.sleep(backoff);
+            backoff = Math.min(backoff * 2, maxBackoffMillis);
+        }
+    }
 
+    private Payload buildSlackPayload(BackupResult result) {
         String color = result.isSuccess() ? "#36a64f" : "#ff0000";
         String title = result.isSuccess()
                 ? "Database backup completed successfully"
                 : "Database backup failed";
 
-        attachment.put("color", color);
-        attachment.put("title", title);
-
-        List<Map<String, Object>> fields = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
 
-        Map<String, Object> jobIdField = new HashMap<>();
-        jobIdField.put("title", "Job ID");
-        jobIdField.put("value", result.getJobId());
-        jobIdField.put("short", true);
-        fields.add(jobIdField);
+        fields.add(field("Job ID", result.getJobId(), true));
 
         if (result.getStartTime() != null) {
-            Map<String, Object> startTimeField = new HashMap<>();
-            startTimeField.put("title", "Start Time");
-            startTimeField.put("value", result.getStartTime().format(DATE_FORMATTER));
-            startTimeField.put("short", true);
-            fields.add(startTimeField);
+            fields.add(field("Start Time", result.getStartTime().format(DATE_FORMATTER), true));
         }
 
         if (result.getEndTime() != null) {
-            Map<String, Object> endTimeField = new HashMap<>();
-            endTimeField.put("title", "End Time");
-            endTimeField.put("value", result.getEndTime().format(DATE_FORMATTER));
-            endTimeField.put("short", true);
-            fields.add(endTimeField);
+            fields.add(field("End Time", result.getEndTime().format(DATE_FORMATTER), true));
         }
 
-        Map<String, Object> durationField = new HashMap<>();
-        durationField.put("title", "Duration");
-        durationField.put("value", result.getDurationInSeconds() + " seconds");
-        durationField.put("short", true);
-        fields.add(durationField);
+        fields.add(field("Duration", result.getDurationInSeconds() + " seconds", true));
 
         if (result.isSuccess() && result.getFilePath() != null) {
-            Map<String, Object> filePathField = new HashMap<>();
-            filePathField.put("title", "Backup File");
-            filePathField.put("value", result.getFilePath());
-            filePathField.put("short", false);
-            fields.add(filePathField);
-
-            Map<String, Object> fileSizeField = new HashMap<>();
-            fileSizeField.put("title", "File Size");
-            fileSizeField.put("value", formatFileSize(result.getFileSize()));
-            fileSizeField.put("short", true);
-            fields.add(fileSizeField);
+            fields.add(field("Backup File", result.getFilePath(), false));
+            fields.add(field("File Size", FileSizes.format(result.getFileSize()), true));
         }
 
         if (!result.isSuccess() && result.getErrorMessage() != null) {
-            Map<String, Object> errorField = new HashMap<>();
-            errorField.put("title", "Error");
-            errorField.put("value", result.getErrorMessage());
-            errorField.put("short", false);
-            fields.add(errorField);
+            fields.add(field("Error", result.getErrorMessage(), false));
         }
 
-        attachment.put("fields", fields);
-        attachments.add(attachment);
+        Attachment attachment = Attachment.builder()
+                .color(color)
+                .title(title)
+                .fields(fields)
+                .build();
 
-        Map<String, Object> payloadMap = new HashMap<>();
-        payloadMap.put("attachments", attachments);
+        List<Attachment> attachments = new ArrayList<>();
+        attachments.add(attachment);
 
         return Payload.builder().blocks(new ArrayList<>()).attachments(attachments).build();
     }
 
-    private String formatFileSize(long size) {
-        final String[] units = new String[] { "B", "KB", "MB", "GB", "TB" };
-        int unitIndex = 0;
-        double fileSize = size;
+    /**
+     * One message for a burst of backups: a count in the title and a line per backup,
+     * failures first.
+     */
+    private Payload buildDigestPayload(List<BackupResult> results) {
+        long failed = results.stream().filter(result -> !result.isSuccess()).count();
+        String title = String.format("%d database backups: %d succeeded, %d failed",
+                results.size(), results.size() - failed, failed);
+
+        List<BackupResult> ordered = new ArrayList<>(results);
+        ordered.sort(Comparator.comparing(BackupResult::isSuccess));
 
-        while (fileSize > 1024 && unitIndex < units.length - 1) {
-            fileSize /= 1024;
-            unitIndex++;
+        StringBuilder text = new StringBuilder();
+        for (BackupResult result : ordered.subList(0, Math.min(DIGEST_LINES, ordered.size()))) {
+            text.append(result.isSuccess() ? "OK " : "FAILED ")
+                    .append(result.getDatabaseType() != null ? result.getDatabaseType().toString().toLowerCase() : "")
+                    .append(' ').append(result.getDatabaseName())
+                    .append(" (").append(result.getDurationInSeconds()).append(" s): ")
+                    .append(result.isSuccess() ? FileSizes.format(result.getFileSize()) : result.getErrorMessage())
+                    .append('\n');
         }
+        if (ordered.size() > DIGEST_LINES) {
+            text.append("... and ").append(ordered.size() - DIGEST_LINES).append(" more");
+        }
+
+        Attachment attachment = Attachment.builder()
+                .color(failed > 0 ? "#ff0000" : "#36a64f")
+                .title(title)
+                .text(text.toString())
+                .build();
+
+        List<Attachment> attachments = new ArrayList<>();
+        attachments.add(attachment);
+
+        return Payload.builder().blocks(new ArrayList<>()).attachments(attachments).build();
+    }
+
+    private Field field(String title, String value, boolean isShort) {
+        return Field.builder()
+                .title(title)
+                .value(value)
+                .valueShortEnough(isShort)
+                .build();
+    }
+
+    @FunctionalInterface
+    interface WebhookClient {
+        WebhookResponse send(String webhookUrl, Payload payload) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
 
-        return String.format("%.2f %s", fileSize, units[unitIndex]);
+    /**
+     * A result waiting to be sent and where to.
+     */
+    private static class Pending {
+        private final BackupResult result;
+        private final String webhookUrl;
+
+        Pending(BackupResult result, String webhookUrl) {
+            this.result = result;
+            this.webhookUrl = webhookUrl;
+        }
     }
 }
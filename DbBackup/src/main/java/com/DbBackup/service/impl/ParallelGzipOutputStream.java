@@ -0,0 +1,176 @@
+package com.DbBackup.service.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * pigz-style gzip writer. Input is cut into fixed-size blocks that are deflated
+ * concurrently, each into a complete gzip member, and the members are written out in
+ * order. The result is a standard multi-member gzip file that gunzip and
+ * GzipCompressorInputStream (with concatenated members enabled) read transparently.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int blockSize;
+    private final int level;
+    private final int maxInFlight;
+    private final Deque<PendingBlock> pending = new ArrayDeque<>();
+    // Blocks whose member has been written are reused instead of allocating new ones
+    private final Deque<byte[]> freeBlocks = new ArrayDeque<>();
+
+    private byte[] block;
+    private int blockLength;
+    private boolean anyBlockWritten;
+    private boolean closed;
+
+    public ParallelGzipOutputStream(OutputStream out, int threads, int blockSize) {
+        this(out, threads, blockSize, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, int threads, int blockSize, int level) {
+        this.out = out;
+        this.blockSize = blockSize;
+        this.level = level;
+        // Two blocks per worker keeps every core busy while the writer drains in order
+        this.maxInFlight = threads * 2;
+        this.block = new byte[blockSize];
+
+        int poolId = POOL_COUNTER.incrementAndGet();
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "pgzip-" + poolId + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[blockLength++] = (byte) b;
+        if (blockLength == blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int count = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, count);
+            blockLength += count;
+            off += count;
+            len -= count;
+            if (blockLength == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Compresses the partially filled block and writes every pending member, so all
+     * bytes written so far are readable from the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (blockLength > 0) {
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeNextMember();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (blockLength > 0 || !anyBlockWritten) {
+                // An empty input still has to produce one valid (empty) gzip member
+                submitBlock();
+            }
+            while (!pending.isEmpty()) {
+                writeNextMember();
+            }
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = blockLength;
+        pending.add(new PendingBlock(data, executor.submit(() -> deflateMember(data, length))));
+        anyBlockWritten = true;
+
+        block = freeBlocks.isEmpty() ? new byte[blockSize] : freeBlocks.pop();
+        blockLength = 0;
+
+        if (pending.size() >= maxInFlight) {
+            writeNextMember();
+        }
+    }
+
+    private void writeNextMember() throws IOException {
+        PendingBlock next = pending.poll();
+        try {
+            out.write(next.member.get());
+            freeBlocks.push(next.data);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing block");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress block", e.getCause());
+        }
+    }
+
+    private byte[] deflateMember(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + 64);
+        try (GZIPOutputStream gzos = new GZIPOutputStream(member, 64 * 1024) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzos.write(data, 0, length);
+        }
+        return member.toByteArray();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private static final class PendingBlock {
+        private final byte[] data;
+        private final Future<byte[]> member;
+
+        private PendingBlock(byte[] data, Future<byte[]> member) {
+            this.data = data;
+            this.member = member;
+        }
+    }
+}
@@ -0,0 +1,963 @@
+package com.DbBackup.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.RestoreOptions;
+import com.DbBackup.model.StreamStats;
+import com.DbBackup.service.BandwidthService;
+import com.DbBackup.service.ChecksumService;
+import com.DbBackup.service.CompressionCodec;
+import com.DbBackup.service.CompressionService;
+import com.DbBackup.service.PostgresCopyDumpService;
+import com.DbBackup.util.ChecksumOutputStream;
+import com.DbBackup.util.Throttle;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Covers schemas, extensions, enum and domain types, sequences, functions and procedures,
+ * tables, constraints, indexes, views, materialized views and triggers. Ownership, grants,
+ * comments, aggregates, composite types and policies are left out, like pg_dump with
+ * --no-owner --no-privileges would for the first two; databases using inheritance or
+ * partitioning are refused and need the pg_dump engine.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PostgresCopyDumpServiceImpl implements PostgresCopyDumpService {
+
+    static final String MANIFEST_FILE = "tables.manifest";
+    private static final String MANIFEST_HEADER = "# db-backup postgresql copy manifest v1";
+    private static final String TABLE_SECTION = "---";
+    private static final String PRE_DATA_FILE = "_pre_data.sql";
+    private static final String POST_DATA_FILE = "_post_data.sql";
+
+    private static final int MIN_SERVER_VERSION = 100000;
+
+    // Schemas of the server itself (pg_catalog, pg_toast, pg_temp_N) all start with pg_
+    private static final String USER_SCHEMA = "n.nspname !~ '^pg_' AND n.nspname <> 'information_schema'";
+    private static final String NOT_EXTENSION_MEMBER = "NOT EXISTS (SELECT 1 FROM pg_catalog.pg_depend e "
+            + "WHERE e.objid = %s AND e.deptype = 'e')";
+    private static final String USER_TABLES = "SELECT c.oid FROM pg_catalog.pg_class c "
+            + "JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+            + "WHERE c.relkind IN ('r', 'p') AND " + USER_SCHEMA + " AND "
+            + String.format(NOT_EXTENSION_MEMBER, "c.oid");
+
+    private static final String SCRIPT_HEADER = "SET check_function_bodies = false;\n"
+            + "SET client_min_messages = warning;\n";
+
+    private final CompressionService compressionService;
+    private final BufferPool bufferPool;
+    private final BandwidthService bandwidthService;
+    private final ChecksumService checksumService;
+
+    @Override
+    public StreamStats dump(BackupJob job, String outputDir) throws IOException {
+        ConnectionParams params = job.getConnectionParams();
+        Path dir = Paths.get(outputDir);
+        Files.createDirectories(dir);
+
+        CompressionOptions options = CompressionOptions.forJob(job);
+        // Tables are compressed side by side already, one codec thread each is enough
+        options.setThreads(1);
+        CompressionCodec codec = job.isCompress() ? compressionService.getCodec(options.getCodec()) : null;
+        // Shared by all table writers, so the job's rate covers the whole dump
+        Throttle throttle = bandwidthService.forJob(job.getMaxRate());
+
+        List<Connection> workers = new ArrayList<>();
+        try (Connection control = connect(params)) {
+            int serverVersion = serverVersion(control);
+            if (serverVersion < MIN_SERVER_VERSION) {
+                throw new IOException("The native engine needs PostgreSQL 10 or later, the server runs "
+                        + serverVersion + "; use the pg_dump engine");
+            }
+            beginReadOnly(control);
+            String snapshot = exportSnapshot(control);
+
+            List<TableInfo> tables = listTables(control, serverVersion);
+            lockTables(control, tables);
+            int jobs = resolveJobs(job.getParallelJobs(), tables.size());
+            for (int i = 0; i < jobs; i++) {
+                Connection worker = connect(params);
+                workers.add(worker);
+                beginReadOnly(worker);
+                if (snapshot != null) {
+                    try (Statement st = worker.createStatement()) {
+                        st.execute("SET TRANSACTION SNAPSHOT " + quoteLiteral(snapshot));
+                    }
+                }
+            }
+            log.info("Dumping {} tables of {} with {} connections", tables.size(), params.getDatabase(), jobs);
+
+            AtomicLong rawBytes = new AtomicLong();
+            AtomicLong compressedBytes = new AtomicLong();
+            List<SequenceInfo> sequences = listSequences(control);
+
+            StreamStats preData = writeFile(dir.resolve(PRE_DATA_FILE + extension(codec)), codec, options, throttle,
+                    script(writer -> writePreData(control, serverVersion, sequences, tables, writer)));
+            rawBytes.addAndGet(preData.getRawBytes());
+            compressedBytes.addAndGet(preData.getCompressedBytes());
+
+            dumpTables(workers, tables, dir, codec, options, throttle, rawBytes, compressedBytes);
+
+            StreamStats postData = writeFile(dir.resolve(POST_DATA_FILE + extension(codec)), codec, options, throttle,
+                    script(writer -> writePostData(control, sequences, tables, writer)));
+            rawBytes.addAndGet(postData.getRawBytes());
+            compressedBytes.addAndGet(postData.getCompressedBytes());
+
+            Map<String, String> header = new LinkedHashMap<>();
+            header.put("database", params.getDatabase());
+            header.put("created", LocalDateTime.now().toString());
+            header.put("serverVersion", String.valueOf(serverVersion));
+            header.put("snapshot", snapshot != null ? snapshot : "");
+            header.put("consistent", String.valueOf(snapshot != null));
+            header.put("preData", PRE_DATA_FILE + extension(codec));
+            header.put("preDataChecksum", preData.getChecksum());
+            header.put("postData", POST_DATA_FILE + extension(codec));
+            header.put("postDataChecksum", postData.getChecksum());
+            // The manifest holds every file's checksum, so its own checksum covers the whole dump
+            String checksum = writeManifest(dir, header, tables);
+
+            return StreamStats.builder()
+                    .filePath(dir.toString())
+                    .rawBytes(rawBytes.get())
+                    .compressedBytes(compressedBytes.get())
+                    .checksum(checksum)
+                    .build();
+        } catch (SQLException e) {
+            throw new IOException("Native PostgreSQL dump failed: " + e.getMessage(), e);
+        } finally {
+            for (Connection worker : workers) {
+                closeQuietly(worker);
+            }
+        }
+    }
+
+    @Override
+    public boolean isTableDump(String path) {
+        Path manifest = Paths.get(path).resolve(MANIFEST_FILE);
+        if (!Files.isRegularFile(manifest)) {
+            return false;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            return MANIFEST_HEADER.equals(reader.readLine());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Map<String, String> listFiles(String dumpDir) throws IOException {
+        Manifest manifest = readManifest(Paths.get(dumpDir));
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put(manifest.header.get("preData"), manifest.header.get("preDataChecksum"));
+        for (TableInfo table : manifest.tables) {
+            files.put(table.file, table.checksum);
+        }
+        files.put(manifest.header.get("postData"), manifest.header.get("postDataChecksum"));
+        return files;
+    }
+
+    /**
+     * A full restore runs the pre-data script, loads every table and runs the post-data
+     * script, into a database that doesn't have these objects yet. A selective restore only
+     * replaces the rows of the requested tables, which have to exist already.
+     */
+    @Override
+    public boolean restore(String dumpDir, ConnectionParams params, RestoreOptions options) throws IOException {
+        Path dir = Paths.get(dumpDir);
+        Manifest manifest = readManifest(dir);
+
+        List<TableInfo> tables = new ArrayList<>();
+        if (options.isSelective()) {
+            Set<String> wanted = new HashSet<>();
+            options.getItems().forEach(item -> wanted.add(item.trim()));
+            for (String item : wanted) {
+                List<TableInfo> matches = manifest.tables.stream()
+                        .filter(table -> table.displayName().equals(item) || table.name.equals(item))
+                        .collect(Collectors.toList());
+                if (matches.isEmpty()) {
+                    log.warn("Table not found in backup: {}", item);
+                }
+                tables.addAll(matches);
+            }
+            if (tables.isEmpty()) {
+                return false;
+            }
+        } else {
+            tables.addAll(manifest.tables);
+        }
+
+        Throttle throttle = bandwidthService.forJob(options.getMaxRate());
+        try (Connection control = connect(params)) {
+            if (!options.isSelective()) {
+                runScript(control, dir.resolve(manifest.header.get("preData")));
+            }
+
+            int jobs = Math.max(1, Math.min(options.resolveJobs(), tables.size()));
+            log.info("Restoring {} tables into {} with {} parallel loaders", tables.size(), params.getDatabase(), jobs);
+            if (!loadTables(tables, dir, params, jobs, options.isSelective(), throttle)) {
+                return false;
+            }
+
+            // Constraints and indexes are built once, over the loaded rows
+            if (!options.isSelective()) {
+                runScript(control, dir.resolve(manifest.header.get("postData")));
+            }
+            return true;
+        } catch (SQLException e) {
+            log.error("Restoring {} failed: {}", dumpDir, e.getMessage());
+            return false;
+        }
+    }
+
+    private int serverVersion(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SHOW server_version_num")) {
+            rs.next();
+            return Integer.parseInt(rs.getString(1));
+        }
+    }
+
+    private void beginReadOnly(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        conn.setReadOnly(true);
+    }
+
+    /**
+     * Exports the control connection's snapshot for the workers to import, so they all see
+     * the database at the same instant. Without it (e.g. on a standby of an old server) each
+     * worker takes its own snapshot and the manifest says the dump is not consistent.
+     */
+    private String exportSnapshot(Connection control) throws SQLException {
+        try (Statement st = control.createStatement();
+             ResultSet rs = st.executeQuery("SELECT pg_catalog.pg_export_snapshot()")) {
+            rs.next();
+            return rs.getString(1);
+        } catch (SQLException e) {
+            log.warn("Could not export a snapshot ({}), worker snapshots may not be identical", e.getMessage());
+            control.rollback();
+            return null;
+        }
+    }
+
+    List<TableInfo> listTables(Connection conn, int serverVersion) throws SQLException, IOException {
+        Map<Long, TableInfo> tables = new LinkedHashMap<>();
+        // Largest first, so the long tail is made of small tables
+        String sql = "SELECT c.oid, n.nspname, c.relname, c.relpersistence = 'u', c.relkind = 'p' OR EXISTS "
+                + "(SELECT 1 FROM pg_catalog.pg_inherits i WHERE i.inhrelid = c.oid OR i.inhparent = c.oid) "
+                + "FROM pg_catalog.pg_class c JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+                + "WHERE c.oid IN (" + USER_TABLES + ") "
+                + "ORDER BY pg_catalog.pg_total_relation_size(c.oid) DESC";
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                if (rs.getBoolean(5)) {
+                    // COPY TO of a parent table leaves out its children's rows
+                    throw new IOException("Table " + rs.getString(2) + "." + rs.getString(3)
+                            + " uses inheritance or partitioning, which the native engine does not dump; "
+                            + "use the pg_dump engine");
+                }
+                TableInfo table = new TableInfo(rs.getString(2), rs.getString(3));
+                table.unlogged = rs.getBoolean(4);
+                tables.put(rs.getLong(1), table);
+            }
+        }
+
+        String generated = serverVersion >= 120000 ? "a.attgenerated" : "''";
+        String columns = "SELECT a.attrelid, a.attname, pg_catalog.format_type(a.atttypid, a.atttypmod), "
+                + "a.attnotnull, pg_catalog.pg_get_expr(d.adbin, d.adrelid), a.attidentity, " + generated + ", "
+                + "pg_catalog.quote_ident(cn.nspname) || '.' || pg_catalog.quote_ident(co.collname) "
+                + "FROM pg_catalog.pg_attribute a "
+                + "JOIN pg_catalog.pg_type t ON t.oid = a.atttypid "
+                + "LEFT JOIN pg_catalog.pg_attrdef d ON d.adrelid = a.attrelid AND d.adnum = a.attnum "
+                + "LEFT JOIN pg_catalog.pg_collation co ON co.oid = a.attcollation AND a.attcollation <> t.typcollation "
+                + "LEFT JOIN pg_catalog.pg_namespace cn ON cn.oid = co.collnamespace "
+                + "WHERE a.attrelid IN (" + USER_TABLES + ") AND a.attnum > 0 AND NOT a.attisdropped "
+                + "ORDER BY a.attrelid, a.attnum";
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(columns)) {
+            while (rs.next()) {
+                TableInfo table = tables.get(rs.getLong(1));
+                if (table == null) {
+                    continue;
+                }
+                ColumnInfo column = new ColumnInfo(rs.getString(2), rs.getString(3));
+                column.notNull = rs.getBoolean(4);
+                column.defaultExpression = rs.getString(5);
+                column.identity = rs.getString(6);
+                column.generated = rs.getString(7);
+                column.collation = rs.getString(8);
+                table.columns.add(column);
+            }
+        }
+        for (TableInfo table : tables.values()) {
+            table.copyColumns = table.columns.stream()
+                    .filter(column -> !column.isGenerated())
+                    .map(column -> quoteIdentifier(column.name))
+                    .collect(Collectors.joining(","));
+        }
+        return new ArrayList<>(tables.values());
+    }
+
+    /**
+     * Keeps the tables from being dropped or altered while they are dumped, like pg_dump.
+     * Writes are not blocked.
+     */
+    private void lockTables(Connection conn, List<TableInfo> tables) throws SQLException {
+        for (int i = 0; i < tables.size(); i += 500) {
+            String names = tables.subList(i, Math.min(tables.size(), i + 500)).stream()
+                    .map(TableInfo::qualifiedName)
+                    .collect(Collectors.joining(", "));
+            try (Statement st = conn.createStatement()) {
+                st.execute("LOCK TABLE " + names + " IN ACCESS SHARE MODE");
+            }
+        }
+    }
+
+    List<SequenceInfo> listSequences(Connection conn) throws SQLException {
+        List<SequenceInfo> sequences = new ArrayList<>();
+        // Sequences of identity columns come with the column
+        String sql = "SELECT n.nspname, c.relname, pg_catalog.format_type(s.seqtypid, NULL), s.seqincrement, "
+                + "s.seqmin, s.seqmax, s.seqstart, s.seqcache, s.seqcycle, tn.nspname, tc.relname, ta.attname "
+                + "FROM pg_catalog.pg_class c "
+                + "JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+                + "JOIN pg_catalog.pg_sequence s ON s.seqrelid = c.oid "
+                + "LEFT JOIN pg_catalog.pg_depend d ON d.objid = c.oid AND d.deptype = 'a' "
+                + "AND d.classid = 'pg_catalog.pg_class'::pg_catalog.regclass "
+                + "AND d.refclassid = 'pg_catalog.pg_class'::pg_catalog.regclass "
+                + "LEFT JOIN pg_catalog.pg_class tc ON tc.oid = d.refobjid "
+                + "LEFT JOIN pg_catalog.pg_namespace tn ON tn.oid = tc.relnamespace "
+                + "LEFT JOIN pg_catalog.pg_attribute ta ON ta.attrelid = d.refobjid AND ta.attnum = d.refobjsubid "
+                + "WHERE c.relkind = 'S' AND " + USER_SCHEMA + " AND " + String.format(NOT_EXTENSION_MEMBER, "c.oid")
+                + " AND NOT EXISTS (SELECT 1 FROM pg_catalog.pg_depend i WHERE i.objid = c.oid AND i.deptype = 'i') "
+                + "ORDER BY c.oid";
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                SequenceInfo sequence = new SequenceInfo();
+                sequence.qualifiedName = quoteIdentifier(rs.getString(1)) + "." + quoteIdentifier(rs.getString(2));
+                sequence.definition = "CREATE SEQUENCE " + sequence.qualifiedName
+                        + " AS " + rs.getString(3)
+                        + " INCREMENT BY " + rs.getLong(4)
+                        + " MINVALUE " + rs.getLong(5)
+                        + " MAXVALUE " + rs.getLong(6)
+                        + " START WITH " + rs.getLong(7)
+                        + " CACHE " + rs.getLong(8)
+                        + (rs.getBoolean(9) ? " CYCLE" : " NO CYCLE");
+                if (rs.getString(10) != null && rs.getString(12) != null) {
+                    sequence.ownedBy = quoteIdentifier(rs.getString(10)) + "." + quoteIdentifier(rs.getString(11))
+                            + "." + quoteIdentifier(rs.getString(12));
+                }
+                sequences.add(sequence);
+            }
+        }
+        return sequences;
+    }
+
+    void writePreData(Connection conn, int serverVersion, List<SequenceInfo> sequences,
+                              List<TableInfo> tables, Writer writer) throws IOException, SQLException {
+        writer.write(SCRIPT_HEADER);
+
+        for (String[] row : query(conn, "SELECT n.nspname FROM pg_catalog.pg_namespace n WHERE " + USER_SCHEMA
+                + " AND " + String.format(NOT_EXTENSION_MEMBER, "n.oid") + " ORDER BY n.oid")) {
+            writer.write("CREATE SCHEMA IF NOT EXISTS " + quoteIdentifier(row[0]) + ";\n");
+        }
+        for (String[] row : query(conn, "SELECT x.extname, n.nspname FROM pg_catalog.pg_extension x "
+                + "JOIN pg_catalog.pg_namespace n ON n.oid = x.extnamespace "
+                + "WHERE x.extname <> 'plpgsql' ORDER BY x.oid")) {
+            writer.write("CREATE EXTENSION IF NOT EXISTS " + quoteIdentifier(row[0])
+                    + " WITH SCHEMA " + quoteIdentifier(row[1]) + ";\n");
+        }
+
+        for (String[] row : query(conn, "SELECT n.nspname, t.typname, pg_catalog.string_agg("
+                + "pg_catalog.quote_literal(e.enumlabel), ', ' ORDER BY e.enumsortorder) "
+                + "FROM pg_catalog.pg_type t JOIN pg_catalog.pg_namespace n ON n.oid = t.typnamespace "
+                + "JOIN pg_catalog.pg_enum e ON e.enumtypid = t.oid "
+                + "WHERE " + USER_SCHEMA + " AND " + String.format(NOT_EXTENSION_MEMBER, "t.oid")
+                + " GROUP BY t.oid, n.nspname, t.typname ORDER BY t.oid")) {
+            writer.write("CREATE TYPE " + quoteIdentifier(row[0]) + "." + quoteIdentifier(row[1])
+                    + " AS ENUM (" + row[2] + ");\n");
+        }
+        for (String[] row : query(conn, "SELECT n.nspname, t.typname, "
+                + "pg_catalog.format_type(t.typbasetype, t.typtypmod), t.typdefault, t.typnotnull::text, "
+                + "(SELECT pg_catalog.string_agg('CONSTRAINT ' || pg_catalog.quote_ident(c.conname) || ' ' "
+                + "|| pg_catalog.pg_get_constraintdef(c.oid), ' ' ORDER BY c.conname) "
+                + "FROM pg_catalog.pg_constraint c WHERE c.contypid = t.oid AND c.contype = 'c') "
+                + "FROM pg_catalog.pg_type t JOIN pg_catalog.pg_namespace n ON n.oid = t.typnamespace "
+                + "WHERE t.typtype = 'd' AND " + USER_SCHEMA + " AND " + String.format(NOT_EXTENSION_MEMBER, "t.oid")
+                + " ORDER BY t.oid")) {
+            writer.write("CREATE DOMAIN " + quoteIdentifier(row[0]) + "." + quoteIdentifier(row[1]) + " AS " + row[2]
+                    + (row[3] != null ? " DEFAULT " + row[3] : "")
+                    + ("true".equals(row[4]) ? " NOT NULL" : "")
+                    + (row[5] != null ? " " + row[5] : "") + ";\n");
+        }
+
+        // Before the tables, whose defaults call nextval() on them
+        for (SequenceInfo sequence : sequences) {
+            writer.write(sequence.definition + ";\n");
+        }
+
+        // Routines whose signature uses a table's row type (or an array of it) can only be
+        // created after the table, and so can SQL-standard bodies (BEGIN ATOMIC), which are
+        // parsed at creation even with check_function_bodies off
+        String routines = serverVersion >= 110000 ? "p.prokind IN ('f', 'p')" : "NOT p.proisagg AND NOT p.proiswindow";
+        String sqlBody = serverVersion >= 140000 ? "p.prosqlbody IS NOT NULL" : "false";
+        List<String> afterTables = new ArrayList<>();
+        for (String[] row : query(conn, "SELECT pg_catalog.pg_get_functiondef(p.oid), (" + sqlBody + " OR EXISTS "
+                + "(SELECT 1 FROM pg_catalog.pg_depend d JOIN pg_catalog.pg_type t ON t.oid = d.refobjid "
+                + "LEFT JOIN pg_catalog.pg_type e ON e.oid = t.typelem "
+                + "WHERE d.classid = 'pg_catalog.pg_proc'::pg_catalog.regclass AND d.objid = p.oid "
+                + "AND d.refclassid = 'pg_catalog.pg_type'::pg_catalog.regclass "
+                + "AND (t.typrelid IN (" + USER_TABLES + ") OR e.typrelid IN (" + USER_TABLES + "))))::text "
+                + "FROM pg_catalog.pg_proc p JOIN pg_catalog.pg_namespace n ON n.oid = p.pronamespace "
+                + "WHERE " + routines + " AND " + USER_SCHEMA + " AND " + String.format(NOT_EXTENSION_MEMBER, "p.oid")
+                + " ORDER BY p.oid")) {
+            String definition = row[0].trim() + ";\n";
+            if ("true".equals(row[1])) {
+                afterTables.add(definition);
+            } else {
+                writer.write(definition);
+            }
+        }
+
+        for (TableInfo table : tables) {
+            writer.write(table.createStatement());
+        }
+        for (String definition : afterTables) {
+            writer.write(definition);
+        }
+    }
+
+    void writePostData(Connection conn, List<SequenceInfo> sequences, List<TableInfo> tables, Writer writer)
+            throws IOException, SQLException {
+        writer.write(SCRIPT_HEADER);
+
+        // Keys, unique and check constraints, then the other indexes, then foreign keys, which
+        // need the referenced keys and are validated against the loaded rows
+        List<String> foreignKeys = new ArrayList<>();
+        for (String[] row : query(conn, "SELECT n.nspname, c.relname, con.conname, "
+                + "pg_catalog.pg_get_constraintdef(con.oid), con.contype::text "
+                + "FROM pg_catalog.pg_constraint con "
+                + "JOIN pg_catalog.pg_class c ON c.oid = con.conrelid "
+                + "JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+                + "WHERE con.conrelid IN (" + USER_TABLES + ") AND con.contype IN ('p', 'u', 'x', 'c', 'f') "
+                + "ORDER BY con.contype = 'p' DESC, c.oid, con.conname")) {
+            String statement = "ALTER TABLE ONLY " + quoteIdentifier(row[0]) + "." + quoteIdentifier(row[1])
+                    + " ADD CONSTRAINT " + quoteIdentifier(row[2]) + " " + row[3] + ";\n";
+            if ("f".equals(row[4])) {
+                foreignKeys.add(statement);
+            } else {
+                writer.write(statement);
+            }
+        }
+        for (String[] row : query(conn, "SELECT pg_catalog.pg_get_indexdef(i.indexrelid) FROM pg_catalog.pg_index i "
+                + "WHERE i.indrelid IN (" + USER_TABLES + ") AND NOT EXISTS (SELECT 1 FROM pg_catalog.pg_constraint con "
+                + "WHERE con.conindid = i.indexrelid AND con.contype IN ('p', 'u', 'x')) ORDER BY i.indexrelid")) {
+            writer.write(row[0] + ";\n");
+        }
+        for (String statement : foreignKeys) {
+            writer.write(statement);
+        }
+
+        for (SequenceInfo sequence : sequences) {
+            String[] value = query(conn, "SELECT last_value, is_called::text FROM " + sequence.qualifiedName).get(0);
+            writer.write("SELECT pg_catalog.setval(" + quoteLiteral(sequence.qualifiedName) + ", "
+                    + value[0] + ", " + value[1] + ");\n");
+            if (sequence.ownedBy != null) {
+                writer.write("ALTER SEQUENCE " + sequence.qualifiedName + " OWNED BY " + sequence.ownedBy + ";\n");
+            }
+        }
+        for (TableInfo table : tables) {
+            for (ColumnInfo column : table.columns) {
+                if (!column.isIdentity()) {
+                    continue;
+                }
+                String lookup = "pg_catalog.pg_get_serial_sequence(" + quoteLiteral(table.qualifiedName()) + ", "
+                        + quoteLiteral(column.name) + ")";
+                String sequence = query(conn, "SELECT " + lookup).get(0)[0];
+                String[] value = query(conn, "SELECT last_value, is_called::text FROM " + sequence).get(0);
+                writer.write("SELECT pg_catalog.setval(" + lookup + ", " + value[0] + ", " + value[1] + ");\n");
+            }
+        }
+
+        // In creation order, which puts views after the views they select from
+        List<String> materialized = new ArrayList<>();
+        for (String[] row : query(conn, "SELECT n.nspname, c.relname, c.relkind::text, pg_catalog.pg_get_viewdef(c.oid) "
+                + "FROM pg_catalog.pg_class c JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+                + "WHERE c.relkind IN ('v', 'm') AND " + USER_SCHEMA + " AND "
+                + String.format(NOT_EXTENSION_MEMBER, "c.oid") + " ORDER BY c.oid")) {
+            String name = quoteIdentifier(row[0]) + "." + quoteIdentifier(row[1]);
+            String definition = row[3].trim().replaceAll(";$", "");
+            if ("m".equals(row[2])) {
+                writer.write("CREATE MATERIALIZED VIEW " + name + " AS\n" + definition + "\nWITH NO DATA;\n");
+                materialized.add(name);
+            } else {
+                writer.write("CREATE VIEW " + name + " AS\n" + definition + ";\n");
+            }
+        }
+        // Including the unique index a later REFRESH MATERIALIZED VIEW CONCURRENTLY needs
+        for (String[] row : query(conn, "SELECT pg_catalog.pg_get_indexdef(i.indexrelid) FROM pg_catalog.pg_index i "
+                + "JOIN pg_catalog.pg_class c ON c.oid = i.indrelid "
+                + "JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+                + "WHERE c.relkind = 'm' AND " + USER_SCHEMA + " AND " + String.format(NOT_EXTENSION_MEMBER, "c.oid")
+                + " ORDER BY i.indexrelid")) {
+            writer.write(row[0] + ";\n");
+        }
+
+        for (String[] row : query(conn, "SELECT pg_catalog.pg_get_triggerdef(t.oid) FROM pg_catalog.pg_trigger t "
+                + "WHERE NOT t.tgisinternal AND t.tgrelid IN (" + USER_TABLES + ") ORDER BY t.oid")) {
+            writer.write(row[0] + ";\n");
+        }
+
+        for (String name : materialized) {
+            writer.write("REFRESH MATERIALIZED VIEW " + name + ";\n");
+        }
+    }
+
+    private List<String[]> query(Connection conn, String sql) throws SQLException {
+        List<String[]> rows = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                String[] row = new String[columns];
+                for (int i = 0; i < columns; i++) {
+                    row[i] = rs.getString(i + 1);
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private void dumpTables(List<Connection> workers, List<TableInfo> tables, Path dir,
+                            CompressionCodec codec, CompressionOptions options, Throttle throttle,
+                            AtomicLong rawBytes, AtomicLong compressedBytes) throws IOException {
+        ConcurrentLinkedQueue<TableInfo> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < tables.size(); i++) {
+            TableInfo table = tables.get(i);
+            table.file = String.format("%04d_%s.copy%s", i,
+                    table.displayName().replaceAll("[^A-Za-z0-9_.$-]", "_"), extension(codec));
+            queue.add(table);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Connection worker : workers) {
+                CopyManager copyManager = worker.unwrap(PGConnection.class).getCopyAPI();
+                futures.add(executor.submit(() -> {
+                    TableInfo table;
+                    while ((table = queue.poll()) != null) {
+                        TableInfo current = table;
+                        // Text format: portable across server versions and compresses well
+                        StreamStats stats = writeFile(dir.resolve(current.file), codec, options, throttle,
+                                out -> current.rows = copyManager.copyOut(
+                                        "COPY " + current.copyTarget() + " TO STDOUT", out));
+                        current.checksum = stats.getChecksum();
+                        rawBytes.addAndGet(stats.getRawBytes());
+                        compressedBytes.addAndGet(stats.getCompressedBytes());
+                        log.info("Dumped table {} ({} rows)", current.displayName(), current.rows);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not start COPY: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while dumping tables", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean loadTables(List<TableInfo> tables, Path dir, ConnectionParams params, int jobs,
+                               boolean replace, Throttle throttle) throws SQLException, IOException {
+        ConcurrentLinkedQueue<TableInfo> queue = new ConcurrentLinkedQueue<>(tables);
+        List<Connection> loaders = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < jobs; i++) {
+                Connection loader = connect(params);
+                loaders.add(loader);
+                futures.add(executor.submit(() -> {
+                    boolean success = true;
+                    TableInfo table;
+                    while ((table = queue.poll()) != null) {
+                        success &= loadTable(loader, dir.resolve(table.file), table, replace, throttle);
+                    }
+                    return success;
+                }));
+            }
+            boolean success = true;
+            for (Future<Boolean> future : futures) {
+                success &= future.get();
+            }
+            return success;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+            for (Connection loader : loaders) {
+                closeQuietly(loader);
+            }
+        }
+    }
+
+    /**
+     * Streams one (decompressed) table file into COPY FROM STDIN through a pooled buffer.
+     * Each table is one transaction; a replaced table is truncated in the same one.
+     */
+    private boolean loadTable(Connection conn, Path file, TableInfo table, boolean replace, Throttle throttle)
+            throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        CopyIn copyIn = null;
+        try (InputStream in = throttle.wrap(compressionService.openDecompressed(file.toString()))) {
+            conn.setAutoCommit(false);
+            try (Statement st = conn.createStatement()) {
+                // The rows are committed as a whole, waiting for each WAL flush gains nothing
+                st.execute("SET LOCAL synchronous_commit = off");
+                if (replace) {
+                    st.execute("TRUNCATE TABLE ONLY " + table.qualifiedName());
+                }
+            }
+            copyIn = conn.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn("COPY " + table.copyTarget() + " FROM STDIN");
+            byte[] array = buffer.array();
+            int read;
+            while ((read = in.read(array)) >= 0) {
+                copyIn.writeToCopy(array, 0, read);
+            }
+            long rows = copyIn.endCopy();
+            copyIn = null;
+            conn.commit();
+            log.info("Loaded table {} ({} rows)", table.displayName(), rows);
+            return true;
+        } catch (SQLException e) {
+            log.error("Loading {} failed: {}", table.displayName(), e.getMessage());
+            cancelQuietly(copyIn);
+            rollbackQuietly(conn);
+            return false;
+        } catch (IOException e) {
+            cancelQuietly(copyIn);
+            rollbackQuietly(conn);
+            throw e;
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Runs a schema script as one transaction, so a failed restore leaves no half of it behind.
+     */
+    private void runScript(Connection conn, Path file) throws IOException, SQLException {
+        String script;
+        try (InputStream in = compressionService.openDecompressed(file.toString())) {
+            script = IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+        conn.setAutoCommit(false);
+        try (Statement st = conn.createStatement()) {
+            st.execute(script);
+            conn.commit();
+        } catch (SQLException e) {
+            rollbackQuietly(conn);
+            throw new SQLException("Running " + file.getFileName() + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private int resolveJobs(Integer requested, int tableCount) {
+        int jobs = requested != null && requested > 0 ? requested : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(jobs, tableCount));
+    }
+
+    private Connection connect(ConnectionParams params) throws SQLException {
+        String url = String.format("jdbc:postgresql://%s:%d/%s",
+                params.getHost(),
+                params.getPort() != null ? params.getPort() : 5432,
+                params.getDatabase());
+        Properties properties = new Properties();
+        if (params.getUsername() != null) {
+            properties.setProperty("user", params.getUsername());
+        }
+        if (params.getPassword() != null) {
+            properties.setProperty("password", params.getPassword());
+        }
+        properties.setProperty("ApplicationName", "db-backup");
+        return DriverManager.getConnection(url, properties);
+    }
+
+    private static String quoteIdentifier(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String quoteLiteral(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    private String extension(CompressionCodec codec) {
+        return codec != null ? codec.getExtension() : "";
+    }
+
+    private void cancelQuietly(CopyIn copyIn) {
+        try {
+            if (copyIn != null && copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException e) {
+            log.debug("Error cancelling COPY: {}", e.getMessage());
+        }
+    }
+
+    private void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            log.debug("Error rolling back: {}", e.getMessage());
+        }
+    }
+
+    private void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            log.debug("Error closing connection: {}", e.getMessage());
+        }
+    }
+
+    private StreamStats writeFile(Path path, CompressionCodec codec, CompressionOptions options, Throttle throttle,
+                                  DataWriter content) throws IOException {
+        ChecksumOutputStream hashed = checksumService.wrap(Files.newOutputStream(path));
+        CountingOutputStream compressed = new CountingOutputStream(hashed);
+        CountingOutputStream raw;
+        try (OutputStream out = codec != null ? codec.compress(compressed, options) : compressed) {
+            // Throttling the rows as they are written paces the reads from the server too
+            raw = new CountingOutputStream(throttle.wrap(out));
+            try (OutputStream buffered = new BufferedOutputStream(raw, 256 * 1024)) {
+                content.write(buffered);
+            }
+        } catch (SQLException e) {
+            Files.deleteIfExists(path);
+            throw new IOException("Failed to dump " + path.getFileName() + ": " + e.getMessage(), e);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return StreamStats.builder()
+                .filePath(path.toString())
+                .rawBytes(raw.getByteCount())
+                .compressedBytes(compressed.getByteCount())
+                .checksum(hashed.getChecksum())
+                .build();
+    }
+
+    private DataWriter script(SqlWriter content) {
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            content.write(writer);
+            writer.flush();
+        };
+    }
+
+    String writeManifest(Path dir, Map<String, String> header, List<TableInfo> tables) throws IOException {
+        ChecksumOutputStream hashed = checksumService.wrap(Files.newOutputStream(dir.resolve(MANIFEST_FILE)));
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(hashed, StandardCharsets.UTF_8))) {
+            writer.write(MANIFEST_HEADER);
+            writer.newLine();
+            for (Map.Entry<String, String> entry : header.entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue());
+                writer.newLine();
+            }
+            writer.write(TABLE_SECTION);
+            writer.newLine();
+            for (TableInfo table : tables) {
+                writer.write(String.join("\t", table.schema, table.name, table.file,
+                        String.valueOf(table.rows), table.checksum, table.copyColumns));
+                writer.newLine();
+            }
+        }
+        return hashed.getChecksum();
+    }
+
+    private Manifest readManifest(Path dir) throws IOException {
+        Manifest manifest = new Manifest();
+        boolean inTables = false;
+        for (String line : Files.readAllLines(dir.resolve(MANIFEST_FILE), StandardCharsets.UTF_8)) {
+            if (!inTables) {
+                if (TABLE_SECTION.equals(line)) {
+                    inTables = true;
+                } else if (line.contains("=")) {
+                    int separator = line.indexOf('=');
+                    manifest.header.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+                continue;
+            }
+            if (!line.isBlank()) {
+                String[] parts = line.split("\t", -1);
+                TableInfo table = new TableInfo(parts[0], parts[1]);
+                table.file = parts[2];
+                table.rows = Long.parseLong(parts[3]);
+                table.checksum = parts[4];
+                table.copyColumns = parts[5];
+                manifest.tables.add(table);
+            }
+        }
+        return manifest;
+    }
+
+    @FunctionalInterface
+    private interface DataWriter {
+        void write(OutputStream out) throws IOException, SQLException;
+    }
+
+    @FunctionalInterface
+    private interface SqlWriter {
+        void write(Writer writer) throws IOException, SQLException;
+    }
+
+    static final class TableInfo {
+        final String schema;
+        final String name;
+        final List<ColumnInfo> columns = new ArrayList<>();
+        boolean unlogged;
+        String copyColumns;
+        String file;
+        long rows;
+        String checksum;
+
+        TableInfo(String schema, String name) {
+            this.schema = schema;
+            this.name = name;
+        }
+
+        String qualifiedName() {
+            return quoteIdentifier(schema) + "." + quoteIdentifier(name);
+        }
+
+        // A table without columns is copied without a column list
+        String copyTarget() {
+            return copyColumns.isEmpty() ? qualifiedName() : qualifiedName() + " (" + copyColumns + ")";
+        }
+
+        String displayName() {
+            return schema + "." + name;
+        }
+
+        String createStatement() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(unlogged ? "CREATE UNLOGGED TABLE " : "CREATE TABLE ").append(qualifiedName()).append(" (");
+            for (int i = 0; i < columns.size(); i++) {
+                sb.append(i > 0 ? ",\n    " : "\n    ").append(columns.get(i).definition());
+            }
+            return sb.append("\n);\n").toString();
+        }
+    }
+
+    private static final class ColumnInfo {
+        private final String name;
+        private final String type;
+        private boolean notNull;
+        private String defaultExpression;
+        private String identity;
+        private String generated;
+        private String collation;
+
+        private ColumnInfo(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        private boolean isIdentity() {
+            return identity != null && !identity.isEmpty();
+        }
+
+        private boolean isGenerated() {
+            return generated != null && !generated.isEmpty();
+        }
+
+        private String definition() {
+            StringBuilder sb = new StringBuilder(quoteIdentifier(name)).append(' ').append(type);
+            if (collation != null) {
+                sb.append(" COLLATE ").append(collation);
+            }
+            if (isGenerated()) {
+                sb.append(" GENERATED ALWAYS AS (").append(defaultExpression).append(") STORED");
+            } else if (isIdentity()) {
+                sb.append("a".equals(identity) ? " GENERATED ALWAYS AS IDENTITY" : " GENERATED BY DEFAULT AS IDENTITY");
+            } else if (defaultExpression != null) {
+                sb.append(" DEFAULT ").append(defaultExpression);
+            }
+            if (notNull) {
+                sb.append(" NOT NULL");
+            }
+            return sb.toString();
+        }
+    }
+
+    static final class SequenceInfo {
+        private String qualifiedName;
+        private String definition;
+        private String ownedBy;
+    }
+
+    private static final class Manifest {
+        private final Map<String, String> header = new LinkedHashMap<>();
+        private final List<TableInfo> tables = new ArrayList<>();
+    }
+}
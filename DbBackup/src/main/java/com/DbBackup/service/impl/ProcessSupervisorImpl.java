@@ -0,0 +1,499 @@
+package com.DbBackup.service.impl;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.ProcessResult;
+import com.DbBackup.model.RunningProcess;
+import com.DbBackup.service.BackupMetricsService;
+import com.DbBackup.service.ProcessSupervisor;
+import com.DbBackup.service.SupervisedProcess;
+import com.DbBackup.service.SupervisedTask;
+import com.DbBackup.util.OutputRingBuffer;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class ProcessSupervisorImpl implements ProcessSupervisor, DisposableBean {
+
+    private static final String PROCESS_EXTENSION = ".process";
+    private static final String CANCEL_EXTENSION = ".cancel";
+    // Time a tool gets to exit after SIGTERM before it is killed
+    private static final long KILL_GRACE_MILLIS = 10_000;
+    private static final long WATCHDOG_INTERVAL_MILLIS = 1000;
+
+    private final long timeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int outputBufferBytes;
+    private final Path controlDir;
+    private final BackupMetricsService metricsService;
+
+    private final Map<Long, Supervised> running = new ConcurrentHashMap<>();
+    private final Map<String, Task> tasks = new ConcurrentHashMap<>();
+    private final AtomicLong taskIds = new AtomicLong();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "process-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ProcessSupervisorImpl(@Value("${backup.process.timeout:0}") long timeoutMillis,
+                                 @Value("${backup.process.idle-timeout:1800000}") long idleTimeoutMillis,
+                                 @Value("${backup.process.output-buffer:65536}") int outputBufferBytes,
+                                 @Value("${backup.process.control-dir:./backups/processes}") String controlDir,
+                                 BackupMetricsService metricsService) {
+        this.timeoutMillis = timeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.outputBufferBytes = outputBufferBytes;
+        this.controlDir = Paths.get(controlDir);
+        this.metricsService = metricsService;
+        watchdog.scheduleWithFixedDelay(this::watch, WATCHDOG_INTERVAL_MILLIS, WATCHDOG_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public SupervisedProcess start(String jobId, ProcessBuilder pb) throws IOException {
+        Supervised process = launch(jobId, pb);
+        process.drain(process.process.getInputStream(), "stdout");
+        if (!pb.redirectErrorStream()) {
+            process.drain(process.process.getErrorStream(), "stderr");
+        }
+        return process;
+    }
+
+    @Override
+    public SupervisedProcess startStreaming(String jobId, ProcessBuilder pb) throws IOException {
+        Supervised process = launch(jobId, pb);
+        process.drain(process.process.getErrorStream(), "stderr");
+        return process;
+    }
+
+    @Override
+    public SupervisedProcess startUnbounded(String jobId, ProcessBuilder pb) throws IOException {
+        Supervised process = launch(jobId, pb);
+        process.unbounded = true;
+        process.drain(process.process.getInputStream(), "stdout");
+        if (!pb.redirectErrorStream()) {
+            process.drain(process.process.getErrorStream(), "stderr");
+        }
+        return process;
+    }
+
+    @Override
+    public SupervisedTask registerTask(String jobId, String name, Runnable onCancel) {
+        Task task = new Task(ProcessHandle.current().pid() + "-" + taskIds.incrementAndGet(), jobId, name, onCancel);
+        tasks.put(task.id, task);
+        try {
+            writeRegistration(task.id, jobId, name, ProcessHandle.current().pid(), task.startedAt);
+        } catch (IOException e) {
+            log.warn("Could not register {} in {}: {}", name, controlDir, e.getMessage());
+        }
+        log.debug("Started {} for job {}", name, jobId);
+        return task;
+    }
+
+    @Override
+    public List<RunningProcess> listRunning() throws IOException {
+        if (!Files.isDirectory(controlDir)) {
+            return new ArrayList<>();
+        }
+        List<Path> files;
+        try (Stream<Path> list = Files.list(controlDir)) {
+            files = list.filter(path -> path.toString().endsWith(PROCESS_EXTENSION)).sorted().collect(Collectors.toList());
+        }
+
+        List<RunningProcess> processes = new ArrayList<>();
+        for (Path file : files) {
+            Properties registration = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                registration.load(reader);
+            } catch (IOException e) {
+                // Unregistered while we were listing
+                continue;
+            }
+            long pid = Long.parseLong(registration.getProperty("pid"));
+            // Registrations from before tasks are named after their pid
+            String id = registration.getProperty("id", String.valueOf(pid));
+            Optional<ProcessHandle> handle = ProcessHandle.of(pid);
+            if (handle.isEmpty() || !handle.get().isAlive()) {
+                // Left behind by an instance that died without cleaning up
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(controlDir.resolve(id + CANCEL_EXTENSION));
+                continue;
+            }
+            boolean tool = id.equals(String.valueOf(pid));
+            processes.add(RunningProcess.builder()
+                    .id(id)
+                    .jobId(registration.getProperty("jobId"))
+                    .tool(registration.getProperty("tool"))
+                    .pid(pid)
+                    .startTime(LocalDateTime.ofInstant(
+                            Instant.ofEpochMilli(Long.parseLong(registration.getProperty("started"))),
+                            ZoneId.systemDefault()))
+                    .cpuMillis(tool ? cpuMillis(handle.get()).orElse(null) : null)
+                    .rssBytes(tool ? readStatus(pid, "VmRSS") : null)
+                    .build());
+        }
+        return processes;
+    }
+
+    @Override
+    public int cancel(String jobId) throws IOException {
+        int cancelled = 0;
+        for (RunningProcess process : listRunning()) {
+            if (!jobId.equals(process.getJobId())) {
+                continue;
+            }
+            Task task = tasks.get(process.getId());
+            Supervised local = running.get(process.getPid());
+            if (task != null) {
+                task.cancel();
+            } else if (local != null) {
+                local.cancel("cancelled");
+            } else {
+                // The owning instance picks this up on its next watchdog round
+                // Asking again before it does finds the marker already there
+                try {
+                    Files.createFile(controlDir.resolve(process.getId() + CANCEL_EXTENSION));
+                } catch (FileAlreadyExistsException e) {
+                    log.debug("Cancel of {} is already pending", process.getId());
+                }
+            }
+            cancelled++;
+        }
+        return cancelled;
+    }
+
+    @Override
+    public void destroy() {
+        watchdog.shutdownNow();
+        running.values().forEach(process -> process.cancel("shutting down"));
+        tasks.values().forEach(Task::cancel);
+    }
+
+    private Supervised launch(String jobId, ProcessBuilder pb) throws IOException {
+        Supervised process = new Supervised(jobId, pb.command().get(0), pb.start());
+        running.put(process.pid(), process);
+        try {
+            process.register();
+        } catch (IOException e) {
+            // Supervision works without the registry, only cancelling from elsewhere doesn't
+            log.warn("Could not register {} in {}: {}", process.tool, controlDir, e.getMessage());
+        }
+        log.debug("Started {} (pid {}) for job {}", process.tool, process.pid(), jobId);
+        return process;
+    }
+
+    private void watch() {
+        long now = System.currentTimeMillis();
+        for (Supervised process : running.values()) {
+            try {
+                process.sample(now);
+                if (process.killRequestedAt > 0) {
+                    if (now - process.killRequestedAt > KILL_GRACE_MILLIS) {
+                        process.destroy(true);
+                    }
+                } else if (Files.exists(controlDir.resolve(process.pid() + CANCEL_EXTENSION))) {
+                    process.cancel("cancelled");
+                } else if (process.unbounded) {
+                    // Runs until cancelled, and may rightly sit idle for hours
+                    continue;
+                } else if (timeoutMillis > 0 && now - process.startedAt > timeoutMillis) {
+                    process.cancel("timed out after " + Duration.ofMillis(timeoutMillis));
+                } else if (idleTimeoutMillis > 0 && now - process.lastActivity > idleTimeoutMillis) {
+                    process.cancel("no output or CPU use for " + Duration.ofMillis(idleTimeoutMillis));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Watchdog check of {} failed: {}", process.tool, e.getMessage());
+            }
+        }
+        for (Task task : tasks.values()) {
+            if (Files.exists(controlDir.resolve(task.id + CANCEL_EXTENSION))) {
+                task.cancel();
+            }
+        }
+    }
+
+    private void writeRegistration(String id, String jobId, String tool, long pid, long startedAt)
+            throws IOException {
+        Files.createDirectories(controlDir);
+        Properties registration = new Properties();
+        registration.setProperty("id", id);
+        registration.setProperty("jobId", jobId != null ? jobId : "-");
+        registration.setProperty("tool", tool);
+        registration.setProperty("pid", String.valueOf(pid));
+        registration.setProperty("started", String.valueOf(startedAt));
+        try (Writer writer = Files.newBufferedWriter(controlDir.resolve(id + PROCESS_EXTENSION),
+                StandardCharsets.UTF_8)) {
+            registration.store(writer, null);
+        }
+    }
+
+    private void deleteRegistration(String id, String tool) {
+        try {
+            Files.deleteIfExists(controlDir.resolve(id + PROCESS_EXTENSION));
+            Files.deleteIfExists(controlDir.resolve(id + CANCEL_EXTENSION));
+        } catch (IOException e) {
+            log.debug("Could not unregister {}: {}", tool, e.getMessage());
+        }
+    }
+
+    private static Optional<Long> cpuMillis(ProcessHandle handle) {
+        return handle.info().totalCpuDuration().map(Duration::toMillis);
+    }
+
+    /**
+     * A memory field of /proc/[pid]/status in bytes, null where it can't be read.
+     */
+    private static Long readStatus(long pid, String field) {
+        try (Stream<String> lines = Files.lines(Paths.get("/proc", String.valueOf(pid), "status"))) {
+            return lines.filter(line -> line.startsWith(field + ":"))
+                    .findFirst()
+                    .map(line -> Long.parseLong(line.replaceAll("\\D", "")) * 1024)
+                    .orElse(null);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private class Supervised implements SupervisedProcess {
+        private final String jobId;
+        private final String tool;
+        private final Process process;
+        private final OutputRingBuffer output = new OutputRingBuffer(outputBufferBytes);
+        private final List<Thread> drainers = new ArrayList<>();
+        private final long startedAt = System.currentTimeMillis();
+        // CPU time per process of the tree, exited children keep their last sample
+        private final Map<Long, Long> cpuByPid = new ConcurrentHashMap<>();
+        private volatile long lastActivity = startedAt;
+        private volatile long lastCpuMillis;
+        private volatile Long peakRssBytes;
+        private volatile long killRequestedAt;
+        private volatile String killReason;
+        private volatile boolean unbounded;
+
+        Supervised(String jobId, String tool, Process process) {
+            this.jobId = jobId;
+            this.tool = Paths.get(tool).getFileName().toString();
+            this.process = process;
+        }
+
+        @Override
+        public long pid() {
+            return process.pid();
+        }
+
+        @Override
+        public boolean isAlive() {
+            return process.isAlive();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new FilterInputStream(process.getInputStream()) {
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    lastActivity = System.currentTimeMillis();
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new FilterOutputStream(process.getOutputStream()) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    lastActivity = System.currentTimeMillis();
+                }
+            };
+        }
+
+        @Override
+        public ProcessResult waitFor() throws InterruptedException {
+            int exitCode;
+            try {
+                exitCode = process.waitFor();
+                for (Thread drainer : drainers) {
+                    drainer.join();
+                }
+            } catch (InterruptedException e) {
+                cancel("interrupted");
+                destroy(true);
+                throw e;
+            } finally {
+                running.remove(pid());
+                unregister();
+            }
+
+            ProcessResult result = ProcessResult.builder()
+                    .tool(tool)
+                    .pid(pid())
+                    .exitCode(exitCode)
+                    .output(output.tail())
+                    .wallMillis(System.currentTimeMillis() - startedAt)
+                    .cpuMillis(lastCpuMillis)
+                    .peakRssBytes(peakRssBytes)
+                    .killReason(killReason)
+                    .build();
+            log.info("{} (pid {}) {} after {} ms, cpu {} ms, peak RSS {}", tool, pid(),
+                    killReason != null ? "stopped, " + killReason + "," : "exited with " + exitCode,
+                    result.getWallMillis(), result.getCpuMillis(),
+                    peakRssBytes != null ? peakRssBytes / (1024 * 1024) + " MB" : "n/a");
+            metricsService.recordProcess(result);
+            return result;
+        }
+
+        @Override
+        public void cancel(String reason) {
+            if (killRequestedAt > 0 || !process.isAlive()) {
+                return;
+            }
+            killReason = reason;
+            killRequestedAt = System.currentTimeMillis();
+            log.warn("Stopping {} (pid {}) of job {}: {}", tool, pid(), jobId, reason);
+            destroy(false);
+        }
+
+        void destroy(boolean forcibly) {
+            // Children first, so pg_dump -j workers don't outlive their leader
+            process.descendants().forEach(child -> {
+                if (forcibly) {
+                    child.destroyForcibly();
+                } else {
+                    child.destroy();
+                }
+            });
+            if (forcibly) {
+                process.destroyForcibly();
+            } else {
+                process.destroy();
+            }
+        }
+
+        void drain(InputStream stream, String name) {
+            Thread drainer = new Thread(() -> {
+                byte[] buffer = new byte[8192];
+                try (stream) {
+                    int read;
+                    while ((read = stream.read(buffer)) >= 0) {
+                        output.write(buffer, 0, read);
+                        lastActivity = System.currentTimeMillis();
+                    }
+                } catch (IOException e) {
+                    log.debug("Stopped reading {} of {}: {}", name, tool, e.getMessage());
+                }
+            }, tool + "-" + name + "-" + pid());
+            drainer.setDaemon(true);
+            drainer.start();
+            drainers.add(drainer);
+        }
+
+        /**
+         * Samples CPU time and resident memory of the process and its children. Rising CPU
+         * time counts as activity, so a tool busy writing its own files isn't taken for hung.
+         */
+        void sample(long now) {
+            ProcessHandle handle = process.toHandle();
+            cpuMillis(handle).ifPresent(cpu -> cpuByPid.put(pid(), cpu));
+            // The peak is the largest resident total seen at one tick. Adding the tool's own
+            // high-water mark to its children's current size would mix different moments
+            Long rss = readStatus(pid(), "VmRSS");
+            long childRss = 0;
+            for (ProcessHandle child : (Iterable<ProcessHandle>) handle.descendants()::iterator) {
+                cpuMillis(child).ifPresent(cpu -> cpuByPid.put(child.pid(), cpu));
+                Long childResident = readStatus(child.pid(), "VmRSS");
+                childRss += childResident != null ? childResident : 0;
+            }
+            if (rss != null) {
+                long total = rss + childRss;
+                peakRssBytes = peakRssBytes == null ? total : Math.max(peakRssBytes, total);
+            }
+
+            long cpu = cpuByPid.values().stream().mapToLong(Long::longValue).sum();
+            if (cpu > lastCpuMillis) {
+                lastCpuMillis = cpu;
+                lastActivity = now;
+            }
+        }
+
+        void register() throws IOException {
+            writeRegistration(String.valueOf(pid()), jobId, tool, pid(), startedAt);
+        }
+
+        void unregister() {
+            deleteRegistration(String.valueOf(pid()), tool);
+        }
+    }
+
+    /**
+     * In-process work of a job, listed under the JVM's pid.
+     */
+    private class Task implements SupervisedTask {
+        private final String id;
+        private final String jobId;
+        private final String name;
+        private final Runnable onCancel;
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        Task(String id, String jobId, String name, Runnable onCancel) {
+            this.id = id;
+            this.jobId = jobId;
+            this.name = name;
+            this.onCancel = onCancel;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                log.warn("Stopping {} of job {}: cancelled", name, jobId);
+                onCancel.run();
+            }
+        }
+
+        @Override
+        public void close() {
+            tasks.remove(id);
+            deleteRegistration(id, name);
+        }
+    }
+}
@@ -2,160 +2,346 @@ package com.DbBackup.service.impl;
 
 import com.DbBackup.model.ConnectionParams;
 import com.DbBackup.model.DatabaseType;
+import com.DbBackup.model.ProcessResult;
+import com.DbBackup.model.RestoreOptions;
+import com.DbBackup.service.BackupMetricsService;
+import com.DbBackup.service.BandwidthService;
+import com.DbBackup.service.BinlogService;
+import com.DbBackup.service.ChunkStoreService;
 import com.DbBackup.service.CompressionService; 
 import com.DbBackup.service.DatabaseConnectionService;
+import com.DbBackup.service.FramedArchiveService;
+import com.DbBackup.service.MongoBsonDumpService;
+import com.DbBackup.service.MySqlParallelDumpService;
+import com.DbBackup.service.PostgresCopyDumpService;
+import com.DbBackup.service.ProcessSupervisor;
 import com.DbBackup.service.RestoreService;
+import com.DbBackup.service.SqlitePageDeltaService;
+import com.DbBackup.service.SupervisedProcess;
+import com.DbBackup.util.FileTransfer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class RestoreServiceImpl implements RestoreService {
 
+    // mongodump archives start with the little-endian magic number 0x8199e26d
+    private static final byte[] MONGO_ARCHIVE_MAGIC = {0x6d, (byte) 0xe2, (byte) 0x99, (byte) 0x81};
+
     private final DatabaseConnectionService connectionService;
     private final CompressionService compressionService;
+    private final ChunkStoreService chunkStoreService;
+    private final SqlitePageDeltaService sqlitePageDeltaService;
+    private final MySqlParallelDumpService mySqlParallelDumpService;
+    private final PostgresCopyDumpService postgresCopyDumpService;
+    private final MongoBsonDumpService mongoBsonDumpService;
+    private final BinlogService binlogService;
+    private final FramedArchiveService framedArchiveService;
+    private final BufferPool bufferPool;
+    private final BackupMetricsService metricsService;
+    private final BandwidthService bandwidthService;
+    private final ProcessSupervisor processSupervisor;
     
     @Override
     public boolean restoreBackup(String backupFilePath, DatabaseType type, ConnectionParams connectionParams) {
-        return restoreSelectiveBackup(backupFilePath, type, connectionParams, null);
+        return restore(backupFilePath, type, connectionParams, RestoreOptions.defaults());
     }
 
     @Override
     public boolean restoreSelectiveBackup(String backupFilePath, DatabaseType type, 
                                          ConnectionParams connectionParams, List<String> items) {
+        return restore(backupFilePath, type, connectionParams, RestoreOptions.builder().items(items).build());
+    }
+
+    @Override
+    public boolean restore(String backupFilePath, DatabaseType type, 
+                           ConnectionParams connectionParams, RestoreOptions options) {
         log.info("Starting restore from {} for database type {}", backupFilePath, type);
+        if (options.getJobId() == null) {
+            options = options.toBuilder().jobId("restore-" + connectionParams.getDatabase()).build();
+        }
         
         // Test connection first
-        if (!connectionService.testConnection(type, connectionParams)) {
+        long connectStart = System.nanoTime();
+        boolean connected = connectionService.testConnection(type, connectionParams);
+        long connectMillis = millisSince(connectStart);
+        if (!connected) {
             log.error("Failed to connect to database");
+            metricsService.recordRestore(type, connectionParams.getDatabase(), connectMillis, 0, 0, false);
             return false;
         }
         
+        long prepareMillis = 0;
+        long loadStart = System.nanoTime();
+        boolean success = false;
+        String preparedPath = null;
         try {
-            // Decompress if it's a compressed file
+            if (options.isPointInTime() && (type != DatabaseType.MYSQL || options.isSelective()
+                    || !mySqlParallelDumpService.isTableDump(backupFilePath))) {
+                // Only these dumps record the binlog position their data is at
+                throw new IOException("Point-in-time restore needs a full restore of a parallel or native MySQL backup");
+            }
+            
+            // Single-file backups are decompressed or reassembled on the fly into the restore
+            // tool, so decompression overlaps the load and nothing is staged on disk
+            InputStream stream = openStream(backupFilePath, type, options);
+            if (stream != null) {
+                try (stream) {
+                    success = loadStream(stream, type, connectionParams, options);
+                }
+                return success;
+            }
+            
+            // Directory trees, and dumps the tool needs to seek in, are extracted first
             String filePath = backupFilePath;
-            if (backupFilePath.endsWith(".tar.gz")) {
+            if (type == DatabaseType.SQLITE && sqlitePageDeltaService.isDelta(backupFilePath)) {
+                // Page deltas are applied over their base backup, read straight from the compressed chain
+                filePath = sqlitePageDeltaService.rebuild(backupFilePath);
+                preparedPath = filePath;
+            } else if (chunkStoreService.isManifest(backupFilePath)) {
+                filePath = chunkStoreService.reassemble(backupFilePath);
+                preparedPath = filePath;
+            } else if (compressionService.isCompressed(backupFilePath)) {
                 filePath = compressionService.decompressFile(backupFilePath);
+                if (filePath.equals(backupFilePath)) {
+                    // Loading the compressed bytes would fail only partway through the restore
+                    throw new IOException("Could not decompress " + backupFilePath + ", run verify on it");
+                }
+                preparedPath = filePath;
             }
+            prepareMillis = millisSince(loadStart);
+            loadStart = System.nanoTime();
             
-            // Perform database-specific restore
-            switch (type) {
-                case MYSQL:
-                    return restoreMySql(filePath, connectionParams, items);
-                case POSTGRESQL:
-                    return restorePostgres(filePath, connectionParams, items);
-                case MONGODB:
-                    return restoreMongoDB(filePath, connectionParams, items);
-                case SQLITE:
-                    return restoreSqlite(filePath, connectionParams);
-                default:
-                    log.error("Unsupported database type: {}", type);
-                    return false;
+            success = load(filePath, type, connectionParams, options);
+            if (success && options.isPointInTime()) {
+                // The captured binary log brings the restored dump forward to the requested point
+                success = binlogService.replay(filePath, connectionParams, options);
             }
+            return success;
         } catch (Exception e) {
             log.error("Restore failed: {}", e.getMessage(), e);
             return false;
+        } finally {
+            if (preparedPath != null) {
+                FileUtils.deleteQuietly(new File(preparedPath));
+            }
+            long loadMillis = millisSince(loadStart);
+            log.info("Restore {}: connect {} ms, prepare {} ms, load {} ms",
+                    success ? "completed" : "failed", connectMillis, prepareMillis, loadMillis);
+            metricsService.recordRestore(type, connectionParams.getDatabase(),
+                    connectMillis, prepareMillis, loadMillis, success);
+        }
+    }
+    
+    /**
+     * Opens a backup that can be restored as a stream of its original content, or returns
+     * null if it has to be prepared on disk: uncompressed dumps are read in place, directory
+     * archives have to be extracted, parallel pg_restore needs a seekable file and SQLite
+     * page deltas are only pages, they have to be rebuilt over their base backup.
+     */
+    private InputStream openStream(String backupFilePath, DatabaseType type, RestoreOptions options) 
+            throws IOException {
+        if (type == DatabaseType.POSTGRESQL && options.getJobs() != null) {
+            return null;
+        }
+        if (type == DatabaseType.SQLITE && sqlitePageDeltaService.isDelta(backupFilePath)) {
+            return null;
+        }
+        if (chunkStoreService.isManifest(backupFilePath)) {
+            return chunkStoreService.open(backupFilePath);
+        }
+        if (compressionService.isCompressed(backupFilePath)) {
+            return compressionService.isDirectoryArchive(backupFilePath)
+                    ? null
+                    : compressionService.openDecompressed(backupFilePath);
+        }
+        if (type == DatabaseType.MONGODB && Files.isRegularFile(Paths.get(backupFilePath))) {
+            // An uncompressed mongodump archive
+            return Files.newInputStream(Paths.get(backupFilePath));
+        }
+        return null;
+    }
+    
+    private boolean loadStream(InputStream in, DatabaseType type, ConnectionParams connectionParams,
+                               RestoreOptions options) throws IOException, InterruptedException {
+        switch (type) {
+            case MYSQL:
+                if (options.isSelective()) {
+                    log.warn("Selective restore needs a framed MySQL backup, will restore all tables");
+                }
+                return executeCommand(mysqlCommand(connectionParams), in, options);
+            case POSTGRESQL:
+                // Without a file argument pg_restore reads the custom-format dump from stdin
+                return executeCommand(pgRestoreCommand(connectionParams, options, null), in, options);
+            case MONGODB:
+                return restoreMongoArchive(in, connectionParams, options);
+            case SQLITE:
+                return restoreSqlite(in, connectionParams);
+            default:
+                log.error("Unsupported database type: {}", type);
+                return false;
         }
     }
     
-    private boolean restoreMySql(String backupFile, ConnectionParams params, List<String> tables) 
+    /**
+     * Loads a prepared (reassembled, decompressed) backup with the database's own tools.
+     */
+    private boolean load(String filePath, DatabaseType type, ConnectionParams connectionParams,
+                         RestoreOptions options) throws IOException, InterruptedException {
+        switch (type) {
+            case MYSQL:
+                return restoreMySql(filePath, connectionParams, options);
+            case POSTGRESQL:
+                // Dumps of the native engine are loaded over COPY, through the bandwidth limit
+                if (postgresCopyDumpService.isTableDump(filePath)) {
+                    return postgresCopyDumpService.restore(filePath, connectionParams, options);
+                }
+                warnUnthrottled(type, options);
+                return restorePostgres(filePath, connectionParams, options);
+            case MONGODB:
+                // Dumps of the native engine are loaded over the driver, through the bandwidth limit
+                if (mongoBsonDumpService.isCollectionDump(filePath)) {
+                    return mongoBsonDumpService.restore(filePath, connectionParams, options);
+                }
+                warnUnthrottled(type, options);
+                return restoreMongoDB(filePath, connectionParams, options);
+            case SQLITE:
+                return restoreSqlite(filePath, connectionParams);
+            default:
+                log.error("Unsupported database type: {}", type);
+                return false;
+        }
+    }
+    
+    private static void warnUnthrottled(DatabaseType type, RestoreOptions options) {
+        if (options.getMaxRate() != null) {
+            // Only data piped through this process can be throttled
+            log.warn("{} restores read the dump files themselves, the bandwidth limit does not apply", type);
+        }
+    }
+    
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+    
+    private boolean restoreMySql(String backupFile, ConnectionParams params, RestoreOptions options) 
             throws IOException, InterruptedException {
-        String host = params.getHost();
-        int port = params.getPort() != null ? params.getPort() : 3306;
-        String username = params.getUsername();
-        String password = params.getPassword();
-        String database = params.getDatabase();
+        // Per-table dumps from the parallel engine are loaded table by table, concurrently
+        if (mySqlParallelDumpService.isTableDump(backupFile)) {
+            return mySqlParallelDumpService.restore(backupFile, params, options);
+        }
         
-        ProcessBuilder pb;
+        List<String> tables = options.getItems();
+        boolean framed = framedArchiveService.isFramed(backupFile);
         
-        if (tables != null && !tables.isEmpty()) {
-            // For selective restore, we need to extract only specific tables
-            // This is a simplified approach - actual implementation would need to parse the SQL file
-            log.warn("Selective restore for MySQL is not fully implemented, will restore all tables");
+        if (tables != null && !tables.isEmpty() && !framed) {
+            // Plain dumps have no index to find the tables in
+            log.warn("Selective restore needs a framed MySQL backup, will restore all tables");
         }
         
-        pb = new ProcessBuilder(
+        ProcessBuilder pb = mysqlCommand(params);
+        
+        if (framed) {
+            // Only the frames of the requested tables are read and decompressed
+            try (InputStream in = framedArchiveService.open(backupFile, tables)) {
+                return executeCommand(pb, in, options);
+            }
+        }
+        
+        try (InputStream in = Files.newInputStream(Paths.get(backupFile))) {
+            return executeCommand(pb, in, options);
+        }
+    }
+    
+    private ProcessBuilder mysqlCommand(ConnectionParams params) {
+        int port = params.getPort() != null ? params.getPort() : 3306;
+        return new ProcessBuilder(
                 "mysql",
-                "--host=" + host,
+                "--host=" + params.getHost(),
                 "--port=" + port,
-                "--user=" + username,
-                "--password=" + password,
-                database
+                "--user=" + params.getUsername(),
+                "--password=" + params.getPassword(),
+                params.getDatabase()
         );
-        
-        pb.redirectInput(new File(backupFile));
-        return executeCommand(pb);
     }
     
-    private boolean restorePostgres(String backupFile, ConnectionParams params, List<String> tables) 
+    private boolean restorePostgres(String backupFile, ConnectionParams params, RestoreOptions options) 
             throws IOException, InterruptedException {
+        return executeCommand(pgRestoreCommand(params, options, backupFile), options);
+    }
+    
+    /**
+     * Builds the pg_restore command. When {@code backupFile} is null the dump is read from stdin.
+     */
+    private ProcessBuilder pgRestoreCommand(ConnectionParams params, RestoreOptions options, String backupFile) {
         String host = params.getHost();
         int port = params.getPort() != null ? params.getPort() : 5432;
         String username = params.getUsername();
         String database = params.getDatabase();
         
-        ProcessBuilder pb;
+        List<String> command = new ArrayList<>(Arrays.asList(
+                "pg_restore",
+                "-h", host,
+                "-p", String.valueOf(port),
+                "-U", username,
+                "-d", database,
+                "-v" // Verbose
+        ));
         
-        if (tables != null && !tables.isEmpty()) {
+        // Directory-format dumps restore in parallel by default. Custom-format files only
+        // when asked to, since streamed ones lack the data offsets parallel restore needs.
+        if (backupFile != null && (Files.isDirectory(Paths.get(backupFile)) || options.getJobs() != null)) {
+            command.add("-j");
+            command.add(String.valueOf(options.resolveJobs()));
+        }
+        
+        if (options.isSelective()) {
             // For selective restore with pg_restore
-            String[] tableArgs = new String[tables.size() * 2];
-            for (int i = 0; i < tables.size(); i++) {
-                tableArgs[i * 2] = "-t";
-                tableArgs[i * 2 + 1] = tables.get(i);
+            for (String table : options.getItems()) {
+                command.add("-t");
+                command.add(table.trim());
             }
-            
-            String[] baseCommand = {
-                    "pg_restore",
-                    "-h", host,
-                    "-p", String.valueOf(port),
-                    "-U", username,
-                    "-d", database,
-                    "-v" // Verbose
-            };
-            
-            String[] fullCommand = new String[baseCommand.length + tableArgs.length + 1];
-            System.arraycopy(baseCommand, 0, fullCommand, 0, baseCommand.length);
-            System.arraycopy(tableArgs, 0, fullCommand, baseCommand.length, tableArgs.length);
-            fullCommand[fullCommand.length - 1] = backupFile;
-            
-            pb = new ProcessBuilder(fullCommand);
-        } else {
-            // Full restore
-            pb = new ProcessBuilder(
-                    "pg_restore",
-                    "-h", host,
-                    "-p", String.valueOf(port),
-                    "-U", username,
-                    "-d", database,
-                    "-v", // Verbose
-                    backupFile
-            );
+        }
+        if (backupFile != null) {
+            command.add(backupFile);
         }
         
+        ProcessBuilder pb = new ProcessBuilder(command);
         pb.environment().put("PGPASSWORD", params.getPassword());
-        return executeCommand(pb);
+        return pb;
     }
     
-    private boolean restoreMongoDB(String backupDir, ConnectionParams params, List<String> collections) 
+    private boolean restoreMongoDB(String backupDir, ConnectionParams params, RestoreOptions options) 
             throws IOException, InterruptedException {
+        List<String> collections = options.getItems();
         String host = params.getHost();
         int port = params.getPort() != null ? params.getPort() : 27017;
         String username = params.getUsername();
         String password = params.getPassword();
         String database = params.getDatabase();
         
-        // Check if the path is a directory (from mongodump)
+        // Archives were streamed, this must be a directory (from mongodump --out)
         Path path = Paths.get(backupDir);
         if (!Files.isDirectory(path)) {
             log.error("MongoDB backup must be a directory: {}", backupDir);
@@ -205,7 +391,7 @@ public class RestoreServiceImpl implements RestoreService {
                     );
                 }
                 
-                boolean success = executeCommand(pb);
+                boolean success = executeCommand(pb, options);
                 if (success) {
                     atLeastOneSuccess = true;
                 }
@@ -234,37 +420,116 @@ public class RestoreServiceImpl implements RestoreService {
                 );
             }
             
-            return executeCommand(pb);
+            return executeCommand(pb, options);
+        }
+    }
+    
+    /**
+     * Streams a mongodump archive into {@code mongorestore --archive} on stdin, restoring
+     * the selected collections through namespace filters.
+     */
+    private boolean restoreMongoArchive(InputStream archive, ConnectionParams params, RestoreOptions options) 
+            throws IOException, InterruptedException {
+        BufferedInputStream in = new BufferedInputStream(archive);
+        if (!isMongoArchive(in)) {
+            log.error("MongoDB backup must be a mongodump archive or a directory");
+            return false;
+        }
+        
+        String host = params.getHost();
+        int port = params.getPort() != null ? params.getPort() : 27017;
+        String username = params.getUsername();
+        String password = params.getPassword();
+        String database = params.getDatabase();
+        
+        List<String> command = new ArrayList<>(Arrays.asList(
+                "mongorestore",
+                "--host", host,
+                "--port", String.valueOf(port)
+        ));
+        if (username != null && !username.isEmpty()) {
+            command.addAll(Arrays.asList("--username", username, "--password", password));
+        }
+        command.add("--archive");
+        command.add("--numParallelCollections=" + options.resolveJobs());
+        
+        if (options.isSelective()) {
+            for (String collection : options.getItems()) {
+                command.add("--nsInclude=" + database + "." + collection.trim());
+            }
+        } else {
+            command.add("--nsInclude=" + database + ".*");
         }
+        
+        return executeCommand(new ProcessBuilder(command), in, options);
+    }
+    
+    private static boolean isMongoArchive(BufferedInputStream in) throws IOException {
+        byte[] header = new byte[MONGO_ARCHIVE_MAGIC.length];
+        in.mark(header.length);
+        int length = IOUtils.read(in, header);
+        in.reset();
+        return length == header.length && Arrays.equals(header, MONGO_ARCHIVE_MAGIC);
     }
     
     private boolean restoreSqlite(String backupFile, ConnectionParams params) throws IOException {
-        // For SQLite, we just copy the backup file to the target location
+        // For SQLite, we just copy the backup file to the target location, kernel-side
         String database = params.getDatabase();
-        Files.copy(Paths.get(backupFile), Paths.get(database));
+        FileTransfer.copy(Paths.get(backupFile), Paths.get(database), StandardOpenOption.CREATE_NEW);
         return true;
     }
     
-    private boolean executeCommand(ProcessBuilder pb) throws IOException, InterruptedException {
+    private boolean restoreSqlite(InputStream in, ConnectionParams params) throws IOException {
+        // The decompressed database is written straight to the target location
+        Path target = Paths.get(params.getDatabase());
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            bufferPool.copy(in, out);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException e) {
+            // Don't leave a truncated database behind
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        return true;
+    }
+    
+    /**
+     * Runs a restore tool with {@code input} piped into its stdin at no more than the
+     * restore's bandwidth limit. The supervisor drains the output meanwhile, so neither side
+     * of the pipe can stall the other.
+     */
+    private boolean executeCommand(ProcessBuilder pb, InputStream input, RestoreOptions options)
+            throws IOException, InterruptedException {
         pb.redirectErrorStream(true);
-        Process process = pb.start();
+        SupervisedProcess process = processSupervisor.start(options.getJobId(), pb);
         
-        // Read and log the output
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
+        try (OutputStream stdin = process.getOutputStream()) {
+            bufferPool.copy(bandwidthService.forJob(options.getMaxRate()).wrap(input), stdin);
+        } catch (IOException e) {
+            if (process.isAlive()) {
+                // Reading the backup failed, don't let the tool finish on a truncated input
+                process.cancel("reading the backup failed: " + e.getMessage());
+                process.waitFor();
+                throw e;
             }
+            // The tool exited early and closed the pipe, its exit code tells why
+            log.debug("Restore input pipe closed: {}", e.getMessage());
         }
-        
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            log.error("Command failed with exit code {}: {}", exitCode, output);
+        return finish(process.waitFor());
+    }
+    
+    private boolean executeCommand(ProcessBuilder pb, RestoreOptions options) throws IOException, InterruptedException {
+        pb.redirectErrorStream(true);
+        return finish(processSupervisor.start(options.getJobId(), pb).waitFor());
+    }
+    
+    private boolean finish(ProcessResult result) {
+        if (!result.isSuccess()) {
+            log.error("Command failed: {}", result.describe());
             return false;
-        } else {
-            log.info("Command executed successfully: {}", output);
-            return true;
         }
+        log.info("Command executed successfully: {}", result.getOutput());
+        return true;
     }
-}
\ No newline at end of file
+}
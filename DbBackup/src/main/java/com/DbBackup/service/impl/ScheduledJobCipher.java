@@ -0,0 +1,153 @@
+package com.DbBackup.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.DbBackup.model.BackupJob;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Seals scheduled jobs before they go into the Quartz job store, which is a plain H2 file
+ * by default: a job carries the database password and the Slack webhook. Jobs are
+ * encrypted with AES-GCM under {@code backup.scheduler.key}, or without one under a key
+ * generated into an owner-only file next to the store. Clustered nodes need the same key.
+ */
+@Component
+@Slf4j
+public class ScheduledJobCipher {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final byte FORMAT_VERSION = 1;
+    private static final int KEY_BYTES = 32;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final String configuredKey;
+    private final Path keyFile;
+    private final SecureRandom random = new SecureRandom();
+    private volatile SecretKey key;
+
+    public ScheduledJobCipher(@Value("${backup.scheduler.key:}") String configuredKey,
+                              @Value("${backup.scheduler.store:./backups/scheduler}") String store) {
+        this.configuredKey = configuredKey;
+        this.keyFile = Paths.get(store + ".key");
+    }
+
+    public byte[] seal(BackupJob job) throws IOException {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(job);
+        }
+
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key(), new GCMParameterSpec(TAG_BITS, iv));
+            byte[] sealed = cipher.doFinal(serialized.toByteArray());
+            return ByteBuffer.allocate(1 + IV_BYTES + sealed.length)
+                    .put(FORMAT_VERSION)
+                    .put(iv)
+                    .put(sealed)
+                    .array();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not encrypt scheduled job: " + e.getMessage(), e);
+        }
+    }
+
+    public BackupJob open(byte[] sealed) throws IOException {
+        if (sealed.length < 1 + IV_BYTES || sealed[0] != FORMAT_VERSION) {
+            throw new IOException("Unknown scheduled job format");
+        }
+        byte[] plain;
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key(), new GCMParameterSpec(TAG_BITS, sealed, 1, IV_BYTES));
+            plain = cipher.doFinal(sealed, 1 + IV_BYTES, sealed.length - 1 - IV_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not decrypt scheduled job, was it scheduled with another "
+                    + "backup.scheduler.key?", e);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(plain))) {
+            return (BackupJob) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Scheduled job is not a backup job: " + e.getMessage(), e);
+        }
+    }
+
+    private SecretKey key() throws IOException {
+        SecretKey current = key;
+        if (current == null) {
+            synchronized (this) {
+                if (key == null) {
+                    key = new SecretKeySpec(loadKey(), "AES");
+                }
+                current = key;
+            }
+        }
+        return current;
+    }
+
+    private byte[] loadKey() throws IOException {
+        if (!configuredKey.isBlank()) {
+            return decodeKey(configuredKey, "backup.scheduler.key");
+        }
+        if (!Files.exists(keyFile)) {
+            byte[] generated = new byte[KEY_BYTES];
+            random.nextBytes(generated);
+            try {
+                createKeyFile(generated);
+                log.info("Generated the scheduler key {}", keyFile);
+                return generated;
+            } catch (FileAlreadyExistsException e) {
+                // Another process generated it first, use theirs
+            }
+        }
+        return decodeKey(new String(Files.readAllBytes(keyFile), StandardCharsets.US_ASCII), keyFile.toString());
+    }
+
+    private void createKeyFile(byte[] key) throws IOException {
+        Path parent = keyFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path created = FileSystems.getDefault().supportedFileAttributeViews().contains("posix")
+                ? Files.createFile(keyFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                : Files.createFile(keyFile);
+        Files.write(created, Base64.getEncoder().encode(key));
+    }
+
+    private byte[] decodeKey(String encoded, String source) throws IOException {
+        try {
+            byte[] decoded = Base64.getDecoder().decode(encoded.trim());
+            if (decoded.length == KEY_BYTES) {
+                return decoded;
+            }
+        } catch (IllegalArgumentException e) {
+            // Reported below
+        }
+        throw new IOException("Scheduler key in " + source + " must be " + KEY_BYTES + " bytes, base64-encoded");
+    }
+}
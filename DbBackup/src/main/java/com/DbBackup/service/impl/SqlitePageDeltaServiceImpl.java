@@ -0,0 +1,349 @@
+package com.DbBackup.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.springframework.stereotype.Service;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.StreamStats;
+import com.DbBackup.service.ChecksumService;
+import com.DbBackup.service.CompressionCodec;
+import com.DbBackup.service.CompressionService;
+import com.DbBackup.service.SqlitePageDeltaService;
+import com.DbBackup.util.ChecksumOutputStream;
+import com.DbBackup.util.FileTransfer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SqlitePageDeltaServiceImpl implements SqlitePageDeltaService {
+
+    private static final String PAGE_MAP_EXTENSION = ".pagemap";
+    private static final String DELTA_EXTENSION = ".delta";
+    private static final byte[] DELTA_MAGIC = "SQLDELTA".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SQLITE_MAGIC = "SQLite format 3\0".getBytes(StandardCharsets.US_ASCII);
+    private static final int END_OF_PAGES = -1;
+
+    // Regions are mapped piecewise since a single mapping is limited to 2 GB
+    private static final long MAP_REGION_SIZE = 1L << 30;
+
+    private final CompressionService compressionService;
+    private final BufferPool bufferPool;
+    private final ChecksumService checksumService;
+    private final XXHash64 hasher = XXHashFactory.fastestInstance().hash64();
+
+    @Override
+    public StreamStats backupFull(BackupJob job, String databasePath, String filePath) throws IOException {
+        Path database = Paths.get(databasePath);
+        CompressionOptions options = CompressionOptions.forJob(job);
+        CompressionCodec codec = compressionService.getCodec(options.getCodec());
+        String outputPath = filePath + codec.getExtension();
+
+        ChecksumOutputStream hashed = checksumService.wrap(Files.newOutputStream(Paths.get(outputPath)));
+        CountingOutputStream counter = new CountingOutputStream(hashed);
+        long fileLength;
+        try (FileChannel channel = FileChannel.open(database, StandardOpenOption.READ);
+             OutputStream out = codec.compress(counter, options);
+             DataOutputStream pageMap = openPageMap(filePath)) {
+
+            int pageSize = readPageSize(channel);
+            fileLength = channel.size();
+            pageMap.writeInt(pageSize);
+            pageMap.writeLong(fileLength);
+
+            // Hash and write the same copy of each page, so the map always matches the backup
+            byte[] page = new byte[pageSize];
+            forEachPage(channel, pageSize, (pageNo, region, length) -> {
+                region.get(page, 0, length);
+                pageMap.writeLong(hasher.hash(page, 0, length, 0));
+                out.write(page, 0, length);
+            });
+        } catch (IOException e) {
+            Files.deleteIfExists(Paths.get(outputPath));
+            Files.deleteIfExists(pageMapPath(filePath));
+            throw e;
+        }
+
+        log.info("Full SQLite backup of {} written to {}", database, outputPath);
+        return StreamStats.builder()
+                .filePath(outputPath)
+                .rawBytes(fileLength)
+                .compressedBytes(counter.getByteCount())
+                .checksum(hashed.getChecksum())
+                .build();
+    }
+
+    @Override
+    public StreamStats backupIncremental(BackupJob job, String databasePath, String filePath, String parentBackup)
+            throws IOException {
+        Path parentPageMap = parentBackup != null
+                ? Paths.get(job.getBackupPath()).resolve(pageMapName(parentBackup))
+                : null;
+        if (parentPageMap == null || !Files.exists(parentPageMap)) {
+            log.warn("No previous SQLite backup with a page map, taking a full backup instead");
+            return backupFull(job, databasePath, filePath);
+        }
+
+        Path database = Paths.get(databasePath);
+        CompressionOptions options = CompressionOptions.forJob(job);
+        CompressionCodec codec = compressionService.getCodec(options.getCodec());
+        String outputPath = filePath + DELTA_EXTENSION + codec.getExtension();
+
+        ChecksumOutputStream hashed = checksumService.wrap(Files.newOutputStream(Paths.get(outputPath)));
+        CountingOutputStream counter = new CountingOutputStream(hashed);
+        long fileLength;
+        long[] changedPages = new long[1];
+        try (FileChannel channel = FileChannel.open(database, StandardOpenOption.READ);
+             FileChannel parentChannel = FileChannel.open(parentPageMap, StandardOpenOption.READ);
+             DataOutputStream delta = new DataOutputStream(new BufferedOutputStream(codec.compress(counter, options)));
+             DataOutputStream pageMap = openPageMap(filePath)) {
+
+            MappedByteBuffer parentHashes = parentChannel.map(FileChannel.MapMode.READ_ONLY, 0, parentChannel.size());
+            int parentPageSize = parentHashes.getInt();
+            parentHashes.getLong();
+            long parentPages = (parentChannel.size() - Integer.BYTES - Long.BYTES) / Long.BYTES;
+
+            int pageSize = readPageSize(channel);
+            if (pageSize != parentPageSize) {
+                throw new IOException("Page size changed from " + parentPageSize + " to " + pageSize
+                        + ", a full backup is required");
+            }
+            fileLength = channel.size();
+            pageMap.writeInt(pageSize);
+            pageMap.writeLong(fileLength);
+
+            delta.write(DELTA_MAGIC);
+            delta.writeInt(pageSize);
+            delta.writeLong(fileLength);
+            delta.writeUTF(parentBackup);
+
+            byte[] page = new byte[pageSize];
+            forEachPage(channel, pageSize, (pageNo, region, length) -> {
+                region.get(page, 0, length);
+                long hash = hasher.hash(page, 0, length, 0);
+                pageMap.writeLong(hash);
+                if (pageNo >= parentPages || parentHashes.getLong() != hash) {
+                    delta.writeInt((int) pageNo);
+                    delta.write(page, 0, length);
+                    changedPages[0]++;
+                }
+            });
+            delta.writeInt(END_OF_PAGES);
+        } catch (IOException e) {
+            Files.deleteIfExists(Paths.get(outputPath));
+            Files.deleteIfExists(pageMapPath(filePath));
+            throw e;
+        }
+
+        log.info("Incremental SQLite backup of {} stored {} changed pages in {}", database, changedPages[0], outputPath);
+        return StreamStats.builder()
+                .filePath(outputPath)
+                .rawBytes(fileLength)
+                .compressedBytes(counter.getByteCount())
+                .checksum(hashed.getChecksum())
+                .build();
+    }
+
+    @Override
+    public void writePageMap(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+             DataOutputStream pageMap = openPageMap(filePath)) {
+
+            int pageSize = readPageSize(channel);
+            pageMap.writeInt(pageSize);
+            pageMap.writeLong(channel.size());
+            forEachPage(channel, pageSize, (pageNo, region, length) -> {
+                pageMap.writeLong(hasher.hash(region, region.position(), length, 0));
+                region.position(region.position() + length);
+            });
+        }
+    }
+
+    @Override
+    public boolean isDelta(String filePath) {
+        byte[] header = new byte[DELTA_MAGIC.length];
+        // Deltas are written through the codec, the magic is only visible decompressed
+        try (InputStream in = compressionService.openDecompressed(filePath)) {
+            return in.readNBytes(header, 0, header.length) == header.length && Arrays.equals(header, DELTA_MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String rebuild(String deltaPath) throws IOException {
+        Path delta = Paths.get(deltaPath).toAbsolutePath();
+        Path dir = delta.getParent();
+
+        // Walk parent links back to the full backup, newest delta first
+        Deque<Path> chain = new ArrayDeque<>();
+        chain.push(delta);
+        Path base = null;
+        String parent = readParent(delta);
+        while (parent != null) {
+            Path parentPath = dir.resolve(parent);
+            String grandParent = readParent(parentPath);
+            if (grandParent == null) {
+                base = parentPath;
+                break;
+            }
+            chain.push(parentPath);
+            parent = grandParent;
+        }
+        if (base == null) {
+            throw new IOException("No full backup found for delta chain of " + deltaPath);
+        }
+
+        String name = delta.getFileName().toString();
+        Path output = dir.resolve(name.substring(0, name.indexOf(DELTA_EXTENSION)) + ".restored");
+        try (FileChannel target = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (compressionService.isCompressed(base.toString())) {
+                try (InputStream in = compressionService.openDecompressed(base.toString())) {
+                    bufferPool.copy(in, target);
+                }
+            } else {
+                try (FileChannel source = FileChannel.open(base, StandardOpenOption.READ)) {
+                    FileTransfer.transfer(source, target);
+                }
+            }
+
+            // Oldest delta first, so newer pages overwrite older ones
+            for (Path step : chain) {
+                applyDelta(step, target);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        }
+
+        log.info("Rebuilt SQLite database from {} and {} deltas into {}", base, chain.size(), output);
+        return output.toString();
+    }
+
+    private void applyDelta(Path deltaPath, FileChannel target) throws IOException {
+        try (DataInputStream in = new DataInputStream(compressionService.openDecompressed(deltaPath.toString()))) {
+            in.readFully(new byte[DELTA_MAGIC.length]);
+            int pageSize = in.readInt();
+            long fileLength = in.readLong();
+            in.readUTF();
+
+            byte[] page = new byte[pageSize];
+            int pageNo;
+            while ((pageNo = in.readInt()) != END_OF_PAGES) {
+                long offset = (long) pageNo * pageSize;
+                int length = (int) Math.min(pageSize, fileLength - offset);
+                in.readFully(page, 0, length);
+                ByteBuffer buffer = ByteBuffer.wrap(page, 0, length);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer, offset + buffer.position());
+                }
+            }
+            target.truncate(fileLength);
+        }
+    }
+
+    /**
+     * Returns the parent recorded in a delta, or null if the artifact is a full backup.
+     */
+    private String readParent(Path artifact) throws IOException {
+        try (DataInputStream in = new DataInputStream(compressionService.openDecompressed(artifact.toString()))) {
+            byte[] header = new byte[DELTA_MAGIC.length];
+            try {
+                in.readFully(header);
+            } catch (EOFException e) {
+                return null;
+            }
+            if (!Arrays.equals(header, DELTA_MAGIC)) {
+                return null;
+            }
+            in.readInt();
+            in.readLong();
+            return in.readUTF();
+        }
+    }
+
+    private int readPageSize(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(100);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // keep reading until the header is complete or the file ends
+        }
+        byte[] magic = new byte[SQLITE_MAGIC.length];
+        header.flip();
+        if (header.remaining() < 100) {
+            throw new IOException("Not a SQLite database: file is too short");
+        }
+        header.get(magic);
+        if (!Arrays.equals(magic, SQLITE_MAGIC)) {
+            throw new IOException("Not a SQLite database: bad header");
+        }
+        // Big-endian at offset 16, where 1 stands for 65536
+        int pageSize = header.getShort(16) & 0xffff;
+        return pageSize == 1 ? 65536 : pageSize;
+    }
+
+    /**
+     * Maps the file region by region and calls the visitor once per page, with the
+     * buffer positioned at the page start.
+     */
+    private void forEachPage(FileChannel channel, int pageSize, PageVisitor visitor) throws IOException {
+        long size = channel.size();
+        long regionSize = MAP_REGION_SIZE - MAP_REGION_SIZE % pageSize;
+        long pageNo = 0;
+        for (long regionStart = 0; regionStart < size; regionStart += regionSize) {
+            long length = Math.min(regionSize, size - regionStart);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, length);
+            while (region.hasRemaining()) {
+                visitor.visit(pageNo++, region, Math.min(pageSize, region.remaining()));
+            }
+        }
+    }
+
+    private DataOutputStream openPageMap(String filePath) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(pageMapPath(filePath)), 64 * 1024));
+    }
+
+    private Path pageMapPath(String filePath) {
+        Path path = Paths.get(filePath);
+        return path.resolveSibling(pageMapName(path.getFileName().toString()));
+    }
+
+    /**
+     * Page maps are keyed by the backup's name up to {@code _backup}, so the compressed,
+     * delta and plain artifacts of one backup share a map.
+     */
+    private String pageMapName(String backupFileName) {
+        int stemEnd = backupFileName.indexOf("_backup.");
+        String stem = stemEnd >= 0 ? backupFileName.substring(0, stemEnd + "_backup".length()) : backupFileName;
+        return stem + PAGE_MAP_EXTENSION;
+    }
+
+    @FunctionalInterface
+    private interface PageVisitor {
+        void visit(long pageNo, ByteBuffer region, int length) throws IOException;
+    }
+}
@@ -0,0 +1,55 @@
+package com.DbBackup.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.springframework.stereotype.Component;
+
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.service.CompressionCodec;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+@Component
+public class ZstdCodec implements CompressionCodec {
+
+    private static final int DEFAULT_LEVEL = 3;
+
+    @Override
+    public CodecType getType() {
+        return CodecType.ZSTD;
+    }
+
+    @Override
+    public String getExtension() {
+        return ".zst";
+    }
+
+    @Override
+    public boolean matches(byte[] header, int length) {
+        return length >= 4
+                && (header[0] & 0xff) == 0x28
+                && (header[1] & 0xff) == 0xb5
+                && (header[2] & 0xff) == 0x2f
+                && (header[3] & 0xff) == 0xfd;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out, CompressionOptions options) throws IOException {
+        ZstdOutputStream zos = new ZstdOutputStream(out);
+        zos.setLevel(options.getLevel() != null ? options.getLevel() : DEFAULT_LEVEL);
+        if (options.getThreads() > 1) {
+            // libzstd runs its own worker threads, no need for the block pool here
+            zos.setWorkers(options.getThreads());
+        }
+        zos.setChecksum(true);
+        return zos;
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        return new ZstdInputStream(in);
+    }
+}
@@ -0,0 +1,65 @@
+package com.DbBackup.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Hashes everything read through it, so a file can be checksummed and decompressed in the
+ * same pass.
+ */
+public class ChecksumInputStream extends FilterInputStream {
+
+    private final ContentHash hash;
+    private long bytesRead;
+
+    public ChecksumInputStream(InputStream in, ContentHash hash) {
+        super(in);
+        this.hash = hash;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            hash.update(new byte[] {(byte) b}, 0, 1);
+            bytesRead++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            hash.update(b, off, read);
+            bytesRead += read;
+        }
+        return read;
+    }
+
+    // Skipped bytes would be missing from the hash
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        int read;
+        while (skipped < n && (read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) > 0) {
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public String getChecksum() {
+        return hash.checksum();
+    }
+}
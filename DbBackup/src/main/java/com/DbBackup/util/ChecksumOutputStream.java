@@ -0,0 +1,39 @@
+package com.DbBackup.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Hashes everything written on its way to the file, so an artifact's checksum is ready the
+ * moment it is closed, without reading it back.
+ */
+public class ChecksumOutputStream extends FilterOutputStream {
+
+    private final ContentHash hash;
+    private final byte[] single = new byte[1];
+
+    public ChecksumOutputStream(OutputStream out, ContentHash hash) {
+        super(out);
+        this.hash = hash;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        hash.update(b, off, len);
+    }
+
+    /**
+     * {@code algorithm:hex} of the bytes written so far.
+     */
+    public String getChecksum() {
+        return hash.checksum();
+    }
+}
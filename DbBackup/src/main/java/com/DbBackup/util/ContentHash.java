@@ -0,0 +1,113 @@
+package com.DbBackup.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import net.jpountz.xxhash.StreamingXXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+/**
+ * Incremental hash of an artifact's bytes. Checksums are written as {@code algorithm:hex},
+ * so a stored value says how to recompute it. xxh64 runs at memory speed; sha256 is there
+ * for when a cryptographic hash is required.
+ */
+public abstract class ContentHash {
+
+    public static final String XXH64 = "xxh64";
+    public static final String SHA256 = "sha256";
+
+    private final String algorithm;
+
+    protected ContentHash(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public static ContentHash create(String algorithm) {
+        switch (algorithm.toLowerCase()) {
+            case XXH64:
+                return new Xxh64();
+            case SHA256:
+                return new Sha256();
+            default:
+                throw new IllegalArgumentException("Unsupported checksum algorithm: " + algorithm);
+        }
+    }
+
+    /**
+     * A fresh hash of the algorithm a stored checksum was made with.
+     */
+    public static ContentHash forChecksum(String checksum) {
+        int separator = checksum.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Checksum without algorithm: " + checksum);
+        }
+        return create(checksum.substring(0, separator));
+    }
+
+    public abstract void update(byte[] bytes, int offset, int length);
+
+    /**
+     * The digest in hex, in the byte order sha256sum and xxhsum print.
+     */
+    public abstract String hex();
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public String checksum() {
+        return algorithm + ":" + hex();
+    }
+
+    private static class Xxh64 extends ContentHash {
+        private final StreamingXXHash64 hash = XXHashFactory.fastestInstance().newStreamingHash64(0);
+
+        Xxh64() {
+            super(XXH64);
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            hash.update(bytes, offset, length);
+        }
+
+        @Override
+        public String hex() {
+            return String.format("%016x", hash.getValue());
+        }
+    }
+
+    private static class Sha256 extends ContentHash {
+        private final MessageDigest digest;
+
+        Sha256() {
+            super(SHA256);
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            digest.update(bytes, offset, length);
+        }
+
+        @Override
+        public String hex() {
+            // digest() resets the digest, a copy keeps hex() repeatable like xxh64's getValue()
+            MessageDigest snapshot;
+            try {
+                snapshot = (MessageDigest) digest.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException("SHA-256 digest can't be copied", e);
+            }
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : snapshot.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.DbBackup.util;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses and formats transfer rates such as {@code 50MB/s}, {@code 512K} or
+ * {@code unlimited}. Units are binary (1 KB = 1024 bytes); 0 means unlimited.
+ */
+public final class DataRate {
+
+    private static final Pattern RATE = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*([KMGT]?)(?:I?B)?(?:/S)?");
+    private static final String UNITS = "KMGT";
+
+    private DataRate() {
+    }
+
+    /**
+     * Bytes per second, 0 for {@code unlimited}, {@code 0} or a blank value.
+     */
+    public static long parse(String rate) {
+        if (rate == null || rate.isBlank() || rate.trim().equalsIgnoreCase("unlimited")) {
+            return 0;
+        }
+        Matcher matcher = RATE.matcher(rate.trim().toUpperCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid rate: " + rate + " (expected e.g. 50MB/s)");
+        }
+        double value = Double.parseDouble(matcher.group(1));
+        String unit = matcher.group(2);
+        if (!unit.isEmpty()) {
+            value *= Math.pow(1024, UNITS.indexOf(unit) + 1);
+        }
+        return (long) value;
+    }
+
+    public static String format(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            return "unlimited";
+        }
+        double value = bytesPerSecond;
+        int unit = -1;
+        while (value >= 1024 && unit < UNITS.length() - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format("%.1f %sB/s", value, unit >= 0 ? String.valueOf(UNITS.charAt(unit)) : "");
+    }
+}
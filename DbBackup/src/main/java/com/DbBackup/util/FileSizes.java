@@ -0,0 +1,25 @@
+package com.DbBackup.util;
+
+/**
+ * Human-readable file sizes for logs, notifications and the CLI. Units are binary
+ * (1 KB = 1024 bytes).
+ */
+public final class FileSizes {
+
+    private static final String[] UNITS = { "B", "KB", "MB", "GB", "TB" };
+
+    private FileSizes() {
+    }
+
+    public static String format(long size) {
+        int unitIndex = 0;
+        double fileSize = size;
+
+        while (fileSize > 1024 && unitIndex < UNITS.length - 1) {
+            fileSize /= 1024;
+            unitIndex++;
+        }
+
+        return String.format("%.2f %s", fileSize, UNITS[unitIndex]);
+    }
+}
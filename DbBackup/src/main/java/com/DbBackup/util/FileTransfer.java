@@ -0,0 +1,53 @@
+package com.DbBackup.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File-to-file copies through {@link FileChannel#transferTo}, which lets the kernel move
+ * the bytes (sendfile/copy_file_range) without passing them through user space.
+ */
+public final class FileTransfer {
+
+    // Large, page-aligned steps keep the number of syscalls low on multi-GB files
+    private static final long TRANSFER_CHUNK = 64L * 1024 * 1024;
+
+    private FileTransfer() {
+    }
+
+    /**
+     * Copies {@code source} to {@code target}, opened with the given options plus WRITE.
+     * Returns the number of bytes copied.
+     */
+    public static long copy(Path source, Path target, OpenOption... targetOptions) throws IOException {
+        OpenOption[] options = new OpenOption[targetOptions.length + 1];
+        System.arraycopy(targetOptions, 0, options, 0, targetOptions.length);
+        options[targetOptions.length] = StandardOpenOption.WRITE;
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, options)) {
+            return transfer(in, out);
+        }
+    }
+
+    /**
+     * Transfers the whole of {@code in} to the start of {@code out} and truncates
+     * {@code out} to the copied length.
+     */
+    public static long transfer(FileChannel in, FileChannel out) throws IOException {
+        long size = in.size();
+        long position = 0;
+        while (position < size) {
+            long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), out);
+            if (transferred <= 0) {
+                throw new IOException("File transfer stalled at byte " + position + " of " + size);
+            }
+            position += transferred;
+        }
+        out.truncate(size);
+        return size;
+    }
+}
@@ -0,0 +1,45 @@
+package com.DbBackup.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Optional;
+
+import com.DbBackup.model.BinlogPosition;
+
+/**
+ * The binary log file and position a MySQL server is writing. MySQL 8.4 removed
+ * SHOW MASTER STATUS in favour of SHOW BINARY LOG STATUS (8.2 and later), so the new
+ * statement is tried first and older servers fall back to the old one.
+ */
+public final class MySqlBinlogStatus {
+
+    static final String BINARY_LOG_STATUS = "SHOW BINARY LOG STATUS";
+    static final String MASTER_STATUS = "SHOW MASTER STATUS";
+
+    private MySqlBinlogStatus() {
+    }
+
+    /**
+     * Empty when binary logging is off.
+     */
+    public static Optional<BinlogPosition> read(Connection conn) throws SQLException {
+        try {
+            return read(conn, BINARY_LOG_STATUS);
+        } catch (SQLException e) {
+            // A syntax error before 8.2; any other failure repeats with the old statement
+            return read(conn, MASTER_STATUS);
+        }
+    }
+
+    private static Optional<BinlogPosition> read(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            if (!rs.next()) {
+                return Optional.empty();
+            }
+            return Optional.of(BinlogPosition.builder().file(rs.getString(1)).position(rs.getLong(2)).build());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.DbBackup.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps the last {@code capacity} bytes written to it. Tool output is collected here so a
+ * chatty process can't grow the heap, while the tail that explains a failure is kept.
+ */
+public class OutputRingBuffer {
+
+    private final byte[] buffer;
+    private long written;
+
+    public OutputRingBuffer(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    public synchronized void write(byte[] b, int off, int len) {
+        if (len >= buffer.length) {
+            // Only the last capacity bytes survive anyway
+            off += len - buffer.length;
+            written += len - buffer.length;
+            len = buffer.length;
+        }
+        int start = (int) (written % buffer.length);
+        int first = Math.min(len, buffer.length - start);
+        System.arraycopy(b, off, buffer, start, first);
+        System.arraycopy(b, off + first, buffer, 0, len - first);
+        written += len;
+    }
+
+    public synchronized long getBytesWritten() {
+        return written;
+    }
+
+    /**
+     * The retained output as text. When older output was dropped the tail starts at the
+     * next full line, marked with a leading ellipsis.
+     */
+    public synchronized String tail() {
+        int length = (int) Math.min(written, buffer.length);
+        byte[] tail = new byte[length];
+        int start = (int) ((written - length) % buffer.length);
+        int first = Math.min(length, buffer.length - start);
+        System.arraycopy(buffer, start, tail, 0, first);
+        System.arraycopy(buffer, 0, tail, first, length - first);
+
+        if (written <= buffer.length) {
+            return new String(tail, StandardCharsets.UTF_8);
+        }
+        int lineStart = 0;
+        while (lineStart < tail.length && tail[lineStart] != '\n') {
+            lineStart++;
+        }
+        // A single line longer than the buffer is kept as it is rather than dropped whole
+        int from = lineStart < tail.length ? lineStart + 1 : 0;
+        return "...\n" + new String(tail, from, tail.length - from, StandardCharsets.UTF_8);
+    }
+}
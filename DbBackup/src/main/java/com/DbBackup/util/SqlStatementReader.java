@@ -0,0 +1,153 @@
+package com.DbBackup.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits a MySQL script into statements the way the mysql client does: delimiters inside
+ * quoted strings, identifiers and comments don't count, and {@code DELIMITER} lines change
+ * the delimiter (for routine and trigger bodies). Statements are returned without it.
+ */
+public class SqlStatementReader implements Closeable {
+
+    private static final String DELIMITER_COMMAND = "DELIMITER";
+    private static final int EMPTY = -2;
+
+    private final Reader reader;
+    private final char[] buffer = new char[64 * 1024];
+    private int position;
+    private int limit;
+    private int pushedBack = EMPTY;
+
+    private final StringBuilder statement = new StringBuilder();
+    private String delimiter = ";";
+
+    public SqlStatementReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * The next statement, or null at the end of the script.
+     */
+    public String next() throws IOException {
+        statement.setLength(0);
+        int c;
+        while ((c = read()) >= 0) {
+            if (statement.length() == 0 && Character.isWhitespace(c)) {
+                continue;
+            }
+            statement.append((char) c);
+
+            if (statement.length() == DELIMITER_COMMAND.length() + 1 && isDelimiterCommand()) {
+                readLine();
+                delimiter = statement.substring(DELIMITER_COMMAND.length() + 1).trim();
+                statement.setLength(0);
+            } else if (c == '\'' || c == '"' || c == '`') {
+                readQuoted(c);
+            } else if (c == '#' || (c == '-' && endsWith("--") && peekWhitespace())) {
+                boolean ownLine = statement.length() == (c == '#' ? 1 : 2);
+                readLine();
+                if (ownLine) {
+                    // Dropped, so a DELIMITER line after a comment is still recognized
+                    statement.setLength(0);
+                }
+            } else if (c == '*' && endsWith("/*")) {
+                readBlockComment();
+            } else if (endsWith(delimiter)) {
+                statement.setLength(statement.length() - delimiter.length());
+                String sql = statement.toString().trim();
+                if (!sql.isEmpty()) {
+                    return sql;
+                }
+                statement.setLength(0);
+            }
+        }
+        String sql = statement.toString().trim();
+        return sql.isEmpty() ? null : sql;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // A client command, not SQL: the rest of the line is the new delimiter
+    private boolean isDelimiterCommand() {
+        char separator = statement.charAt(DELIMITER_COMMAND.length());
+        return (separator == ' ' || separator == '\t')
+                && statement.substring(0, DELIMITER_COMMAND.length()).equalsIgnoreCase(DELIMITER_COMMAND);
+    }
+
+    private void readQuoted(int quote) throws IOException {
+        int c;
+        while ((c = read()) >= 0) {
+            statement.append((char) c);
+            if (c == '\\' && quote != '`') {
+                int escaped = read();
+                if (escaped >= 0) {
+                    statement.append((char) escaped);
+                }
+            } else if (c == quote) {
+                return;
+            }
+        }
+    }
+
+    private void readLine() throws IOException {
+        int c;
+        while ((c = read()) >= 0) {
+            if (c == '\n') {
+                statement.append('\n');
+                return;
+            }
+            statement.append((char) c);
+        }
+    }
+
+    private void readBlockComment() throws IOException {
+        int start = statement.length();
+        int c;
+        while ((c = read()) >= 0) {
+            statement.append((char) c);
+            if (c == '/' && statement.length() - start >= 2 && statement.charAt(statement.length() - 2) == '*') {
+                return;
+            }
+        }
+    }
+
+    private boolean peekWhitespace() throws IOException {
+        pushedBack = read();
+        return pushedBack < 0 || Character.isWhitespace(pushedBack);
+    }
+
+    private boolean endsWith(String suffix) {
+        int offset = statement.length() - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (statement.charAt(offset + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != EMPTY) {
+            int c = pushedBack;
+            pushedBack = EMPTY;
+            return c;
+        }
+        if (position == limit) {
+            int read = reader.read(buffer);
+            if (read <= 0) {
+                return -1;
+            }
+            position = 0;
+            limit = read;
+        }
+        return buffer[position++];
+    }
+}
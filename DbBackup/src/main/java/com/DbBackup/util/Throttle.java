@@ -0,0 +1,82 @@
+package com.DbBackup.util;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Bandwidth limit of one backup or restore. Every stream it wraps draws from the same
+ * buckets, so a job's rate holds across all of its parallel streams.
+ */
+public class Throttle {
+
+    // Throttled transfers move in small steps, so sleeps stay short and rate changes apply quickly
+    private static final int STEP = 64 * 1024;
+
+    private final List<TokenBucket> buckets;
+
+    public Throttle(List<TokenBucket> buckets) {
+        this.buckets = buckets;
+    }
+
+    public InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    acquire(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = in.read(b, off, isLimited() ? Math.min(len, STEP) : len);
+                if (read > 0) {
+                    acquire(read);
+                }
+                return read;
+            }
+        };
+    }
+
+    public OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                acquire(1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    int step = isLimited() ? Math.min(len, STEP) : len;
+                    acquire(step);
+                    out.write(b, off, step);
+                    off += step;
+                    len -= step;
+                }
+            }
+        };
+    }
+
+    private boolean isLimited() {
+        for (TokenBucket bucket : buckets) {
+            if (bucket.isLimited()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void acquire(int bytes) throws IOException {
+        for (TokenBucket bucket : buckets) {
+            bucket.acquire(bytes);
+        }
+    }
+}
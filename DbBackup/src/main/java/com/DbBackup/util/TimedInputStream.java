@@ -0,0 +1,54 @@
+package com.DbBackup.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long consumers spend blocked in reads. Wrapped around a dump tool's stdout
+ * it separates the time spent waiting for the database from the time spent compressing and
+ * writing what was read, which in a streaming pipeline otherwise shows up as one number.
+ */
+public class TimedInputStream extends FilterInputStream {
+
+    private long readNanos;
+
+    public TimedInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.read();
+        } finally {
+            readNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return in.read(b, off, len);
+        } finally {
+            readNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.skip(n);
+        } finally {
+            readNanos += System.nanoTime() - start;
+        }
+    }
+
+    public long getReadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readNanos);
+    }
+}
@@ -0,0 +1,75 @@
+package com.DbBackup.util;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket over bytes. The rate is read on every acquire, so a changed rate applies to
+ * streams already running. Callers may go into debt for a large read and then sleep it off,
+ * which keeps concurrent callers fair without a queue.
+ */
+public class TokenBucket {
+
+    // Up to a quarter second of idle time can be spent in one burst
+    private static final double BURST_SECONDS = 0.25;
+    private static final long MIN_BURST = 64 * 1024;
+
+    private final LongSupplier bytesPerSecond;
+    private final LongSupplier clock;
+    private final Sleeper sleeper;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(LongSupplier bytesPerSecond) {
+        this(bytesPerSecond, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    /**
+     * With a nanosecond clock and a sleeper of its own, for tests that don't wait in real time.
+     */
+    TokenBucket(LongSupplier bytesPerSecond, LongSupplier clock, Sleeper sleeper) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.clock = clock;
+        this.sleeper = sleeper;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * True while a rate is set; 0 or less means unlimited.
+     */
+    public boolean isLimited() {
+        return bytesPerSecond.getAsLong() > 0;
+    }
+
+    public void acquire(long bytes) throws InterruptedIOException {
+        long sleepNanos;
+        synchronized (this) {
+            long rate = bytesPerSecond.getAsLong();
+            long now = clock.getAsLong();
+            if (rate <= 0) {
+                tokens = 0;
+                lastRefill = now;
+                return;
+            }
+            double capacity = Math.max(rate * BURST_SECONDS, MIN_BURST);
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / 1e9);
+            lastRefill = now;
+            tokens -= bytes;
+            sleepNanos = tokens < 0 ? (long) (-tokens * 1e9 / rate) : 0;
+        }
+        if (sleepNanos > 0) {
+            try {
+                sleeper.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttled");
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+}
@@ -0,0 +1,110 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.DbBackup.model.ExecutionStats;
+
+/**
+ * Each test holds the workers busy with a blocking job while the rest is queued, so the
+ * order jobs are taken in does not depend on thread timing.
+ */
+class BackupExecutionServiceImplTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BackupExecutionServiceImpl executionService;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        if (executionService != null) {
+            executionService.destroy();
+        }
+    }
+
+    @Test
+    void runsOtherHostsWhileHostIsSaturated() throws Exception {
+        executionService = new BackupExecutionServiceImpl(2, 1, 100);
+        CompletableFuture<String> blocking = submitBlocking("db-a:5432", 0);
+
+        CountDownLatch waitingStarted = new CountDownLatch(1);
+        CompletableFuture<String> waiting = executionService.submit("db-a:5432", 10, () -> {
+            waitingStarted.countDown();
+            return "a2";
+        });
+        CompletableFuture<String> other = executionService.submit("db-b:5432", 0, () -> "b1");
+
+        // The higher-priority job is skipped: its host is at the limit, the second worker is not
+        assertEquals("b1", other.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertFalse(waitingStarted.await(100, TimeUnit.MILLISECONDS));
+        ExecutionStats stats = executionService.getStats();
+        assertEquals(1, stats.getQueued());
+        assertEquals(1, stats.getRunningPerHost().get("db-a:5432"));
+
+        release.countDown();
+        assertEquals("blocking", blocking.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("a2", waiting.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void takesHigherPriorityFirstAndEqualPrioritiesInOrder() throws Exception {
+        executionService = new BackupExecutionServiceImpl(1, 2, 100);
+        CompletableFuture<String> blocking = submitBlocking("db-a:5432", 0);
+
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Boolean>> jobs = new ArrayList<>();
+        jobs.add(executionService.submit("db-a:5432", 0, () -> started.add("low")));
+        jobs.add(executionService.submit("db-b:5432", 10, () -> started.add("high")));
+        jobs.add(executionService.submit("db-c:5432", 5, () -> started.add("first medium")));
+        jobs.add(executionService.submit("db-a:5432", 5, () -> started.add("second medium")));
+
+        release.countDown();
+        blocking.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        for (CompletableFuture<Boolean> job : jobs) {
+            assertTrue(job.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        assertEquals(Arrays.asList("high", "first medium", "second medium", "low"), started);
+    }
+
+    @Test
+    void rejectsJobsBeyondQueueCapacity() throws Exception {
+        executionService = new BackupExecutionServiceImpl(1, 1, 1);
+        submitBlocking("db-a:5432", 0);
+        executionService.submit("db-a:5432", 0, () -> "queued");
+
+        assertThrows(RejectedExecutionException.class,
+                () -> executionService.submit("db-b:5432", 10, () -> "rejected"));
+        assertEquals(1, executionService.getStats().getRejected());
+    }
+
+    /**
+     * Submits a job that holds its worker until the test releases it, and waits until it runs.
+     */
+    private CompletableFuture<String> submitBlocking(String hostKey, int priority) throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CompletableFuture<String> future = executionService.submit(hostKey, priority, () -> {
+            running.countDown();
+            release.await();
+            return "blocking";
+        });
+        assertTrue(running.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return future;
+    }
+}
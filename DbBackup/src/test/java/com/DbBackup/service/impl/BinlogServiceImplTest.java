@@ -0,0 +1,273 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.BackupType;
+import com.DbBackup.model.BinlogPosition;
+import com.DbBackup.model.BinlogSegment;
+import com.DbBackup.model.CatalogEntry;
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.DatabaseType;
+import com.DbBackup.model.RestoreOptions;
+import com.DbBackup.service.BackupCatalogService;
+import com.DbBackup.service.DatabaseConnectionService;
+import com.DbBackup.service.MySqlParallelDumpService;
+import com.DbBackup.service.ProcessSupervisor;
+
+class BinlogServiceImplTest {
+
+    private static final int FORMAT_DESCRIPTION = 15;
+    private static final int QUERY = 2;
+    private static final int ROTATE = 4;
+    private static final int ARTIFICIAL = 0x20;
+    private static final long T0 = 1_767_225_600L;
+
+    private final TestServices services = new TestServices();
+    private final BackupCatalogService catalogService = mock(BackupCatalogService.class);
+    private final BinlogServiceImpl binlogService = new BinlogServiceImpl(
+            services.compressionService, services.checksumService, mock(ProcessSupervisor.class),
+            mock(DatabaseConnectionService.class), catalogService, mock(MySqlParallelDumpService.class),
+            services.bufferPool, 0);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void scansEventsAndChanges() throws IOException {
+        Path file = binlog("binlog.000001",
+                event(FORMAT_DESCRIPTION, T0, 100, 0),
+                event(QUERY, T0 + 5, 40, 0),
+                event(QUERY, T0 + 9, 60, 0),
+                event(ROTATE, T0 + 9, 30, 0));
+
+        BinlogServiceImpl.EventScan scan = BinlogServiceImpl.scanEvents(file);
+
+        assertEquals(4, scan.events);
+        assertEquals(3, scan.changes);
+        assertEquals(ROTATE, scan.lastType);
+        assertEquals(Files.size(file), scan.validBytes);
+        assertEquals(time(T0), scan.firstEvent);
+        assertEquals(time(T0 + 9), scan.lastEvent);
+    }
+
+    @Test
+    void stopsBeforePartialEvent() throws IOException {
+        byte[] partial = Arrays.copyOf(event(QUERY, T0 + 2, 500, 0), 200);
+        Path file = binlog("binlog.000001", event(FORMAT_DESCRIPTION, T0, 100, 0), event(QUERY, T0 + 1, 40, 0), partial);
+
+        BinlogServiceImpl.EventScan scan = BinlogServiceImpl.scanEvents(file);
+
+        assertEquals(2, scan.events);
+        assertEquals(4 + 100 + 40, scan.validBytes);
+        assertEquals(time(T0 + 1), scan.lastEvent);
+    }
+
+    @Test
+    void skipsArtificialEvents() throws IOException {
+        // The rotate event a dump starts with is made up by the server, with no timestamp
+        Path file = binlog("binlog.000001", event(ROTATE, 0, 40, ARTIFICIAL), event(FORMAT_DESCRIPTION, T0, 100, 0));
+
+        BinlogServiceImpl.EventScan scan = BinlogServiceImpl.scanEvents(file);
+
+        assertEquals(1, scan.events);
+        assertEquals(0, scan.changes);
+        assertEquals(FORMAT_DESCRIPTION, scan.lastType);
+    }
+
+    @Test
+    void scansEmptyAndRejectsOtherFiles() throws IOException {
+        Path empty = dir.resolve("binlog.000001");
+        Files.write(empty, new byte[0]);
+        assertEquals(0, BinlogServiceImpl.scanEvents(empty).events);
+        assertNull(BinlogServiceImpl.scanEvents(empty).firstEvent);
+
+        Path other = dir.resolve("notes.txt");
+        Files.writeString(other, "not a binary log");
+        assertThrows(IOException.class, () -> BinlogServiceImpl.scanEvents(other));
+    }
+
+    @Test
+    void chainsFromStartFileToStopPosition() throws IOException {
+        List<BinlogSegment> segments = Arrays.asList(segment(1, true, 0), segment(2, true, 10),
+                segment(3, true, 20), segment(4, true, 30), segment(5, false, 40));
+        RestoreOptions options = RestoreOptions.builder().stopPosition(position(4, 120)).build();
+
+        List<BinlogSegment> chain = BinlogServiceImpl.replayChain(segments, position(2, 4), options);
+
+        assertEquals(Arrays.asList("binlog.000002", "binlog.000003", "binlog.000004"), files(chain));
+    }
+
+    @Test
+    void chainsUpToStopTime() throws IOException {
+        List<BinlogSegment> segments = Arrays.asList(segment(1, true, 0), segment(2, true, 10), segment(3, true, 20));
+        RestoreOptions options = RestoreOptions.builder().stopTime(time(T0 + 15)).build();
+
+        List<BinlogSegment> chain = BinlogServiceImpl.replayChain(segments, position(1, 4), options);
+
+        assertEquals(Arrays.asList("binlog.000001", "binlog.000002"), files(chain));
+    }
+
+    @Test
+    void rejectsMissingFileInChain() {
+        List<BinlogSegment> segments = Arrays.asList(segment(1, true, 0), segment(3, true, 20));
+        RestoreOptions options = RestoreOptions.builder().stopTime(time(T0 + 100)).build();
+
+        IOException e = assertThrows(IOException.class,
+                () -> BinlogServiceImpl.replayChain(segments, position(1, 4), options));
+        assertEquals("The captured binary log has a gap after binlog.000001", e.getMessage());
+    }
+
+    @Test
+    void rejectsChainPastPartialSegment() {
+        List<BinlogSegment> segments = Arrays.asList(segment(1, false, 0), segment(2, true, 10));
+        RestoreOptions options = RestoreOptions.builder().stopPosition(position(2, 4)).build();
+
+        assertThrows(IOException.class, () -> BinlogServiceImpl.replayChain(segments, position(1, 4), options));
+    }
+
+    @Test
+    void rejectsUncapturedStartOrStop() {
+        List<BinlogSegment> segments = Arrays.asList(segment(2, true, 10), segment(3, true, 20));
+        RestoreOptions toTime = RestoreOptions.builder().stopTime(time(T0 + 100)).build();
+        RestoreOptions toPosition = RestoreOptions.builder().stopPosition(position(9, 4)).build();
+
+        assertThrows(IOException.class, () -> BinlogServiceImpl.replayChain(segments, position(1, 4), toTime));
+        assertThrows(IOException.class, () -> BinlogServiceImpl.replayChain(segments, position(2, 4), toPosition));
+    }
+
+    @Test
+    void ordersIndexBySequenceAndKeepsLatestLineOfAFile() throws IOException {
+        Path segmentDir = dir.resolve("segments");
+        Files.createDirectories(segmentDir);
+        binlogService.createIndex(segmentDir, "app");
+        Files.write(segmentDir.resolve("segments.index"), Arrays.asList(
+                indexLine("binlog.000010", false, "full-a"),
+                indexLine("binlog.000009", true, "full-a"),
+                indexLine("binlog.000010", true, "full-b")),
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        List<BinlogSegment> segments = binlogService.listSegments(segmentDir.toString());
+
+        assertEquals(Arrays.asList("binlog.000009", "binlog.000010"), files(segments));
+        assertTrue(segments.get(1).isComplete());
+        assertEquals("full-b", segments.get(1).getBaseBackup());
+    }
+
+    @Test
+    void looksUpBaseBackupForEachShippedSegment() throws IOException {
+        BackupJob job = BackupJob.builder()
+                .databaseType(DatabaseType.MYSQL)
+                .connectionParams(ConnectionParams.builder().host("db1").database("app").build())
+                .backupPath(dir.toString())
+                .compressionCodec(CodecType.ZSTD)
+                .build();
+        // A full backup finishes between the two segments
+        when(catalogService.latest(anyString(), eq(DatabaseType.MYSQL), eq("db1"), eq("app"), eq(BackupType.FULL)))
+                .thenReturn(Optional.of(entry("/backups/full-1")), Optional.of(entry("/backups/full-2")));
+        Path segmentDir = dir.resolve("binlog").resolve("app");
+        Path spool = segmentDir.resolve(".spool");
+        Files.createDirectories(spool);
+        binlogService.createIndex(segmentDir, "app");
+        writeTo(spool.resolve("binlog.000001"), event(FORMAT_DESCRIPTION, T0, 100, 0), event(QUERY, T0 + 1, 40, 0));
+        writeTo(spool.resolve("binlog.000002"), event(FORMAT_DESCRIPTION, T0 + 2, 100, 0), event(QUERY, T0 + 3, 40, 0));
+
+        CompressionOptions options = CompressionOptions.forJob(job);
+        BinlogServiceImpl.Shipper shipper = binlogService.new Shipper(job, segmentDir, spool,
+                services.compressionService.getCodec(options.getCodec()), options);
+
+        assertEquals(2, shipper.ship(true));
+        List<BinlogSegment> segments = binlogService.listSegments(segmentDir.toString());
+        assertEquals("/backups/full-1", segments.get(0).getBaseBackup());
+        assertEquals("/backups/full-2", segments.get(1).getBaseBackup());
+        assertTrue(segments.get(0).isComplete());
+        assertFalse(segments.get(1).isComplete());
+    }
+
+    private Path binlog(String name, byte[]... events) throws IOException {
+        Path file = dir.resolve(name);
+        writeTo(file, events);
+        return file;
+    }
+
+    private static void writeTo(Path file, byte[]... events) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[] {(byte) 0xfe, 'b', 'i', 'n'});
+        for (byte[] event : events) {
+            out.write(event);
+        }
+        Files.write(file, out.toByteArray());
+    }
+
+    // A v4 event: 19-byte header followed by a zero-filled body
+    private static byte[] event(int type, long timestamp, int size, int flags) {
+        ByteBuffer event = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        event.putInt((int) timestamp);
+        event.put((byte) type);
+        event.putInt(1);
+        event.putInt(size);
+        event.putInt(0);
+        event.putShort((short) flags);
+        return event.array();
+    }
+
+    private static BinlogSegment segment(int sequence, boolean complete, long offsetSeconds) {
+        return BinlogSegment.builder()
+                .binlogFile(String.format("binlog.%06d", sequence))
+                .segmentFile(String.format("binlog.%06d.zst", sequence))
+                .firstEvent(time(T0 + offsetSeconds))
+                .lastEvent(time(T0 + offsetSeconds + 9))
+                .complete(complete)
+                .build();
+    }
+
+    private static String indexLine(String file, boolean complete, String base) {
+        return String.join("\t", file, file + ".zst", time(T0).toString(), time(T0 + 1).toString(),
+                "100", "xxh64:0", String.valueOf(complete), base);
+    }
+
+    private static BinlogPosition position(int sequence, long position) {
+        return BinlogPosition.builder().file(String.format("binlog.%06d", sequence)).position(position).build();
+    }
+
+    private static CatalogEntry entry(String filePath) {
+        return CatalogEntry.builder().filePath(filePath).build();
+    }
+
+    private static LocalDateTime time(long epochSecond) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneId.systemDefault());
+    }
+
+    private static List<String> files(List<BinlogSegment> segments) {
+        return segments.stream().map(BinlogSegment::getBinlogFile).collect(Collectors.toList());
+    }
+}
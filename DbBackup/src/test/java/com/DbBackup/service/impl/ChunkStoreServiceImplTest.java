@@ -0,0 +1,153 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.BackupType;
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.DatabaseType;
+import com.DbBackup.model.StreamStats;
+
+class ChunkStoreServiceImplTest {
+
+    private final TestServices services = new TestServices();
+    private final ChunkStoreServiceImpl chunkStore = new ChunkStoreServiceImpl(
+            services.compressionService, services.bufferPool, services.checksumService);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsThroughManifest() throws IOException {
+        byte[] data = TestServices.sampleData(5 * 1024 * 1024 + 123, 1);
+        StreamStats stats = store(data, "first");
+
+        assertTrue(chunkStore.isManifest(stats.getFilePath()));
+        assertEquals(data.length, stats.getRawBytes());
+        try (InputStream in = chunkStore.open(stats.getFilePath())) {
+            assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+        String reassembled = chunkStore.reassemble(stats.getFilePath());
+        assertArrayEquals(data, Files.readAllBytes(Path.of(reassembled)));
+        assertEquals(data.length, chunkStore.verifyChunks(stats.getFilePath(), new HashSet<>()));
+    }
+
+    @Test
+    void storesUnchangedChunksOnce() throws IOException {
+        byte[] data = TestServices.sampleData(4 * 1024 * 1024, 2);
+        store(data, "first");
+        List<Path> chunks = chunkFiles();
+
+        // A change in the middle only adds the chunks around it
+        data[2 * 1024 * 1024] ^= 1;
+        StreamStats second = store(data, "second");
+        List<Path> after = chunkFiles();
+
+        assertTrue(after.size() > chunks.size());
+        assertTrue(after.size() - chunks.size() <= 2, "new chunks: " + (after.size() - chunks.size()));
+        try (InputStream in = chunkStore.open(second.getFilePath())) {
+            assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    void emptyStreamGivesEmptyManifest() throws IOException {
+        StreamStats stats = store(new byte[0], "empty");
+
+        assertEquals(0, stats.getRawBytes());
+        try (InputStream in = chunkStore.open(stats.getFilePath())) {
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void detectsReplacedChunk() throws IOException {
+        StreamStats stats = store(TestServices.sampleData(1024 * 1024, 3), "first");
+        Path chunk = chunkFiles().get(0);
+        // Valid compressed data, but not the content the hash names
+        Files.write(chunk, gzip(TestServices.sampleData((int) rawLengthOf(chunk, stats), 4)));
+
+        IOException e = assertThrows(IOException.class,
+                () -> chunkStore.verifyChunks(stats.getFilePath(), new HashSet<>()));
+        assertTrue(e.getMessage().contains("corrupt"), e.getMessage());
+    }
+
+    @Test
+    void detectsTruncatedChunk() throws IOException {
+        StreamStats stats = store(TestServices.sampleData(1024 * 1024, 5), "first");
+        Path chunk = chunkFiles().get(0);
+        Files.write(chunk, gzip(new byte[10]));
+
+        assertThrows(IOException.class, () -> chunkStore.verifyChunks(stats.getFilePath(), new HashSet<>()));
+        assertThrows(IOException.class, () -> {
+            try (InputStream in = chunkStore.open(stats.getFilePath())) {
+                IOUtils.toByteArray(in);
+            }
+        });
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path notManifest = dir.resolve("backup.sql.manifest");
+        Files.write(notManifest, "CREATE TABLE t (id INT);".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(chunkStore.isManifest(notManifest.toString()));
+        assertFalse(chunkStore.isManifest(dir.resolve("missing.manifest").toString()));
+    }
+
+    private StreamStats store(byte[] data, String name) throws IOException {
+        BackupJob job = BackupJob.builder()
+                .databaseType(DatabaseType.MYSQL)
+                .backupType(BackupType.INCREMENTAL)
+                .connectionParams(ConnectionParams.builder().database("test").build())
+                .compressionCodec(CodecType.GZIP)
+                .build();
+        return chunkStore.storeChunked(new ByteArrayInputStream(data), dir.resolve(name).toString(), job, null);
+    }
+
+    private List<Path> chunkFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(dir.resolve("chunks"))) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private long rawLengthOf(Path chunk, StreamStats stats) throws IOException {
+        String hash = chunk.getFileName().toString().split("\\.")[0];
+        return Files.readAllLines(Path.of(stats.getFilePath())).stream()
+                .filter(line -> line.startsWith(hash + " "))
+                .mapToLong(line -> Long.parseLong(line.split(" ")[1]))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gz = new GzipCodec().compress(out, CompressionOptions.defaults())) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,136 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.StreamStats;
+import com.DbBackup.service.CompressionCodec;
+
+class CompressionServiceImplTest {
+
+    private final TestServices services = new TestServices();
+    private final CompressionServiceImpl compressionService = services.compressionService;
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @CsvSource({
+            "GZIP, 1, 1", "GZIP, 4, 9",
+            "ZSTD, 1, 3", "ZSTD, 4, 19",
+            "LZ4, 1, 0", "LZ4, 1, 9"
+    })
+    void roundTripsThroughEachCodec(CodecType type, int threads, int level) throws IOException {
+        CompressionCodec codec = compressionService.getCodec(type);
+        byte[] data = TestServices.sampleData(3 * 1024 * 1024 + 17, 7);
+        CompressionOptions options = CompressionOptions.builder()
+                .codec(type)
+                .level(level)
+                .threads(threads)
+                .blockSize(256 * 1024)
+                .build();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = codec.compress(compressed, options)) {
+            out.write(data);
+        }
+
+        assertTrue(codec.matches(compressed.toByteArray(), compressed.size()));
+        try (InputStream in = codec.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CodecType.class)
+    void roundTripsEmptyInput(CodecType type) throws IOException {
+        CompressionCodec codec = compressionService.getCodec(type);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        codec.compress(compressed, CompressionOptions.builder().codec(type).threads(1).build()).close();
+
+        try (InputStream in = codec.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertEquals(0, IOUtils.toByteArray(in).length);
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "GZIP, 1f8b0800",
+            "ZSTD, 28b52ffd",
+            "LZ4, 04224d18"
+    })
+    void detectsCodecFromMagicBytes(CodecType type, String magic) throws IOException {
+        Path file = dir.resolve("backup.bin");
+        Files.write(file, concat(hex(magic), new byte[] {1, 2, 3}));
+
+        assertEquals(type, compressionService.detectCodec(file.toString()).orElseThrow().getType());
+        assertTrue(compressionService.isCompressed(file.toString()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CodecType.class)
+    void detectsCodecOfWrittenFiles(CodecType type) throws IOException {
+        Path source = dir.resolve("dump.sql");
+        Files.write(source, TestServices.sampleData(100_000, 11));
+        CompressionOptions options = CompressionOptions.builder().codec(type).threads(2).build();
+
+        StreamStats stats;
+        try (InputStream in = Files.newInputStream(source)) {
+            stats = compressionService.compressStream(in, source.toString(), options);
+        }
+
+        assertEquals(type, compressionService.detectCodec(stats.getFilePath()).orElseThrow().getType());
+        try (InputStream in = compressionService.openDecompressed(stats.getFilePath())) {
+            assertArrayEquals(Files.readAllBytes(source), IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    void detectsNothingInPlainOrShortFiles() throws IOException {
+        Path plain = dir.resolve("dump.sql");
+        Files.writeString(plain, "CREATE TABLE items (id INT);\n");
+        Path shortFile = dir.resolve("short.bin");
+        Files.write(shortFile, hex("28b52f"));
+        Path empty = Files.createFile(dir.resolve("empty.bin"));
+
+        assertFalse(compressionService.detectCodec(plain.toString()).isPresent());
+        assertFalse(compressionService.detectCodec(shortFile.toString()).isPresent());
+        assertFalse(compressionService.detectCodec(empty.toString()).isPresent());
+        assertFalse(compressionService.detectCodec(dir.resolve("missing.gz").toString()).isPresent());
+    }
+
+    private static byte[] hex(String value) {
+        byte[] bytes = new byte[value.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(value.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = new byte[first.length + second.length];
+        System.arraycopy(first, 0, bytes, 0, first.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+}
@@ -0,0 +1,87 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.DatabaseType;
+
+/**
+ * Eviction of connection pools. Targets point at a closed local port, so every check fails
+ * after the connect timeout, and a MongoDB check holds its pool for that long.
+ */
+class DatabaseConnectionServiceImplTest {
+
+    private DatabaseConnectionServiceImpl service;
+
+    @AfterEach
+    void closePools() {
+        if (service != null) {
+            service.destroy();
+        }
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedPoolBeyondMaxTargets() {
+        service = new DatabaseConnectionServiceImpl(30_000, 600_000, 1, 2, 300);
+
+        assertFalse(service.testConnection(DatabaseType.MONGODB, target("a")));
+        assertFalse(service.testConnection(DatabaseType.MONGODB, target("b")));
+
+        assertFalse(service.hasPool(DatabaseType.MONGODB, target("a")));
+        assertTrue(service.hasPool(DatabaseType.MONGODB, target("b")));
+    }
+
+    @Test
+    void keepsPoolWithCheckInProgressBeyondMaxTargets() throws Exception {
+        service = new DatabaseConnectionServiceImpl(30_000, 600_000, 1, 2, 2000);
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(
+                () -> service.testConnection(DatabaseType.MONGODB, target("a")));
+        // The pool appears once it is leased for the check
+        while (!service.hasPool(DatabaseType.MONGODB, target("a"))) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(service.testConnection(DatabaseType.MONGODB, target("b")));
+        assertTrue(service.hasPool(DatabaseType.MONGODB, target("a")));
+        assertTrue(service.hasPool(DatabaseType.MONGODB, target("b")));
+
+        // Once idle, the surplus pool goes on the next revalidation
+        assertFalse(first.get());
+        service.revalidate();
+        assertFalse(service.hasPool(DatabaseType.MONGODB, target("a")));
+        assertTrue(service.hasPool(DatabaseType.MONGODB, target("b")));
+    }
+
+    @Test
+    void closesPoolsIdleBeyondTimeout() throws Exception {
+        service = new DatabaseConnectionServiceImpl(30_000, 1, 4, 2, 300);
+        service.testConnection(DatabaseType.MONGODB, target("a"));
+        Thread.sleep(20);
+
+        service.revalidate();
+
+        assertFalse(service.hasPool(DatabaseType.MONGODB, target("a")));
+    }
+
+    @Test
+    void keepsRecentlyUsedPools() {
+        service = new DatabaseConnectionServiceImpl(30_000, 600_000, 4, 2, 300);
+        service.testConnection(DatabaseType.MONGODB, target("a"));
+        service.testConnection(DatabaseType.MONGODB, target("b"));
+
+        service.revalidate();
+
+        assertTrue(service.hasPool(DatabaseType.MONGODB, target("a")));
+        assertTrue(service.hasPool(DatabaseType.MONGODB, target("b")));
+    }
+
+    private static ConnectionParams target(String database) {
+        return ConnectionParams.builder().host("127.0.0.1").port(1).database(database).build();
+    }
+}
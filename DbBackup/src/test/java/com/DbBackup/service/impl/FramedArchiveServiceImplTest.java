@@ -0,0 +1,162 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.CompressionOptions;
+import com.DbBackup.model.StreamStats;
+
+class FramedArchiveServiceImplTest {
+
+    private static final String PREAMBLE = "-- MySQL dump 10.13\n"
+            + "/*!40101 SET NAMES utf8mb4 */;\n"
+            + "/*!40103 SET @OLD_TIME_ZONE=@@TIME_ZONE */;\n"
+            + "--\n";
+    private static final String ROUTINES = "-- Dumping routines for database `shop`\n"
+            + "--\n"
+            + "CREATE PROCEDURE p() SELECT 1;\n";
+    private static final String TRAILER = "/*!40103 SET TIME_ZONE=@OLD_TIME_ZONE */;\n"
+            + "-- Dump completed\n";
+    // Larger than a frame, so the table's data spans several
+    private static final String BIG_INSERT = "INSERT INTO `order items` VALUES ('"
+            + new String(TestServices.sampleData(9 * 1024 * 1024, 7), StandardCharsets.US_ASCII) + "');\n";
+
+    private final TestServices services = new TestServices();
+    private final FramedArchiveServiceImpl framedArchive = new FramedArchiveServiceImpl(
+            services.compressionService, services.checksumService);
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @EnumSource(CodecType.class)
+    void roundTripsWholeDump(CodecType codec) throws IOException {
+        String dump = dump();
+        StreamStats stats = write(dump, codec);
+
+        assertTrue(framedArchive.isFramed(stats.getFilePath()));
+        assertEquals(dump.length(), stats.getRawBytes());
+        assertEquals(dump, read(stats.getFilePath(), null));
+        assertEquals(Arrays.asList("customers", "orders", "order items"), framedArchive.listTables(stats.getFilePath()));
+    }
+
+    @Test
+    void readsOnlySelectedTables() throws IOException {
+        StreamStats stats = write(dump(), CodecType.ZSTD);
+
+        String expected = PREAMBLE + table("orders", ordersData()) + TRAILER;
+        assertEquals(expected, read(stats.getFilePath(), Collections.singletonList(" orders ")));
+    }
+
+    @Test
+    void readsTableSpanningSeveralFrames() throws IOException {
+        StreamStats stats = write(dump(), CodecType.LZ4);
+
+        String expected = PREAMBLE + table("order items", BIG_INSERT) + TRAILER;
+        assertEquals(expected, read(stats.getFilePath(), Collections.singletonList("order items")));
+    }
+
+    @Test
+    void unknownTableReadsOnlyPreambleAndTrailer() throws IOException {
+        StreamStats stats = write(dump(), CodecType.GZIP);
+
+        assertEquals(PREAMBLE + TRAILER, read(stats.getFilePath(), Collections.singletonList("missing")));
+    }
+
+    @Test
+    void rejectsArchiveWithoutIndex() throws IOException {
+        StreamStats stats = write(dump(), CodecType.GZIP);
+        Path path = Path.of(stats.getFilePath());
+        byte[] bytes = Files.readAllBytes(path);
+        // A backup cut off before the index was written
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 100));
+
+        assertTrue(framedArchive.isFramed(stats.getFilePath()));
+        IOException e = assertThrows(IOException.class, () -> framedArchive.open(stats.getFilePath(), null));
+        assertTrue(e.getMessage().contains("no index"), e.getMessage());
+    }
+
+    @Test
+    void detectsCorruptFrame() throws IOException {
+        StreamStats stats = write(dump(), CodecType.GZIP);
+        Path path = Path.of(stats.getFilePath());
+        byte[] bytes = Files.readAllBytes(path);
+        // Inside the first frame, right after the magic and the codec name
+        for (int i = 30; i < 40; i++) {
+            bytes[i] ^= 0x5a;
+        }
+        Files.write(path, bytes);
+
+        assertThrows(IOException.class, () -> read(stats.getFilePath(), null));
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path plain = dir.resolve("dump.sql");
+        Files.writeString(plain, dump());
+
+        assertFalse(framedArchive.isFramed(plain.toString()));
+        assertFalse(framedArchive.isFramed(dir.resolve("missing.framed").toString()));
+        assertThrows(IOException.class, () -> framedArchive.listTables(plain.toString()));
+    }
+
+    private StreamStats write(String dump, CodecType codec) throws IOException {
+        CompressionOptions options = CompressionOptions.builder().codec(codec).build();
+        return framedArchive.write(new ByteArrayInputStream(dump.getBytes(StandardCharsets.UTF_8)),
+                dir.resolve("shop_backup.sql").toString(), options);
+    }
+
+    private String read(String path, List<String> tables) throws IOException {
+        try (InputStream in = framedArchive.open(path, tables)) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String dump() {
+        return PREAMBLE
+                + table("customers", "INSERT INTO `customers` VALUES (1,'ann'),(2,'bob');\n")
+                + table("orders", ordersData())
+                + table("order items", BIG_INSERT)
+                + ROUTINES
+                + TRAILER;
+    }
+
+    private static String table(String name, String data) {
+        return "-- Table structure for table `" + name + "`\n"
+                + "--\n"
+                + "CREATE TABLE `" + name + "` (`id` int NOT NULL);\n"
+                + "--\n"
+                + "-- Dumping data for table `" + name + "`\n"
+                + "--\n"
+                + data
+                + "--\n";
+    }
+
+    // One line longer than the buffered line head
+    private static String ordersData() {
+        StringBuilder insert = new StringBuilder("INSERT INTO `orders` VALUES ");
+        for (int i = 0; i < 100; i++) {
+            insert.append(i > 0 ? "," : "").append('(').append(i).append(')');
+        }
+        return insert.append(";\n").toString();
+    }
+}
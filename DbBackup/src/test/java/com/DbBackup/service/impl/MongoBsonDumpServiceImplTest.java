@@ -0,0 +1,160 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+
+class MongoBsonDumpServiceImplTest {
+
+    private static final Path FILE = Paths.get("0000_orders.bson");
+
+    @Test
+    void readsBackWrittenDocuments() throws IOException {
+        List<RawBsonDocument> documents = Arrays.asList(
+                RawBsonDocument.parse("{\"_id\": 1, \"name\": \"first\"}"),
+                RawBsonDocument.parse("{\"_id\": 2, \"tags\": [\"a\", \"b\"], \"nested\": {\"x\": 1.5}}"),
+                RawBsonDocument.parse("{}"));
+        BsonDocument filter = new BsonDocument("_id", new BsonDocument("$gte", new BsonInt32(1)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = MongoBsonDumpServiceImpl.writeDocuments(collection(filter, documents), filter, out);
+
+        assertEquals(3, written);
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        for (RawBsonDocument document : documents) {
+            byte[] read = MongoBsonDumpServiceImpl.readDocument(in, FILE);
+            assertArrayEquals(bytes(document), read);
+            assertEquals(document, new RawBsonDocument(read));
+        }
+        assertNull(MongoBsonDumpServiceImpl.readDocument(in, FILE));
+    }
+
+    @Test
+    void rejectsTruncatedDocuments() throws IOException {
+        byte[] document = bytes(RawBsonDocument.parse("{\"_id\": 1, \"name\": \"first\"}"));
+
+        assertThrows(EOFException.class, () -> MongoBsonDumpServiceImpl.readDocument(
+                new ByteArrayInputStream(Arrays.copyOf(document, 2)), FILE));
+        assertThrows(EOFException.class, () -> MongoBsonDumpServiceImpl.readDocument(
+                new ByteArrayInputStream(Arrays.copyOf(document, document.length - 1)), FILE));
+    }
+
+    @Test
+    void rejectsImpossibleLengths() {
+        for (int length : new int[] {0, 4, -1, 16 * 1024 * 1024 + 16 * 1024 + 1, Integer.MAX_VALUE}) {
+            byte[] prefix = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putInt(length).array();
+
+            IOException e = assertThrows(IOException.class,
+                    () -> MongoBsonDumpServiceImpl.readDocument(new ByteArrayInputStream(prefix), FILE));
+            assertTrue(e.getMessage().contains("Corrupt document length " + length), e.getMessage());
+        }
+    }
+
+    @Test
+    void cutsRangesAtEvenStepsThroughTheSample() {
+        List<BsonValue> ids = IntStream.range(0, 100).mapToObj(BsonInt32::new).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(new BsonInt32(25), new BsonInt32(50), new BsonInt32(75)),
+                MongoBsonDumpServiceImpl.rangeBounds("orders", ids, 4));
+        assertTrue(MongoBsonDumpServiceImpl.rangeBounds("orders", ids, 1).isEmpty());
+        assertTrue(MongoBsonDumpServiceImpl.rangeBounds("orders", new ArrayList<>(), 4).isEmpty());
+    }
+
+    @Test
+    void leavesOutRepeatedBounds() {
+        List<BsonValue> ids = new ArrayList<>();
+        for (int i = 0; i < 90; i++) {
+            ids.add(new BsonString("same"));
+        }
+        for (int i = 0; i < 10; i++) {
+            ids.add(new BsonString("z" + i));
+        }
+
+        assertEquals(Arrays.asList(new BsonString("same"), new BsonString("z0")),
+                MongoBsonDumpServiceImpl.rangeBounds("orders", ids, 10));
+    }
+
+    @Test
+    void doesNotSplitMixedOrUnsupportedIds() {
+        List<BsonValue> mixed = Arrays.asList(new BsonInt32(1), new BsonString("2"), new BsonInt32(3));
+        List<BsonValue> documents = Arrays.asList(
+                BsonDocument.parse("{\"a\": 1}"), BsonDocument.parse("{\"a\": 2}"));
+        // Numbers of any width are one type for range queries
+        List<BsonValue> numbers = Arrays.asList(new BsonInt32(1), new BsonInt64(2), new BsonInt32(3),
+                new BsonInt64(4));
+
+        assertTrue(MongoBsonDumpServiceImpl.rangeBounds("orders", mixed, 2).isEmpty());
+        assertTrue(MongoBsonDumpServiceImpl.rangeBounds("orders", documents, 2).isEmpty());
+        assertEquals(Arrays.asList(new BsonInt32(3)), MongoBsonDumpServiceImpl.rangeBounds("orders", numbers, 2));
+    }
+
+    @Test
+    void filtersEachRangeAndOtherIdTypes() {
+        BsonObjectId first = new BsonObjectId(new ObjectId("650000000000000000000001"));
+        BsonObjectId second = new BsonObjectId(new ObjectId("650000000000000000000002"));
+
+        List<BsonDocument> filters = MongoBsonDumpServiceImpl.rangeFilters(Arrays.asList(first, second));
+
+        assertEquals(Arrays.asList(
+                BsonDocument.parse("{\"_id\": {\"$lt\": {\"$oid\": \"650000000000000000000001\"}}}"),
+                BsonDocument.parse("{\"_id\": {\"$gte\": {\"$oid\": \"650000000000000000000001\"}, "
+                        + "\"$lt\": {\"$oid\": \"650000000000000000000002\"}}}"),
+                BsonDocument.parse("{\"_id\": {\"$gte\": {\"$oid\": \"650000000000000000000002\"}}}"),
+                BsonDocument.parse("{\"_id\": {\"$not\": {\"$type\": \"objectId\"}}}")), filters);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MongoCollection<RawBsonDocument> collection(BsonDocument filter, List<RawBsonDocument> documents) {
+        MongoCollection<RawBsonDocument> collection = mock(MongoCollection.class);
+        FindIterable<RawBsonDocument> find = mock(FindIterable.class);
+        MongoCursor<RawBsonDocument> cursor = mock(MongoCursor.class);
+        when(collection.find(filter)).thenReturn(find);
+        when(find.noCursorTimeout(true)).thenReturn(find);
+        when(find.iterator()).thenReturn(cursor);
+        Iterator<RawBsonDocument> iterator = documents.iterator();
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return collection;
+    }
+
+    private static byte[] bytes(RawBsonDocument document) {
+        ByteBuffer buffer = document.getByteBuffer().asNIO();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
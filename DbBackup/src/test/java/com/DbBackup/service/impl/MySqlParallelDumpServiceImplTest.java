@@ -0,0 +1,52 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class MySqlParallelDumpServiceImplTest {
+
+    @Test
+    void leavesGeneratedColumnsOutOfInserts() {
+        // CREATE TABLE t (id INT, price DECIMAL, qty INT,
+        //   total DECIMAL AS (price * qty) STORED, label VARCHAR(20) AS (CONCAT('#', id)) VIRTUAL)
+        List<String[]> columns = Arrays.asList(
+                column("id", "auto_increment"),
+                column("price", ""),
+                column("qty", ""),
+                column("total", "STORED GENERATED"),
+                column("label", "VIRTUAL GENERATED"));
+
+        List<String> insertable = MySqlParallelDumpServiceImpl.insertableColumns(columns);
+
+        assertEquals(Arrays.asList("id", "price", "qty"), insertable);
+        assertEquals("`id`,`price`,`qty`", MySqlParallelDumpServiceImpl.columnList(insertable));
+    }
+
+    @Test
+    void keepsInvisibleAndExpressionDefaultColumns() {
+        List<String[]> columns = Arrays.asList(
+                column("id", ""),
+                column("secret", "INVISIBLE"),
+                column("created", "DEFAULT_GENERATED"),
+                column("updated", "DEFAULT_GENERATED on update CURRENT_TIMESTAMP"),
+                column("hidden_total", "VIRTUAL GENERATED INVISIBLE"),
+                column("note", null));
+
+        assertEquals(Arrays.asList("id", "secret", "created", "updated", "note"),
+                MySqlParallelDumpServiceImpl.insertableColumns(columns));
+    }
+
+    @Test
+    void quotesColumnNames() {
+        assertEquals("`order`,`we``ird`,`a b`",
+                MySqlParallelDumpServiceImpl.columnList(Arrays.asList("order", "we`ird", "a b")));
+    }
+
+    private static String[] column(String name, String extra) {
+        return new String[] {name, extra};
+    }
+}
@@ -0,0 +1,180 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.DbBackup.model.BackupResult;
+import com.DbBackup.model.DatabaseType;
+import com.slack.api.model.Attachment;
+import com.slack.api.webhook.Payload;
+import com.slack.api.webhook.WebhookResponse;
+
+/**
+ * Slack is replaced by a client answering with scripted status codes, and the backoff
+ * delays are recorded instead of slept.
+ */
+class NotificationServiceImplTest {
+
+    private static final String TEAM_HOOK = "https://hooks.slack.com/services/T0/B0/team";
+    private static final String OPS_HOOK = "https://hooks.slack.com/services/T0/B0/ops";
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final BlockingQueue<Call> calls = new LinkedBlockingQueue<>();
+    // Status codes, or IOExceptions to throw; 200 once they are used up
+    private final ConcurrentLinkedDeque<Object> responses = new ConcurrentLinkedDeque<>();
+    private final List<Long> sleeps = Collections.synchronizedList(new ArrayList<>());
+    private NotificationServiceImpl notificationService;
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        if (notificationService != null) {
+            notificationService.destroy();
+        }
+    }
+
+    @Test
+    void coalescesBurstIntoOneDigestPerWebhook() throws Exception {
+        notificationService = create(500, 5, 100, 1000);
+
+        notificationService.sendSlackNotification(result("orders", true), TEAM_HOOK);
+        notificationService.sendSlackNotification(result("users", false), TEAM_HOOK);
+        notificationService.sendSlackNotification(result("ops", true), OPS_HOOK);
+        notificationService.sendSlackNotification(result("events", true), TEAM_HOOK);
+
+        Call team = nextCall();
+        Call ops = nextCall();
+        assertEquals(TEAM_HOOK, team.webhookUrl);
+        Attachment digest = team.attachment();
+        assertEquals("3 database backups: 2 succeeded, 1 failed", digest.getTitle());
+        assertTrue(digest.getText().startsWith("FAILED mysql users"), digest.getText());
+        assertEquals(3, digest.getText().split("\n").length);
+        assertEquals(OPS_HOOK, ops.webhookUrl);
+        assertEquals("Database backup completed successfully", ops.attachment().getTitle());
+        assertNull(calls.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void retriesWithExponentialBackoff() throws Exception {
+        notificationService = create(0, 5, 100, 250);
+        responses.addAll(Arrays.asList(new IOException("Connection reset"), 429, 503));
+
+        notificationService.sendSlackNotification(result("orders", true), TEAM_HOOK);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(TEAM_HOOK, nextCall().webhookUrl);
+        }
+        assertEquals(Arrays.asList(100L, 200L, 250L), sleeps);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws Exception {
+        notificationService = create(0, 3, 100, 1000);
+        responses.addAll(Arrays.asList(500, 502, 503));
+
+        notificationService.sendSlackNotification(result("orders", true), TEAM_HOOK);
+        for (int i = 0; i < 3; i++) {
+            nextCall();
+        }
+        notificationService.sendSlackNotification(result("users", true), OPS_HOOK);
+
+        // The next notification goes out, the failed one is not tried again
+        assertEquals(OPS_HOOK, nextCall().webhookUrl);
+        assertEquals(Arrays.asList(100L, 200L), sleeps);
+    }
+
+    @Test
+    void doesNotRetryRejectedPayloads() throws Exception {
+        notificationService = create(0, 5, 100, 1000);
+        responses.add(404);
+
+        notificationService.sendSlackNotification(result("orders", true), TEAM_HOOK);
+        nextCall();
+        notificationService.sendSlackNotification(result("users", true), OPS_HOOK);
+
+        assertEquals(OPS_HOOK, nextCall().webhookUrl);
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    void sendsQueuedResultsOnceOnShutdown() throws Exception {
+        notificationService = create(60_000, 5, 100, 1000);
+        responses.add(503);
+
+        notificationService.sendSlackNotification(result("orders", true), TEAM_HOOK);
+        notificationService.sendSlackNotification(result("users", true), TEAM_HOOK);
+        notificationService.destroy();
+
+        Call digest = calls.poll();
+        assertNotNull(digest);
+        assertEquals("2 database backups: 2 succeeded, 0 failed", digest.attachment().getTitle());
+        assertNull(calls.poll());
+        assertTrue(sleeps.isEmpty());
+    }
+
+    private NotificationServiceImpl create(long coalesceWindowMillis, int maxAttempts, long initialBackoffMillis,
+                                           long maxBackoffMillis) {
+        return new NotificationServiceImpl(100, coalesceWindowMillis, maxAttempts, initialBackoffMillis,
+                maxBackoffMillis, this::send, sleeps::add);
+    }
+
+    private WebhookResponse send(String webhookUrl, Payload payload) throws IOException {
+        calls.add(new Call(webhookUrl, payload));
+        Object response = responses.poll();
+        if (response instanceof IOException) {
+            throw (IOException) response;
+        }
+        int code = response != null ? (Integer) response : 200;
+        return WebhookResponse.builder().code(code).body(code == 200 ? "ok" : "error").build();
+    }
+
+    private Call nextCall() throws InterruptedException {
+        Call call = calls.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(call, "No notification was sent");
+        return call;
+    }
+
+    private static BackupResult result(String database, boolean success) {
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 2, 0);
+        return BackupResult.builder()
+                .jobId("job-" + database)
+                .databaseType(DatabaseType.MYSQL)
+                .databaseName(database)
+                .startTime(start)
+                .endTime(start.plusSeconds(42))
+                .success(success)
+                .filePath(success ? "/backups/" + database + ".sql.zst" : null)
+                .fileSize(success ? 1024 * 1024 : 0)
+                .errorMessage(success ? null : "Access denied")
+                .build();
+    }
+
+    private static final class Call {
+        private final String webhookUrl;
+        private final Payload payload;
+
+        private Call(String webhookUrl, Payload payload) {
+            this.webhookUrl = webhookUrl;
+            this.payload = payload;
+        }
+
+        private Attachment attachment() {
+            return payload.getAttachments().get(0);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+class ParallelGzipOutputStreamTest {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    @Test
+    void writesOneMemberPerBlock() throws IOException {
+        byte[] data = TestServices.sampleData(BLOCK_SIZE * 5 + 1234, 1);
+
+        byte[] compressed = compress(data, 4);
+
+        assertArrayEquals(data, gunzip(compressed));
+        assertEquals(6, members(compressed));
+        // A single-member reader stops after the first block
+        try (InputStream in = new GzipCompressorInputStream(new ByteArrayInputStream(compressed), false)) {
+            assertArrayEquals(Arrays.copyOf(data, BLOCK_SIZE), IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    void writesOneEmptyMemberForEmptyInput() throws IOException {
+        byte[] compressed = compress(new byte[0], 2);
+
+        assertEquals(0, gunzip(compressed).length);
+        assertEquals(1, members(compressed));
+    }
+
+    @Test
+    void splitsWritesThatCrossBlockBoundaries() throws IOException {
+        byte[] data = TestServices.sampleData(BLOCK_SIZE * 3, 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, 2, BLOCK_SIZE)) {
+            gzip.write(data, 0, 1000);
+            // Fills the first block and runs well into the third
+            gzip.write(data, 1000, BLOCK_SIZE * 2);
+            gzip.write(data[1000 + BLOCK_SIZE * 2]);
+            gzip.write(data, 1001 + BLOCK_SIZE * 2, data.length - 1001 - BLOCK_SIZE * 2);
+        }
+
+        assertArrayEquals(data, gunzip(out.toByteArray()));
+        assertEquals(3, members(out.toByteArray()));
+    }
+
+    @Test
+    void flushMakesWrittenBytesReadable() throws IOException {
+        byte[] data = TestServices.sampleData(5000, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, 2, BLOCK_SIZE)) {
+            gzip.write(data);
+            gzip.flush();
+
+            assertArrayEquals(data, gunzip(out.toByteArray()));
+        }
+        assertEquals(1, members(out.toByteArray()));
+    }
+
+    @Test
+    void rejectsWritesAfterClose() throws IOException {
+        ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(new ByteArrayOutputStream(), 1, BLOCK_SIZE);
+        gzip.close();
+
+        assertThrows(IOException.class, () -> gzip.write(1));
+    }
+
+    private static byte[] compress(byte[] data, int threads) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, threads, BLOCK_SIZE)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    /**
+     * Counts the members by reading them one at a time, each from where the previous one ended.
+     */
+    private static int members(byte[] compressed) throws IOException {
+        ByteArrayInputStream remaining = new ByteArrayInputStream(compressed);
+        int members = 0;
+        while (remaining.available() > 0) {
+            GzipCompressorInputStream member = new GzipCompressorInputStream(remaining, false);
+            IOUtils.toByteArray(member);
+            members++;
+        }
+        return members;
+    }
+}
@@ -0,0 +1,206 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.DbBackup.service.BandwidthService;
+
+/**
+ * The schema scripts are generated from a mocked catalog: each query is answered with the
+ * rows of the first key it contains.
+ */
+class PostgresCopyDumpServiceImplTest {
+
+    private static final int SERVER_VERSION = 160000;
+
+    private final TestServices services = new TestServices();
+    private final PostgresCopyDumpServiceImpl dumpService = new PostgresCopyDumpServiceImpl(
+            services.compressionService, services.bufferPool, mock(BandwidthService.class), services.checksumService);
+    private final Map<String, String[][]> catalog = new LinkedHashMap<>();
+    private final Connection conn = mock(Connection.class);
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void mockCatalog() throws SQLException {
+        Statement statement = mock(Statement.class);
+        when(conn.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            return catalog.entrySet().stream()
+                    .filter(entry -> sql.contains(entry.getKey()))
+                    .findFirst()
+                    .map(entry -> rows(entry.getValue()))
+                    .orElseGet(() -> rows());
+        });
+
+        catalog.put("pg_total_relation_size", new String[][] {
+                {"16384", "public", "orders", "f", "f"},
+                {"16390", "public", "events", "t", "f"}});
+        catalog.put("format_type(a.atttypid", new String[][] {
+                {"16384", "id", "bigint", "t", null, "", "", null},
+                {"16384", "total", "numeric(10,2)", "f", null, "", "", null},
+                {"16384", "total_with_tax", "numeric(10,2)", "f", "(total * 1.2)", "", "s", null},
+                {"16384", "status", "text", "t", "'new'::text", "", "", "\"pg_catalog\".\"C\""},
+                {"16390", "payload", "jsonb", "f", null, "", "", null}});
+        catalog.put("SELECT n.nspname FROM pg_catalog.pg_namespace n", new String[][] {{"public"}});
+    }
+
+    @Test
+    void writesTableDefinitions() throws Exception {
+        String script = preData();
+
+        assertTrue(script.contains("CREATE TABLE \"public\".\"orders\" (\n"
+                + "    \"id\" bigint NOT NULL,\n"
+                + "    \"total\" numeric(10,2),\n"
+                + "    \"total_with_tax\" numeric(10,2) GENERATED ALWAYS AS ((total * 1.2)) STORED,\n"
+                + "    \"status\" text COLLATE \"pg_catalog\".\"C\" DEFAULT 'new'::text NOT NULL\n"
+                + ");\n"), script);
+        assertTrue(script.contains("CREATE UNLOGGED TABLE \"public\".\"events\" (\n    \"payload\" jsonb\n);\n"),
+                script);
+        assertTrue(script.contains("CREATE SCHEMA IF NOT EXISTS \"public\";\n"), script);
+    }
+
+    @Test
+    void createsRoutinesUsingTablesAfterTheTables() throws Exception {
+        catalog.put("pg_get_functiondef", new String[][] {
+                {"CREATE OR REPLACE FUNCTION public.touch()\n RETURNS trigger\n LANGUAGE plpgsql\n"
+                        + "AS $function$BEGIN NEW.updated := now(); RETURN NEW; END$function$\n", "false"},
+                {"CREATE OR REPLACE FUNCTION public.open_orders()\n RETURNS SETOF orders\n LANGUAGE sql\n"
+                        + "AS $function$SELECT * FROM orders WHERE status = 'new'$function$\n", "true"},
+                {"CREATE OR REPLACE FUNCTION public.order_count()\n RETURNS bigint\n LANGUAGE sql\n"
+                        + "BEGIN ATOMIC\n SELECT count(*) AS count FROM orders;\nEND\n", "true"}});
+
+        String script = preData();
+
+        int touch = script.indexOf("FUNCTION public.touch()");
+        int orders = script.indexOf("CREATE TABLE \"public\".\"orders\"");
+        int events = script.indexOf("CREATE UNLOGGED TABLE \"public\".\"events\"");
+        assertTrue(touch >= 0 && touch < orders, script);
+        assertTrue(events < script.indexOf("FUNCTION public.open_orders()"), script);
+        assertTrue(script.indexOf("FUNCTION public.open_orders()") < script.indexOf("FUNCTION public.order_count()"),
+                script);
+        assertTrue(script.contains("\nEND;\n"), script);
+    }
+
+    @Test
+    void refusesInheritedTables() {
+        catalog.put("pg_total_relation_size", new String[][] {{"16384", "public", "measurements", "f", "t"}});
+
+        IOException e = assertThrows(IOException.class, () -> dumpService.listTables(conn, SERVER_VERSION));
+        assertTrue(e.getMessage().contains("public.measurements"));
+    }
+
+    @Test
+    void indexesMaterializedViewsBeforeRefreshingThem() throws Exception {
+        catalog.put("c.relkind = 'm'", new String[][] {
+                {"CREATE UNIQUE INDEX order_totals_status ON public.order_totals USING btree (status)"}});
+        catalog.put("pg_get_indexdef", new String[][] {
+                {"CREATE INDEX orders_status ON public.orders USING btree (status)"}});
+        catalog.put("FROM pg_catalog.pg_constraint con", new String[][] {
+                {"public", "orders", "orders_pkey", "PRIMARY KEY (id)", "p"}});
+        catalog.put("pg_get_viewdef", new String[][] {
+                {"public", "order_totals", "m", " SELECT status, sum(total) AS total FROM orders GROUP BY status;"}});
+
+        StringWriter writer = new StringWriter();
+        dumpService.writePostData(conn, dumpService.listSequences(conn), dumpService.listTables(conn, SERVER_VERSION),
+                writer);
+        String script = writer.toString();
+
+        int key = script.indexOf("ALTER TABLE ONLY \"public\".\"orders\" ADD CONSTRAINT \"orders_pkey\" PRIMARY KEY (id);");
+        int tableIndex = script.indexOf("CREATE INDEX orders_status ON public.orders");
+        int view = script.indexOf("CREATE MATERIALIZED VIEW \"public\".\"order_totals\" AS\n"
+                + "SELECT status, sum(total) AS total FROM orders GROUP BY status\nWITH NO DATA;\n");
+        int viewIndex = script.indexOf("CREATE UNIQUE INDEX order_totals_status ON public.order_totals");
+        int refresh = script.indexOf("REFRESH MATERIALIZED VIEW \"public\".\"order_totals\";");
+        assertTrue(key >= 0 && key < tableIndex && tableIndex < view, script);
+        assertTrue(view < viewIndex && viewIndex < refresh, script);
+    }
+
+    @Test
+    void listsFilesOfTheManifestInRestoreOrder() throws Exception {
+        List<PostgresCopyDumpServiceImpl.TableInfo> tables = dumpService.listTables(conn, SERVER_VERSION);
+        for (int i = 0; i < tables.size(); i++) {
+            tables.get(i).file = String.format("%04d_%s.copy.zst", i, tables.get(i).displayName());
+            tables.get(i).rows = 100 * (i + 1);
+            tables.get(i).checksum = "xxh64:" + i;
+        }
+        Map<String, String> header = new LinkedHashMap<>();
+        header.put("database", "shop");
+        header.put("preData", "_pre_data.sql.zst");
+        header.put("preDataChecksum", "xxh64:pre");
+        header.put("postData", "_post_data.sql.zst");
+        header.put("postDataChecksum", "xxh64:post");
+
+        String checksum = dumpService.writeManifest(dir, header, tables);
+
+        assertTrue(dumpService.isTableDump(dir.toString()));
+        assertEquals(checksum, services.checksumService.checksumFile(
+                dir.resolve(PostgresCopyDumpServiceImpl.MANIFEST_FILE).toString()));
+        Map<String, String> files = dumpService.listFiles(dir.toString());
+        assertEquals(Arrays.asList("_pre_data.sql.zst", "0000_public.orders.copy.zst",
+                "0001_public.events.copy.zst", "_post_data.sql.zst"), List.copyOf(files.keySet()));
+        assertEquals(Arrays.asList("xxh64:pre", "xxh64:0", "xxh64:1", "xxh64:post"), List.copyOf(files.values()));
+    }
+
+    @Test
+    void leavesGeneratedColumnsOutOfCopy() throws Exception {
+        List<PostgresCopyDumpServiceImpl.TableInfo> tables = dumpService.listTables(conn, SERVER_VERSION);
+
+        assertEquals("\"public\".\"orders\" (\"id\",\"total\",\"status\")", tables.get(0).copyTarget());
+        assertEquals("\"public\".\"events\" (\"payload\")", tables.get(1).copyTarget());
+    }
+
+    private String preData() throws Exception {
+        StringWriter writer = new StringWriter();
+        dumpService.writePreData(conn, SERVER_VERSION, dumpService.listSequences(conn),
+                dumpService.listTables(conn, SERVER_VERSION), writer);
+        return writer.toString();
+    }
+
+    private static ResultSet rows(String[]... rows) {
+        try {
+            ResultSet rs = mock(ResultSet.class);
+            ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+            int[] cursor = {-1};
+            when(rs.getMetaData()).thenReturn(metaData);
+            when(metaData.getColumnCount()).thenReturn(rows.length > 0 ? rows[0].length : 1);
+            when(rs.next()).thenAnswer(invocation -> ++cursor[0] < rows.length);
+            when(rs.getString(anyInt())).thenAnswer(invocation -> value(rows[cursor[0]], invocation.getArgument(0)));
+            when(rs.getBoolean(anyInt())).thenAnswer(
+                    invocation -> "t".equals(value(rows[cursor[0]], invocation.getArgument(0))));
+            when(rs.getLong(anyInt())).thenAnswer(
+                    invocation -> Long.parseLong(value(rows[cursor[0]], invocation.getArgument(0))));
+            return rs;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String value(String[] row, int column) {
+        return row[column - 1];
+    }
+}
@@ -0,0 +1,93 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.DbBackup.model.RunningProcess;
+import com.DbBackup.service.BackupMetricsService;
+import com.DbBackup.service.SupervisedTask;
+
+class ProcessSupervisorImplTest {
+
+    @TempDir
+    Path controlDir;
+
+    private ProcessSupervisorImpl supervisor;
+
+    @BeforeEach
+    void createSupervisor() {
+        supervisor = new ProcessSupervisorImpl(0, 0, 1024, controlDir.toString(), mock(BackupMetricsService.class));
+    }
+
+    @AfterEach
+    void stopSupervisor() {
+        supervisor.destroy();
+    }
+
+    @Test
+    void listsRegisteredTasks() throws Exception {
+        try (SupervisedTask task = supervisor.registerTask("restore-app", "mysql-loader", () -> { })) {
+            List<RunningProcess> running = supervisor.listRunning();
+
+            assertEquals(1, running.size());
+            assertEquals("restore-app", running.get(0).getJobId());
+            assertEquals("mysql-loader", running.get(0).getTool());
+            assertEquals(ProcessHandle.current().pid(), running.get(0).getPid());
+            assertNull(running.get(0).getRssBytes());
+        }
+        assertTrue(supervisor.listRunning().isEmpty());
+    }
+
+    @Test
+    void cancelsTasksOfTheJobOnce() throws Exception {
+        AtomicInteger cancelled = new AtomicInteger();
+        AtomicInteger other = new AtomicInteger();
+        try (SupervisedTask task = supervisor.registerTask("restore-app", "mysql-loader", cancelled::incrementAndGet);
+             SupervisedTask second = supervisor.registerTask("restore-app", "mysql-loader", cancelled::incrementAndGet);
+             SupervisedTask unrelated = supervisor.registerTask("restore-other", "mysql-loader", other::incrementAndGet)) {
+
+            assertEquals(2, supervisor.cancel("restore-app"));
+            supervisor.cancel("restore-app");
+
+            assertTrue(task.isCancelled());
+            assertTrue(second.isCancelled());
+            assertFalse(unrelated.isCancelled());
+            assertEquals(2, cancelled.get());
+            assertEquals(0, other.get());
+        }
+    }
+
+    @Test
+    void cancelsTasksOfAnotherInstance() throws Exception {
+        AtomicInteger cancelled = new AtomicInteger();
+        ProcessSupervisorImpl other = new ProcessSupervisorImpl(0, 0, 1024, controlDir.toString(),
+                mock(BackupMetricsService.class));
+        try (SupervisedTask task = other.registerTask("restore-app", "mysql-loader", cancelled::incrementAndGet)) {
+            // Only a cancel marker is left for the owner, its watchdog picks it up. Asking
+            // twice before then still counts the task
+            assertEquals(1, supervisor.cancel("restore-app"));
+            assertEquals(1, supervisor.cancel("restore-app"));
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!task.isCancelled() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(task.isCancelled());
+            assertEquals(1, cancelled.get());
+        } finally {
+            other.destroy();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.DatabaseType;
+import com.DbBackup.model.RestoreOptions;
+import com.DbBackup.model.StreamStats;
+import com.DbBackup.service.BackupMetricsService;
+import com.DbBackup.service.BandwidthService;
+import com.DbBackup.service.BinlogService;
+import com.DbBackup.service.ChunkStoreService;
+import com.DbBackup.service.DatabaseConnectionService;
+import com.DbBackup.service.FramedArchiveService;
+import com.DbBackup.service.MongoBsonDumpService;
+import com.DbBackup.service.MySqlParallelDumpService;
+import com.DbBackup.service.PostgresCopyDumpService;
+import com.DbBackup.service.ProcessSupervisor;
+
+/**
+ * SQLite restores run end to end against real files; the server-side services are mocks.
+ */
+class RestoreServiceImplTest {
+
+    private final TestServices services = new TestServices();
+    private final SqlitePageDeltaServiceImpl deltaService = new SqlitePageDeltaServiceImpl(
+            services.compressionService, services.bufferPool, services.checksumService);
+    private final DatabaseConnectionService connectionService = mock(DatabaseConnectionService.class);
+    private final RestoreServiceImpl restoreService = new RestoreServiceImpl(
+            connectionService,
+            services.compressionService,
+            mock(ChunkStoreService.class),
+            deltaService,
+            mock(MySqlParallelDumpService.class),
+            mock(PostgresCopyDumpService.class),
+            mock(MongoBsonDumpService.class),
+            mock(BinlogService.class),
+            mock(FramedArchiveService.class),
+            services.bufferPool,
+            mock(BackupMetricsService.class),
+            mock(BandwidthService.class),
+            mock(ProcessSupervisor.class));
+
+    @TempDir
+    Path dir;
+
+    private Path database;
+    private BackupJob job;
+
+    @BeforeEach
+    void createDatabase() throws SQLException {
+        when(connectionService.testConnection(any(), any())).thenReturn(true);
+        database = dir.resolve("app.db");
+        job = BackupJob.builder()
+                .databaseType(DatabaseType.SQLITE)
+                .connectionParams(ConnectionParams.builder().database(database.toString()).build())
+                .backupPath(dir.toString())
+                .compressionCodec(CodecType.ZSTD)
+                .build();
+        execute("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT)");
+        insertRows(0, 2000);
+    }
+
+    @Test
+    void restoresCompressedFullBackup() throws Exception {
+        StreamStats full = deltaService.backupFull(job, database.toString(), backupPath("20260101_000000"));
+        Path target = dir.resolve("restored.db");
+
+        assertTrue(restore(full, target));
+        assertArrayEquals(Files.readAllBytes(database), Files.readAllBytes(target));
+    }
+
+    @Test
+    void restoresDeltaOverItsChain() throws Exception {
+        StreamStats full = deltaService.backupFull(job, database.toString(), backupPath("20260101_000000"));
+        execute("UPDATE items SET name = 'changed' WHERE id = 10");
+        StreamStats first = deltaService.backupIncremental(job, database.toString(),
+                backupPath("20260102_000000"), fileName(full));
+        insertRows(2000, 500);
+        StreamStats second = deltaService.backupIncremental(job, database.toString(),
+                backupPath("20260103_000000"), fileName(first));
+        Path target = dir.resolve("restored.db");
+
+        assertTrue(deltaService.isDelta(second.getFilePath()));
+        assertTrue(restore(second, target));
+        assertArrayEquals(Files.readAllBytes(database), Files.readAllBytes(target));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertFalse(files.anyMatch(file -> file.toString().endsWith(".restored")));
+        }
+    }
+
+    @Test
+    void failsDeltaWithoutBase() throws Exception {
+        StreamStats full = deltaService.backupFull(job, database.toString(), backupPath("20260101_000000"));
+        execute("UPDATE items SET name = 'changed' WHERE id = 10");
+        StreamStats delta = deltaService.backupIncremental(job, database.toString(),
+                backupPath("20260102_000000"), fileName(full));
+        Files.delete(Path.of(full.getFilePath()));
+        Path target = dir.resolve("restored.db");
+
+        assertFalse(restore(delta, target));
+        assertFalse(Files.exists(target));
+    }
+
+    private boolean restore(StreamStats backup, Path target) {
+        ConnectionParams params = ConnectionParams.builder().database(target.toString()).build();
+        return restoreService.restore(backup.getFilePath(), DatabaseType.SQLITE, params, RestoreOptions.defaults());
+    }
+
+    private String backupPath(String timestamp) {
+        return dir.resolve("sqlite_app.db_" + timestamp + "_backup.db").toString();
+    }
+
+    private String fileName(StreamStats stats) {
+        return Path.of(stats.getFilePath()).getFileName().toString();
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private void insertRows(int from, int count) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database);
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO items (id, name) VALUES (?, ?)")) {
+            conn.setAutoCommit(false);
+            for (int i = from; i < from + count; i++) {
+                ps.setInt(1, i);
+                ps.setString(2, "item number " + i + " with some padding to fill the pages");
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+        }
+    }
+}
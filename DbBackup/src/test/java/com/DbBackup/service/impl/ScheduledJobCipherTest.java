@@ -0,0 +1,95 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.DatabaseType;
+
+class ScheduledJobCipherTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsWithoutSecretsInTheClear() throws IOException {
+        ScheduledJobCipher cipher = new ScheduledJobCipher("", dir.resolve("scheduler").toString());
+        BackupJob job = job();
+
+        byte[] sealed = cipher.seal(job);
+
+        assertFalse(new String(sealed, StandardCharsets.ISO_8859_1).contains("s3cret-password"));
+        assertFalse(new String(sealed, StandardCharsets.ISO_8859_1).contains("hooks.slack.com"));
+        assertEquals(job, cipher.open(sealed));
+    }
+
+    @Test
+    void generatesKeyFileOnceAndReusesIt() throws IOException {
+        String store = dir.resolve("scheduler").toString();
+        byte[] sealed = new ScheduledJobCipher("", store).seal(job());
+
+        Path keyFile = dir.resolve("scheduler.key");
+        assertTrue(Files.exists(keyFile));
+        // Another process sharing the store reads the same key
+        assertEquals(job(), new ScheduledJobCipher("", store).open(sealed));
+    }
+
+    @Test
+    void configuredKeyTakesPrecedence() throws IOException {
+        String key = Base64.getEncoder().encodeToString(new byte[32]);
+        byte[] sealed = new ScheduledJobCipher(key, dir.resolve("a").toString()).seal(job());
+
+        assertEquals(job(), new ScheduledJobCipher(key, dir.resolve("b").toString()).open(sealed));
+        assertFalse(Files.exists(dir.resolve("a.key")));
+    }
+
+    @Test
+    void rejectsOtherKey() throws IOException {
+        byte[] sealed = new ScheduledJobCipher("", dir.resolve("a").toString()).seal(job());
+
+        assertThrows(IOException.class, () -> new ScheduledJobCipher("", dir.resolve("b").toString()).open(sealed));
+    }
+
+    @Test
+    void rejectsTamperedJob() throws IOException {
+        ScheduledJobCipher cipher = new ScheduledJobCipher("", dir.resolve("scheduler").toString());
+        byte[] sealed = cipher.seal(job());
+        sealed[sealed.length / 2] ^= 1;
+
+        assertThrows(IOException.class, () -> cipher.open(sealed));
+    }
+
+    @Test
+    void rejectsMalformedKey() {
+        ScheduledJobCipher cipher = new ScheduledJobCipher("too-short", dir.resolve("scheduler").toString());
+
+        assertThrows(IOException.class, () -> cipher.seal(job()));
+    }
+
+    private BackupJob job() {
+        return BackupJob.builder()
+                .id("nightly")
+                .databaseType(DatabaseType.MYSQL)
+                .connectionParams(ConnectionParams.builder()
+                        .host("db1")
+                        .database("shop")
+                        .username("backup")
+                        .password("s3cret-password")
+                        .build())
+                .cronExpression("0 0 2 * * ?")
+                .slackWebhookUrl("https://hooks.slack.com/services/T000/B000/XXXX")
+                .build();
+    }
+}
@@ -0,0 +1,157 @@
+package com.DbBackup.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.DbBackup.model.BackupJob;
+import com.DbBackup.model.CodecType;
+import com.DbBackup.model.ConnectionParams;
+import com.DbBackup.model.DatabaseType;
+import com.DbBackup.model.StreamStats;
+
+class SqlitePageDeltaServiceImplTest {
+
+    private final TestServices services = new TestServices();
+    private final SqlitePageDeltaServiceImpl deltaService = new SqlitePageDeltaServiceImpl(
+            services.compressionService, services.bufferPool, services.checksumService);
+
+    @TempDir
+    Path dir;
+
+    private Path database;
+    private BackupJob job;
+
+    @BeforeEach
+    void createDatabase() throws SQLException {
+        database = dir.resolve("app.db");
+        job = BackupJob.builder()
+                .databaseType(DatabaseType.SQLITE)
+                .connectionParams(ConnectionParams.builder().database(database.toString()).build())
+                .backupPath(dir.toString())
+                .compressionCodec(CodecType.ZSTD)
+                .build();
+        execute("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT)");
+        insertRows(0, 2000);
+    }
+
+    @Test
+    void rebuildsDeltaChain() throws Exception {
+        StreamStats full = deltaService.backupFull(job, database.toString(), backupPath("20260101_000000"));
+
+        execute("UPDATE items SET name = 'changed' WHERE id = 10");
+        StreamStats first = deltaService.backupIncremental(job, database.toString(),
+                backupPath("20260102_000000"), fileName(full));
+
+        insertRows(2000, 500);
+        execute("DELETE FROM items WHERE id < 100");
+        StreamStats second = deltaService.backupIncremental(job, database.toString(),
+                backupPath("20260103_000000"), fileName(first));
+
+        assertTrue(first.getCompressedBytes() < full.getCompressedBytes() / 4,
+                "delta of one row is " + first.getCompressedBytes() + " bytes");
+        String rebuilt = deltaService.rebuild(second.getFilePath());
+        assertArrayEquals(Files.readAllBytes(database), Files.readAllBytes(Path.of(rebuilt)));
+    }
+
+    @Test
+    void shrinkingDatabaseTruncatesRebuild() throws Exception {
+        StreamStats full = deltaService.backupFull(job, database.toString(), backupPath("20260101_000000"));
+
+        execute("DELETE FROM items");
+        execute("VACUUM");
+        StreamStats delta = deltaService.backupIncremental(job, database.toString(),
+                backupPath("20260102_000000"), fileName(full));
+
+        String rebuilt = deltaService.rebuild(delta.getFilePath());
+        assertArrayEquals(Files.readAllBytes(database), Files.readAllBytes(Path.of(rebuilt)));
+    }
+
+    @Test
+    void fallsBackToFullWithoutParentPageMap() throws Exception {
+        StreamStats stats = deltaService.backupIncremental(job, database.toString(),
+                backupPath("20260102_000000"), "sqlite_app.db_20260101_000000_backup.db.zst");
+
+        assertFalse(stats.getFilePath().contains(".delta"));
+    }
+
+    @Test
+    void rejectsDeltaWithoutBase() throws Exception {
+        StreamStats full = deltaService.backupFull(job, database.toString(), backupPath("20260101_000000"));
+        execute("UPDATE items SET name = 'changed' WHERE id = 10");
+        StreamStats delta = deltaService.backupIncremental(job, database.toString(),
+                backupPath("20260102_000000"), fileName(full));
+
+        Files.delete(Path.of(full.getFilePath()));
+
+        assertThrows(IOException.class, () -> deltaService.rebuild(delta.getFilePath()));
+    }
+
+    @Test
+    void rejectsTruncatedDelta() throws Exception {
+        StreamStats full = deltaService.backupFull(job, database.toString(), backupPath("20260101_000000"));
+        insertRows(2000, 500);
+        StreamStats delta = deltaService.backupIncremental(job, database.toString(),
+                backupPath("20260102_000000"), fileName(full));
+
+        Path deltaPath = Path.of(delta.getFilePath());
+        byte[] bytes = Files.readAllBytes(deltaPath);
+        Files.write(deltaPath, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertThrows(IOException.class, () -> deltaService.rebuild(delta.getFilePath()));
+        assertFalse(Files.exists(dir.resolve("sqlite_app.db_20260102_000000_backup.db.restored")));
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path text = dir.resolve("notes.txt");
+        Files.writeString(text, "not a database");
+
+        assertThrows(IOException.class, () -> deltaService.backupFull(job, text.toString(), backupPath("x")));
+        assertFalse(deltaService.isDelta(text.toString()));
+    }
+
+    private String backupPath(String timestamp) {
+        return dir.resolve("sqlite_app.db_" + timestamp + "_backup.db").toString();
+    }
+
+    private String fileName(StreamStats stats) {
+        return Path.of(stats.getFilePath()).getFileName().toString();
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private void insertRows(int from, int count) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database);
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO items (id, name) VALUES (?, ?)")) {
+            conn.setAutoCommit(false);
+            for (int i = from; i < from + count; i++) {
+                ps.setInt(1, i);
+                ps.setString(2, "item number " + i + " with some padding to fill the pages");
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+        }
+    }
+}
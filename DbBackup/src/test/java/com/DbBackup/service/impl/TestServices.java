@@ -0,0 +1,28 @@
+package com.DbBackup.service.impl;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The file-format services wired by hand, so format tests run without a Spring context.
+ */
+final class TestServices {
+
+    final BufferPool bufferPool = new BufferPool();
+    final ChecksumServiceImpl checksumService = new ChecksumServiceImpl("xxh64", bufferPool);
+    final CompressionServiceImpl compressionService = new CompressionServiceImpl(
+            Arrays.asList(new GzipCodec(), new ZstdCodec(), new Lz4Codec()), bufferPool, checksumService);
+
+    /**
+     * Repeatable test content that compresses a little, like a dump: random words from a
+     * small vocabulary.
+     */
+    static byte[] sampleData(int length, long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = random.nextInt(8) == 0 ? (byte) ' ' : (byte) ('a' + random.nextInt(16));
+        }
+        return data;
+    }
+}
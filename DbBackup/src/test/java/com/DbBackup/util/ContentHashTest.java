@@ -0,0 +1,65 @@
+package com.DbBackup.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ContentHashTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "sha256, abc, ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+            "xxh64, abc, 44bc2cf5ad770999"
+    })
+    void matchesReferenceDigests(String algorithm, String input, String expected) {
+        ContentHash hash = ContentHash.create(algorithm);
+        update(hash, input);
+
+        assertEquals(expected, hash.hex());
+        assertEquals(algorithm + ":" + expected, hash.checksum());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { ContentHash.SHA256, ContentHash.XXH64 })
+    void hexCanBeReadRepeatedly(String algorithm) {
+        ContentHash hash = ContentHash.create(algorithm);
+        update(hash, "backup bytes");
+
+        String first = hash.hex();
+        assertEquals(first, hash.hex());
+        assertEquals(algorithm + ":" + first, hash.checksum());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { ContentHash.SHA256, ContentHash.XXH64 })
+    void hexIsSnapshotOfBytesSoFar(String algorithm) {
+        ContentHash split = ContentHash.create(algorithm);
+        update(split, "backup ");
+        split.hex();
+        update(split, "bytes");
+
+        ContentHash whole = ContentHash.create(algorithm);
+        update(whole, "backup bytes");
+
+        assertEquals(whole.hex(), split.hex());
+    }
+
+    @Test
+    void resolvesAlgorithmOfStoredChecksum() {
+        assertEquals(ContentHash.SHA256, ContentHash.forChecksum("sha256:ba78").getAlgorithm());
+        assertEquals(ContentHash.XXH64, ContentHash.forChecksum("XXH64:4fdc").getAlgorithm().toLowerCase());
+        assertThrows(IllegalArgumentException.class, () -> ContentHash.forChecksum("ba7816bf"));
+        assertThrows(IllegalArgumentException.class, () -> ContentHash.create("md5"));
+    }
+
+    private static void update(ContentHash hash, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        hash.update(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,79 @@
+package com.DbBackup.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.DbBackup.model.BinlogPosition;
+
+class MySqlBinlogStatusTest {
+
+    private final Connection conn = mock(Connection.class);
+    private final Statement statement = mock(Statement.class);
+
+    @BeforeEach
+    void openStatements() throws SQLException {
+        when(conn.createStatement()).thenReturn(statement);
+    }
+
+    @Test
+    void readsBinaryLogStatusOnCurrentServers() throws SQLException {
+        ResultSet status = row("binlog.000042", 1337);
+        when(statement.executeQuery(MySqlBinlogStatus.BINARY_LOG_STATUS)).thenReturn(status);
+
+        BinlogPosition position = MySqlBinlogStatus.read(conn).orElseThrow();
+
+        assertEquals("binlog.000042", position.getFile());
+        assertEquals(1337, position.getPosition());
+        verify(statement, never()).executeQuery(MySqlBinlogStatus.MASTER_STATUS);
+    }
+
+    @Test
+    void fallsBackToMasterStatusOnOlderServers() throws SQLException {
+        ResultSet status = row("mysql-bin.000007", 154);
+        when(statement.executeQuery(MySqlBinlogStatus.BINARY_LOG_STATUS))
+                .thenThrow(new SQLSyntaxErrorException("You have an error in your SQL syntax", "42000", 1064));
+        when(statement.executeQuery(MySqlBinlogStatus.MASTER_STATUS)).thenReturn(status);
+
+        assertEquals("mysql-bin.000007:154", MySqlBinlogStatus.read(conn).orElseThrow().toString());
+    }
+
+    @Test
+    void isEmptyWithoutBinaryLogging() throws SQLException {
+        ResultSet empty = mock(ResultSet.class);
+        when(statement.executeQuery(MySqlBinlogStatus.BINARY_LOG_STATUS)).thenReturn(empty);
+
+        assertFalse(MySqlBinlogStatus.read(conn).isPresent());
+    }
+
+    @Test
+    void reportsFailureOfBothStatements() throws SQLException {
+        when(statement.executeQuery(MySqlBinlogStatus.BINARY_LOG_STATUS))
+                .thenThrow(new SQLException("Access denied; you need the REPLICATION CLIENT privilege"));
+        when(statement.executeQuery(MySqlBinlogStatus.MASTER_STATUS))
+                .thenThrow(new SQLException("Access denied; you need the REPLICATION CLIENT privilege"));
+
+        assertThrows(SQLException.class, () -> MySqlBinlogStatus.read(conn));
+    }
+
+    private static ResultSet row(String file, long position) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString(1)).thenReturn(file);
+        when(rs.getLong(2)).thenReturn(position);
+        return rs;
+    }
+}
@@ -0,0 +1,98 @@
+package com.DbBackup.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class OutputRingBufferTest {
+
+    @Test
+    void keepsOutputThatFits() {
+        OutputRingBuffer buffer = new OutputRingBuffer(16);
+        write(buffer, "line one\n");
+        write(buffer, "two\n");
+
+        assertEquals("line one\ntwo\n", buffer.tail());
+        assertEquals(13, buffer.getBytesWritten());
+    }
+
+    @Test
+    void keepsOutputOfExactlyCapacity() {
+        OutputRingBuffer buffer = new OutputRingBuffer(8);
+        write(buffer, "abc\n");
+        write(buffer, "def\n");
+
+        assertEquals("abc\ndef\n", buffer.tail());
+    }
+
+    @Test
+    void dropsOldestOutputFromNextFullLine() {
+        OutputRingBuffer buffer = new OutputRingBuffer(16);
+        write(buffer, "first line\n");
+        write(buffer, "second\n");
+        write(buffer, "third\n");
+
+        // Retained bytes are "e\nsecond\nthird\n", the partial line is cut
+        assertEquals("...\nsecond\nthird\n", buffer.tail());
+        assertEquals(24, buffer.getBytesWritten());
+    }
+
+    @Test
+    void keepsEndOfWriteLargerThanCapacity() {
+        OutputRingBuffer buffer = new OutputRingBuffer(8);
+        write(buffer, "xy");
+        write(buffer, "0123456789\nabcdef");
+
+        assertEquals("...\nabcdef", buffer.tail());
+        assertEquals(19, buffer.getBytesWritten());
+    }
+
+    @Test
+    void keepsTailOfOneLongLine() {
+        OutputRingBuffer buffer = new OutputRingBuffer(8);
+        write(buffer, "a line much longer than the buffer");
+
+        assertEquals("...\ne buffer", buffer.tail());
+    }
+
+    @Test
+    void ignoresEmptyWrites() {
+        OutputRingBuffer buffer = new OutputRingBuffer(8);
+        write(buffer, "");
+        write(buffer, "ok\n");
+        write(buffer, "");
+
+        assertEquals("ok\n", buffer.tail());
+        assertEquals(3, buffer.getBytesWritten());
+    }
+
+    @Test
+    void matchesLastBytesAcrossWraps() {
+        Random random = new Random(21);
+        OutputRingBuffer buffer = new OutputRingBuffer(64);
+        StringBuilder all = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder chunk = new StringBuilder();
+            int length = random.nextInt(90);
+            for (int j = 0; j < length; j++) {
+                chunk.append(random.nextInt(10) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+            }
+            write(buffer, chunk.toString());
+            all.append(chunk);
+        }
+
+        String retained = all.substring(all.length() - 64);
+        int lineStart = retained.indexOf('\n');
+        String expected = "...\n" + (lineStart >= 0 ? retained.substring(lineStart + 1) : retained);
+        assertEquals(expected, buffer.tail());
+        assertEquals(all.length(), buffer.getBytesWritten());
+    }
+
+    private static void write(OutputRingBuffer buffer, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,159 @@
+package com.DbBackup.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SqlStatementReaderTest {
+
+    @Test
+    void splitsOnDelimiter() throws IOException {
+        assertEquals(Arrays.asList("SELECT 1", "SELECT 2"), statements("SELECT 1;\n  SELECT 2;\n"));
+    }
+
+    @Test
+    void returnsLastStatementWithoutDelimiter() throws IOException {
+        assertEquals(Arrays.asList("SELECT 1", "SELECT 2"), statements("SELECT 1; SELECT 2"));
+    }
+
+    @Test
+    void skipsEmptyStatements() throws IOException {
+        assertEquals(Arrays.asList("SELECT 1"), statements(";;\n SELECT 1;;  ;\n"));
+        assertEquals(List.of(), statements("  \n\t"));
+    }
+
+    @Test
+    void ignoresDelimiterInQuotes() throws IOException {
+        String sql = "INSERT INTO `a;b` VALUES ('x;y', \"z;w\")";
+        assertEquals(Arrays.asList(sql, "SELECT 1"), statements(sql + ";SELECT 1;"));
+    }
+
+    @Test
+    void handlesDoubledQuotes() throws IOException {
+        String sql = "INSERT INTO t VALUES ('it''s; fine')";
+        assertEquals(Arrays.asList(sql, "SELECT 1"), statements(sql + ";SELECT 1;"));
+    }
+
+    @Test
+    void handlesBackslashEscapesInStrings() throws IOException {
+        String sql = "INSERT INTO t VALUES ('it\\'s; here', \"say \\\"hi;\\\"\", 'end\\\\')";
+        assertEquals(Arrays.asList(sql, "SELECT 1"), statements(sql + ";SELECT 1;"));
+    }
+
+    @Test
+    void backslashDoesNotEscapeInIdentifiers() throws IOException {
+        assertEquals(Arrays.asList("SELECT `a\\`", "SELECT 1"), statements("SELECT `a\\`;SELECT 1;"));
+    }
+
+    @Test
+    void ignoresDelimiterInDashComments() throws IOException {
+        assertEquals(Arrays.asList("SELECT 1 -- one; two\n+ 1", "SELECT 2"),
+                statements("SELECT 1 -- one; two\n+ 1;\nSELECT 2;"));
+    }
+
+    @Test
+    void needsWhitespaceAfterDoubleDash() throws IOException {
+        // Not a comment in MySQL, 1 minus minus 1
+        assertEquals(Arrays.asList("SELECT 1--1", "SELECT 2"), statements("SELECT 1--1;SELECT 2;"));
+    }
+
+    @Test
+    void ignoresDelimiterInHashComments() throws IOException {
+        assertEquals(Arrays.asList("SELECT 1 # one; two\n+ 1", "SELECT 2"),
+                statements("SELECT 1 # one; two\n+ 1;\nSELECT 2;"));
+    }
+
+    @Test
+    void dropsCommentLinesBetweenStatements() throws IOException {
+        assertEquals(Arrays.asList("SELECT 1", "SELECT 2"),
+                statements("-- header; with a delimiter\n# another;\nSELECT 1;\n--\nSELECT 2;"));
+    }
+
+    @Test
+    void ignoresDelimiterInBlockComments() throws IOException {
+        assertEquals(Arrays.asList("SELECT /* a; b */ 1", "/*!40101 SET NAMES utf8mb4 */", "SELECT 2"),
+                statements("SELECT /* a; b */ 1;\n/*!40101 SET NAMES utf8mb4 */;\nSELECT 2;"));
+    }
+
+    @Test
+    void switchesDelimiter() throws IOException {
+        String body = "CREATE TRIGGER t BEFORE INSERT ON a FOR EACH ROW BEGIN\n"
+                + "  SET NEW.x = 1;\n  SET NEW.y = 2;\nEND";
+        String script = "SELECT 1;\nDELIMITER ;;\n" + body + " ;;\nDELIMITER ;\nSELECT 2;";
+
+        assertEquals(Arrays.asList("SELECT 1", body, "SELECT 2"), statements(script));
+    }
+
+    @Test
+    void switchesToMultiCharacterDelimiterInAnyCase() throws IOException {
+        String script = "delimiter $$\nCREATE PROCEDURE p() BEGIN SELECT 1; END$$\ndelimiter ;\nSELECT 2;";
+
+        assertEquals(Arrays.asList("CREATE PROCEDURE p() BEGIN SELECT 1; END", "SELECT 2"), statements(script));
+    }
+
+    @Test
+    void recognizesDelimiterAfterCommentLine() throws IOException {
+        String script = "-- Routines\nDELIMITER ;;\nCREATE PROCEDURE p() BEGIN SELECT 1; END ;;\nDELIMITER ;\n";
+
+        assertEquals(Arrays.asList("CREATE PROCEDURE p() BEGIN SELECT 1; END"), statements(script));
+    }
+
+    @Test
+    void delimiterOnlyCountsAtStatementStart() throws IOException {
+        assertEquals(Arrays.asList("SELECT 'x' AS DELIMITER", "SELECT 1"),
+                statements("SELECT 'x' AS DELIMITER;SELECT 1;"));
+    }
+
+    @Test
+    void readsAcrossBufferRefills() throws IOException {
+        StringBuilder script = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String sql = "INSERT INTO t VALUES (" + i + ", 'row; " + i + " with \\'quotes\\' and padding to fill the buffer')";
+            expected.add(sql);
+            script.append(sql).append(";\n");
+        }
+
+        // A reader handing out a few characters at a time splits quotes and delimiters
+        Reader trickle = new StringReader(script.toString()) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 7));
+            }
+        };
+        assertEquals(expected, statements(trickle));
+        assertEquals(expected, statements(script.toString()));
+    }
+
+    @Test
+    void returnsNullAfterLastStatement() throws IOException {
+        try (SqlStatementReader reader = new SqlStatementReader(new StringReader("SELECT 1;"))) {
+            assertEquals("SELECT 1", reader.next());
+            assertNull(reader.next());
+            assertNull(reader.next());
+        }
+    }
+
+    private static List<String> statements(String script) throws IOException {
+        return statements(new StringReader(script));
+    }
+
+    private static List<String> statements(Reader script) throws IOException {
+        List<String> statements = new ArrayList<>();
+        try (SqlStatementReader reader = new SqlStatementReader(script)) {
+            String sql;
+            while ((sql = reader.next()) != null) {
+                statements.add(sql);
+            }
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,125 @@
+package com.DbBackup.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // Time only moves when the bucket sleeps or a test lets it pass
+    private final AtomicLong now = new AtomicLong(1_000 * SECOND);
+    private final AtomicLong slept = new AtomicLong();
+    private final AtomicLong rate = new AtomicLong(100_000);
+    private final TokenBucket bucket = new TokenBucket(rate::get, now::get, nanos -> {
+        slept.addAndGet(nanos);
+        now.addAndGet(nanos);
+    });
+
+    @Test
+    void holdsSustainedRate() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            bucket.acquire(10_000);
+        }
+
+        // A million bytes at 100 KB/s
+        assertEquals(10 * SECOND, slept.get(), SECOND / 1000);
+    }
+
+    @Test
+    void capsBurstAfterIdleTime() throws IOException {
+        rate.set(1024 * 1024);
+        bucket.acquire(0);
+        now.addAndGet(60 * SECOND);
+
+        // A quarter second's worth is banked, however long the bucket was idle
+        bucket.acquire(256 * 1024);
+        assertEquals(0, slept.get());
+        bucket.acquire(256 * 1024);
+        assertEquals(SECOND / 4, slept.get(), SECOND / 1000);
+    }
+
+    @Test
+    void smallRatesStillBurstMinimum() throws IOException {
+        rate.set(1000);
+        bucket.acquire(0);
+        now.addAndGet(3600 * SECOND);
+
+        bucket.acquire(64 * 1024);
+        assertEquals(0, slept.get());
+    }
+
+    @Test
+    void largeAcquireGoesIntoDebt() throws IOException {
+        bucket.acquire(500_000);
+        assertEquals(5 * SECOND, slept.get(), SECOND / 1000);
+
+        // The debt was slept off, the next small acquire waits only for itself
+        slept.set(0);
+        bucket.acquire(10_000);
+        assertEquals(SECOND / 10, slept.get(), SECOND / 1000);
+    }
+
+    @Test
+    void appliesRateChangesImmediately() throws IOException {
+        bucket.acquire(100_000);
+        assertEquals(SECOND, slept.get(), SECOND / 1000);
+
+        rate.set(200_000);
+        bucket.acquire(100_000);
+        slept.set(0);
+        for (int i = 0; i < 10; i++) {
+            bucket.acquire(100_000);
+        }
+        assertEquals(5 * SECOND, slept.get(), SECOND / 1000);
+    }
+
+    @Test
+    void unlimitedNeverSleepsAndForgivesDebt() throws IOException {
+        rate.set(0);
+        assertFalse(bucket.isLimited());
+        bucket.acquire(Long.MAX_VALUE / 2);
+        assertEquals(0, slept.get());
+
+        rate.set(100_000);
+        assertTrue(bucket.isLimited());
+        bucket.acquire(10_000);
+        assertEquals(SECOND / 10, slept.get(), SECOND / 1000);
+    }
+
+    @Test
+    void interruptedSleepFailsTheTransfer() {
+        TokenBucket interrupted = new TokenBucket(rate::get, now::get, nanos -> {
+            throw new InterruptedException();
+        });
+
+        assertThrows(InterruptedIOException.class, () -> interrupted.acquire(1_000_000));
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    void throttledStreamDrawsEveryByteFromTheBucket() throws IOException {
+        Throttle throttle = new Throttle(Collections.singletonList(bucket));
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        try (OutputStream out = throttle.wrap(target)) {
+            out.write(new byte[300_000]);
+            out.write(1);
+        }
+
+        assertEquals(300_001, target.size());
+        assertEquals(3 * SECOND, slept.get(), SECOND / 1000);
+    }
+}